@@ -0,0 +1,114 @@
+package org.bitcoin.market;
+
+import org.bitcoin.common.PooledHttpTransport;
+import org.bitcoin.market.bean.AppAccount;
+import org.bitcoin.market.bean.Asset;
+import org.bitcoin.market.ratelimit.EndpointClass;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Snapshots per second of getInfo over every account, each call blocking a thread for the 20 ms the
+ * {@link FakePeatioServer} takes to answer, as the number of accounts grows: on an {@link AccountExecutor}
+ * (virtual threads on Java 21, a bounded pool of platform threads before) against a fixed pool of 32 threads, and against
+ * {@link PeatioCNYApi#getAssets} that sends them all asynchronously.
+ * The server gets as many handler threads, and the client as many connections, as there are accounts so that
+ * neither is the bottleneck. Signing, serving and parsing still take CPU: with few cores the snapshot is bound by
+ * them rather than by the 20 ms wait.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class AccountsBenchmark {
+    private static final int FIXED_THREADS = 32;
+
+    @Param({"50", "200", "500"})
+    private int accounts;
+
+    /**
+     * virtual: AccountExecutor, virtual threads if available; platform: AccountExecutor on platform threads;
+     * fixed: a fixed thread pool; assets: one getAssets, no thread per call.
+     */
+    @Param({"virtual", "platform", "fixed", "assets"})
+    private String mode;
+
+    private FakePeatioServer server;
+    private PeatioCNYApi api;
+    private final List<AppAccount> appAccounts = new ArrayList<AppAccount>();
+    private AccountExecutor accountExecutor;
+    private ExecutorService fixed;
+    private PooledHttpTransport transport;
+
+    @Setup
+    public void setUp() throws IOException {
+        server = new FakePeatioServer(0, accounts).start();
+        server.setLatency(20, TimeUnit.MILLISECONDS);
+        api = new PeatioCNYApi(server.getBaseUrl());
+        transport = new PooledHttpTransport(accounts, PooledHttpTransport.DEFAULT_IDLE_TIMEOUT, PooledHttpTransport.DEFAULT_TIMEOUT);
+        api.setTransport(transport);
+        api.getRateLimiter().setLimit(EndpointClass.PRIVATE, 1000, 1000000.0);
+        for (int i = 0; i < accounts; i++) {
+            AppAccount appAccount = new AppAccount();
+            appAccount.setId((long) i);
+            appAccount.setAccessKey("access" + i);
+            appAccount.setSecretKey("secret" + i);
+            server.addMember(appAccount.getAccessKey(), appAccount.getSecretKey());
+            appAccounts.add(appAccount);
+        }
+        if ("fixed".equals(mode)) {
+            fixed = Executors.newFixedThreadPool(FIXED_THREADS);
+        } else if (!"assets".equals(mode)) {
+            accountExecutor = new AccountExecutor("virtual".equals(mode), AccountExecutor.DEFAULT_MAX_PER_ACCOUNT);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (fixed != null) {
+            fixed.shutdownNow();
+        }
+        if (accountExecutor != null) {
+            accountExecutor.close();
+        }
+        transport.close();
+        server.close();
+    }
+
+    @Benchmark
+    public int getInfo() {
+        if ("assets".equals(mode)) {
+            return api.getAssets(appAccounts).size();
+        }
+        List<CompletableFuture<Asset>> futures = new ArrayList<CompletableFuture<Asset>>(accounts);
+        for (AppAccount appAccount : appAccounts) {
+            if (fixed != null) {
+                futures.add(CompletableFuture.supplyAsync(() -> api.getInfo(appAccount), fixed));
+            } else {
+                futures.add(accountExecutor.submit(appAccount, () -> api.getInfo(appAccount)));
+            }
+        }
+        int done = 0;
+        for (CompletableFuture<Asset> future : futures) {
+            done += future.join() == null ? 0 : 1;
+        }
+        return done;
+    }
+}
@@ -0,0 +1,45 @@
+package org.bitcoin.market;
+
+import org.bitcoin.common.DoubleUtils;
+import org.bitcoin.common.FiatConverter;
+import org.bitcoin.market.bean.OrderBook;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per value rounding and fiat conversion, the input changes every call so nothing folds.
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConversionBenchmark {
+    private double value = 3000.0;
+    private long unscaled = 30000000L;
+
+    @Benchmark
+    public Double toFourDecimal() {
+        value += 0.00013;
+        return DoubleUtils.toFourDecimal(value);
+    }
+
+    @Benchmark
+    public double toUsd() {
+        value += 0.00013;
+        return FiatConverter.toUsd(value);
+    }
+
+    @Benchmark
+    public long toUsdUnscaled() {
+        unscaled += 13;
+        return FiatConverter.toUsd(unscaled, OrderBook.PRICE_SCALE);
+    }
+}
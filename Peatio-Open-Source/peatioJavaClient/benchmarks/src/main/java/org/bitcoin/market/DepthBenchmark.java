@@ -0,0 +1,89 @@
+package org.bitcoin.market;
+
+import com.alibaba.fastjson.JSONArray;
+import org.bitcoin.market.bean.OrderBook;
+import org.bitcoin.market.bean.Symbol;
+import org.bitcoin.market.bean.SymbolPair;
+import org.bitcoin.market.utils.OrderBookDecoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Depth handling on the recorded 100x100 order_book payload. The book mutating benchmarks
+ * start each operation from a copy of the recorded book, copyBook measures that copy alone.
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DepthBenchmark {
+    private final PeatioCNYApi api = new PeatioCNYApi();
+    private final OrderBookDecoder decoder = new OrderBookDecoder();
+
+    private byte[] payload;
+    private OrderBook recorded;
+    private OrderBook work;
+    private JSONArray legacyAsks;
+
+    @Setup
+    public void setUp() {
+        payload = Fixtures.load(Fixtures.ORDER_BOOK);
+        recorded = new OrderBook(new SymbolPair(Symbol.btc, Symbol.cny));
+        decoder.decode(payload, recorded);
+        recorded.sort();
+        work = new OrderBook(recorded);
+
+        // the [[price, amount], ...] shape sort_and_format expects, in payload order
+        OrderBook unsorted = new OrderBook();
+        decoder.decode(payload, unsorted);
+        legacyAsks = new JSONArray();
+        for (int i = 0; i < unsorted.getAskCount(); i++) {
+            JSONArray level = new JSONArray();
+            level.add(Double.toString(unsorted.getAskPrice(i)));
+            level.add(Double.toString(unsorted.getAskAmount(i)));
+            legacyAsks.add(level);
+        }
+    }
+
+    @Benchmark
+    public OrderBook decodeOrderBook() {
+        decoder.decode(payload, work);
+        work.sort();
+        return work;
+    }
+
+    @Benchmark
+    public OrderBook copyBook() {
+        work.copyFrom(recorded);
+        return work;
+    }
+
+    @Benchmark
+    public OrderBook fixDepth() {
+        work.copyFrom(recorded);
+        api.fix_depth(work);
+        return work;
+    }
+
+    @Benchmark
+    public OrderBook convertToUsd() {
+        work.copyFrom(recorded);
+        api.convert_to_usd(work);
+        return work;
+    }
+
+    @Benchmark
+    public JSONArray sortAndFormat() {
+        return api.sort_and_format(new JSONArray(new ArrayList<Object>(legacyAsks)), false);
+    }
+}
@@ -0,0 +1,34 @@
+package org.bitcoin.market;
+
+import com.google.common.io.ByteStreams;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Recorded peatio responses shared with the client tests.
+ */
+final class Fixtures {
+    static final String ORDER_BOOK = "/order_book.json";
+    static final String ORDERS = "/orders.json";
+    static final String KLINES = "/k.json";
+
+    private Fixtures() {
+    }
+
+    static byte[] load(String name) {
+        InputStream in = Fixtures.class.getResourceAsStream(name);
+        if (in == null) {
+            throw new IllegalStateException("missing fixture " + name);
+        }
+        try {
+            try {
+                return ByteStreams.toByteArray(in);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("can't read fixture " + name, e);
+        }
+    }
+}
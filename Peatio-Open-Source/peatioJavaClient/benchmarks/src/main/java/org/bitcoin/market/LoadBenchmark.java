@@ -0,0 +1,98 @@
+package org.bitcoin.market;
+
+import com.alibaba.fastjson.JSONObject;
+import org.bitcoin.market.bean.AppAccount;
+import org.bitcoin.market.bean.BitOrder;
+import org.bitcoin.market.bean.Symbol;
+import org.bitcoin.market.bean.SymbolPair;
+import org.bitcoin.market.ratelimit.EndpointClass;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Requests per second of the whole client, transport and signing included, against the
+ * in-process {@link FakePeatioServer} with the rate limits lifted. Peatio wants a new tonce
+ * per request and access key within 30 seconds of its clock, so each thread rotates over
+ * several accounts to stay under 1000 signed requests per second and key.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(16)
+@Fork(1)
+public class LoadBenchmark {
+    private static final int ACCOUNTS_PER_THREAD = 8;
+
+    private final SymbolPair btcCny = new SymbolPair(Symbol.btc, Symbol.cny);
+    private final AtomicInteger accountIds = new AtomicInteger();
+    private FakePeatioServer server;
+    private PeatioCNYApi api;
+
+    @Setup
+    public void setUp() throws IOException {
+        server = new FakePeatioServer().start();
+        api = new PeatioCNYApi(server.getBaseUrl());
+        api.getRateLimiter().setLimit(EndpointClass.PRIVATE, 1000, 1000000.0);
+        api.getRateLimiter().setLimit(EndpointClass.PUBLIC, 1000, 1000000.0);
+    }
+
+    @TearDown
+    public void tearDown() {
+        server.close();
+    }
+
+    @State(Scope.Thread)
+    public static class Accounts {
+        private final AppAccount[] appAccounts = new AppAccount[ACCOUNTS_PER_THREAD];
+        private final long[] orderIds = new long[ACCOUNTS_PER_THREAD];
+        private int next;
+
+        @Setup
+        public void setUp(LoadBenchmark benchmark) {
+            for (int i = 0; i < appAccounts.length; i++) {
+                long id = benchmark.accountIds.incrementAndGet();
+                AppAccount appAccount = new AppAccount();
+                appAccount.setId(id);
+                appAccount.setAccessKey("access" + id);
+                appAccount.setSecretKey("secret" + id);
+                benchmark.server.addMember(appAccount.getAccessKey(), appAccount.getSecretKey());
+                appAccounts[i] = appAccount;
+                orderIds[i] = benchmark.api.buy(appAccount, 0.01, 10.0, benchmark.btcCny);
+            }
+        }
+
+        private int next() {
+            next = (next + 1) % appAccounts.length;
+            return next;
+        }
+    }
+
+    @Benchmark
+    public BitOrder getOrder(Accounts accounts) {
+        int i = accounts.next();
+        return api.getOrder(accounts.appAccounts[i], accounts.orderIds[i], btcCny);
+    }
+
+    @Benchmark
+    public Double ticker() throws IOException {
+        return api.ticker(btcCny);
+    }
+
+    @Benchmark
+    public JSONObject updateDepth() {
+        return api.update_depth(btcCny);
+    }
+}
@@ -0,0 +1,68 @@
+package org.bitcoin.market;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import com.google.common.base.Charsets;
+import org.bitcoin.market.bean.BitOrder;
+import org.bitcoin.market.bean.Kline;
+import org.bitcoin.market.bean.Symbol;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of the recorded /api/v2/orders page (100 orders) and /api/v2/k response (500 bars).
+ * getOrder converts one already parsed order, the others start from the response text.
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseBenchmark {
+    private final PeatioCNYApi api = new PeatioCNYApi();
+
+    private String ordersText;
+    private JSONArray orders;
+    private String klinesText;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        ordersText = new String(Fixtures.load(Fixtures.ORDERS), Charsets.UTF_8);
+        orders = JSON.parseArray(ordersText);
+        klinesText = new String(Fixtures.load(Fixtures.KLINES), Charsets.UTF_8);
+    }
+
+    @Benchmark
+    public BitOrder getOrder() {
+        JSONObject order = orders.getJSONObject(next);
+        next = (next + 1) % orders.size();
+        return api.getOrder(order);
+    }
+
+    @Benchmark
+    public List<BitOrder> parseOrders() {
+        JSONArray response = JSON.parseArray(ordersText);
+        List<BitOrder> result = new ArrayList<BitOrder>(response.size());
+        for (int i = 0; i < response.size(); i++) {
+            result.add(api.getOrder(response.getJSONObject(i)));
+        }
+        return result;
+    }
+
+    @Benchmark
+    public List<Kline> parseKlines() {
+        return api.parseKlines(klinesText, Symbol.btc);
+    }
+}
@@ -0,0 +1,47 @@
+package org.bitcoin.market;
+
+import org.bitcoin.market.bean.AppAccount;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Signature of a typical order placement request.
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SignBenchmark {
+    private final PeatioCNYApi api = new PeatioCNYApi();
+    private final AppAccount appAccount = new AppAccount();
+    private final TreeMap<String, String> params = new TreeMap<String, String>();
+
+    @Setup
+    public void setUp() {
+        appAccount.setAccessKey("xxyOiPFTE0lFERGc7hHyv3oVxRGXIAIyxvsCp5Nj");
+        appAccount.setSecretKey("iGJxbs4y5c2hYoNW6fWlzyTwcUdpAxnvhPAKvLzv");
+        params.put("canonical_verb", "POST");
+        params.put("canonical_uri", "/api/v2/orders");
+        params.put("access_key", appAccount.getAccessKey());
+        params.put("market", "btccny");
+        params.put("side", "buy");
+        params.put("volume", "0.0123");
+        params.put("price", "3812.5");
+        params.put("tonce", "1404888899123");
+    }
+
+    @Benchmark
+    public String getSign() {
+        return api.getSign(appAccount, params);
+    }
+}
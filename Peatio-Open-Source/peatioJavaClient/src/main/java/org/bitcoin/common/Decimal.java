@@ -0,0 +1,353 @@
+package org.bitcoin.common;
+
+import com.google.common.base.Charsets;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Fixed point decimal: an unscaled long and a scale, value = unscaled / 10^scale.
+ * <p/>
+ * The static methods work on raw unscaled longs and never allocate, they are what the
+ * order book and the beans use internally. Instances are immutable and meant for api
+ * boundaries where an exact value has to be handed over.
+ * <p/>
+ * Rounding is always half up (away from zero), doubles are rounded as they are written,
+ * so 1.00005 rounds to 1.0001 at scale 4 even though its binary value is slightly below.
+ */
+public final class Decimal implements Comparable<Decimal> {
+    public static final int MAX_SCALE = 18;
+
+    private static final long[] POWERS = new long[MAX_SCALE + 1];
+    private static final double[] DOUBLE_POWERS = new double[MAX_SCALE + 1];
+
+    static {
+        long power = 1L;
+        for (int i = 0; i <= MAX_SCALE; i++) {
+            POWERS[i] = power;
+            DOUBLE_POWERS[i] = power;
+            power *= 10;
+        }
+    }
+
+    private static final long MAX_MANTISSA = POWERS[17];
+    private static final double MAX_DOUBLE = 9.0e18;
+
+    private final long unscaled;
+    private final int scale;
+
+    private Decimal(long unscaled, int scale) {
+        this.unscaled = unscaled;
+        this.scale = scale;
+    }
+
+    public static Decimal of(long unscaled, int scale) {
+        checkScale(scale);
+        return new Decimal(unscaled, scale);
+    }
+
+    public static Decimal valueOf(double value, int scale) {
+        return new Decimal(round(value, scale), scale);
+    }
+
+    public static Decimal valueOf(CharSequence value, int scale) {
+        return new Decimal(parse(value, scale), scale);
+    }
+
+    public long getUnscaled() {
+        return unscaled;
+    }
+
+    public int getScale() {
+        return scale;
+    }
+
+    public double doubleValue() {
+        return toDouble(unscaled, scale);
+    }
+
+    public Decimal add(Decimal other) {
+        return new Decimal(Math.addExact(unscaled, rescale(other.unscaled, other.scale, scale)), scale);
+    }
+
+    public Decimal subtract(Decimal other) {
+        return new Decimal(Math.subtractExact(unscaled, rescale(other.unscaled, other.scale, scale)), scale);
+    }
+
+    /**
+     * Product rounded to the scale of this.
+     */
+    public Decimal multiply(Decimal other) {
+        return new Decimal(multiply(unscaled, scale, other.unscaled, other.scale, scale), scale);
+    }
+
+    public Decimal setScale(int newScale) {
+        return new Decimal(rescale(unscaled, scale, newScale), newScale);
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(unscaled, scale);
+    }
+
+    @Override
+    public int compareTo(Decimal other) {
+        if (scale == other.scale) {
+            return Long.compare(unscaled, other.unscaled);
+        }
+        return toBigDecimal().compareTo(other.toBigDecimal());
+    }
+
+    /**
+     * Equal when the values are, whatever the scales.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Decimal)) return false;
+        return compareTo((Decimal) o) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return toBigDecimal().stripTrailingZeros().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return toString(unscaled, scale);
+    }
+
+    /**
+     * Round value half up to scale digits.
+     *
+     * @return the unscaled value
+     * @throws ArithmeticException when value is not finite or does not fit
+     */
+    public static long round(double value, int scale) {
+        checkScale(scale);
+        double scaled = Math.abs(value * DOUBLE_POWERS[scale]);
+        if (!(scaled < MAX_DOUBLE)) {
+            throw new ArithmeticException("can't round " + value + " to scale " + scale);
+        }
+        long result = (long) scaled;
+        // a fraction within one ulp of a half is a half that the multiplication pushed below
+        if (scaled - result >= 0.5 - Math.ulp(scaled)) {
+            result++;
+        }
+        return value < 0 ? -result : result;
+    }
+
+    public static double toDouble(long unscaled, int scale) {
+        return unscaled / DOUBLE_POWERS[scale];
+    }
+
+    /**
+     * Change the scale of an unscaled value, rounding half up when digits are dropped.
+     *
+     * @throws ArithmeticException on overflow
+     */
+    public static long rescale(long unscaled, int fromScale, int toScale) {
+        if (toScale == fromScale || unscaled == 0) {
+            return unscaled;
+        }
+        if (toScale > fromScale) {
+            int shift = toScale - fromScale;
+            if (shift > MAX_SCALE) {
+                throw new ArithmeticException("overflow rescaling " + unscaled);
+            }
+            return Math.multiplyExact(unscaled, POWERS[shift]);
+        }
+        int shift = fromScale - toScale;
+        if (shift > MAX_SCALE) {
+            return 0L;
+        }
+        return divide(unscaled, POWERS[shift]);
+    }
+
+    /**
+     * a * b rounded half up to scale.
+     */
+    public static long multiply(long a, int scaleA, long b, int scaleB, int scale) {
+        long high = Math.abs(a) | Math.abs(b);
+        if (high >>> 31 == 0) {
+            return rescale(a * b, scaleA + scaleB, scale);
+        }
+        try {
+            return rescale(Math.multiplyExact(a, b), scaleA + scaleB, scale);
+        } catch (ArithmeticException e) {
+            return BigDecimal.valueOf(a, scaleA).multiply(BigDecimal.valueOf(b, scaleB))
+                    .setScale(scale, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+        }
+    }
+
+    /**
+     * a / b rounded half up to scale.
+     */
+    public static long divide(long a, int scaleA, long b, int scaleB, int scale) {
+        int shift = scale + scaleB - scaleA;
+        if (shift >= 0 && shift <= MAX_SCALE) {
+            long high = Math.abs(a);
+            if (high < Long.MAX_VALUE / POWERS[shift]) {
+                return divide(a * POWERS[shift], b);
+            }
+        }
+        return BigDecimal.valueOf(a, scaleA).divide(BigDecimal.valueOf(b, scaleB), scale, RoundingMode.HALF_UP)
+                .unscaledValue().longValueExact();
+    }
+
+    /**
+     * Parse a plain or exponent decimal such as "-12.5", "3", "1e-3" from ascii bytes,
+     * rounding half up to scale.
+     *
+     * @throws NumberFormatException when the bytes are not a number
+     * @throws ArithmeticException   when the value does not fit
+     */
+    public static long parse(byte[] data, int offset, int length, int scale) {
+        checkScale(scale);
+        int end = offset + length;
+        int i = offset;
+        boolean negative = false;
+        if (i < end && (data[i] == '-' || data[i] == '+')) {
+            negative = data[i] == '-';
+            i++;
+        }
+        // value = mantissa * 10^exponent
+        long mantissa = 0L;
+        int exponent = 0;
+        boolean digits = false;
+        boolean fraction = false;
+        boolean dropped = false;
+        boolean roundUp = false;
+        for (; i < end; i++) {
+            byte b = data[i];
+            if (b >= '0' && b <= '9') {
+                digits = true;
+                if (mantissa < MAX_MANTISSA) {
+                    mantissa = mantissa * 10 + (b - '0');
+                    if (fraction) {
+                        exponent--;
+                    }
+                } else {
+                    if (!dropped) {
+                        roundUp = b >= '5';
+                        dropped = true;
+                    }
+                    if (!fraction) {
+                        exponent++;
+                    }
+                }
+            } else if (b == '.' && !fraction) {
+                fraction = true;
+            } else {
+                break;
+            }
+        }
+        if (!digits) {
+            throw numberFormat(data, offset, length);
+        }
+        if (roundUp) {
+            mantissa++;
+        }
+        if (i < end && (data[i] == 'e' || data[i] == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < end && (data[i] == '-' || data[i] == '+')) {
+                negativeExponent = data[i] == '-';
+                i++;
+            }
+            int value = 0;
+            int start = i;
+            for (; i < end && data[i] >= '0' && data[i] <= '9'; i++) {
+                if (value < 1000) {
+                    value = value * 10 + (data[i] - '0');
+                }
+            }
+            if (i == start) {
+                throw numberFormat(data, offset, length);
+            }
+            exponent += negativeExponent ? -value : value;
+        }
+        if (i != end) {
+            throw numberFormat(data, offset, length);
+        }
+
+        long result;
+        if (mantissa == 0) {
+            result = 0L;
+        } else if (exponent + scale >= 0) {
+            int shift = exponent + scale;
+            if (shift > MAX_SCALE) {
+                throw new ArithmeticException("overflow parsing " + new String(data, offset, length, Charsets.US_ASCII));
+            }
+            result = Math.multiplyExact(mantissa, POWERS[shift]);
+        } else {
+            int shift = -(exponent + scale);
+            result = shift > MAX_SCALE ? 0L : divide(mantissa, POWERS[shift]);
+        }
+        return negative ? -result : result;
+    }
+
+    public static long parse(CharSequence value, int scale) {
+        int length = value.length();
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            data[i] = c < 0x80 ? (byte) c : (byte) '?';
+        }
+        return parse(data, 0, length, scale);
+    }
+
+    /**
+     * Append the plain decimal representation, trailing zeros of the fraction dropped.
+     */
+    public static StringBuilder appendTo(StringBuilder builder, long unscaled, int scale) {
+        if (unscaled < 0) {
+            builder.append('-');
+        }
+        long abs = Math.abs(unscaled);
+        if (abs < 0) {
+            return builder.append(BigDecimal.valueOf(unscaled, scale).abs().toPlainString());
+        }
+        builder.append(abs / POWERS[scale]);
+        long fraction = abs % POWERS[scale];
+        if (fraction != 0) {
+            int digits = scale;
+            while (fraction % 10 == 0) {
+                fraction /= 10;
+                digits--;
+            }
+            builder.append('.');
+            for (int i = digits - 1; i > 0 && fraction < POWERS[i]; i--) {
+                builder.append('0');
+            }
+            builder.append(fraction);
+        }
+        return builder;
+    }
+
+    public static String toString(long unscaled, int scale) {
+        return appendTo(new StringBuilder(24), unscaled, scale).toString();
+    }
+
+    /**
+     * a / b rounded half up.
+     */
+    private static long divide(long a, long b) {
+        long quotient = a / b;
+        long remainder = a % b;
+        if (remainder != 0 && Math.abs(remainder) >= Math.abs(b) - Math.abs(remainder)) {
+            quotient += (a < 0) == (b < 0) ? 1 : -1;
+        }
+        return quotient;
+    }
+
+    private static void checkScale(int scale) {
+        if (scale < 0 || scale > MAX_SCALE) {
+            throw new IllegalArgumentException("scale out of range: " + scale);
+        }
+    }
+
+    private static NumberFormatException numberFormat(byte[] data, int offset, int length) {
+        return new NumberFormatException("not a number: " + new String(data, offset, length, Charsets.US_ASCII));
+    }
+}
@@ -1,18 +1,22 @@
 package org.bitcoin.common;
 
-import java.text.DecimalFormat;
-
 /**
  * Created by classic1999 on 14-6-9.
  */
 public class DoubleUtils {
 
     public static Double toFourDecimal(double a) {
-        DecimalFormat dcmFmt = new DecimalFormat("#.####");
-        return Double.parseDouble(dcmFmt.format(a));
+        return toDecimal(a, 4);
     }
+
     public static Double toThreeDecimal(double a) {
-        DecimalFormat dcmFmt = new DecimalFormat("#.###");
-        return Double.parseDouble(dcmFmt.format(a));
+        return toDecimal(a, 3);
+    }
+
+    private static double toDecimal(double a, int scale) {
+        if (Double.isNaN(a) || Double.isInfinite(a) || Math.abs(a) > 1e14) {
+            return a;
+        }
+        return Decimal.toDouble(Decimal.round(a, scale), scale);
     }
 }
@@ -7,7 +7,12 @@ import java.util.Date;
 
 public class FiatConverter {
     private static final Logger LOG = LoggerFactory.getLogger(FiatConverter.class);
-    private final static double USD2CNY = 6.2;
+    /**
+     * 6.2, the one definition of the rate: the double and the unscaled conversions both read it through
+     * {@link #getRateUnscaled(Date)}.
+     */
+    private final static long USD2CNY_UNSCALED = 62L;
+    private final static int USD2CNY_SCALE = 1;
 
     public static double toUsd(Double cny) {
         return toUsd(cny, new Date());
@@ -21,8 +26,22 @@ public class FiatConverter {
         return DoubleUtils.toFourDecimal(usd);
     }
 
-    private static Double getRate(Date date) {
-        return USD2CNY;
+    /**
+     * Exact conversion of an unscaled cny value, the result has the same scale.
+     */
+    public static long toUsd(long cny, int scale) {
+        return Decimal.divide(cny, scale, getRateUnscaled(new Date()), USD2CNY_SCALE, scale);
+    }
+
+    private static double getRate(Date date) {
+        return Decimal.toDouble(getRateUnscaled(date), USD2CNY_SCALE);
+    }
+
+    /**
+     * Cny per usd at date, at scale USD2CNY_SCALE.
+     */
+    private static long getRateUnscaled(Date date) {
+        return USD2CNY_UNSCALED;
     }
 
 
@@ -33,4 +52,11 @@ public class FiatConverter {
         double cny = usd * getRate(new Date());
         return DoubleUtils.toFourDecimal(cny);
     }
+
+    /**
+     * Exact conversion of an unscaled usd value, the result has the same scale.
+     */
+    public static long toCNY(long usd, int scale) {
+        return Decimal.multiply(usd, scale, getRateUnscaled(new Date()), USD2CNY_SCALE, scale);
+    }
 }
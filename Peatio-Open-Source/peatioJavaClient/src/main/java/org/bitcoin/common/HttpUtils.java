@@ -1,8 +1,8 @@
 package org.bitcoin.common;
 
+import com.google.common.base.Charsets;
 import org.jsoup.Connection;
 import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -46,22 +46,34 @@ public class HttpUtils {
         return getConnectionForGetNoCookies(url, datas);
     }
 
+    private static volatile MarketTransport transport = new PooledHttpTransport();
+
+    /**
+     * Shared transport used by the market apis unless they are given their own.
+     */
+    public static MarketTransport getTransport() {
+        return transport;
+    }
+
+    public static void setTransport(MarketTransport transport) {
+        HttpUtils.transport = transport;
+    }
+
     public static String getContentForGet(String url, int timeout) {
+        url = appendHttpString(url);
         try {
-            Document objectDoc;
+            byte[] body;
             try {
-                Connection connection = getConnectionForGetNoCookies(url).timeout(timeout);
-                objectDoc = connection.get();
+                body = transport.get(url, null, timeout);
             } catch (SocketTimeoutException e) {
                 try {
                     Thread.sleep(3000);
                 } catch (InterruptedException e1) {
                     // ignore
                 }
-                Connection connection = getConnectionForGetNoCookies(url).timeout(timeout);
-                objectDoc = connection.get();
+                body = transport.get(url, null, timeout);
             }
-            return objectDoc.body().text();
+            return new String(body, Charsets.UTF_8);
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
@@ -0,0 +1,47 @@
+package org.bitcoin.common;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * HTTP transport used by the market apis. Implementations return the raw response body
+ * whatever the status code is, parsing is left to the caller.
+ * <p/>
+ * Cancelling a future of the async methods aborts its request.
+ */
+public interface MarketTransport {
+
+    /**
+     * @param params sent as query string, may be null
+     */
+    byte[] get(String url, Map<String, String> params, int timeout) throws IOException;
+
+    /**
+     * @param params sent as form body, may be null
+     */
+    byte[] post(String url, Map<String, String> params, int timeout) throws IOException;
+
+    /**
+     * Non-blocking {@link #get(String, Map, int)}, the future completes on an I/O thread.
+     */
+    CompletableFuture<byte[]> getAsync(String url, Map<String, String> params, int timeout);
+
+    /**
+     * Non-blocking {@link #post(String, Map, int)}, the future completes on an I/O thread.
+     */
+    CompletableFuture<byte[]> postAsync(String url, Map<String, String> params, int timeout);
+
+    /**
+     * Post a form body whose keys may repeat, e.g. "orders[][price]", entries are sent in list order.
+     */
+    byte[] post(String url, List<Map.Entry<String, String>> params, int timeout) throws IOException;
+
+    /**
+     * Non-blocking {@link #post(String, List, int)}, the future completes on an I/O thread.
+     */
+    CompletableFuture<byte[]> postAsync(String url, List<Map.Entry<String, String>> params, int timeout);
+
+    void close();
+}
@@ -0,0 +1,320 @@
+package org.bitcoin.common;
+
+import com.google.common.base.Charsets;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.NameValuePair;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.entity.UrlEncodedFormEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.utils.URLEncodedUtils;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.LayeredConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
+import org.bitcoin.market.metrics.MetricsRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keep-alive transport on top of a pooled Apache HttpClient, connections (and their TLS sessions)
+ * are reused across requests to the same host.
+ */
+public class PooledHttpTransport implements MarketTransport {
+    private static final Logger LOG = LoggerFactory.getLogger(PooledHttpTransport.class);
+
+    public static final int DEFAULT_MAX_CONNECTIONS = 20;
+    public static final long DEFAULT_IDLE_TIMEOUT = 30000L;
+    public static final int DEFAULT_TIMEOUT = 15000;
+
+    private final int maxConnections;
+    private final long idleTimeout;
+    private final int timeout;
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient client;
+
+    private volatile CloseableHttpAsyncClient asyncClient;
+    private volatile PoolingNHttpClientConnectionManager asyncConnectionManager;
+    private volatile long lastIdleCheck = System.currentTimeMillis();
+    private volatile MetricsRegistry metrics = MetricsRegistry.NOOP;
+
+    public PooledHttpTransport() {
+        this(DEFAULT_MAX_CONNECTIONS, DEFAULT_IDLE_TIMEOUT, DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * @param maxConnections pooled connections per host
+     * @param idleTimeout    milliseconds an idle connection is kept open
+     * @param timeout        default connect/read timeout in milliseconds, used when a request passes 0
+     */
+    public PooledHttpTransport(int maxConnections, long idleTimeout, int timeout) {
+        this.maxConnections = maxConnections;
+        this.idleTimeout = idleTimeout;
+        this.timeout = timeout;
+
+        connectionManager = new PoolingHttpClientConnectionManager(RegistryBuilder.<ConnectionSocketFactory>create()
+                .register("http", new TimedSocketFactory(PlainConnectionSocketFactory.getSocketFactory()))
+                .register("https", new TimedSocketFactory(SSLConnectionSocketFactory.getSocketFactory()))
+                .build());
+        connectionManager.setMaxTotal(maxConnections * 4);
+        connectionManager.setDefaultMaxPerRoute(maxConnections);
+        client = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setUserAgent(HttpUtils.USER_AGENT)
+                .evictIdleConnections(idleTimeout, TimeUnit.MILLISECONDS)
+                .evictExpiredConnections()
+                .build();
+    }
+
+    @Override
+    public byte[] get(String url, Map<String, String> params, int timeout) throws IOException {
+        return execute(createGet(url, params, timeout));
+    }
+
+    @Override
+    public byte[] post(String url, Map<String, String> params, int timeout) throws IOException {
+        return execute(createPost(url, params, timeout));
+    }
+
+    @Override
+    public CompletableFuture<byte[]> getAsync(String url, Map<String, String> params, int timeout) {
+        return executeAsync(createGet(url, params, timeout));
+    }
+
+    @Override
+    public CompletableFuture<byte[]> postAsync(String url, Map<String, String> params, int timeout) {
+        return executeAsync(createPost(url, params, timeout));
+    }
+
+    @Override
+    public byte[] post(String url, List<Map.Entry<String, String>> params, int timeout) throws IOException {
+        return execute(createPost(url, params, timeout));
+    }
+
+    @Override
+    public CompletableFuture<byte[]> postAsync(String url, List<Map.Entry<String, String>> params, int timeout) {
+        return executeAsync(createPost(url, params, timeout));
+    }
+
+    private HttpGet createGet(String url, Map<String, String> params, int timeout) {
+        if (params != null && !params.isEmpty()) {
+            url = url + (url.indexOf('?') < 0 ? "?" : "&") + URLEncodedUtils.format(toPairs(params.entrySet()), Charsets.UTF_8);
+        }
+        return configure(new HttpGet(url), timeout);
+    }
+
+    private HttpPost createPost(String url, Map<String, String> params, int timeout) {
+        return createPost(url, params == null ? null : params.entrySet(), timeout);
+    }
+
+    private HttpPost createPost(String url, Collection<Map.Entry<String, String>> params, int timeout) {
+        HttpPost post = new HttpPost(url);
+        if (params != null && !params.isEmpty()) {
+            post.setEntity(new UrlEncodedFormEntity(toPairs(params), Charsets.UTF_8));
+        }
+        return configure(post, timeout);
+    }
+
+    private <T extends HttpRequestBase> T configure(T request, int timeout) {
+        int requestTimeout = timeout > 0 ? timeout : this.timeout;
+        request.setConfig(RequestConfig.custom()
+                .setConnectTimeout(requestTimeout)
+                .setSocketTimeout(requestTimeout)
+                .setConnectionRequestTimeout(requestTimeout)
+                .build());
+        return request;
+    }
+
+    private CompletableFuture<byte[]> executeAsync(HttpRequestBase request) {
+        long now = System.currentTimeMillis();
+        if (now - lastIdleCheck > idleTimeout) {
+            lastIdleCheck = now;
+            closeIdleConnections();
+        }
+        final CompletableFuture<byte[]> future = new CompletableFuture<byte[]>();
+        Future<HttpResponse> exchange = getAsyncClient().execute(request, new FutureCallback<HttpResponse>() {
+            @Override
+            public void completed(HttpResponse response) {
+                try {
+                    future.complete(response.getEntity() == null
+                            ? new byte[0] : EntityUtils.toByteArray(response.getEntity()));
+                } catch (Exception e) {
+                    future.completeExceptionally(e);
+                }
+            }
+
+            @Override
+            public void failed(Exception e) {
+                future.completeExceptionally(e);
+            }
+
+            @Override
+            public void cancelled() {
+                future.cancel(false);
+            }
+        });
+        // cancelling the future aborts the exchange and gives its connection back to the pool
+        future.whenComplete((body, e) -> {
+            if (future.isCancelled()) {
+                exchange.cancel(true);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * The async client runs its own I/O reactor, it is only started on first use.
+     */
+    private CloseableHttpAsyncClient getAsyncClient() {
+        CloseableHttpAsyncClient client = asyncClient;
+        if (client == null) {
+            synchronized (this) {
+                client = asyncClient;
+                if (client == null) {
+                    try {
+                        asyncConnectionManager = new PoolingNHttpClientConnectionManager(
+                                new DefaultConnectingIOReactor(IOReactorConfig.DEFAULT));
+                    } catch (IOReactorException e) {
+                        throw new IllegalStateException("can't start http reactor", e);
+                    }
+                    asyncConnectionManager.setMaxTotal(maxConnections * 4);
+                    asyncConnectionManager.setDefaultMaxPerRoute(maxConnections);
+                    client = HttpAsyncClients.custom()
+                            .setConnectionManager(asyncConnectionManager)
+                            .setUserAgent(HttpUtils.USER_AGENT)
+                            .build();
+                    client.start();
+                    asyncClient = client;
+                }
+            }
+        }
+        return client;
+    }
+
+    /**
+     * Close idle connections of the async pool, the blocking pool evicts its own.
+     * Called from time to time by the async requests themselves.
+     */
+    public void closeIdleConnections() {
+        PoolingNHttpClientConnectionManager manager = asyncConnectionManager;
+        if (manager != null) {
+            manager.closeExpiredConnections();
+            manager.closeIdleConnections(idleTimeout, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private byte[] execute(HttpRequestBase request) throws IOException {
+        CloseableHttpResponse response = client.execute(request);
+        try {
+            if (response.getEntity() == null) {
+                return new byte[0];
+            }
+            return EntityUtils.toByteArray(response.getEntity());
+        } finally {
+            response.close();
+        }
+    }
+
+    private static List<NameValuePair> toPairs(Collection<Map.Entry<String, String>> params) {
+        List<NameValuePair> pairs = new ArrayList<NameValuePair>(params.size());
+        for (Map.Entry<String, String> entry : params) {
+            pairs.add(new BasicNameValuePair(entry.getKey(), entry.getValue()));
+        }
+        return pairs;
+    }
+
+    @Override
+    public void close() {
+        try {
+            client.close();
+            if (asyncClient != null) {
+                asyncClient.close();
+            }
+        } catch (IOException e) {
+            LOG.warn("can't close http client", e);
+        }
+    }
+
+    /**
+     * Where the time to open a connection of the blocking pool goes, TLS handshake included.
+     * The async pool opens its connections inside the I/O reactor and is not measured.
+     */
+    public void setMetrics(MetricsRegistry metrics) {
+        this.metrics = metrics;
+    }
+
+    public MetricsRegistry getMetrics() {
+        return metrics;
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public int getTimeout() {
+        return timeout;
+    }
+
+    private class TimedSocketFactory implements LayeredConnectionSocketFactory {
+        private final ConnectionSocketFactory delegate;
+
+        private TimedSocketFactory(ConnectionSocketFactory delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Socket createSocket(HttpContext context) throws IOException {
+            return delegate.createSocket(context);
+        }
+
+        @Override
+        public Socket connectSocket(int connectTimeout, Socket socket, HttpHost host, InetSocketAddress remoteAddress,
+                                    InetSocketAddress localAddress, HttpContext context) throws IOException {
+            long start = System.nanoTime();
+            Socket connected = delegate.connectSocket(connectTimeout, socket, host, remoteAddress, localAddress, context);
+            metrics.recordConnect(host.getHostName(), System.nanoTime() - start);
+            return connected;
+        }
+
+        @Override
+        public Socket createLayeredSocket(Socket socket, String target, int port, HttpContext context) throws IOException {
+            if (!(delegate instanceof LayeredConnectionSocketFactory)) {
+                throw new IllegalStateException(delegate + " can't layer a socket");
+            }
+            return ((LayeredConnectionSocketFactory) delegate).createLayeredSocket(socket, target, port, context);
+        }
+    }
+}
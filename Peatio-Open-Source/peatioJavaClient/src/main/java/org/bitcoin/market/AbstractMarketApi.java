@@ -2,34 +2,61 @@ package org.bitcoin.market;
 
 import com.alibaba.fastjson.JSONArray;
 import com.alibaba.fastjson.JSONObject;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Charsets;
 import org.bitcoin.common.FiatConverter;
 import org.bitcoin.common.HttpUtils;
 import org.bitcoin.market.bean.*;
-import org.jsoup.nodes.Document;
+import org.bitcoin.market.depth.DepthManager;
+import org.bitcoin.market.depth.DepthPoller;
+import org.bitcoin.market.depth.DepthSnapshot;
+import org.bitcoin.market.depth.DepthUpdate;
+import org.bitcoin.market.record.MarketRecorder;
+import org.bitcoin.market.utils.PagedIterator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Created by lichang on 14-2-8.
  */
-public abstract class AbstractMarketApi {
+public abstract class AbstractMarketApi implements AsyncMarketApi {
     private static final Logger LOG = LoggerFactory.getLogger(AbstractMarketApi.class);
 
     private Currency currency = Currency.CNY;
     private static final long MARKET_EXPIRATION_TIME = 120L;
     private static final int MAX_DEPTH_LEN = 300;
 
+    private static final Executor ASYNC_EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "market-async-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
     Market market;
-    long lastUpdate = 0L;
     long depth_updated = 10L;
 
+    private final DepthManager depthManager = new DepthManager(this);
+    private volatile DepthPoller depthPoller;
+    private Executor asyncExecutor = ASYNC_EXECUTOR;
+    private volatile MarketRecorder recorder;
+
     public AbstractMarketApi(Currency currency, Market market) {
         this.currency = currency;
         this.market = market;
@@ -66,7 +93,266 @@ public abstract class AbstractMarketApi {
         return replace(appAccount, orderId, amount, price, orderSide, symbolPair, OrderType.Limit);
     }
 
+    /**
+     * Place several orders, the result at index i is the order placed for requests[i] with its
+     * order id set, or an error order (id {@link BitOrder#ERROR_ORDER_ID}) carrying the failure.
+     * <p/>
+     * This default places them one by one, markets with a batch endpoint override it.
+     */
+    public List<BitOrder> placeOrders(AppAccount appAccount, List<OrderRequest> requests) {
+        List<BitOrder> results = new ArrayList<BitOrder>(requests.size());
+        for (OrderRequest request : requests) {
+            try {
+                Long orderId;
+                if (OrderSide.buy.equals(request.getOrderSide())) {
+                    orderId = buy(appAccount, request.getAmount(), request.getPrice(), request.getSymbolPair(), request.getOrderType());
+                } else if (OrderSide.sell.equals(request.getOrderSide())) {
+                    orderId = sell(appAccount, request.getAmount(), request.getPrice(), request.getSymbolPair(), request.getOrderType());
+                } else {
+                    throw new RuntimeException("placeOrders error orderSide error:" + request.getOrderSide());
+                }
+                BitOrder bitOrder = request.toBitOrder();
+                bitOrder.setOrderId(orderId);
+                results.add(bitOrder);
+            } catch (Exception e) {
+                LOG.error("placeOrders {} error:{}", request, e.getMessage());
+                results.add(BitOrder.getErrorOrder(e.toString()));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Cancel several orders, the result at index i is the cancelled order for the i-th id,
+     * or an error order carrying the failure.
+     * <p/>
+     * This default cancels them one by one.
+     */
+    public List<BitOrder> cancelOrders(AppAccount appAccount, Collection<Long> orderIds, SymbolPair symbolPair) {
+        List<BitOrder> results = new ArrayList<BitOrder>(orderIds.size());
+        for (Long orderId : orderIds) {
+            try {
+                cancel(appAccount, orderId, symbolPair);
+                BitOrder bitOrder = new BitOrder();
+                bitOrder.setOrderId(orderId);
+                bitOrder.setStatus(OrderStatus.cancelled);
+                results.add(bitOrder);
+            } catch (Exception e) {
+                LOG.error("cancelOrders {} error:{}", orderId, e.getMessage());
+                results.add(BitOrder.getErrorOrder(e.toString()));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Cancel every running order of symbolPair, or of getRunningOrders when symbolPair is null.
+     *
+     * @return the orders cancelled, failures as error orders
+     */
+    public List<BitOrder> cancelAll(AppAccount appAccount, SymbolPair symbolPair) {
+        List<Long> orderIds = new ArrayList<Long>();
+        if (symbolPair == null) {
+            for (BitOrder order : getRunningOrders(appAccount)) {
+                orderIds.add(order.getOrderId());
+            }
+        } else {
+            try (PagedIterator<BitOrder> orders = getRunningOrders(appAccount, Collections.singletonList(symbolPair))) {
+                while (orders.hasNext()) {
+                    orderIds.add(orders.next().getOrderId());
+                }
+            }
+        }
+        return cancelOrders(appAccount, orderIds, symbolPair);
+    }
+
+    /**
+     * Balances of every account, see {@link #getAssetsAsync(Collection)}.
+     */
+    public AssetSnapshot getAssets(Collection<AppAccount> appAccounts) {
+        return getAssetsAsync(appAccounts).join();
+    }
+
+    /**
+     * Balances of every account, their getInfoAsync all sent at once. Each request still takes a permit of its
+     * access key's rate limit, so an account only waits for its own budget. The snapshot completes once every
+     * account answered or failed, the failed ones are reported by {@link AssetSnapshot#getFailures()}.
+     */
+    @Override
+    public CompletableFuture<AssetSnapshot> getAssetsAsync(Collection<AppAccount> appAccounts) {
+        List<AppAccount> accounts = new ArrayList<AppAccount>(appAccounts);
+        List<CompletableFuture<Asset>> futures = new ArrayList<CompletableFuture<Asset>>(accounts.size());
+        for (AppAccount appAccount : accounts) {
+            CompletableFuture<Asset> future;
+            try {
+                future = getInfoAsync(appAccount);
+            } catch (RuntimeException e) {
+                future = new CompletableFuture<Asset>();
+                future.completeExceptionally(e);
+            }
+            futures.add(future);
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[futures.size()]))
+                .handle((v, ignored) -> {
+                    List<AppAccount> fetched = new ArrayList<AppAccount>(accounts.size());
+                    List<Asset> assets = new ArrayList<Asset>(accounts.size());
+                    Map<AppAccount, Throwable> failures = new LinkedHashMap<AppAccount, Throwable>();
+                    for (int i = 0; i < accounts.size(); i++) {
+                        try {
+                            assets.add(futures.get(i).join());
+                            fetched.add(accounts.get(i));
+                        } catch (CompletionException | CancellationException e) {
+                            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                            LOG.error("getAssets {} error:{}", accounts.get(i).getId(), cause.getMessage());
+                            failures.put(accounts.get(i), cause);
+                        }
+                    }
+                    return new AssetSnapshot(getMarket(), fetched, assets, failures);
+                });
+    }
+
+    /**
+     * Executor running the blocking calls behind the default async implementations.
+     */
+    public Executor getAsyncExecutor() {
+        return asyncExecutor;
+    }
+
+    public void setAsyncExecutor(Executor asyncExecutor) {
+        this.asyncExecutor = asyncExecutor;
+    }
+
+    public MarketRecorder getRecorder() {
+        return recorder;
+    }
+
+    /**
+     * Record every order book and ticker this market returns, null to stop.
+     */
+    public void setRecorder(MarketRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    @Override
+    public CompletableFuture<Long> buyAsync(AppAccount appAccount, double amount, double price, SymbolPair symbolPair, OrderType orderType) {
+        return CompletableFuture.supplyAsync(() -> buy(appAccount, amount, price, symbolPair, orderType), asyncExecutor);
+    }
+
+    @Override
+    public CompletableFuture<Long> sellAsync(AppAccount appAccount, double amount, double price, SymbolPair symbolPair, OrderType orderType) {
+        return CompletableFuture.supplyAsync(() -> sell(appAccount, amount, price, symbolPair, orderType), asyncExecutor);
+    }
+
+    @Override
+    public CompletableFuture<Void> cancelAsync(AppAccount appAccount, Long orderId, SymbolPair symbolPair) {
+        return CompletableFuture.runAsync(() -> cancel(appAccount, orderId, symbolPair), asyncExecutor);
+    }
+
+    @Override
+    public CompletableFuture<BitOrder> getOrderAsync(AppAccount appAccount, Long orderId, SymbolPair symbolPair) {
+        return CompletableFuture.supplyAsync(() -> getOrder(appAccount, orderId, symbolPair), asyncExecutor);
+    }
+
+    @Override
+    public CompletableFuture<List<BitOrder>> getRunningOrdersAsync(AppAccount appAccount) {
+        return CompletableFuture.supplyAsync(() -> getRunningOrders(appAccount), asyncExecutor);
+    }
+
+    @Override
+    public CompletableFuture<Asset> getInfoAsync(AppAccount appAccount) {
+        return CompletableFuture.supplyAsync(() -> getInfo(appAccount), asyncExecutor);
+    }
+
+    @Override
+    public CompletableFuture<Double> tickerAsync(SymbolPair symbolPair) {
+        return supplyAsync(() -> ticker(symbolPair));
+    }
+
+    @Override
+    public CompletableFuture<JSONObject> updateDepthAsync(SymbolPair symbolPair) {
+        return CompletableFuture.supplyAsync(() -> update_depth(symbolPair), asyncExecutor);
+    }
+
+    @Override
+    public CompletableFuture<OrderBook> getOrderBookAsync(SymbolPair symbolPair, OrderBook book) {
+        CompletableFuture<Void> update = update_order_book_async(symbolPair, book);
+        return propagateCancel(update.thenApply(v -> {
+            this.fix_depth(book);
+            book.setSymbolPair(symbolPair);
+            book.setTimestamp(System.currentTimeMillis());
+            record_book(book);
+            return book;
+        }), update);
+    }
+
+    /**
+     * Non-blocking {@link #update_order_book(SymbolPair, OrderBook)}, the default runs it on the async executor.
+     * Cancelling the future of the default doesn't stop the blocking fetch, an override that can abort its
+     * request does so when its future is cancelled.
+     */
+    protected CompletableFuture<Void> update_order_book_async(SymbolPair symbolPair, OrderBook book) {
+        return CompletableFuture.runAsync(() -> update_order_book(symbolPair, book), asyncExecutor);
+    }
+
+    @Override
+    public CompletableFuture<List<Kline>> getKlineDateAsync(Symbol symbol) {
+        return supplyAsync(() -> getKlineDate(symbol));
+    }
+
+    @Override
+    public CompletableFuture<List<Kline>> getKline5MinAsync(Symbol symbol) {
+        return supplyAsync(() -> getKline5Min(symbol));
+    }
+
+    @Override
+    public CompletableFuture<List<Kline>> getKline1MinAsync(Symbol symbol) {
+        return supplyAsync(() -> getKline1Min(symbol));
+    }
+
+    /**
+     * Cancel source when dependent is cancelled, a CompletableFuture doesn't pass a cancel back up its chain.
+     *
+     * @return dependent
+     */
+    protected static <T> CompletableFuture<T> propagateCancel(CompletableFuture<T> dependent, CompletableFuture<?> source) {
+        dependent.whenComplete((value, e) -> {
+            if (dependent.isCancelled()) {
+                source.cancel(true);
+            }
+        });
+        return dependent;
+    }
+
+    private <T> CompletableFuture<T> supplyAsync(Callable<T> callable) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return callable.call();
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, asyncExecutor);
+    }
+
+    /**
+     * Depth of symbolPair in the legacy JSON format.
+     * <p/>
+     * When the pair is polled in the background (see {@link #startDepthPolling(SymbolPair, long)})
+     * and force_update is false, the latest published snapshot is returned right away.
+     * Otherwise the book is fetched on the calling thread.
+     */
     public JSONObject get_depth(SymbolPair symbolPair, boolean force_update) {
+        if (!force_update && isDepthPolling(symbolPair)) {
+            DepthSnapshot snapshot = this.depthPoller.getSnapshot(symbolPair);
+            if (snapshot == null) {
+                return this.init_depth();
+            }
+            if (snapshot.getAgeMillis() > MARKET_EXPIRATION_TIME * 1000) {
+                LOG.warn("Market: {} order book is expired", this.getMarket());
+                return this.init_depth();
+            }
+            return snapshot.getBook().toJSON();
+        }
+
         JSONObject depth;
         long timediff = System.currentTimeMillis() / 1000 - this.depth_updated;
         if (!force_update && timediff < this.depth_updated) {
@@ -89,8 +375,7 @@ public abstract class AbstractMarketApi {
 
     private JSONObject ask_update_depth(SymbolPair symbolPair) {
         try {
-            JSONObject depth = this.update_depth(symbolPair);
-            this.fix_depth(depth);
+            JSONObject depth = this.getOrderBook(symbolPair).toJSON();
             this.depth_updated = System.currentTimeMillis() / 1000;
             return depth;
         } catch (Exception e) {
@@ -100,72 +385,176 @@ public abstract class AbstractMarketApi {
         return null;
     }
 
-    private void fix_depth(JSONObject depth) {
-        JSONArray asks = depth.getJSONArray("asks");
-        JSONArray bids = depth.getJSONArray("bids");
+    /**
+     * Fetch the order book of symbolPair into a new book, the caller owns it.
+     */
+    public OrderBook getOrderBook(SymbolPair symbolPair) {
+        return getOrderBook(symbolPair, new OrderBook(symbolPair, MAX_DEPTH_LEN));
+    }
+
+    /**
+     * Refresh the order book of symbolPair into the caller supplied book, a caller polling the same pair
+     * reuses its book instead of allocating one per call. The book must not be shared with other threads
+     * while it is refilled.
+     */
+    public OrderBook getOrderBook(SymbolPair symbolPair, OrderBook book) {
+        this.update_order_book(symbolPair, book);
+        this.fix_depth(book);
+        book.setSymbolPair(symbolPair);
+        book.setTimestamp(System.currentTimeMillis());
+        record_book(book);
+        return book;
+    }
 
-        if (asks.size() > MAX_DEPTH_LEN) {
-            for (int i = asks.size() - 1; i >= MAX_DEPTH_LEN; i--) {
-                asks.remove(i);
+    /**
+     * Refresh the book of symbolPair every periodMillis on a background thread.
+     * Calling it again for the same pair changes the cadence.
+     */
+    public void startDepthPolling(SymbolPair symbolPair, long periodMillis) {
+        if (depthPoller == null) {
+            synchronized (this) {
+                if (depthPoller == null) {
+                    depthPoller = new DepthPoller(depthManager);
+                }
             }
         }
-        if (bids.size() > MAX_DEPTH_LEN) {
-            for (int i = bids.size() - 1; i >= MAX_DEPTH_LEN; i--) {
-                bids.remove(i);
-            }
+        depthPoller.start(symbolPair, periodMillis);
+    }
+
+    public void stopDepthPolling(SymbolPair symbolPair) {
+        if (depthPoller != null) {
+            depthPoller.stop(symbolPair);
+        }
+    }
+
+    public boolean isDepthPolling(SymbolPair symbolPair) {
+        return depthPoller != null && depthPoller.isPolling(symbolPair);
+    }
+
+    /**
+     * The latest background snapshot of symbolPair, never blocks.
+     *
+     * @return the snapshot, or null when the pair is not polled or nothing was published yet
+     */
+    public DepthSnapshot getDepthSnapshot(SymbolPair symbolPair) {
+        return depthPoller == null ? null : depthPoller.getSnapshot(symbolPair);
+    }
+
+    /**
+     * Block until a background snapshot of symbolPair not older than maxAgeMillis is available.
+     *
+     * @return the snapshot, or the latest one (possibly null) if timeoutMillis elapsed first
+     */
+    public DepthSnapshot awaitDepthSnapshot(SymbolPair symbolPair, long maxAgeMillis, long timeoutMillis)
+            throws InterruptedException {
+        if (!isDepthPolling(symbolPair)) {
+            throw new IllegalStateException("Market: " + getMarket() + " does not poll " + symbolPair);
         }
+        return depthPoller.awaitSnapshot(symbolPair, maxAgeMillis, timeoutMillis);
+    }
+
+    /**
+     * Live books of this market with change notification, see {@link DepthManager}.
+     */
+    public DepthManager getDepthManager() {
+        return depthManager;
+    }
 
-        if (asks.size() < 2 || bids.size() < 2) {
+    /**
+     * Fill book with the current depth of symbolPair, asks ascending and bids descending, one level per price.
+     * Markets that can decode straight into the book should override this, the default
+     * goes through {@link #update_depth(SymbolPair)}.
+     */
+    protected void update_order_book(SymbolPair symbolPair, OrderBook book) {
+        book.fill(this.update_depth(symbolPair));
+    }
+
+    /**
+     * Take a book of symbolPair pushed by a stream in the market currency: normalize it like a fetched one
+     * and hand it to the depth manager, which notifies the depth listeners of what changed.
+     */
+    public DepthUpdate applyOrderBook(SymbolPair symbolPair, OrderBook book) {
+        book.sort();
+        convert_to_usd(book);
+        book.mergeLevels();
+        this.fix_depth(book);
+        book.setSymbolPair(symbolPair);
+        if (book.getTimestamp() == 0L) {
+            book.setTimestamp(System.currentTimeMillis());
+        }
+        record_book(book);
+        return depthManager.apply(symbolPair, book);
+    }
+
+    /**
+     * Hand book to the recorder, if any. Never blocks.
+     */
+    protected void record_book(OrderBook book) {
+        MarketRecorder current = recorder;
+        if (current != null) {
+            current.recordBook(book);
+        }
+    }
+
+    /**
+     * Hand the ticker of symbolPair to the recorder, if any. Never blocks.
+     */
+    protected void record_ticker(SymbolPair symbolPair, Double price) {
+        MarketRecorder current = recorder;
+        if (current != null && price != null) {
+            current.recordTicker(symbolPair, System.currentTimeMillis(), price);
+        }
+    }
+
+    @VisibleForTesting
+    void fix_depth(OrderBook book) {
+        book.truncate(MAX_DEPTH_LEN);
+
+        if (book.getAskCount() < 2 || book.getBidCount() < 2) {
             return;
         }
-        double ask1 = asks.getJSONObject(0).getDouble("price");
-        double ask2 = asks.getJSONObject(1).getDouble("price") * 1.0005;
-        List<JSONObject> removeBids = new ArrayList<JSONObject>();
-        for (int i = 0; i < bids.size() - 2; i++) {
-            JSONObject order = bids.getJSONObject(i);
-            double price = order.getDouble("price");
+        double ask1 = book.getAskPrice(0);
+        double ask2 = book.getAskPrice(1) * 1.0005;
+        int removeBids = 0;
+        for (int i = 0; i < book.getBidCount() - 2; i++) {
+            double price = book.getBidPrice(i);
             if (price > ask1 && price > ask2) {
-                removeBids.add(order);
-                LOG.warn("Market: {} order has abnormal bids data:{}, aks2:{}", this.getMarket(), order, ask2);
+                removeBids++;
+                LOG.warn("Market: {} order has abnormal bids price:{}, aks2:{}", this.getMarket(), price, ask2);
             } else {
                 break;
             }
         }
-        bids.removeAll(removeBids);
+        book.removeFirstBids(removeBids);
 
-        if (bids.size() < 2) {
+        if (book.getBidCount() < 2) {
             return;
         }
-        double bid1 = bids.getJSONObject(0).getDouble("price");
-        double bid2 = bids.getJSONObject(1).getDouble("price") * 0.9995;
-        List<JSONObject> removeAsks = new ArrayList<JSONObject>();
-        for (int i = 0; i < asks.size() - 2; i++) {
-            JSONObject order = asks.getJSONObject(i);
-            double price = order.getDouble("price");
+        double bid1 = book.getBidPrice(0);
+        double bid2 = book.getBidPrice(1) * 0.9995;
+        int removeAsks = 0;
+        for (int i = 0; i < book.getAskCount() - 2; i++) {
+            double price = book.getAskPrice(i);
             if (price < bid1 && price < bid2) {
-                removeAsks.add(order);
-                LOG.warn("Market: {} order has abnormal asks data:{}, aks2:{}", this.getMarket(), order, bid2);
+                removeAsks++;
+                LOG.warn("Market: {} order has abnormal asks price:{}, aks2:{}", this.getMarket(), price, bid2);
             } else {
                 break;
             }
         }
-        asks.removeAll(removeAsks);
-
-
+        book.removeFirstAsks(removeAsks);
     }
 
-    protected void convert_to_usd(JSONObject depth) {
+    protected void convert_to_usd(OrderBook book) {
 
         if (this.currency == Currency.USD) {
             return;
         }
-        String[] directions = {"asks", "bids"};
-        for (String direction : directions) {
-            JSONArray orders = depth.getJSONArray(direction);
-            for (Object anOrdersResponse : orders) {
-                JSONObject order = (JSONObject) anOrdersResponse;
-                order.put("price", FiatConverter.toUsd(order.getDouble("price")));
-            }
+        for (int i = 0; i < book.getAskCount(); i++) {
+            book.setAskPriceUnscaled(i, FiatConverter.toUsd(book.getAskPriceUnscaled(i), OrderBook.PRICE_SCALE));
+        }
+        for (int i = 0; i < book.getBidCount(); i++) {
+            book.setBidPriceUnscaled(i, FiatConverter.toUsd(book.getBidPriceUnscaled(i), OrderBook.PRICE_SCALE));
         }
     }
 
@@ -185,12 +574,59 @@ public abstract class AbstractMarketApi {
         return this.market;
     }
 
+    /**
+     * Currency the market quotes in, prices handed out are converted to usd from it.
+     */
+    public Currency getCurrency() {
+        return currency;
+    }
+
     public abstract Double ticker(SymbolPair symbol) throws IOException;
 
     public abstract BitOrder getOrder(AppAccount appAccount, Long orderId, SymbolPair symbolPair);
 
     public abstract List<BitOrder> getRunningOrders(AppAccount appAccount);
 
+    /**
+     * All running orders of the given markets, fetched page by page as the iterator is consumed.
+     * Close the iterator when stopping early.
+     * <p/>
+     * Every order is stamped with the pair it is listed under, see {@link BitOrder#getSymbolPair()}.
+     * <p/>
+     * Markets without paging return getRunningOrders split by pair: an order goes to its own pair when the
+     * market tells it and it was asked for, otherwise to the first pair of its symbol.
+     */
+    public PagedIterator<BitOrder> getRunningOrders(AppAccount appAccount, Collection<SymbolPair> symbolPairs) {
+        List<SymbolPair> pairs = new ArrayList<SymbolPair>(symbolPairs);
+        List<PagedIterator.PageFetcher<BitOrder>> fetchers = new ArrayList<PagedIterator.PageFetcher<BitOrder>>();
+        CompletableFuture<List<BitOrder>> running = getRunningOrdersAsync(appAccount);
+        for (SymbolPair symbolPair : pairs) {
+            fetchers.add(page -> running.thenApply(orders -> {
+                List<BitOrder> selected = new ArrayList<BitOrder>();
+                for (BitOrder order : orders) {
+                    if (symbolPair.equals(getListedPair(order, pairs))) {
+                        order.setSymbolPair(symbolPair);
+                        selected.add(order);
+                    }
+                }
+                return selected;
+            }));
+        }
+        return new PagedIterator<BitOrder>(fetchers, Integer.MAX_VALUE);
+    }
+
+    private static SymbolPair getListedPair(BitOrder order, List<SymbolPair> pairs) {
+        if (order.getSymbolPair() != null && pairs.contains(order.getSymbolPair())) {
+            return order.getSymbolPair();
+        }
+        for (SymbolPair symbolPair : pairs) {
+            if (symbolPair.getFirst() == order.getSymbol()) {
+                return symbolPair;
+            }
+        }
+        return null;
+    }
+
     Long createNonce() {
         return System.currentTimeMillis() / 1000;
     }
@@ -225,8 +661,7 @@ public abstract class AbstractMarketApi {
     }
 
     public String parse_json_str(String url) throws IOException {
-        Document objectDoc = HttpUtils.getConnectionForGet(url).ignoreContentType(true).timeout(15000).get();
-        return objectDoc.body().text();
+        return new String(HttpUtils.getTransport().get(url, null, 15000), Charsets.UTF_8);
     }
 
     protected JSONArray sort_and_format(JSONArray jsonArray, boolean reverse) {
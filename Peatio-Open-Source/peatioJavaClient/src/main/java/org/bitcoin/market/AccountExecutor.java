@@ -0,0 +1,245 @@
+package org.bitcoin.market;
+
+import org.bitcoin.market.bean.AppAccount;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Runs the blocking calls of many accounts at once (getInfo, getRunningOrders, getOrder...), one thread per
+ * call: a virtual thread when the JVM has them (Java 21), found by reflection so that the client still runs
+ * on Java 8, otherwise a platform thread of a pool of at most maxThreads, the other calls queue.
+ * <p/>
+ * At most maxPerAccount calls of the same access key run at a time. The others wait in a queue of the
+ * account, not on a thread: a call is only handed to a thread once its account has room.
+ * <p/>
+ * The client's waits for the network and for the rate limiter (KlineStore and DepthManager fetches, order
+ * sweeps, TokenBucket) go through locks and LockSupport rather than monitors, so on Java 21 to 23 a virtual
+ * thread waiting on them leaves its carrier thread free. The remaining synchronized blocks are short and
+ * don't wait for the network.
+ * <p/>
+ * {@link #getExecutor()} can also be handed to {@link AbstractMarketApi#setAsyncExecutor}, without the per
+ * account bound.
+ */
+public class AccountExecutor implements Closeable {
+    private static final Logger LOG = LoggerFactory.getLogger(AccountExecutor.class);
+
+    public static final int DEFAULT_MAX_PER_ACCOUNT = 4;
+    /**
+     * Platform threads of the fallback pool, virtual threads are not capped.
+     */
+    public static final int DEFAULT_MAX_THREADS = 256;
+
+    private final ExecutorService executor;
+    private final boolean virtual;
+    private final int maxPerAccount;
+    private final ConcurrentMap<String, AccountQueue> queues = new ConcurrentHashMap<String, AccountQueue>();
+
+    /**
+     * Virtual threads if available, DEFAULT_MAX_PER_ACCOUNT calls per account.
+     */
+    public AccountExecutor() {
+        this(true, DEFAULT_MAX_PER_ACCOUNT);
+    }
+
+    /**
+     * @param virtual       false for platform threads even when virtual ones are available
+     * @param maxPerAccount calls of an access key running at once
+     */
+    public AccountExecutor(boolean virtual, int maxPerAccount) {
+        this(virtual, maxPerAccount, DEFAULT_MAX_THREADS);
+    }
+
+    /**
+     * @param maxThreads platform threads when there are no virtual ones, calls beyond that wait for a thread
+     */
+    public AccountExecutor(boolean virtual, int maxPerAccount, int maxThreads) {
+        if (maxPerAccount < 1 || maxThreads < 1) {
+            throw new IllegalArgumentException("maxPerAccount:" + maxPerAccount + " maxThreads:" + maxThreads);
+        }
+        ExecutorService virtualExecutor = virtual ? newVirtualThreadExecutor("account-") : null;
+        this.virtual = virtualExecutor != null;
+        this.executor = virtualExecutor != null ? virtualExecutor : newPlatformThreadExecutor(maxThreads);
+        this.maxPerAccount = maxPerAccount;
+    }
+
+    /**
+     * Whether this JVM can run virtual threads.
+     */
+    public static boolean isVirtualThreadsAvailable() {
+        ExecutorService executor = newVirtualThreadExecutor("probe-");
+        if (executor == null) {
+            return false;
+        }
+        executor.shutdown();
+        return true;
+    }
+
+    /**
+     * Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(prefix, 0).factory()), null before Java 21
+     * or when virtual threads are a preview feature that isn't enabled.
+     */
+    private static ExecutorService newVirtualThreadExecutor(String prefix) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, prefix, 0L);
+            ThreadFactory factory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            Method newThreadPerTaskExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            return (ExecutorService) newThreadPerTaskExecutor.invoke(null, factory);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            LOG.debug("no virtual threads: {}", e.toString());
+            return null;
+        }
+    }
+
+    /**
+     * Up to maxThreads daemon threads, started on demand and stopped after a minute idle.
+     */
+    private static ExecutorService newPlatformThreadExecutor(int maxThreads) {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(maxThreads, maxThreads, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "account-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    public int getMaxPerAccount() {
+        return maxPerAccount;
+    }
+
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Run call on its own thread once appAccount has fewer than maxPerAccount calls running.
+     */
+    public <T> CompletableFuture<T> submit(AppAccount appAccount, Callable<T> call) {
+        AccountQueue queue = getQueue(appAccount.getAccessKey());
+        AccountCall<T> accountCall = new AccountCall<T>(call);
+        queue.pending.add(accountCall);
+        queue.drain();
+        return accountCall.future;
+    }
+
+    /**
+     * Run call for every account at once, e.g. accounts -> api.getInfo(account).
+     *
+     * @return the futures by account, in the order of appAccounts
+     */
+    public <T> Map<AppAccount, CompletableFuture<T>> submitAll(Collection<AppAccount> appAccounts,
+                                                               Function<AppAccount, T> call) {
+        Map<AppAccount, CompletableFuture<T>> futures = new LinkedHashMap<AppAccount, CompletableFuture<T>>();
+        for (AppAccount appAccount : appAccounts) {
+            futures.put(appAccount, submit(appAccount, () -> call.apply(appAccount)));
+        }
+        return futures;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    private AccountQueue getQueue(String accessKey) {
+        AccountQueue queue = queues.get(accessKey);
+        if (queue == null) {
+            queue = new AccountQueue();
+            AccountQueue existing = queues.putIfAbsent(accessKey, queue);
+            if (existing != null) {
+                queue = existing;
+            }
+        }
+        return queue;
+    }
+
+    /**
+     * Calls of one access key waiting for room. Whoever adds a call or finishes one drains the queue, so a
+     * call is never left behind while the account has room.
+     */
+    private class AccountQueue {
+        private final Queue<AccountCall<?>> pending = new ConcurrentLinkedQueue<AccountCall<?>>();
+        private final AtomicInteger running = new AtomicInteger();
+
+        private void drain() {
+            while (!pending.isEmpty()) {
+                int current = running.get();
+                if (current >= maxPerAccount) {
+                    return;
+                }
+                if (!running.compareAndSet(current, current + 1)) {
+                    continue;
+                }
+                AccountCall<?> call = pending.poll();
+                if (call == null) {
+                    running.decrementAndGet();
+                    continue;
+                }
+                try {
+                    executor.execute(() -> {
+                        try {
+                            call.run();
+                        } finally {
+                            running.decrementAndGet();
+                            drain();
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    // closed
+                    running.decrementAndGet();
+                    call.future.completeExceptionally(e);
+                }
+            }
+        }
+    }
+
+    private static class AccountCall<T> {
+        private final Callable<T> call;
+        private final CompletableFuture<T> future = new CompletableFuture<T>();
+
+        private AccountCall(Callable<T> call) {
+            this.call = call;
+        }
+
+        private void run() {
+            try {
+                future.complete(call.call());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        }
+    }
+}
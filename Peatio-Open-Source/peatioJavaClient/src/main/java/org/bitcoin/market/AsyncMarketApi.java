@@ -0,0 +1,47 @@
+package org.bitcoin.market;
+
+import com.alibaba.fastjson.JSONObject;
+import org.bitcoin.market.bean.*;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking counterpart of the {@link AbstractMarketApi} calls. Errors are reported
+ * through the returned future, never thrown by the method itself.
+ */
+public interface AsyncMarketApi {
+
+    CompletableFuture<Long> buyAsync(AppAccount appAccount, double amount, double price, SymbolPair symbolPair, OrderType orderType);
+
+    CompletableFuture<Long> sellAsync(AppAccount appAccount, double amount, double price, SymbolPair symbolPair, OrderType orderType);
+
+    CompletableFuture<Void> cancelAsync(AppAccount appAccount, Long orderId, SymbolPair symbolPair);
+
+    CompletableFuture<BitOrder> getOrderAsync(AppAccount appAccount, Long orderId, SymbolPair symbolPair);
+
+    CompletableFuture<List<BitOrder>> getRunningOrdersAsync(AppAccount appAccount);
+
+    CompletableFuture<Asset> getInfoAsync(AppAccount appAccount);
+
+    /**
+     * Balances of several accounts at once, see {@link AbstractMarketApi#getAssets(Collection)}.
+     */
+    CompletableFuture<AssetSnapshot> getAssetsAsync(Collection<AppAccount> appAccounts);
+
+    CompletableFuture<Double> tickerAsync(SymbolPair symbolPair);
+
+    CompletableFuture<JSONObject> updateDepthAsync(SymbolPair symbolPair);
+
+    /**
+     * Refresh the order book of symbolPair into book, see {@link AbstractMarketApi#getOrderBook(SymbolPair, OrderBook)}.
+     */
+    CompletableFuture<OrderBook> getOrderBookAsync(SymbolPair symbolPair, OrderBook book);
+
+    CompletableFuture<List<Kline>> getKlineDateAsync(Symbol symbol);
+
+    CompletableFuture<List<Kline>> getKline5MinAsync(Symbol symbol);
+
+    CompletableFuture<List<Kline>> getKline1MinAsync(Symbol symbol);
+}
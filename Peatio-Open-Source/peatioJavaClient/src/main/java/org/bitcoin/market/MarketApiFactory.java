@@ -2,7 +2,9 @@ package org.bitcoin.market;
 
 import org.bitcoin.market.bean.Market;
 
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -27,8 +29,22 @@ public class MarketApiFactory {
     }
 
 
+    /**
+     * Serve marketApi under the name of its market from now on, e.g. a {@link ReplayMarketApi} to backtest.
+     *
+     * @return the market api it replaces, null when there was none
+     */
+    public AbstractMarketApi register(AbstractMarketApi marketApi) {
+        synchronized (marketMap) {
+            return marketMap.put(marketApi.getMarket().name(), marketApi);
+        }
+    }
+
     public AbstractMarketApi getMarket(String name) {
-        AbstractMarketApi market = marketMap.get(name);
+        AbstractMarketApi market;
+        synchronized (marketMap) {
+            market = marketMap.get(name);
+        }
         if (market == null) {
             throw new RuntimeException("name:" + name + " is null");
         }
@@ -39,5 +55,14 @@ public class MarketApiFactory {
         return getMarket(market.name());
     }
 
+    /**
+     * The registered market apis, in registration order.
+     */
+    public List<AbstractMarketApi> getMarkets() {
+        synchronized (marketMap) {
+            return new ArrayList<AbstractMarketApi>(marketMap.values());
+        }
+    }
+
 
 }
@@ -2,36 +2,170 @@ package org.bitcoin.market;
 
 import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONException;
 import com.alibaba.fastjson.JSONObject;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Charsets;
 import com.google.common.base.Throwables;
+import org.bitcoin.common.Decimal;
 import org.bitcoin.common.FiatConverter;
 import org.bitcoin.common.HttpUtils;
+import org.bitcoin.common.MarketTransport;
+import org.bitcoin.common.PooledHttpTransport;
 import org.bitcoin.market.bean.*;
+import org.bitcoin.market.kline.KlineSeries;
+import org.bitcoin.market.kline.KlineStore;
+import org.bitcoin.market.metrics.DefaultMetricsRegistry;
+import org.bitcoin.market.metrics.MetricsRegistry;
+import org.bitcoin.market.ratelimit.EndpointClass;
+import org.bitcoin.market.ratelimit.RateLimiter;
 import org.bitcoin.market.utils.MarketErrorCode;
 import org.bitcoin.market.utils.MarketUtils;
+import org.bitcoin.market.utils.OrderBookDecoder;
+import org.bitcoin.market.utils.PagedIterator;
+import org.bitcoin.market.utils.RequestSigner;
 import org.bitcoin.market.utils.TradeException;
-import org.jsoup.Connection;
-import org.jsoup.nodes.Document;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
 import java.io.IOException;
-import java.math.BigInteger;
+import java.net.SocketTimeoutException;
 import java.text.ParseException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
 
 public class PeatioCNYApi extends AbstractMarketApi {
     private static final Logger LOG = LoggerFactory.getLogger(PeatioCNYApi.class);
 
     private static final String PEATIO_URL = "https://peatio.com";
-    private static final long DURATION = 1000;
     private static final int TIME_OUT = 15000;
+    private static final int ORDERS_PAGE_LIMIT = 1000;
+    private static final int KLINE_LIMIT = 100;
+    private static final int KLINE_MAX_LIMIT = 10000;
+    private static final byte[] ERROR_PREFIX = "{\"error\"".getBytes(Charsets.US_ASCII);
+
+    private static final ScheduledExecutorService DELAYER = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "peatio-delayer");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final String baseUrl;
+    private final ConcurrentMap<String, AtomicLong> tonces = new ConcurrentHashMap<String, AtomicLong>();
+    private MarketTransport transport = HttpUtils.getTransport();
+    private RateLimiter rateLimiter = new RateLimiter();
+    private volatile MetricsRegistry metrics = new DefaultMetricsRegistry();
+    private volatile KlineStore klineStore;
+    private volatile boolean aggregateKlines;
+    private final RequestSigner signer = new RequestSigner();
+    private final OrderBookDecoder decoder = new OrderBookDecoder();
 
     public PeatioCNYApi() {
+        this(PEATIO_URL);
+    }
+
+    /**
+     * @param baseUrl scheme, host and port of the exchange, e.g. a local stand-in for tests
+     */
+    public PeatioCNYApi(String baseUrl) {
         super(org.bitcoin.market.bean.Currency.CNY, Market.PeatioCNY);
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        wireTransportMetrics();
+    }
+
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    public MarketTransport getTransport() {
+        return transport;
+    }
+
+    public void setTransport(MarketTransport transport) {
+        this.transport = transport;
+        wireTransportMetrics();
+    }
+
+    /**
+     * Limits applied per access key to signed requests and globally to public ones.
+     */
+    public RateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    public void setRateLimiter(RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    /**
+     * Latency, size and errors of every request, a {@link DefaultMetricsRegistry} unless replaced. Connect and TLS
+     * handshake times go there too when the transport is a {@link PooledHttpTransport}.
+     */
+    public MetricsRegistry getMetrics() {
+        return metrics;
+    }
+
+    public void setMetrics(MetricsRegistry metrics) {
+        this.metrics = metrics;
+        wireTransportMetrics();
+    }
+
+    /**
+     * A transport shared by several apis (the default {@link HttpUtils#getTransport()}) reports its connects to
+     * the last one wired.
+     */
+    private void wireTransportMetrics() {
+        if (transport instanceof PooledHttpTransport) {
+            ((PooledHttpTransport) transport).setMetrics(metrics);
+        }
+    }
+
+    public KlineStore getKlineStore() {
+        return klineStore;
+    }
+
+    /**
+     * With a store the kline getters only fetch the bars newer than the stored ones and answer
+     * from the store, e.g. {@code setKlineStore(new KlineStore(getMarket(), directory, this::getKlines))}.
+     * Null goes back to downloading the last 100 bars every time.
+     */
+    public void setKlineStore(KlineStore klineStore) {
+        this.klineStore = klineStore;
+    }
+
+    public boolean isAggregateKlines() {
+        return aggregateKlines;
+    }
+
+    /**
+     * When on, the 5 minute and daily getters build their bars from the 1 minute ones of the kline store,
+     * so one request keeps every period current. An in memory store is created when none is set.
+     */
+    public synchronized void setAggregateKlines(boolean aggregateKlines) {
+        if (aggregateKlines && klineStore == null) {
+            KlineStore store = new KlineStore(getMarket(), this::getKlines);
+            store.setPageLimit(KLINE_MAX_LIMIT);
+            klineStore = store;
+        }
+        this.aggregateKlines = aggregateKlines;
+    }
+
+    public RequestSigner getSigner() {
+        return signer;
     }
 
     @Override
@@ -39,6 +173,27 @@ public class PeatioCNYApi extends AbstractMarketApi {
         return System.currentTimeMillis();
     }
 
+    /**
+     * Peatio refuses a tonce already used by the access key, so requests signed within the same
+     * millisecond get the following ones.
+     */
+    private Long createNonce(String accessKey) {
+        AtomicLong last = tonces.get(accessKey);
+        if (last == null) {
+            AtomicLong existing = tonces.putIfAbsent(accessKey, last = new AtomicLong());
+            if (existing != null) {
+                last = existing;
+            }
+        }
+        while (true) {
+            long previous = last.get();
+            long tonce = Math.max(createNonce(), previous + 1);
+            if (last.compareAndSet(previous, tonce)) {
+                return tonce;
+            }
+        }
+    }
+
     @Override
     public Long buy(AppAccount appAccount, double amount, double price, SymbolPair symbolPair, OrderType orderType) {
 
@@ -64,6 +219,20 @@ public class PeatioCNYApi extends AbstractMarketApi {
         return -1L;
     }
 
+    @Override
+    public CompletableFuture<Long> buyAsync(AppAccount appAccount, double amount, double price, SymbolPair symbolPair, OrderType orderType) {
+        TreeMap<String, String> params = new TreeMap<String, String>();
+        params.put("side", "buy");
+        return orFailed(() -> tradeAsync(appAccount, amount, FiatConverter.toCNY(price), params, symbolPair, orderType));
+    }
+
+    @Override
+    public CompletableFuture<Long> sellAsync(AppAccount appAccount, double amount, double price, SymbolPair symbolPair, OrderType orderType) {
+        TreeMap<String, String> params = new TreeMap<String, String>();
+        params.put("side", "sell");
+        return orFailed(() -> tradeAsync(appAccount, amount, FiatConverter.toCNY(price), params, symbolPair, orderType));
+    }
+
     private JSONObject trade(AppAccount appAccount, Double amount, Double price, TreeMap<String, String> params, SymbolPair symbolPair, OrderType orderType) {
         /*if (AppConfig.isDebug()) { todo
             LOG.info("AppConfig is debug,can't trade at peatio");
@@ -79,11 +248,7 @@ public class PeatioCNYApi extends AbstractMarketApi {
             throw new UnsupportedOperationException();
         }
 
-        params.put("volume", amount.toString());
-        params.put("price", price.toString());
-        params.put("market", getSymbolPairDescFromUsd2Cny(symbolPair));
-        params.put("canonical_verb", "POST");
-        params.put("canonical_uri", "/api/v2/orders");
+        putTradeParams(amount, price, params, symbolPair);
         JSONObject response = send_request(appAccount, params, TIME_OUT, false);
         if (response.containsKey("error")) {
             throw new TradeException(MarketErrorCode.getForPeatioCNY(response));
@@ -91,6 +256,33 @@ public class PeatioCNYApi extends AbstractMarketApi {
         return response;
     }
 
+    private CompletableFuture<Long> tradeAsync(AppAccount appAccount, Double amount, Double price, TreeMap<String, String> params, SymbolPair symbolPair, OrderType orderType) {
+        if (!appAccount.getEnable()) {
+            LOG.info("appAccount is disable {}", appAccount);
+            return CompletableFuture.completedFuture(-1L);
+        }
+
+        if (orderType.isMargin()) {
+            return failed(new UnsupportedOperationException());
+        }
+
+        putTradeParams(amount, price, params, symbolPair);
+        return send_request_async(appAccount, params, TIME_OUT, false).thenApply(response -> {
+            if (response.containsKey("error")) {
+                throw new TradeException(MarketErrorCode.getForPeatioCNY(response));
+            }
+            return response.containsKey("id") ? response.getLong("id") : -1L;
+        });
+    }
+
+    private void putTradeParams(Double amount, Double price, TreeMap<String, String> params, SymbolPair symbolPair) {
+        params.put("volume", amount.toString());
+        params.put("price", price.toString());
+        params.put("market", getSymbolPairDescFromUsd2Cny(symbolPair));
+        params.put("canonical_verb", "POST");
+        params.put("canonical_uri", "/api/v2/orders");
+    }
+
     @Override
     public void cancel(AppAccount appAccount, Long orderId, SymbolPair symbolPair) {
         /*if (AppConfig.isDebug()) { todo
@@ -99,15 +291,125 @@ public class PeatioCNYApi extends AbstractMarketApi {
             return;
         }*/
 
+        JSONObject response = send_request(appAccount, getCancelParams(orderId), TIME_OUT, true);
+        if (response.containsKey("error")) {
+            throw new TradeException(MarketErrorCode.getForPeatioCNY(response));
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> cancelAsync(AppAccount appAccount, Long orderId, SymbolPair symbolPair) {
+        return orFailed(() -> send_request_async(appAccount, getCancelParams(orderId), TIME_OUT, true)).thenApply(response -> null);
+    }
+
+    private TreeMap<String, String> getCancelParams(Long orderId) {
         TreeMap<String, String> params = new TreeMap<String, String>();
         params.put("id", orderId.toString());
         params.put("canonical_verb", "POST");
         params.put("canonical_uri", "/api/v2/order/delete");
+        return params;
+    }
 
-        JSONObject response = send_request(appAccount, params, TIME_OUT, true);
-        if (response.containsKey("error")) {
-            throw new TradeException(MarketErrorCode.getForPeatioCNY(response));
+    /**
+     * Orders of the same market go out in a single /api/v2/orders/multi request, markets are sent
+     * in parallel. Peatio creates a batch atomically, so when it fails every order of that market
+     * gets the same error order.
+     */
+    @Override
+    public List<BitOrder> placeOrders(AppAccount appAccount, List<OrderRequest> requests) {
+        BitOrder[] results = new BitOrder[requests.size()];
+        if (!appAccount.getEnable()) {
+            LOG.info("appAccount is disable {}", appAccount);
+            Arrays.fill(results, BitOrder.getErrorOrder("appAccount is disable"));
+            return Arrays.asList(results);
+        }
+
+        Map<SymbolPair, List<Integer>> batches = new LinkedHashMap<SymbolPair, List<Integer>>();
+        for (int i = 0; i < requests.size(); i++) {
+            OrderRequest request = requests.get(i);
+            if (request.getOrderType().isMargin() || request.getOrderSide() == null || OrderSide.empty.equals(request.getOrderSide())) {
+                results[i] = BitOrder.getErrorOrder("unsupported order " + request);
+                continue;
+            }
+            List<Integer> batch = batches.get(request.getSymbolPair());
+            if (batch == null) {
+                batch = new ArrayList<Integer>();
+                batches.put(request.getSymbolPair(), batch);
+            }
+            batch.add(i);
+        }
+
+        List<CompletableFuture<Void>> futures = new ArrayList<CompletableFuture<Void>>();
+        for (Map.Entry<SymbolPair, List<Integer>> batch : batches.entrySet()) {
+            List<Integer> indexes = batch.getValue();
+            List<TreeMap<String, String>> orders = new ArrayList<TreeMap<String, String>>(indexes.size());
+            for (Integer index : indexes) {
+                OrderRequest request = requests.get(index);
+                TreeMap<String, String> order = new TreeMap<String, String>();
+                order.put("side", request.getOrderSide().name());
+                order.put("volume", Double.toString(request.getAmount()));
+                order.put("price", FiatConverter.toCNY(request.getPrice()).toString());
+                orders.add(order);
+            }
+            TreeMap<String, String> params = new TreeMap<String, String>();
+            params.put("market", getSymbolPairDescFromUsd2Cny(batch.getKey()));
+
+            futures.add(send_multi_request_async(appAccount, "/api/v2/orders/multi", params, "orders[]", orders, TIME_OUT)
+                    .handle((response, e) -> {
+                        for (int i = 0; i < indexes.size(); i++) {
+                            int index = indexes.get(i);
+                            if (e != null) {
+                                LOG.error("placeOrders {} error:{}", requests.get(index), e.getMessage());
+                                results[index] = BitOrder.getErrorOrder(e.toString());
+                            } else if (i < response.size()) {
+                                results[index] = getOrder(response.getJSONObject(i));
+                                results[index].setOrderType(requests.get(index).getOrderType());
+                            } else {
+                                results[index] = BitOrder.getErrorOrder("missing in response");
+                            }
+                        }
+                        return null;
+                    }));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[futures.size()])).join();
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Cancels are sent concurrently, each still takes a permit of the access key's rate limit.
+     */
+    @Override
+    public List<BitOrder> cancelOrders(AppAccount appAccount, Collection<Long> orderIds, SymbolPair symbolPair) {
+        List<CompletableFuture<BitOrder>> futures = new ArrayList<CompletableFuture<BitOrder>>(orderIds.size());
+        for (Long orderId : orderIds) {
+            futures.add(send_request_async(appAccount, getCancelParams(orderId), TIME_OUT, true)
+                    .thenApply(this::getOrder)
+                    .exceptionally(e -> {
+                        LOG.error("cancelOrders {} error:{}", orderId, e.getMessage());
+                        return BitOrder.getErrorOrder(e.toString());
+                    }));
+        }
+        List<BitOrder> results = new ArrayList<BitOrder>(futures.size());
+        for (CompletableFuture<BitOrder> future : futures) {
+            results.add(future.join());
+        }
+        return results;
+    }
+
+    /**
+     * With a null symbolPair every waiting order of the account is cancelled by one
+     * /api/v2/orders/clear request. That endpoint has no market filter, so a given
+     * symbolPair falls back to listing its orders and cancelling them.
+     */
+    @Override
+    public List<BitOrder> cancelAll(AppAccount appAccount, SymbolPair symbolPair) {
+        if (symbolPair != null) {
+            return super.cancelAll(appAccount, symbolPair);
         }
+        TreeMap<String, String> params = new TreeMap<String, String>();
+        params.put("canonical_verb", "POST");
+        params.put("canonical_uri", "/api/v2/orders/clear");
+        return getOrders(send_requests(appAccount, params, TIME_OUT, true));
     }
 
     private String getSymbolPairDescFromUsd2Cny(SymbolPair symbolPair) {
@@ -136,21 +438,51 @@ public class PeatioCNYApi extends AbstractMarketApi {
     }
 
 
+    /**
+     * Retried once when the request didn't get an answer, a peatio error (e.g. a wrong key) is thrown right away.
+     */
     @Override
     public Asset getInfo(AppAccount appAccount) {
 
-        TreeMap<String, String> params = new TreeMap<String, String>();
         JSONObject response;
         try {
-            params.put("canonical_verb", "GET");
-            params.put("canonical_uri", "/api/v2/members/me");
-
-            response = send_request(appAccount, params, TIME_OUT, true);
-        } catch (Exception e) {
-            params.put("canonical_verb", "GET");
-            params.put("canonical_uri", "/api/v2/members/me");
-            response = send_request(appAccount, params, TIME_OUT, true);
+            response = send_request(appAccount, getInfoParams(), TIME_OUT, true);
+        } catch (RuntimeException e) {
+            if (!isTransient(e)) {
+                throw e;
+            }
+            metrics.recordRetry("GET /api/v2/members/me");
+            response = send_request(appAccount, getInfoParams(), TIME_OUT, true);
         }
+        return getAsset(appAccount, response);
+
+    }
+
+    @Override
+    public CompletableFuture<Asset> getInfoAsync(AppAccount appAccount) {
+        return orFailed(() -> send_request_async(appAccount, getInfoParams(), TIME_OUT, true))
+                .handle((response, e) -> {
+                    if (e == null) {
+                        return CompletableFuture.completedFuture(response);
+                    }
+                    if (!isTransient(e)) {
+                        return PeatioCNYApi.<JSONObject>failed(e);
+                    }
+                    metrics.recordRetry("GET /api/v2/members/me");
+                    return send_request_async(appAccount, getInfoParams(), TIME_OUT, true);
+                })
+                .thenCompose(response -> response)
+                .thenApply(response -> getAsset(appAccount, response));
+    }
+
+    private TreeMap<String, String> getInfoParams() {
+        TreeMap<String, String> params = new TreeMap<String, String>();
+        params.put("canonical_verb", "GET");
+        params.put("canonical_uri", "/api/v2/members/me");
+        return params;
+    }
+
+    private Asset getAsset(AppAccount appAccount, JSONObject response) {
         if (response == null) {
             throw new RuntimeException("Can't get_info");
         }
@@ -159,62 +491,141 @@ public class PeatioCNYApi extends AbstractMarketApi {
         asset.setAppAccountId(appAccount.getId());
         asset.setMarket(getMarket());
 
+        // balances are decimal strings, parsed straight to the scale of their symbol
         JSONArray accounts = response.getJSONArray("accounts");
         for (int i = 0; i < accounts.size(); i++) {
             JSONObject balance = accounts.getJSONObject(i);
-            String currency1 = balance.getString("currency");
-            if (currency1.equals("btc")) {
-                asset.setAvailableBtc(balance.getDouble("balance"));
-                asset.setFrozenBtc(balance.getDouble("locked"));
-            }
-            if (currency1.equals("cny")) {
-                asset.setAvailableCny(balance.getDouble("balance"));
-                asset.setAvailableUsd(FiatConverter.toUsd(asset.getAvailableCny()));
-                asset.setFrozenCny(balance.getDouble("locked"));
-                asset.setFrozenUsd(FiatConverter.toUsd(asset.getFrozenCny()));
+            Symbol symbol = Symbol.find(balance.getString("currency"));
+            if (symbol == null) {
+                LOG.debug("{} - unknown currency in accounts:{}", getMarket(), balance);
+                continue;
             }
+            asset.setAvailableUnscaled(symbol, parseBalance(balance, "balance", symbol));
+            asset.setFrozenUnscaled(symbol, parseBalance(balance, "locked", symbol));
         }
+        asset.setAvailableUnscaled(Symbol.usd, toUsd(asset.getAvailableUnscaled(Symbol.cny)));
+        asset.setFrozenUnscaled(Symbol.usd, toUsd(asset.getFrozenUnscaled(Symbol.cny)));
         return asset;
+    }
+
+    private static long toUsd(long cny) {
+        return Decimal.rescale(FiatConverter.toUsd(cny, Symbol.cny.getScale()), Symbol.cny.getScale(), Symbol.usd.getScale());
+    }
 
+    private static long parseBalance(JSONObject balance, String key, Symbol symbol) {
+        String value = balance.getString(key);
+        return value == null || value.isEmpty() ? 0L : Decimal.parse(value, symbol.getScale());
     }
 
     @Override
     public BitOrder getOrder(AppAccount appAccount, Long orderId, SymbolPair symbolPair) {
+        JSONObject response = send_request(appAccount, getOrderParams(orderId), TIME_OUT, true);
+        return getOrder(response);
+    }
+
+    @Override
+    public CompletableFuture<BitOrder> getOrderAsync(AppAccount appAccount, Long orderId, SymbolPair symbolPair) {
+        return orFailed(() -> send_request_async(appAccount, getOrderParams(orderId), TIME_OUT, true)).thenApply(this::getOrder);
+    }
+
+    private TreeMap<String, String> getOrderParams(Long orderId) {
         TreeMap<String, String> params = new TreeMap<String, String>();
         params.put("canonical_verb", "GET");
         params.put("canonical_uri", "/api/v2/order");
         params.put("id", orderId.toString());
-        JSONObject response = send_request(appAccount, params, TIME_OUT, true);
-        return getOrder(response);
+        return params;
     }
 
     @Override
     public List<BitOrder> getRunningOrders(AppAccount appAccount) {
+        return getRunningOrders(appAccount, Collections.singletonList(new SymbolPair(Symbol.btc, Symbol.cny))).toList();
+    }
+
+    @Override
+    public CompletableFuture<List<BitOrder>> getRunningOrdersAsync(AppAccount appAccount) {
+        return getRunningOrdersAsync(appAccount, new SymbolPair(Symbol.btc, Symbol.cny), 1, new ArrayList<BitOrder>());
+    }
+
+    private CompletableFuture<List<BitOrder>> getRunningOrdersAsync(AppAccount appAccount, SymbolPair symbolPair, int page, List<BitOrder> orders) {
+        return getRunningOrdersPage(appAccount, symbolPair, page).thenCompose(result -> {
+            orders.addAll(result);
+            if (result.size() < ORDERS_PAGE_LIMIT) {
+                return CompletableFuture.completedFuture(orders);
+            }
+            return getRunningOrdersAsync(appAccount, symbolPair, page + 1, orders);
+        });
+    }
+
+    /**
+     * Pages through /api/v2/orders of every market, the first pages are requested together
+     * and go out as fast as the access key's rate limit allows.
+     * Orders filled while paging may shift later ones to an already read page.
+     */
+    @Override
+    public PagedIterator<BitOrder> getRunningOrders(AppAccount appAccount, Collection<SymbolPair> symbolPairs) {
+        List<PagedIterator.PageFetcher<BitOrder>> fetchers = new ArrayList<PagedIterator.PageFetcher<BitOrder>>();
+        for (SymbolPair symbolPair : symbolPairs) {
+            fetchers.add(page -> getRunningOrdersPage(appAccount, symbolPair, page));
+        }
+        return new PagedIterator<BitOrder>(fetchers, ORDERS_PAGE_LIMIT);
+    }
+
+    private CompletableFuture<List<BitOrder>> getRunningOrdersPage(AppAccount appAccount, SymbolPair symbolPair, int page) {
+        // orders of a usd pair come back under the cny market they are kept in, they keep the pair asked for
+        return orFailed(() -> send_requests_async(appAccount, getRunningOrdersParams(symbolPair, page), TIME_OUT, true))
+                .thenApply(response -> {
+                    List<BitOrder> orders = getOrders(response);
+                    for (BitOrder order : orders) {
+                        order.setSymbolPair(symbolPair);
+                    }
+                    return orders;
+                });
+    }
+
+    private TreeMap<String, String> getRunningOrdersParams(SymbolPair symbolPair, int page) {
         TreeMap<String, String> params = new TreeMap<String, String>();
         params.put("canonical_verb", "GET");
         params.put("canonical_uri", "/api/v2/orders");
-        params.put("market", getSymbolPairDescFromUsd2Cny(new SymbolPair(Symbol.btc, Symbol.cny)));
-        params.put("limit", "100");
+        params.put("market", getSymbolPairDescFromUsd2Cny(symbolPair));
+        params.put("state", "wait");
+        params.put("limit", String.valueOf(ORDERS_PAGE_LIMIT));
+        params.put("page", String.valueOf(page));
+        params.put("order_by", "asc");
+        return params;
+    }
+
+    private List<BitOrder> getOrders(JSONArray ordersResponse) {
         List<BitOrder> orders = new ArrayList<BitOrder>();
-        JSONArray ordersResponse = send_requests(appAccount, params, TIME_OUT, true);
         for (Object anOrdersResponse : ordersResponse) {
             JSONObject orderResponse = (JSONObject) anOrdersResponse;
             orders.add(getOrder(orderResponse));
         }
         return orders;
-
     }
 
-    private BitOrder getOrder(JSONObject jsonObject) {
+    @VisibleForTesting
+    BitOrder getOrder(JSONObject jsonObject) {
         BitOrder bitOrder = new BitOrder();
         bitOrder.setOrderId(jsonObject.getLong("id"));
-        bitOrder.setOrderAmount(jsonObject.getDouble("volume"));
-        bitOrder.setOrderCnyPrice(jsonObject.getDouble("price"));
-        bitOrder.setOrderPrice(FiatConverter.toUsd(bitOrder.getOrderCnyPrice()));
-        bitOrder.setProcessedAmount(jsonObject.getDouble("executed_volume"));
-        bitOrder.setProcessedCnyPrice(jsonObject.getDouble("avg_price"));
-        bitOrder.setProcessedPrice(FiatConverter.toUsd(jsonObject.getDouble("avg_price")));
+        bitOrder.setOrderAmountUnscaled(getUnscaled(jsonObject, "volume", BitOrder.SCALE));
+        bitOrder.setOrderCnyPriceUnscaled(getUnscaled(jsonObject, "price", BitOrder.SCALE));
+        bitOrder.setOrderPriceUnscaled(FiatConverter.toUsd(bitOrder.getOrderCnyPriceUnscaled(), BitOrder.SCALE));
+        bitOrder.setProcessedAmountUnscaled(getUnscaled(jsonObject, "executed_volume", BitOrder.SCALE));
+        bitOrder.setProcessedCnyPriceUnscaled(getUnscaled(jsonObject, "avg_price", BitOrder.SCALE));
+        bitOrder.setProcessedPriceUnscaled(FiatConverter.toUsd(bitOrder.getProcessedCnyPriceUnscaled(), BitOrder.SCALE));
         bitOrder.setFee(getTransactionFee());
+        String side = jsonObject.getString("side");
+        if ("buy".equals(side)) {
+            bitOrder.setOrderSide(OrderSide.buy);
+        } else if ("sell".equals(side)) {
+            bitOrder.setOrderSide(OrderSide.sell);
+        }
+        String market = jsonObject.getString("market");
+        SymbolPair symbolPair = market == null ? null : SymbolPair.find(market);
+        if (symbolPair != null) {
+            bitOrder.setSymbol(symbolPair.getFirst());
+            bitOrder.setSymbolPair(symbolPair);
+        }
         String orderStatusStr = jsonObject.getString("state");
         OrderStatus orderStatus = OrderStatus.none;
         if ("wait".equals(orderStatusStr)) {
@@ -229,48 +640,36 @@ public class PeatioCNYApi extends AbstractMarketApi {
         return bitOrder;
     }
 
-    private String getSign(AppAccount appAccount, TreeMap<String, String> parameters) {
-        if (parameters.containsKey("signature")) {
-            parameters.remove("signature");
+    /**
+     * Peatio sends decimals as strings, parse them without going through a double.
+     */
+    private static long getUnscaled(JSONObject jsonObject, String key, int scale) {
+        Object value = jsonObject.get(key);
+        if (value == null) {
+            return 0L;
         }
-
-        StringBuilder parameter = new StringBuilder();
-        for (Map.Entry entry : parameters.entrySet()) {
-            if (entry.getKey().equals("canonical_verb") || entry.getKey().equals("canonical_uri")) {
-                continue;
-            }
-
-            parameter.append("&").append(entry.getKey()).append("=").append(entry.getValue());
-        }
-        if (parameter.length() > 0) {
-            parameter.deleteCharAt(0);
+        if (value instanceof Number) {
+            return Decimal.round(((Number) value).doubleValue(), scale);
         }
-        String canonical_verb = parameters.get("canonical_verb");
-        String canonical_uri = parameters.get("canonical_uri");
+        String text = value.toString().trim();
+        return text.isEmpty() ? 0L : Decimal.parse(text, scale);
+    }
 
-        String signStr = String.format("%s|%s|%s", canonical_verb, canonical_uri, parameter.toString());
-        try {
-            Mac mac = Mac.getInstance("HmacSHA256");
-            SecretKeySpec keyspec = new SecretKeySpec(appAccount.getSecretKey().getBytes("UTF-8"), "HmacSHA256");
-            mac.init(keyspec);
-            mac.update(signStr.getBytes("UTF-8"));
-            return String.format("%064x", new BigInteger(1, mac.doFinal()));
-        } catch (Exception e) {
-            throw Throwables.propagate(e);
+    @VisibleForTesting
+    String getSign(AppAccount appAccount, TreeMap<String, String> parameters) {
+        if (parameters.containsKey("signature")) {
+            parameters.remove("signature");
         }
+        return signer.sign(appAccount.getSecretKey(), parameters.get("canonical_verb"),
+                parameters.get("canonical_uri"), parameters);
     }
 
-    private String internal_send_request(AppAccount appAccount, TreeMap<String, String> params, int timeout) {
-        long currentTime = System.currentTimeMillis();
-        if (currentTime - lastUpdate < DURATION) {
-            try {
-                Thread.sleep(DURATION - (currentTime - lastUpdate));
-            } catch (InterruptedException e) {
-                // ignore
-            }
-        }
+    /**
+     * Add access_key, tonce and signature to params and take the canonical verb and uri out of them.
+     */
+    private SignedRequest sign_request(AppAccount appAccount, TreeMap<String, String> params) {
         params.put("access_key", appAccount.getAccessKey());
-        params.put("tonce", createNonce().toString());
+        params.put("tonce", createNonce(appAccount.getAccessKey()).toString());
 
         params.put("signature", getSign(appAccount, params));
 
@@ -279,30 +678,110 @@ public class PeatioCNYApi extends AbstractMarketApi {
         String canonical_uri = params.get("canonical_uri");
         params.remove("canonical_uri");
         LOG.info("send_request params:{}", params);
-        Document doc;
+        return new SignedRequest(canonical_verb, canonical_uri, baseUrl + canonical_uri, params);
+    }
+
+    private String internal_send_request(AppAccount appAccount, TreeMap<String, String> params, int timeout) {
+        metrics.recordThrottle(EndpointClass.PRIVATE, rateLimiter.acquire(appAccount.getAccessKey(), EndpointClass.PRIVATE));
+        SignedRequest request = sign_request(appAccount, params);
         String response = null;
+        long start = System.nanoTime();
         try {
-            String url = PEATIO_URL + canonical_uri;
-            Connection connection = HttpUtils.getConnectionForPost(url, params).timeout(timeout).ignoreContentType(true);
-            connection.ignoreHttpErrors(true);
-            if ("post".equalsIgnoreCase(canonical_verb)) {
-                doc = connection.post();
+            byte[] body;
+            if (request.isPost()) {
+                body = transport.post(request.url, request.params, timeout);
             } else {
-                doc = connection.get();
+                body = transport.get(request.url, request.params, timeout);
             }
-            lastUpdate = System.currentTimeMillis();
-            response = doc.body().text();
+            recordResponse(request.endpoint, start, body);
+            response = new String(body, Charsets.UTF_8);
 
             return response;
         } catch (Exception e) {
+            metrics.recordError(request.endpoint, getErrorName(e));
             throw Throwables.propagate(e);
         } finally {
             LOG.info("send_request result:{}", response);
         }
     }
 
+    /**
+     * Same as internal_send_request but waits for its permit on a timer instead of parking,
+     * the request is signed once the permit is usable so that its tonce is fresh.
+     */
+    private CompletableFuture<String> internal_send_request_async(AppAccount appAccount, TreeMap<String, String> params, int timeout) {
+        return delay(reserve(appAccount.getAccessKey(), EndpointClass.PRIVATE)).thenCompose(v -> {
+            SignedRequest request = sign_request(appAccount, params);
+            long start = System.nanoTime();
+            CompletableFuture<byte[]> body;
+            if (request.isPost()) {
+                body = transport.postAsync(request.url, request.params, timeout);
+            } else {
+                body = transport.getAsync(request.url, request.params, timeout);
+            }
+            return recorded(request.endpoint, start, body);
+        }).thenApply(body -> {
+            String response = new String(body, Charsets.UTF_8);
+            LOG.info("send_request result:{}", response);
+            return response;
+        });
+    }
+
+    /**
+     * Post a request carrying an array of hashes, e.g. orders[][side]. Each item is sent with its keys
+     * grouped so that rack starts a new hash per item, and signed the way rails builds the canonical
+     * query: top level keys sorted, the array kept in order with the keys of each item sorted.
+     */
+    private CompletableFuture<JSONArray> send_multi_request_async(AppAccount appAccount, String uri, TreeMap<String, String> params,
+                                                                  String arrayKey, List<TreeMap<String, String>> items, int timeout) {
+        return delay(reserve(appAccount.getAccessKey(), EndpointClass.PRIVATE)).thenCompose(v -> {
+            params.put("access_key", appAccount.getAccessKey());
+            params.put("tonce", createNonce(appAccount.getAccessKey()).toString());
+
+            List<Map.Entry<String, String>> entries = new ArrayList<Map.Entry<String, String>>();
+            boolean added = false;
+            for (Map.Entry<String, String> entry : params.entrySet()) {
+                if (!added && entry.getKey().compareTo(arrayKey) > 0) {
+                    addItems(entries, arrayKey, items);
+                    added = true;
+                }
+                entries.add(entry);
+            }
+            if (!added) {
+                addItems(entries, arrayKey, items);
+            }
+            entries.add(new AbstractMap.SimpleImmutableEntry<String, String>("signature",
+                    signer.sign(appAccount.getSecretKey(), "POST", uri, entries)));
+            LOG.info("send_request params:{}", entries);
+            return recorded("POST " + uri, System.nanoTime(), transport.postAsync(baseUrl + uri, entries, timeout));
+        }).thenApply(body -> {
+            String response = new String(body, Charsets.UTF_8);
+            LOG.info("send_request result:{}", response);
+            if (response.trim().startsWith("{")) {
+                throw new TradeException(MarketErrorCode.getForPeatioCNY(toJSONObject(response, false)));
+            }
+            return toJSONArray(response, true);
+        });
+    }
+
+    private static void addItems(List<Map.Entry<String, String>> entries, String arrayKey, List<TreeMap<String, String>> items) {
+        for (TreeMap<String, String> item : items) {
+            for (Map.Entry<String, String> entry : item.entrySet()) {
+                entries.add(new AbstractMap.SimpleImmutableEntry<String, String>(arrayKey + "[" + entry.getKey() + "]", entry.getValue()));
+            }
+        }
+    }
+
     private JSONObject send_request(AppAccount appAccount, TreeMap<String, String> params, int timeout, boolean isThrow) {
         String body = internal_send_request(appAccount, params, timeout);
+        return toJSONObject(body, isThrow);
+    }
+
+    private CompletableFuture<JSONObject> send_request_async(AppAccount appAccount, TreeMap<String, String> params, int timeout, boolean isThrow) {
+        return internal_send_request_async(appAccount, params, timeout).thenApply(body -> toJSONObject(body, isThrow));
+    }
+
+    private JSONObject toJSONObject(String body, boolean isThrow) {
         JSONObject response = JSON.parseObject(body);
         if (response == null) {
             throw new RuntimeException("send_request response is null");
@@ -316,6 +795,14 @@ public class PeatioCNYApi extends AbstractMarketApi {
 
     private JSONArray send_requests(AppAccount appAccount, TreeMap<String, String> params, int timeout, boolean isThrow) {
         String body = internal_send_request(appAccount, params, timeout);
+        return toJSONArray(body, isThrow);
+    }
+
+    private CompletableFuture<JSONArray> send_requests_async(AppAccount appAccount, TreeMap<String, String> params, int timeout, boolean isThrow) {
+        return internal_send_request_async(appAccount, params, timeout).thenApply(body -> toJSONArray(body, isThrow));
+    }
+
+    private JSONArray toJSONArray(String body, boolean isThrow) {
         JSONArray response = JSONObject.parseArray(body);
         if (response == null) {
             throw new RuntimeException("send_request response is null");
@@ -328,127 +815,193 @@ public class PeatioCNYApi extends AbstractMarketApi {
 
     @Override
     public Double ticker(SymbolPair symbol) throws IOException {
-        String ticker_url = PEATIO_URL + "/api/v2/tickers/" + getSymbolPairDescFromUsd2Cny(symbol);
-        String text = HttpUtils.getContentForGet(ticker_url, 5000);
+        String text = get_content(getTickerUrl(symbol), 5000);
+        return getTicker(text, symbol);
+    }
+
+    @Override
+    public CompletableFuture<Double> tickerAsync(SymbolPair symbolPair) {
+        return orFailed(() -> public_get_async(getTickerUrl(symbolPair), 5000))
+                .thenApply(body -> getTicker(new String(body, Charsets.UTF_8), symbolPair));
+    }
+
+    private String getTickerUrl(SymbolPair symbol) {
+        return baseUrl + "/api/v2/tickers/" + getSymbolPairDescFromUsd2Cny(symbol);
+    }
+
+    private Double getTicker(String text, SymbolPair symbolPair) {
         JSONObject jsonObject = JSONArray.parseObject(text);
         JSONObject ticker = jsonObject.getJSONObject("ticker");
-        return FiatConverter.toUsd(ticker.getDouble("last"));
+        Double last = FiatConverter.toUsd(ticker.getDouble("last"));
+        record_ticker(symbolPair, last);
+        return last;
+    }
+
+    private String get_content(String url, int timeout) throws IOException {
+        byte[] body;
+        try {
+            body = public_get(url, timeout);
+        } catch (SocketTimeoutException e) {
+            metrics.recordRetry(getEndpoint(url));
+            sleep(3000);
+            body = public_get(url, timeout);
+        }
+        return new String(body, Charsets.UTF_8);
     }
 
     @Override
     public JSONObject update_depth(SymbolPair symbolPair) {
-        JSONObject data = this.get_json(symbolPair);
-        if (data.containsKey("asks")) {
-            JSONObject jsonObject = this.format_depth(data);
-            convert_to_usd(jsonObject);
-            return jsonObject;
-        }
-        throw new RuntimeException("update_depth error");
+        OrderBook book = new OrderBook(symbolPair);
+        this.update_order_book(symbolPair, book);
+        record_book(book);
+        return book.toJSON();
     }
 
-    private JSONObject get_json(SymbolPair symbolPair) {
-        String url = PEATIO_URL + "/api/v2/order_book?market=" + getSymbolPairDescFromUsd2Cny(symbolPair) +
-                "&asks_limit=100&bids_limit=100";
+    @Override
+    public CompletableFuture<JSONObject> updateDepthAsync(SymbolPair symbolPair) {
+        OrderBook book = new OrderBook(symbolPair);
+        return update_order_book_async(symbolPair, book).thenApply(v -> {
+            record_book(book);
+            return book.toJSON();
+        });
+    }
+
+    @Override
+    protected void update_order_book(SymbolPair symbolPair, OrderBook book) {
+        String url = getOrderBookUrl(symbolPair);
 
-        JSONObject data = new JSONObject();
+        boolean decoded = false;
         try {
-            String jsonstr = this.parse_json_str(url);
-            data = JSON.parseObject(jsonstr);
+            decoded = decoder.decode(public_get(url, TIME_OUT), book);
         } catch (Exception e) {
             LOG.info("{} - Can't parse json message:{}", this.getMarket(), e.getMessage());
 
+            metrics.recordRetry("GET /api/v2/order_book");
             sleep(3000);
             try {
-                String jsonstr = this.parse_json_str(url);
-                data = JSON.parseObject(jsonstr);
+                decoded = decoder.decode(public_get(url, TIME_OUT), book);
             } catch (Exception e2) {
                 LOG.error("{} - Can't parse json message:{}", getMarket(), e2.getMessage());
             }
         }
-
-        return data;
-
+        fill_order_book(decoded, symbolPair, book);
     }
 
+    @Override
+    protected CompletableFuture<Void> update_order_book_async(SymbolPair symbolPair, OrderBook book) {
+        CompletableFuture<byte[]> body = orFailed(() -> public_get_async(getOrderBookUrl(symbolPair), TIME_OUT));
+        return propagateCancel(body.thenAccept(bytes -> fill_order_book(decoder.decode(bytes, book), symbolPair, book)), body);
+    }
 
-    protected JSONObject format_depth(JSONObject data) {
-        JSONArray bids = this.sort_and_format(data.getJSONArray("bids"), true);
-        JSONArray asks = this.sort_and_format(data.getJSONArray("asks"), false);
-        JSONObject jsonObject = new JSONObject();
-        jsonObject.put("asks", asks);
-        jsonObject.put("bids", bids);
-        return jsonObject;
+    private void fill_order_book(boolean decoded, SymbolPair symbolPair, OrderBook book) {
+        if (!decoded) {
+            throw new RuntimeException("update_depth error");
+        }
+        book.setSymbolPair(symbolPair);
+        book.sort();
+        convert_to_usd(book);
+        // after the conversion, two cny prices may round to the same usd one
+        book.mergeLevels();
     }
 
-    protected JSONArray sort_and_format(JSONArray jsonArray, boolean reverse) {
+    private String getOrderBookUrl(SymbolPair symbolPair) {
+        return baseUrl + "/api/v2/order_book?market=" + getSymbolPairDescFromUsd2Cny(symbolPair) +
+                "&asks_limit=100&bids_limit=100";
+    }
 
-        if (reverse) {
-            Collections.sort(jsonArray, new ReversePriceComparator());
-        } else {
-            Collections.sort(jsonArray, new PriceComparator());
 
-        }
-        JSONArray jsonArray1 = new JSONArray();
-        for (int i = 0; i < jsonArray.size(); i++) {
-            JSONObject jsonObject = jsonArray.getJSONObject(i);
-            JSONObject jsonObject1 = new JSONObject();
-            jsonObject1.put("price", jsonObject.getDouble("price"));
-            jsonObject1.put("amount", jsonObject.getDouble("remaining_volume"));
-            jsonArray1.add(jsonObject1);
+    @Override
+    public List<Kline> getKline1Min(Symbol symbol) throws IOException, ParseException {
+        return getKlines(symbol, 1);
+    }
 
-        }
-        return jsonArray1;
+    @Override
+    public List<Kline> getKline5Min(Symbol symbol) throws IOException, ParseException {
+        return getKlines(symbol, 5);
     }
 
-    class PriceComparator implements Comparator<Object> {
-        public int compare(Object member1, Object member2) {
-            //compareTo，两个对象属性之间的比较，返回负数，0和正数
-            return ((JSONObject) member1).getDouble("price").compareTo(((JSONObject) member2).getDouble("price"));
-        }
+    @Override
+    public List<Kline> getKlineDate(Symbol symbol) throws IOException, ParseException {
+        return getKlines(symbol, 1440);
     }
 
-    class ReversePriceComparator implements Comparator<Object> {
-        public int compare(Object member1, Object member2) {
-            //compareTo，两个对象属性之间的比较，返回负数，0和正数
-            return ((JSONObject) member2).getDouble("price").compareTo(((JSONObject) member1).getDouble("price"));
-        }
+    @Override
+    public CompletableFuture<List<Kline>> getKline1MinAsync(Symbol symbol) {
+        return getKlinesAsync(symbol, 1);
     }
 
     @Override
-    public List<Kline> getKline1Min(Symbol symbol) throws IOException, ParseException {
-        String url = getKlineUrl(symbol, 1);
-        return getKlines(url, symbol);
+    public CompletableFuture<List<Kline>> getKline5MinAsync(Symbol symbol) {
+        return getKlinesAsync(symbol, 5);
     }
 
     @Override
-    public List<Kline> getKline5Min(Symbol symbol) throws IOException, ParseException {
-        String url = getKlineUrl(symbol, 5);
+    public CompletableFuture<List<Kline>> getKlineDateAsync(Symbol symbol) {
+        return getKlinesAsync(symbol, 1440);
+    }
 
-        return getKlines(url, symbol);
+    /**
+     * Bars of symbol against cny, in ascending time.
+     *
+     * @param period minutes per bar
+     * @param since  seconds since the epoch, the bar holding it and the following ones are returned;
+     *               null for the latest limit bars
+     * @param limit  at most 10000
+     */
+    public List<Kline> getKlines(Symbol symbol, int period, Long since, int limit) throws IOException {
+        return getKlines(getKlineUrl(symbol, period, since, limit), symbol);
     }
 
-    @Override
-    public List<Kline> getKlineDate(Symbol symbol) throws IOException, ParseException {
+    private List<Kline> getKlines(Symbol symbol, int period) throws IOException {
+        KlineStore store = klineStore;
+        if (store == null) {
+            return getKlines(symbol, period, null, KLINE_LIMIT);
+        }
+        return update(store, symbol, period).getLast(KLINE_LIMIT);
+    }
 
-        String url = getKlineUrl(symbol, 1440);
-        List<Kline> klines = getKlines(url, symbol);
-        for (Kline kline : klines) {
-            kline.setTimestamp(kline.getTimestamp());
+    private CompletableFuture<List<Kline>> getKlinesAsync(Symbol symbol, int period) {
+        KlineStore store = klineStore;
+        if (store == null) {
+            return orFailed(() -> getKlinesAsync(getKlineUrl(symbol, period, null, KLINE_LIMIT), symbol));
         }
-        return klines;
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return update(store, symbol, period).getLast(KLINE_LIMIT);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, getAsyncExecutor());
+    }
+
+    private KlineSeries update(KlineStore store, Symbol symbol, int period) throws IOException {
+        if (period != 1 && aggregateKlines) {
+            return store.aggregate(symbol, period, KLINE_LIMIT);
+        }
+        return store.update(symbol, period);
+    }
+
+    private String getKlineUrl(Symbol symbol, int period, Long since, int limit) {
+        String url = baseUrl + "/api/v2/k?market=" + getSymbolPairDescFromUsd2Cny(new SymbolPair(symbol, Symbol.cny))
+                + "&period=" + period + "&limit=" + limit;
+        return since == null ? url : url + "&timestamp=" + since;
     }
 
-    private String getKlineUrl(Symbol symbol, int period) {
-        return PEATIO_URL + "/api/v2/k?market=" + getSymbolPairDescFromUsd2Cny(new SymbolPair(symbol, Symbol.cny))
-                + "&period=" + period + "&limit=100";
+    private List<Kline> getKlines(String url, Symbol symbol) throws IOException {
+        String text = get_content(url, TIME_OUT);
+        return parseKlines(text, symbol);
     }
 
-    private List<Kline> getKlines(String url, Symbol symbol) throws ParseException, IOException {
-        String text = HttpUtils.getContentForGet(url, TIME_OUT);
+    private CompletableFuture<List<Kline>> getKlinesAsync(String url, Symbol symbol) {
+        return public_get_async(url, TIME_OUT).thenApply(body -> parseKlines(new String(body, Charsets.UTF_8), symbol));
+    }
+
+    @VisibleForTesting
+    List<Kline> parseKlines(String text, Symbol symbol) {
         JSONArray lines = JSONArray.parseArray(text);
         List<Kline> klines = new ArrayList<Kline>();
         for (int i = 0; i < lines.size(); i++) {
-            Kline kline = getKline(JSONArray.parseArray(lines.getString(i)), symbol);
+            Kline kline = getKline(lines.getJSONArray(i), symbol);
             if (kline == null) {
                 continue;
             }
@@ -459,7 +1012,7 @@ public class PeatioCNYApi extends AbstractMarketApi {
         return klines;
     }
 
-    private Kline getKline(JSONArray params, Symbol symbol) throws ParseException {
+    private Kline getKline(JSONArray params, Symbol symbol) {
 
         Kline kline = new Kline();
         kline.setMarket(getMarket());
@@ -478,5 +1031,180 @@ public class PeatioCNYApi extends AbstractMarketApi {
         return kline;
     }
 
+    private static CompletableFuture<Void> delay(long nanos) {
+        if (nanos <= 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<Void> future = new CompletableFuture<Void>();
+        DELAYER.schedule(() -> future.complete(null), nanos, TimeUnit.NANOSECONDS);
+        return future;
+    }
+
+    /**
+     * Cancelling the returned future aborts the request, or drops it when it is still waiting for its permit.
+     */
+    private CompletableFuture<byte[]> public_get_async(String url, int timeout) {
+        CompletableFuture<byte[]> body = new CompletableFuture<byte[]>();
+        delay(reserve(RateLimiter.PUBLIC_KEY, EndpointClass.PUBLIC)).thenRun(() -> {
+            if (body.isDone()) {
+                return;
+            }
+            try {
+                CompletableFuture<byte[]> request = transport.getAsync(url, null, timeout);
+                propagateCancel(body, request);
+                recorded(getEndpoint(url), System.nanoTime(), request).whenComplete((bytes, e) -> {
+                    if (e == null) {
+                        body.complete(bytes);
+                    } else {
+                        body.completeExceptionally(e);
+                    }
+                });
+            } catch (RuntimeException e) {
+                body.completeExceptionally(e);
+            }
+        });
+        return body;
+    }
+
+    private byte[] public_get(String url, int timeout) throws IOException {
+        metrics.recordThrottle(EndpointClass.PUBLIC, rateLimiter.acquire(RateLimiter.PUBLIC_KEY, EndpointClass.PUBLIC));
+        String endpoint = getEndpoint(url);
+        long start = System.nanoTime();
+        try {
+            byte[] body = transport.get(url, null, timeout);
+            recordResponse(endpoint, start, body);
+            return body;
+        } catch (IOException | RuntimeException e) {
+            metrics.recordError(endpoint, getErrorName(e));
+            throw e;
+        }
+    }
+
+    private long reserve(String key, EndpointClass endpointClass) {
+        long wait = rateLimiter.reserve(key, endpointClass);
+        metrics.recordThrottle(endpointClass, wait);
+        return wait;
+    }
+
+    private CompletableFuture<byte[]> recorded(String endpoint, long start, CompletableFuture<byte[]> body) {
+        return body.whenComplete((bytes, e) -> {
+            if (e == null) {
+                recordResponse(endpoint, start, bytes);
+            } else {
+                metrics.recordError(endpoint, getErrorName(e));
+            }
+        });
+    }
+
+    private void recordResponse(String endpoint, long start, byte[] body) {
+        metrics.recordRequest(endpoint, System.nanoTime() - start, body.length);
+        String error = getErrorName(body);
+        if (error != null) {
+            metrics.recordError(endpoint, error);
+        }
+    }
+
+    /**
+     * "GET" and the path of a public url, without the query.
+     */
+    private String getEndpoint(String url) {
+        int query = url.indexOf('?');
+        int start = url.startsWith(baseUrl) ? baseUrl.length() : 0;
+        return "GET " + url.substring(start, query < 0 ? url.length() : query);
+    }
+
+    /**
+     * Name of the error carried by a response, null for a normal one. Peatio errors are small
+     * objects starting with {"error":, only those are parsed.
+     */
+    private static String getErrorName(byte[] body) {
+        if (body.length > 1024 || !startsWith(body, ERROR_PREFIX)) {
+            return null;
+        }
+        try {
+            JSONObject error = JSON.parseObject(new String(body, Charsets.UTF_8)).getJSONObject("error");
+            Integer code = error == null ? null : error.getInteger("code");
+            if (code == null) {
+                return null;
+            }
+            MarketErrorCode marketErrorCode = MarketErrorCode.findForPeatioCNY(code);
+            return marketErrorCode != null ? marketErrorCode.name() : "peatio_" + code;
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static boolean startsWith(byte[] body, byte[] prefix) {
+        int i = 0;
+        while (i < body.length && Character.isWhitespace(body[i])) {
+            i++;
+        }
+        if (body.length - i < prefix.length) {
+            return false;
+        }
+        for (int j = 0; j < prefix.length; j++) {
+            if (body[i + j] != prefix[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String getErrorName(Throwable e) {
+        while ((e instanceof CompletionException || e instanceof ExecutionException) && e.getCause() != null) {
+            e = e.getCause();
+        }
+        return e.getClass().getSimpleName();
+    }
+
+    /**
+     * Whether the request failed on its way (connection, timeout, a body that isn't json, e.g. a proxy error
+     * page) rather than with an answer of peatio, that would be the same when asked again.
+     */
+    private static boolean isTransient(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof IOException || cause instanceof JSONException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The future of call, or a failed one when call throws before making it (e.g. a pair peatio doesn't
+     * trade), the async methods never throw themselves.
+     */
+    private static <T> CompletableFuture<T> orFailed(Supplier<CompletableFuture<T>> call) {
+        try {
+            return call.get();
+        } catch (RuntimeException e) {
+            return failed(e);
+        }
+    }
+
+    private static <T> CompletableFuture<T> failed(Throwable e) {
+        CompletableFuture<T> future = new CompletableFuture<T>();
+        future.completeExceptionally(e);
+        return future;
+    }
+
+    private static class SignedRequest {
+        private final String verb;
+        private final String endpoint;
+        private final String url;
+        private final TreeMap<String, String> params;
+
+        private SignedRequest(String verb, String uri, String url, TreeMap<String, String> params) {
+            this.verb = verb;
+            this.endpoint = verb.toUpperCase() + " " + uri;
+            this.url = url;
+            this.params = params;
+        }
+
+        private boolean isPost() {
+            return "post".equalsIgnoreCase(verb);
+        }
+    }
+
 
 }
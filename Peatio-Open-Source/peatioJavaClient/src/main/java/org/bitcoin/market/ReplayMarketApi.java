@@ -0,0 +1,402 @@
+package org.bitcoin.market;
+
+import com.alibaba.fastjson.JSONObject;
+import org.bitcoin.common.Decimal;
+import org.bitcoin.common.FiatConverter;
+import org.bitcoin.market.bean.*;
+import org.bitcoin.market.kline.KlineAggregator;
+import org.bitcoin.market.kline.KlineSeries;
+import org.bitcoin.market.record.MarketDataReader;
+import org.bitcoin.market.utils.MarketUtils;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Plays a recording of {@link org.bitcoin.market.record.MarketRecorder} back through the market data calls,
+ * so a strategy written against AbstractMarketApi runs over it unchanged, e.g. after
+ * {@code MarketApiFactory.getInstance().register(new ReplayMarketApi(Market.PeatioCNY, directory))}.
+ * <p/>
+ * At speed 0, the default, the recording is stepped through as fast as it is asked for: every book or ticker
+ * call moves on to the next record of that kind and pair. At a speed above 0 the replay follows the wall clock
+ * scaled by it, 1 being real time, and a call returns the latest record of the pair at the replay time.
+ * Either way the records passed on the way are applied, so every pair stays current.
+ * <p/>
+ * Klines are built from the tickers in the market's currency, 1 minute bars aggregated into the longer ones.
+ * A recording has no traded volume, so volumes are 0. Trading and account calls are not supported,
+ * async calls complete before they return. Once the recording is exhausted the market data calls throw
+ * IllegalStateException, see {@link #isFinished()}.
+ */
+public class ReplayMarketApi extends AbstractMarketApi implements Closeable {
+    private static final int KLINE_LIMIT = 100;
+
+    private final MarketDataReader reader;
+    private final Map<SymbolPair, OrderBook> books = new HashMap<SymbolPair, OrderBook>();
+    private final Map<SymbolPair, Long> tickers = new HashMap<SymbolPair, Long>();
+    private final Map<Symbol, KlineSeries> minutes = new HashMap<Symbol, KlineSeries>();
+    private final Map<Symbol, Kline> openBars = new HashMap<Symbol, Kline>();
+    private final Map<String, KlineAggregator> aggregators = new HashMap<String, KlineAggregator>();
+
+    private double speed;
+    private boolean pending;
+    private boolean finished;
+    private long time;
+    private long replayStart;
+    private long wallStart;
+
+    /**
+     * Replay the segments recorded in directory with the market name as prefix.
+     */
+    public ReplayMarketApi(Market market, File directory) throws IOException {
+        this(market, new MarketDataReader(directory, market.name()));
+    }
+
+    public ReplayMarketApi(Market market, MarketDataReader reader) {
+        super(market.isUsd() ? Currency.USD : Currency.CNY, market);
+        this.reader = reader;
+    }
+
+    public synchronized double getSpeed() {
+        return speed;
+    }
+
+    /**
+     * 0 to step through the records as fast as they are asked for, otherwise how many times faster
+     * than real time the replay runs, from the current replay time on.
+     */
+    public synchronized void setSpeed(double speed) {
+        if (speed < 0) {
+            throw new IllegalArgumentException("speed out of range: " + speed);
+        }
+        this.speed = speed;
+        restartClock();
+    }
+
+    /**
+     * Timestamp of the latest record applied, in milliseconds.
+     */
+    public synchronized long getTime() {
+        return time;
+    }
+
+    public synchronized boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * Continue the replay from timestamp. Books, tickers and klines are rebuilt from the start of the segment
+     * holding timestamp, records before that are not seen.
+     */
+    public synchronized void seek(long timestamp) throws IOException {
+        books.clear();
+        tickers.clear();
+        minutes.clear();
+        openBars.clear();
+        aggregators.clear();
+        reader.seekSegment(timestamp);
+        pending = false;
+        finished = false;
+        time = 0L;
+        while (peek() && reader.getTimestamp() < timestamp) {
+            apply();
+        }
+        time = Math.max(time, timestamp);
+        restartClock();
+    }
+
+    @Override
+    public synchronized OrderBook getOrderBook(SymbolPair symbolPair, OrderBook book) {
+        book.copyFrom((OrderBook) advance(MarketDataReader.BOOK, symbolPair));
+        return book;
+    }
+
+    @Override
+    protected void update_order_book(SymbolPair symbolPair, OrderBook book) {
+        getOrderBook(symbolPair, book);
+    }
+
+    @Override
+    public JSONObject update_depth(SymbolPair symbolPair) {
+        return getOrderBook(symbolPair, new OrderBook(symbolPair)).toJSON();
+    }
+
+    @Override
+    public synchronized Double ticker(SymbolPair symbolPair) {
+        Long price = (Long) advance(MarketDataReader.TICKER, symbolPair);
+        return Decimal.toDouble(price, OrderBook.PRICE_SCALE);
+    }
+
+    @Override
+    public List<Kline> getKline1Min(Symbol symbol) throws IOException {
+        return getKlines(symbol, 1);
+    }
+
+    @Override
+    public List<Kline> getKline5Min(Symbol symbol) throws IOException {
+        return getKlines(symbol, 5);
+    }
+
+    @Override
+    public List<Kline> getKlineDate(Symbol symbol) throws IOException {
+        return getKlines(symbol, 1440);
+    }
+
+    /**
+     * The latest 100 bars of period minutes at the replay time, the last one still open.
+     */
+    public synchronized List<Kline> getKlines(Symbol symbol, int period) throws IOException {
+        if (speed > 0) {
+            catchUp();
+        }
+        KlineSeries series = minutes.get(symbol);
+        if (series == null) {
+            return Collections.emptyList();
+        }
+        Kline open = openBars.get(symbol);
+        if (open != null) {
+            series.merge(Collections.singletonList(open));
+        }
+        if (period == 1) {
+            return series.getLast(KLINE_LIMIT);
+        }
+        String key = symbol.name() + "_" + period;
+        KlineAggregator aggregator = aggregators.get(key);
+        if (aggregator == null) {
+            aggregator = new KlineAggregator(series, period);
+            aggregators.put(key, aggregator);
+        }
+        aggregator.update();
+        return aggregator.getSeries().getLast(KLINE_LIMIT);
+    }
+
+    @Override
+    public CompletableFuture<OrderBook> getOrderBookAsync(SymbolPair symbolPair, OrderBook book) {
+        return complete(() -> getOrderBook(symbolPair, book));
+    }
+
+    @Override
+    public CompletableFuture<JSONObject> updateDepthAsync(SymbolPair symbolPair) {
+        return complete(() -> update_depth(symbolPair));
+    }
+
+    @Override
+    public CompletableFuture<Double> tickerAsync(SymbolPair symbolPair) {
+        return complete(() -> ticker(symbolPair));
+    }
+
+    @Override
+    public CompletableFuture<List<Kline>> getKline1MinAsync(Symbol symbol) {
+        return complete(() -> getKline1Min(symbol));
+    }
+
+    @Override
+    public CompletableFuture<List<Kline>> getKline5MinAsync(Symbol symbol) {
+        return complete(() -> getKline5Min(symbol));
+    }
+
+    @Override
+    public CompletableFuture<List<Kline>> getKlineDateAsync(Symbol symbol) {
+        return complete(() -> getKlineDate(symbol));
+    }
+
+    @Override
+    public Long buy(AppAccount appAccount, double amount, double price, SymbolPair symbolPair, OrderType orderType) {
+        throw unsupported("buy");
+    }
+
+    @Override
+    public Long sell(AppAccount appAccount, double amount, double price, SymbolPair symbolPair, OrderType orderType) {
+        throw unsupported("sell");
+    }
+
+    @Override
+    public void cancel(AppAccount appAccount, Long orderId, SymbolPair symbolPair) {
+        throw unsupported("cancel");
+    }
+
+    @Override
+    public Asset getInfo(AppAccount appAccount) {
+        throw unsupported("getInfo");
+    }
+
+    @Override
+    public BitOrder getOrder(AppAccount appAccount, Long orderId, SymbolPair symbolPair) {
+        throw unsupported("getOrder");
+    }
+
+    @Override
+    public List<BitOrder> getRunningOrders(AppAccount appAccount) {
+        throw unsupported("getRunningOrders");
+    }
+
+    @Override
+    public Double getTransactionFee() {
+        return 0.0;
+    }
+
+    @Override
+    public Double getWithdrawalFee() {
+        return 0.0;
+    }
+
+    @Override
+    public Double getDepositFee() {
+        return 0.0;
+    }
+
+    @Override
+    public synchronized void close() {
+        reader.close();
+        finished = true;
+    }
+
+    /**
+     * At speed 0 apply records up to the next one of type and symbolPair, otherwise up to the replay time.
+     *
+     * @return the book or ticker of symbolPair
+     */
+    private Object advance(int type, SymbolPair symbolPair) {
+        boolean found;
+        try {
+            if (speed > 0) {
+                catchUp();
+                found = true;
+            } else {
+                found = step(type, symbolPair);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("can't replay " + getMarket(), e);
+        }
+        Object current = type == MarketDataReader.BOOK ? books.get(symbolPair) : tickers.get(symbolPair);
+        if (!found || current == null) {
+            throw new IllegalStateException("replay of " + getMarket() + " has no more " + symbolPair
+                    + (type == MarketDataReader.BOOK ? " books" : " tickers"));
+        }
+        return current;
+    }
+
+    private boolean step(int type, SymbolPair symbolPair) throws IOException {
+        while (peek()) {
+            boolean match = reader.getType() == type && symbolPair.equals(reader.getSymbolPair());
+            apply();
+            if (match) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void catchUp() throws IOException {
+        long now = System.currentTimeMillis();
+        if (replayStart == 0L) {
+            // nothing replayed yet, the clock starts at the first record
+            if (!peek()) {
+                return;
+            }
+            replayStart = reader.getTimestamp();
+            wallStart = now;
+        }
+        long target = replayStart + (long) ((now - wallStart) * speed);
+        while (peek() && reader.getTimestamp() <= target) {
+            apply();
+        }
+        time = Math.max(time, target);
+    }
+
+    private void restartClock() {
+        wallStart = System.currentTimeMillis();
+        replayStart = time;
+    }
+
+    /**
+     * Make the next record current, without applying it.
+     *
+     * @return false at the end of the recording
+     */
+    private boolean peek() throws IOException {
+        if (!pending && !finished) {
+            pending = reader.next();
+            finished = !pending;
+        }
+        return pending;
+    }
+
+    private void apply() {
+        pending = false;
+        SymbolPair symbolPair = reader.getSymbolPair();
+        time = Math.max(time, reader.getTimestamp());
+        if (reader.getType() == MarketDataReader.BOOK) {
+            OrderBook book = books.get(symbolPair);
+            if (book == null) {
+                book = new OrderBook(symbolPair);
+                books.put(symbolPair, book);
+            }
+            reader.readBook(book);
+        } else if (reader.getType() == MarketDataReader.TICKER) {
+            long price = reader.getPriceUnscaled();
+            tickers.put(symbolPair, price);
+            addTick(symbolPair.getFirst(), reader.getTimestamp(), price);
+        }
+    }
+
+    private void addTick(Symbol symbol, long timestamp, long usd) {
+        long price = getMarket().isUsd() ? usd : FiatConverter.toCNY(usd, OrderBook.PRICE_SCALE);
+        long minute = timestamp / 60000 * 60;
+        Kline bar = openBars.get(symbol);
+        if (bar != null && bar.getTimestamp() == minute) {
+            bar.setHighUnscaled(Math.max(bar.getHighUnscaled(), price));
+            bar.setLowUnscaled(Math.min(bar.getLowUnscaled(), price));
+            bar.setCloseUnscaled(price);
+            bar.setVwap(MarketUtils.avgPrice(bar));
+            return;
+        }
+        KlineSeries series = minutes.get(symbol);
+        if (series == null) {
+            series = new KlineSeries(getMarket(), symbol, 1);
+            minutes.put(symbol, series);
+        }
+        try {
+            if (bar != null) {
+                series.merge(Collections.singletonList(bar));
+            }
+        } catch (IOException e) {
+            // in memory only
+            throw new IllegalStateException(e);
+        }
+        bar = new Kline();
+        bar.setMarket(getMarket());
+        bar.setSymbol(symbol);
+        bar.setTimestamp(minute);
+        bar.setOpenUnscaled(price);
+        bar.setHighUnscaled(price);
+        bar.setLowUnscaled(price);
+        bar.setCloseUnscaled(price);
+        bar.setVolumeUnscaled(0L);
+        bar.setVwapUnscaled(price);
+        openBars.put(symbol, bar);
+    }
+
+    private static <T> CompletableFuture<T> complete(ReplayCall<T> call) {
+        CompletableFuture<T> future = new CompletableFuture<T>();
+        try {
+            future.complete(call.call());
+        } catch (Exception e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    private UnsupportedOperationException unsupported(String call) {
+        return new UnsupportedOperationException(call + " is not supported by a replay of " + getMarket());
+    }
+
+    private interface ReplayCall<T> {
+        T call() throws Exception;
+    }
+}
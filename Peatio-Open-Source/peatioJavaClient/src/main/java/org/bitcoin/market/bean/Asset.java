@@ -1,22 +1,22 @@
 package org.bitcoin.market.bean;
 
+import org.bitcoin.common.Decimal;
 
 /**
  * Created by lichang on 14-2-26.
+ * <p/>
+ * Balances are kept unscaled at the scale of their symbol, in two arrays indexed by the symbol's ordinal, so
+ * every currency of the market fits without a field of its own.
  */
 @SuppressWarnings("serial")
 public class Asset {
+    private static final Symbol[] SYMBOLS = Symbol.values();
+
     private Long id;
     private Long appAccountId;
     private Market market;
-    private Double availableBtc = 0.0;
-    private Double frozenBtc = 0.0;
-    private Double availableLtc = 0.0;
-    private Double frozenLtc = 0.0;
-    private Double availableUsd = 0.0;
-    private Double frozenUsd = 0.0;
-    private Double availableCny = 0.0;
-    private Double frozenCny = 0.0;
+    private final long[] available = new long[SYMBOLS.length];
+    private final long[] frozen = new long[SYMBOLS.length];
 
 
     public Long getId() {
@@ -36,68 +36,112 @@ public class Asset {
         this.market = market;
     }
 
+    /**
+     * Available balance of symbol, 0 when the market didn't report it.
+     */
+    public double available(Symbol symbol) {
+        return Decimal.toDouble(available[symbol.ordinal()], symbol.getScale());
+    }
+
+    /**
+     * Frozen balance of symbol, e.g. locked by running orders, 0 when the market didn't report it.
+     */
+    public double frozen(Symbol symbol) {
+        return Decimal.toDouble(frozen[symbol.ordinal()], symbol.getScale());
+    }
+
+    public void setAvailable(Symbol symbol, Double balance) {
+        available[symbol.ordinal()] = round(balance, symbol);
+    }
+
+    public void setFrozen(Symbol symbol, Double balance) {
+        frozen[symbol.ordinal()] = round(balance, symbol);
+    }
+
+    /**
+     * Available balance of symbol, unscaled at its scale.
+     */
+    public long getAvailableUnscaled(Symbol symbol) {
+        return available[symbol.ordinal()];
+    }
+
+    public void setAvailableUnscaled(Symbol symbol, long balance) {
+        available[symbol.ordinal()] = balance;
+    }
+
+    /**
+     * Frozen balance of symbol, unscaled at its scale.
+     */
+    public long getFrozenUnscaled(Symbol symbol) {
+        return frozen[symbol.ordinal()];
+    }
+
+    public void setFrozenUnscaled(Symbol symbol, long balance) {
+        frozen[symbol.ordinal()] = balance;
+    }
+
     public Double getAvailableBtc() {
-        return availableBtc == null ? 0.0 : availableBtc;
+        return available(Symbol.btc);
     }
 
     public void setAvailableBtc(Double availableBtc) {
-        this.availableBtc = availableBtc;
+        setAvailable(Symbol.btc, availableBtc);
     }
 
     public Double getFrozenBtc() {
-        return frozenBtc == null ? 0.0 : frozenBtc;
+        return frozen(Symbol.btc);
     }
 
     public void setFrozenBtc(Double frozenBtc) {
-        this.frozenBtc = frozenBtc;
+        setFrozen(Symbol.btc, frozenBtc);
     }
 
     public Double getAvailableCny() {
-        return availableCny;
+        return available(Symbol.cny);
     }
 
     public void setAvailableCny(Double availableCny) {
-        this.availableCny = availableCny;
+        setAvailable(Symbol.cny, availableCny);
     }
 
     public Double getFrozenCny() {
-        return frozenCny;
+        return frozen(Symbol.cny);
     }
 
     public void setFrozenCny(Double frozenCny) {
-        this.frozenCny = frozenCny;
+        setFrozen(Symbol.cny, frozenCny);
     }
 
     public Double getAvailableUsd() {
-        return availableUsd;
+        return available(Symbol.usd);
     }
 
     public void setAvailableUsd(Double availableUsd) {
-        this.availableUsd = availableUsd;
+        setAvailable(Symbol.usd, availableUsd);
     }
 
     public Double getFrozenUsd() {
-        return frozenUsd;
+        return frozen(Symbol.usd);
     }
 
     public void setFrozenUsd(Double frozenUsd) {
-        this.frozenUsd = frozenUsd;
+        setFrozen(Symbol.usd, frozenUsd);
     }
 
     public Double getAvailableLtc() {
-        return availableLtc == null ? 0.0 : availableLtc;
+        return available(Symbol.ltc);
     }
 
     public void setAvailableLtc(Double availableLtc) {
-        this.availableLtc = availableLtc;
+        setAvailable(Symbol.ltc, availableLtc);
     }
 
     public Double getFrozenLtc() {
-        return frozenLtc == null ? 0.0 : frozenLtc;
+        return frozen(Symbol.ltc);
     }
 
     public void setFrozenLtc(Double frozenLtc) {
-        this.frozenLtc = frozenLtc;
+        setFrozen(Symbol.ltc, frozenLtc);
     }
 
     public Long getAppAccountId() {
@@ -109,20 +153,22 @@ public class Asset {
     }
 
 
+    private static long round(Double value, Symbol symbol) {
+        return value == null ? 0L : Decimal.round(value, symbol.getScale());
+    }
+
     @Override
     public String toString() {
-        return "Asset{" +
-                "id=" + id +
-                ", appAccountId=" + appAccountId +
-                ", market=" + market +
-                ", availableBtc=" + availableBtc +
-                ", frozenBtc=" + frozenBtc +
-                ", availableLtc=" + availableLtc +
-                ", frozenLtc=" + frozenLtc +
-                ", availableUsd=" + availableUsd +
-                ", frozenUsd=" + frozenUsd +
-                ", availableCny=" + availableCny +
-                ", frozenCny=" + frozenCny +
-                '}';
+        StringBuilder builder = new StringBuilder("Asset{")
+                .append("id=").append(id)
+                .append(", appAccountId=").append(appAccountId)
+                .append(", market=").append(market);
+        for (Symbol symbol : SYMBOLS) {
+            builder.append(", available.").append(symbol.name()).append('=');
+            Decimal.appendTo(builder, available[symbol.ordinal()], symbol.getScale());
+            builder.append(", frozen.").append(symbol.name()).append('=');
+            Decimal.appendTo(builder, frozen[symbol.ordinal()], symbol.getScale());
+        }
+        return builder.append('}').toString();
     }
 }
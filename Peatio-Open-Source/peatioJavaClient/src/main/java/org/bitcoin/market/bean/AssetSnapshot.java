@@ -0,0 +1,149 @@
+package org.bitcoin.market.bean;
+
+import org.bitcoin.common.Decimal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Balances of many accounts on one market, kept by column: for each symbol one array of available and one of
+ * frozen balances, a row per account, unscaled at the scale of the symbol. A total over every account reads a
+ * single array.
+ * <p/>
+ * Accounts whose balances couldn't be fetched have no row, {@link #getFailures()} tells why.
+ */
+public class AssetSnapshot {
+    private final Market market;
+    private final long timestamp;
+    private final List<AppAccount> appAccounts;
+    private final Map<AppAccount, Integer> rows;
+    private final long[][] available;
+    private final long[][] frozen;
+    private final Map<AppAccount, Throwable> failures;
+
+    /**
+     * @param appAccounts the accounts fetched, assets[i] holds the balances of appAccounts[i]
+     * @param failures    the accounts that failed, in the order they were asked for
+     */
+    public AssetSnapshot(Market market, List<AppAccount> appAccounts, List<Asset> assets, Map<AppAccount, Throwable> failures) {
+        if (appAccounts.size() != assets.size()) {
+            throw new IllegalArgumentException("appAccounts:" + appAccounts.size() + " assets:" + assets.size());
+        }
+        this.market = market;
+        this.timestamp = System.currentTimeMillis();
+        this.appAccounts = Collections.unmodifiableList(new ArrayList<AppAccount>(appAccounts));
+        this.rows = new HashMap<AppAccount, Integer>(appAccounts.size() * 2);
+        Symbol[] symbols = Symbol.values();
+        this.available = new long[symbols.length][appAccounts.size()];
+        this.frozen = new long[symbols.length][appAccounts.size()];
+        for (int row = 0; row < assets.size(); row++) {
+            rows.put(appAccounts.get(row), row);
+            Asset asset = assets.get(row);
+            for (Symbol symbol : symbols) {
+                available[symbol.ordinal()][row] = asset.getAvailableUnscaled(symbol);
+                frozen[symbol.ordinal()][row] = asset.getFrozenUnscaled(symbol);
+            }
+        }
+        this.failures = Collections.unmodifiableMap(new LinkedHashMap<AppAccount, Throwable>(failures));
+    }
+
+    public Market getMarket() {
+        return market;
+    }
+
+    /**
+     * When the snapshot was completed, in milliseconds.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Number of rows, the accounts fetched.
+     */
+    public int size() {
+        return appAccounts.size();
+    }
+
+    public AppAccount getAppAccount(int row) {
+        return appAccounts.get(row);
+    }
+
+    public List<AppAccount> getAppAccounts() {
+        return appAccounts;
+    }
+
+    /**
+     * @return the row of appAccount, -1 when it failed or wasn't asked for
+     */
+    public int getRow(AppAccount appAccount) {
+        Integer row = rows.get(appAccount);
+        return row == null ? -1 : row;
+    }
+
+    public double getAvailable(int row, Symbol symbol) {
+        return Decimal.toDouble(available[symbol.ordinal()][row], symbol.getScale());
+    }
+
+    public long getAvailableUnscaled(int row, Symbol symbol) {
+        return available[symbol.ordinal()][row];
+    }
+
+    public double getFrozen(int row, Symbol symbol) {
+        return Decimal.toDouble(frozen[symbol.ordinal()][row], symbol.getScale());
+    }
+
+    public long getFrozenUnscaled(int row, Symbol symbol) {
+        return frozen[symbol.ordinal()][row];
+    }
+
+    /**
+     * Available balance of symbol summed over every row.
+     */
+    public double getTotalAvailable(Symbol symbol) {
+        return Decimal.toDouble(sum(available[symbol.ordinal()]), symbol.getScale());
+    }
+
+    /**
+     * Frozen balance of symbol summed over every row.
+     */
+    public double getTotalFrozen(Symbol symbol) {
+        return Decimal.toDouble(sum(frozen[symbol.ordinal()]), symbol.getScale());
+    }
+
+    /**
+     * The accounts left out and the error of each.
+     */
+    public Map<AppAccount, Throwable> getFailures() {
+        return failures;
+    }
+
+    /**
+     * Whether every account asked for has a row.
+     */
+    public boolean isComplete() {
+        return failures.isEmpty();
+    }
+
+    private static long sum(long[] column) {
+        long sum = 0L;
+        for (long value : column) {
+            sum += value;
+        }
+        return sum;
+    }
+
+    @Override
+    public String toString() {
+        return "AssetSnapshot{" +
+                "market=" + market +
+                ", timestamp=" + timestamp +
+                ", rows=" + appAccounts.size() +
+                ", failures=" + failures.size() +
+                '}';
+    }
+}
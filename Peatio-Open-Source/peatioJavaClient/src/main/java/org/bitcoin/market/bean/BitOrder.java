@@ -1,7 +1,7 @@
 package org.bitcoin.market.bean;
 
 
-import org.bitcoin.common.DoubleUtils;
+import org.bitcoin.common.Decimal;
 
 import java.util.Date;
 
@@ -28,6 +28,11 @@ public class BitOrder {
 
     public static long ERROR_ORDER_ID = -1L;
 
+    /**
+     * Decimals kept for prices, amounts and fees, they are stored unscaled at this scale.
+     */
+    public static final int SCALE = 4;
+
     public static BitOrder getErrorOrder(String info) {
         BitOrder bitOrder = new BitOrder();
         bitOrder.setOrderId(ERROR_ORDER_ID);
@@ -39,22 +44,22 @@ public class BitOrder {
 
     private String market;
     private Long orderId;
-    private Double orderPrice = 0.0;
+    private long orderPrice;
 
     private Long appAccountId;
 
-    private Double orderCnyPrice = 0.0;
+    private long orderCnyPrice;
 
-    private Double orderAmount = 0.0;
+    private long orderAmount;
 
     private Long timestamp;
     private Date datetime;
     private Date createTime;
 
-    private Double fee = 0.0;
-    private Double processedPrice = 0.0;
-    private Double processedCnyPrice = 0.0;
-    private Double processedAmount = 0.0;
+    private long fee;
+    private long processedPrice;
+    private long processedCnyPrice;
+    private long processedAmount;
     private OrderSide orderSide;
     private OrderStatus status = OrderStatus.none;
     private String info;
@@ -67,6 +72,8 @@ public class BitOrder {
 
     private Symbol symbol = Symbol.btc;
 
+    private SymbolPair symbolPair;
+
 
     public Long getId() {
         return id;
@@ -93,64 +100,109 @@ public class BitOrder {
     }
 
     public Double getOrderPrice() {
+        return Decimal.toDouble(orderPrice, SCALE);
+    }
+
+    public long getOrderPriceUnscaled() {
         return orderPrice;
     }
 
+    public void setOrderPriceUnscaled(long orderPrice) {
+        this.orderPrice = orderPrice;
+    }
+
     public void setOrderPrice(Double orderPrice) {
-        this.orderPrice = DoubleUtils.toFourDecimal(orderPrice);
+        this.orderPrice = round(orderPrice);
     }
 
     public Double getOrderCnyPrice() {
+        return Decimal.toDouble(orderCnyPrice, SCALE);
+    }
+
+    public long getOrderCnyPriceUnscaled() {
         return orderCnyPrice;
     }
 
+    public void setOrderCnyPriceUnscaled(long orderCnyPrice) {
+        this.orderCnyPrice = orderCnyPrice;
+    }
+
     public void setOrderCnyPrice(Double orderCnyPrice) {
-        this.orderCnyPrice = DoubleUtils.toFourDecimal(orderCnyPrice);
+        this.orderCnyPrice = round(orderCnyPrice);
     }
 
     public Double getProcessedCnyPrice() {
+        return Decimal.toDouble(processedCnyPrice, SCALE);
+    }
+
+    public long getProcessedCnyPriceUnscaled() {
         return processedCnyPrice;
     }
 
+    public void setProcessedCnyPriceUnscaled(long processedCnyPrice) {
+        this.processedCnyPrice = processedCnyPrice;
+    }
+
     public void setProcessedCnyPrice(Double processedCnyPrice) {
-        this.processedCnyPrice = DoubleUtils.toFourDecimal(processedCnyPrice);
+        this.processedCnyPrice = round(processedCnyPrice);
 
     }
 
     public Double getOrderAmount() {
+        return Decimal.toDouble(orderAmount, SCALE);
+    }
+
+    public long getOrderAmountUnscaled() {
         return orderAmount;
     }
 
+    public void setOrderAmountUnscaled(long orderAmount) {
+        this.orderAmount = orderAmount;
+    }
+
     public void setOrderAmount(Double order_amount) {
-        this.orderAmount = DoubleUtils.toFourDecimal(order_amount);
+        this.orderAmount = round(order_amount);
     }
 
     public Double getFee() {
-        if (fee == null) {
-            return 0.0;
-        }
-        return fee;
+        return Decimal.toDouble(fee, SCALE);
     }
 
     public void setFee(Double fee) {
 
-        this.fee = DoubleUtils.toFourDecimal(fee);
+        this.fee = round(fee);
     }
 
     public Double getProcessedPrice() {
+        return Decimal.toDouble(processedPrice, SCALE);
+    }
+
+    public long getProcessedPriceUnscaled() {
         return processedPrice;
     }
 
+    public void setProcessedPriceUnscaled(long processedPrice) {
+        this.processedPrice = processedPrice;
+    }
+
     public void setProcessedPrice(Double processedPrice) {
-        this.processedPrice = DoubleUtils.toFourDecimal(processedPrice);
+        this.processedPrice = round(processedPrice);
     }
 
     public Double getProcessedAmount() {
+        return Decimal.toDouble(processedAmount, SCALE);
+    }
+
+    public long getProcessedAmountUnscaled() {
         return processedAmount;
     }
 
+    public void setProcessedAmountUnscaled(long processedAmount) {
+        this.processedAmount = processedAmount;
+    }
+
     public void setProcessedAmount(Double processedAmount) {
-        this.processedAmount = DoubleUtils.toFourDecimal(processedAmount);
+        this.processedAmount = round(processedAmount);
 
     }
 
@@ -237,6 +289,17 @@ public class BitOrder {
         this.symbol = symbol;
     }
 
+    /**
+     * The pair the order was listed or placed under, null when the market didn't tell.
+     */
+    public SymbolPair getSymbolPair() {
+        return symbolPair;
+    }
+
+    public void setSymbolPair(SymbolPair symbolPair) {
+        this.symbolPair = symbolPair;
+    }
+
     public Long getTimeoutTime() {
         return timeoutTime;
     }
@@ -245,29 +308,34 @@ public class BitOrder {
         this.timeoutTime = timeoutTime;
     }
 
+    private static long round(Double value) {
+        return value == null ? 0L : Decimal.round(value, SCALE);
+    }
+
     @Override
     public String toString() {
         return "BitOrder{" +
                 "id=" + id +
                 ", market='" + market + '\'' +
                 ", orderId=" + orderId +
-                ", orderPrice=" + orderPrice +
+                ", orderPrice=" + Decimal.toString(orderPrice, SCALE) +
                 ", appAccountId=" + appAccountId +
-                ", orderCnyPrice=" + orderCnyPrice +
-                ", orderAmount=" + orderAmount +
+                ", orderCnyPrice=" + Decimal.toString(orderCnyPrice, SCALE) +
+                ", orderAmount=" + Decimal.toString(orderAmount, SCALE) +
                 ", timestamp=" + timestamp +
                 ", datetime=" + datetime +
                 ", createTime=" + createTime +
                 ", timeoutTime=" + timeoutTime +
-                ", fee=" + fee +
-                ", processedPrice=" + processedPrice +
-                ", processedCnyPrice=" + processedCnyPrice +
-                ", processedAmount=" + processedAmount +
+                ", fee=" + Decimal.toString(fee, SCALE) +
+                ", processedPrice=" + Decimal.toString(processedPrice, SCALE) +
+                ", processedCnyPrice=" + Decimal.toString(processedCnyPrice, SCALE) +
+                ", processedAmount=" + Decimal.toString(processedAmount, SCALE) +
                 ", orderSide=" + orderSide +
                 ", status=" + status +
                 ", info='" + info + '\'' +
                 ", orderType=" + orderType +
                 ", enable=" + enable +
+                ", symbolPair=" + symbolPair +
                 '}';
     }
 
@@ -1,23 +1,33 @@
 package org.bitcoin.market.bean;
 
 
+import org.bitcoin.common.Decimal;
+
 import java.util.Date;
 
 /**
  * Created by lichang on 14-2-24.
+ * <p/>
+ * Prices are kept unscaled at PRICE_SCALE and volume at VOLUME_SCALE. A field never set reads as null,
+ * or as Long.MIN_VALUE through its unscaled getter.
  */
 public class Kline {
+    public static final int PRICE_SCALE = 4;
+    public static final int VOLUME_SCALE = 8;
+
+    private static final long UNSET = Long.MIN_VALUE;
+
     private Date datetime;
     private Market market;
 
     private Long timestamp;
-    private Double open;
-    private Double high;
-    private Double low;
-    private Double close;
-    private Double volume;
+    private long open = UNSET;
+    private long high = UNSET;
+    private long low = UNSET;
+    private long close = UNSET;
+    private long volume = UNSET;
     private Symbol symbol = Symbol.btc;
-    private Double vwap;
+    private long vwap = UNSET;
 
     public Date getDatetime() {
         return datetime;
@@ -44,42 +54,82 @@ public class Kline {
     }
 
     public Double getOpen() {
-        return open;
+        return open == UNSET ? null : Decimal.toDouble(open, PRICE_SCALE);
     }
 
     public void setOpen(Double open) {
+        this.open = open == null ? UNSET : Decimal.round(open, PRICE_SCALE);
+    }
+
+    public long getOpenUnscaled() {
+        return open;
+    }
+
+    public void setOpenUnscaled(long open) {
         this.open = open;
     }
 
     public Double getHigh() {
-        return high;
+        return high == UNSET ? null : Decimal.toDouble(high, PRICE_SCALE);
     }
 
     public void setHigh(Double high) {
+        this.high = high == null ? UNSET : Decimal.round(high, PRICE_SCALE);
+    }
+
+    public long getHighUnscaled() {
+        return high;
+    }
+
+    public void setHighUnscaled(long high) {
         this.high = high;
     }
 
     public Double getLow() {
-        return low;
+        return low == UNSET ? null : Decimal.toDouble(low, PRICE_SCALE);
     }
 
     public void setLow(Double low) {
+        this.low = low == null ? UNSET : Decimal.round(low, PRICE_SCALE);
+    }
+
+    public long getLowUnscaled() {
+        return low;
+    }
+
+    public void setLowUnscaled(long low) {
         this.low = low;
     }
 
     public Double getClose() {
-        return close;
+        return close == UNSET ? null : Decimal.toDouble(close, PRICE_SCALE);
     }
 
     public void setClose(Double close) {
+        this.close = close == null ? UNSET : Decimal.round(close, PRICE_SCALE);
+    }
+
+    public long getCloseUnscaled() {
+        return close;
+    }
+
+    public void setCloseUnscaled(long close) {
         this.close = close;
     }
 
     public Double getVolume() {
-        return volume;
+        return volume == UNSET ? null : Decimal.toDouble(volume, VOLUME_SCALE);
     }
 
     public void setVolume(Double volume) {
+        this.volume = volume == null ? UNSET : Decimal.round(volume, VOLUME_SCALE);
+    }
+
+    public long getVolumeUnscaled() {
+        return volume;
+    }
+
+    public void setVolumeUnscaled(long volume) {
         this.volume = volume;
     }
 
@@ -91,10 +141,18 @@ public class Kline {
     }
 
     public Double getVwap() {
-        return vwap;
+        return vwap == UNSET ? null : Decimal.toDouble(vwap, PRICE_SCALE);
     }
 
     public void setVwap(Double vwap) {
+        this.vwap = vwap == null ? UNSET : Decimal.round(vwap, PRICE_SCALE);
+    }
+
+    public long getVwapUnscaled() {
+        return vwap;
+    }
+
+    public void setVwapUnscaled(long vwap) {
         this.vwap = vwap;
     }
 }
@@ -0,0 +1,352 @@
+package org.bitcoin.market.bean;
+
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import org.bitcoin.common.Decimal;
+
+import java.util.Arrays;
+
+/**
+ * Primitive order book: asks sorted by price ascending, bids by price descending,
+ * each side held in parallel price/amount arrays of unscaled fixed point values,
+ * prices at PRICE_SCALE and amounts at AMOUNT_SCALE.
+ * <p/>
+ * A book is meant to be reused across refreshes, call {@link #clear()} and refill it
+ * instead of allocating a new one. It is not thread safe.
+ */
+public class OrderBook {
+    public static final int PRICE_SCALE = 4;
+    public static final int AMOUNT_SCALE = 8;
+
+    private static final int DEFAULT_CAPACITY = 128;
+
+    private SymbolPair symbolPair;
+    private long timestamp;
+
+    private long[] askPrices;
+    private long[] askAmounts;
+    private int askCount;
+
+    private long[] bidPrices;
+    private long[] bidAmounts;
+    private int bidCount;
+
+    public OrderBook() {
+        this(null, DEFAULT_CAPACITY);
+    }
+
+    public OrderBook(SymbolPair symbolPair) {
+        this(symbolPair, DEFAULT_CAPACITY);
+    }
+
+    public OrderBook(SymbolPair symbolPair, int capacity) {
+        this.symbolPair = symbolPair;
+        this.askPrices = new long[capacity];
+        this.askAmounts = new long[capacity];
+        this.bidPrices = new long[capacity];
+        this.bidAmounts = new long[capacity];
+    }
+
+    public OrderBook(OrderBook other) {
+        this(other.symbolPair, Math.max(Math.max(other.askCount, other.bidCount), 1));
+        copyFrom(other);
+    }
+
+    public SymbolPair getSymbolPair() {
+        return symbolPair;
+    }
+
+    public void setSymbolPair(SymbolPair symbolPair) {
+        this.symbolPair = symbolPair;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    public void clear() {
+        askCount = 0;
+        bidCount = 0;
+        timestamp = 0L;
+    }
+
+    public int getAskCount() {
+        return askCount;
+    }
+
+    public int getBidCount() {
+        return bidCount;
+    }
+
+    public double getAskPrice(int i) {
+        return Decimal.toDouble(askPrices[i], PRICE_SCALE);
+    }
+
+    public double getAskAmount(int i) {
+        return Decimal.toDouble(askAmounts[i], AMOUNT_SCALE);
+    }
+
+    public double getBidPrice(int i) {
+        return Decimal.toDouble(bidPrices[i], PRICE_SCALE);
+    }
+
+    public double getBidAmount(int i) {
+        return Decimal.toDouble(bidAmounts[i], AMOUNT_SCALE);
+    }
+
+    public long getAskPriceUnscaled(int i) {
+        return askPrices[i];
+    }
+
+    public long getAskAmountUnscaled(int i) {
+        return askAmounts[i];
+    }
+
+    public long getBidPriceUnscaled(int i) {
+        return bidPrices[i];
+    }
+
+    public long getBidAmountUnscaled(int i) {
+        return bidAmounts[i];
+    }
+
+    public void setAskPrice(int i, double price) {
+        askPrices[i] = Decimal.round(price, PRICE_SCALE);
+    }
+
+    public void setBidPrice(int i, double price) {
+        bidPrices[i] = Decimal.round(price, PRICE_SCALE);
+    }
+
+    public void setAskPriceUnscaled(int i, long price) {
+        askPrices[i] = price;
+    }
+
+    public void setBidPriceUnscaled(int i, long price) {
+        bidPrices[i] = price;
+    }
+
+    public void addAsk(double price, double amount) {
+        addAskUnscaled(Decimal.round(price, PRICE_SCALE), Decimal.round(amount, AMOUNT_SCALE));
+    }
+
+    public void addBid(double price, double amount) {
+        addBidUnscaled(Decimal.round(price, PRICE_SCALE), Decimal.round(amount, AMOUNT_SCALE));
+    }
+
+    public void addAskUnscaled(long price, long amount) {
+        if (askCount == askPrices.length) {
+            askPrices = Arrays.copyOf(askPrices, askCount * 2);
+            askAmounts = Arrays.copyOf(askAmounts, askCount * 2);
+        }
+        askPrices[askCount] = price;
+        askAmounts[askCount] = amount;
+        askCount++;
+    }
+
+    public void addBidUnscaled(long price, long amount) {
+        if (bidCount == bidPrices.length) {
+            bidPrices = Arrays.copyOf(bidPrices, bidCount * 2);
+            bidAmounts = Arrays.copyOf(bidAmounts, bidCount * 2);
+        }
+        bidPrices[bidCount] = price;
+        bidAmounts[bidCount] = amount;
+        bidCount++;
+    }
+
+    /**
+     * Sort asks ascending and bids descending by price.
+     */
+    public void sort() {
+        sort(askPrices, askAmounts, 0, askCount - 1, false);
+        sort(bidPrices, bidAmounts, 0, bidCount - 1, true);
+    }
+
+    /**
+     * Combine the levels of a sorted book that have the same price into one, their amounts added up.
+     * Peatio's order_book lists single orders, so a price shows up once per order resting at it.
+     */
+    public void mergeLevels() {
+        askCount = merge(askPrices, askAmounts, askCount);
+        bidCount = merge(bidPrices, bidAmounts, bidCount);
+    }
+
+    /**
+     * Keep at most maxLen levels on each side.
+     */
+    public void truncate(int maxLen) {
+        if (askCount > maxLen) {
+            askCount = maxLen;
+        }
+        if (bidCount > maxLen) {
+            bidCount = maxLen;
+        }
+    }
+
+    /**
+     * Drop the n best asks.
+     */
+    public void removeFirstAsks(int n) {
+        if (n <= 0) {
+            return;
+        }
+        n = Math.min(n, askCount);
+        System.arraycopy(askPrices, n, askPrices, 0, askCount - n);
+        System.arraycopy(askAmounts, n, askAmounts, 0, askCount - n);
+        askCount -= n;
+    }
+
+    /**
+     * Drop the n best bids.
+     */
+    public void removeFirstBids(int n) {
+        if (n <= 0) {
+            return;
+        }
+        n = Math.min(n, bidCount);
+        System.arraycopy(bidPrices, n, bidPrices, 0, bidCount - n);
+        System.arraycopy(bidAmounts, n, bidAmounts, 0, bidCount - n);
+        bidCount -= n;
+    }
+
+    public void copyFrom(OrderBook other) {
+        if (askPrices.length < other.askCount) {
+            askPrices = new long[other.askCount];
+            askAmounts = new long[other.askCount];
+        }
+        if (bidPrices.length < other.bidCount) {
+            bidPrices = new long[other.bidCount];
+            bidAmounts = new long[other.bidCount];
+        }
+        System.arraycopy(other.askPrices, 0, askPrices, 0, other.askCount);
+        System.arraycopy(other.askAmounts, 0, askAmounts, 0, other.askCount);
+        System.arraycopy(other.bidPrices, 0, bidPrices, 0, other.bidCount);
+        System.arraycopy(other.bidAmounts, 0, bidAmounts, 0, other.bidCount);
+        askCount = other.askCount;
+        bidCount = other.bidCount;
+        symbolPair = other.symbolPair;
+        timestamp = other.timestamp;
+    }
+
+    /**
+     * Fill from the legacy depth format {'asks': [{'price': p, 'amount': a}], 'bids': [...]},
+     * levels are expected to be sorted already, repeated prices are merged.
+     */
+    public void fill(JSONObject depth) {
+        askCount = 0;
+        bidCount = 0;
+        JSONArray asks = depth.getJSONArray("asks");
+        for (int i = 0; i < asks.size(); i++) {
+            JSONObject order = asks.getJSONObject(i);
+            addAsk(order.getDoubleValue("price"), order.getDoubleValue("amount"));
+        }
+        JSONArray bids = depth.getJSONArray("bids");
+        for (int i = 0; i < bids.size(); i++) {
+            JSONObject order = bids.getJSONObject(i);
+            addBid(order.getDoubleValue("price"), order.getDoubleValue("amount"));
+        }
+        mergeLevels();
+    }
+
+    /**
+     * Convert to the legacy depth format returned by get_depth.
+     */
+    public JSONObject toJSON() {
+        JSONArray asks = new JSONArray(askCount);
+        for (int i = 0; i < askCount; i++) {
+            asks.add(level(getAskPrice(i), getAskAmount(i)));
+        }
+        JSONArray bids = new JSONArray(bidCount);
+        for (int i = 0; i < bidCount; i++) {
+            bids.add(level(getBidPrice(i), getBidAmount(i)));
+        }
+        JSONObject jsonObject = new JSONObject();
+        jsonObject.put("asks", asks);
+        jsonObject.put("bids", bids);
+        return jsonObject;
+    }
+
+    private static JSONObject level(double price, double amount) {
+        JSONObject jsonObject = new JSONObject();
+        jsonObject.put("price", price);
+        jsonObject.put("amount", amount);
+        return jsonObject;
+    }
+
+    private static void sort(long[] prices, long[] amounts, int lo, int hi, boolean reverse) {
+        while (hi - lo > 16) {
+            long pivot = prices[(lo + hi) >>> 1];
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (before(prices[i], pivot, reverse)) {
+                    i++;
+                }
+                while (before(pivot, prices[j], reverse)) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(prices, amounts, i++, j--);
+                }
+            }
+            if (j - lo < hi - i) {
+                sort(prices, amounts, lo, j, reverse);
+                lo = i;
+            } else {
+                sort(prices, amounts, i, hi, reverse);
+                hi = j;
+            }
+        }
+        for (int i = lo + 1; i <= hi; i++) {
+            for (int j = i; j > lo && before(prices[j], prices[j - 1], reverse); j--) {
+                swap(prices, amounts, j, j - 1);
+            }
+        }
+    }
+
+    private static int merge(long[] prices, long[] amounts, int count) {
+        if (count < 2) {
+            return count;
+        }
+        int last = 0;
+        for (int i = 1; i < count; i++) {
+            if (prices[i] == prices[last]) {
+                amounts[last] += amounts[i];
+            } else {
+                last++;
+                prices[last] = prices[i];
+                amounts[last] = amounts[i];
+            }
+        }
+        return last + 1;
+    }
+
+    private static boolean before(long a, long b, boolean reverse) {
+        return reverse ? a > b : a < b;
+    }
+
+    private static void swap(long[] prices, long[] amounts, int i, int j) {
+        long price = prices[i];
+        prices[i] = prices[j];
+        prices[j] = price;
+        long amount = amounts[i];
+        amounts[i] = amounts[j];
+        amounts[j] = amount;
+    }
+
+    @Override
+    public String toString() {
+        return "OrderBook{" +
+                "symbolPair=" + symbolPair +
+                ", timestamp=" + timestamp +
+                ", asks=" + askCount +
+                ", bids=" + bidCount +
+                (askCount > 0 ? ", bestAsk=" + Decimal.toString(askPrices[0], PRICE_SCALE) : "") +
+                (bidCount > 0 ? ", bestBid=" + Decimal.toString(bidPrices[0], PRICE_SCALE) : "") +
+                '}';
+    }
+}
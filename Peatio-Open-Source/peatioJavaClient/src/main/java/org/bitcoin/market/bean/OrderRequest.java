@@ -0,0 +1,78 @@
+package org.bitcoin.market.bean;
+
+/**
+ * One order of a batch passed to placeOrders, price is in usd like buy and sell.
+ */
+public class OrderRequest {
+    private final OrderSide orderSide;
+    private final double amount;
+    private final double price;
+    private final SymbolPair symbolPair;
+    private final OrderType orderType;
+
+    public OrderRequest(OrderSide orderSide, double amount, double price, SymbolPair symbolPair) {
+        this(orderSide, amount, price, symbolPair, OrderType.Limit);
+    }
+
+    public OrderRequest(OrderSide orderSide, double amount, double price, SymbolPair symbolPair, OrderType orderType) {
+        this.orderSide = orderSide;
+        this.amount = amount;
+        this.price = price;
+        this.symbolPair = symbolPair;
+        this.orderType = orderType;
+    }
+
+    public static OrderRequest buy(double amount, double price, SymbolPair symbolPair) {
+        return new OrderRequest(OrderSide.buy, amount, price, symbolPair);
+    }
+
+    public static OrderRequest sell(double amount, double price, SymbolPair symbolPair) {
+        return new OrderRequest(OrderSide.sell, amount, price, symbolPair);
+    }
+
+    public OrderSide getOrderSide() {
+        return orderSide;
+    }
+
+    public double getAmount() {
+        return amount;
+    }
+
+    public double getPrice() {
+        return price;
+    }
+
+    public SymbolPair getSymbolPair() {
+        return symbolPair;
+    }
+
+    public OrderType getOrderType() {
+        return orderType;
+    }
+
+    /**
+     * BitOrder describing this request, without order id.
+     */
+    public BitOrder toBitOrder() {
+        BitOrder bitOrder = new BitOrder();
+        bitOrder.setOrderSide(orderSide);
+        bitOrder.setOrderAmount(amount);
+        bitOrder.setOrderPrice(price);
+        bitOrder.setOrderType(orderType);
+        if (symbolPair != null) {
+            bitOrder.setSymbol(symbolPair.getFirst());
+        }
+        return bitOrder;
+    }
+
+    @Override
+    public String toString() {
+        return "OrderRequest{" +
+                "orderSide=" + orderSide +
+                ", amount=" + amount +
+                ", price=" + price +
+                ", symbolPair=" + symbolPair +
+                ", orderType=" + orderType +
+                '}';
+    }
+}
@@ -1,11 +1,14 @@
 package org.bitcoin.market.bean;
 
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * Created by lichang on 14-2-26.
  */
 
 public enum Symbol {
-    btc {
+    btc(8) {
         @Override
         public boolean isBtc() {
             return true;
@@ -25,7 +28,7 @@ public enum Symbol {
         public boolean isCny() {
             return false;
         }
-    }, ltc {
+    }, ltc(8) {
         @Override
         public boolean isBtc() {
             return false;
@@ -45,7 +48,7 @@ public enum Symbol {
         public boolean isCny() {
             return false;
         }
-    }, usd {
+    }, usd(4) {
         @Override
         public boolean isBtc() {
             return false;
@@ -65,7 +68,7 @@ public enum Symbol {
         public boolean isCny() {
             return false;
         }
-    }, cny {
+    }, cny(4) {
         @Override
         public boolean isBtc() {
             return false;
@@ -87,6 +90,34 @@ public enum Symbol {
         }
     };
 
+    private static final Map<String, Symbol> BY_NAME = new HashMap<String, Symbol>();
+
+    static {
+        for (Symbol symbol : values()) {
+            BY_NAME.put(symbol.name(), symbol);
+        }
+    }
+
+    private final int scale;
+
+    Symbol(int scale) {
+        this.scale = scale;
+    }
+
+    /**
+     * The symbol of a currency code as the markets send it, e.g. "btc", null for a currency we don't know.
+     */
+    public static Symbol find(String name) {
+        return BY_NAME.get(name);
+    }
+
+    /**
+     * Number of decimals balances and amounts of this symbol are kept with.
+     */
+    public int getScale() {
+        return scale;
+    }
+
     public abstract boolean isBtc();
 
     public abstract boolean isLtc();
@@ -18,6 +18,22 @@ public class SymbolPair {
         return first;
     }
 
+    /**
+     * The pair of a market name as the markets send it, e.g. "btccny" or "ltc_btc", null for one we don't know.
+     */
+    public static SymbolPair find(String desc) {
+        String name = desc.replace("_", "");
+        for (Symbol first : Symbol.values()) {
+            if (name.startsWith(first.name())) {
+                Symbol second = Symbol.find(name.substring(first.name().length()));
+                if (second != null) {
+                    return new SymbolPair(first, second);
+                }
+            }
+        }
+        return null;
+    }
+
     public String getDesc(boolean haveUnderline) {
         if (haveUnderline) {
             return first.name() + "_" + second.name();
@@ -26,4 +42,26 @@ public class SymbolPair {
 
         }
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof SymbolPair)) return false;
+
+        SymbolPair that = (SymbolPair) o;
+
+        return first == that.first && second == that.second;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = first != null ? first.hashCode() : 0;
+        result = 31 * result + (second != null ? second.hashCode() : 0);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return getDesc(true);
+    }
 }
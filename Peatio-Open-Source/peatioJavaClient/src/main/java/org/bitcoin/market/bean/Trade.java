@@ -0,0 +1,92 @@
+package org.bitcoin.market.bean;
+
+import org.bitcoin.common.Decimal;
+
+/**
+ * One trade of the market, price unscaled at PRICE_SCALE and amount at AMOUNT_SCALE like {@link OrderBook}.
+ */
+public class Trade {
+    public static final int PRICE_SCALE = OrderBook.PRICE_SCALE;
+    public static final int AMOUNT_SCALE = OrderBook.AMOUNT_SCALE;
+
+    private long tradeId;
+    private SymbolPair symbolPair;
+    private OrderSide orderSide;
+    private long timestamp;
+    private long price;
+    private long amount;
+
+    public long getTradeId() {
+        return tradeId;
+    }
+
+    public void setTradeId(long tradeId) {
+        this.tradeId = tradeId;
+    }
+
+    public SymbolPair getSymbolPair() {
+        return symbolPair;
+    }
+
+    public void setSymbolPair(SymbolPair symbolPair) {
+        this.symbolPair = symbolPair;
+    }
+
+    /**
+     * Side of the taker.
+     */
+    public OrderSide getOrderSide() {
+        return orderSide;
+    }
+
+    public void setOrderSide(OrderSide orderSide) {
+        this.orderSide = orderSide;
+    }
+
+    /**
+     * In seconds.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    public double getPrice() {
+        return Decimal.toDouble(price, PRICE_SCALE);
+    }
+
+    public long getPriceUnscaled() {
+        return price;
+    }
+
+    public void setPriceUnscaled(long price) {
+        this.price = price;
+    }
+
+    public double getAmount() {
+        return Decimal.toDouble(amount, AMOUNT_SCALE);
+    }
+
+    public long getAmountUnscaled() {
+        return amount;
+    }
+
+    public void setAmountUnscaled(long amount) {
+        this.amount = amount;
+    }
+
+    @Override
+    public String toString() {
+        return "Trade{" +
+                "tradeId=" + tradeId +
+                ", symbolPair=" + symbolPair +
+                ", orderSide=" + orderSide +
+                ", timestamp=" + timestamp +
+                ", price=" + Decimal.toString(price, PRICE_SCALE) +
+                ", amount=" + Decimal.toString(amount, AMOUNT_SCALE) +
+                '}';
+    }
+}
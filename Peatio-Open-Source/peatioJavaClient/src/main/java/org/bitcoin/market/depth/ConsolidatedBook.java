@@ -0,0 +1,251 @@
+package org.bitcoin.market.depth;
+
+import org.bitcoin.common.Decimal;
+import org.bitcoin.market.AbstractMarketApi;
+import org.bitcoin.market.bean.OrderBook;
+import org.bitcoin.market.bean.SymbolPair;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The books of one pair on several venues merged into a single ladder: asks ascending and bids descending
+ * by price, every level tagged with the venue it rests on. The market apis fill a book with one level per
+ * price ({@link OrderBook#mergeLevels()}), so a price has at most one level per venue, in venue order.
+ * Values are unscaled like in {@link OrderBook}.
+ */
+public class ConsolidatedBook {
+    private final SymbolPair symbolPair;
+    private final List<AbstractMarketApi> venues;
+    private final boolean[] available;
+    private final long[] timestamps;
+    private long timestamp;
+
+    private long[] askPrices;
+    private long[] askAmounts;
+    private int[] askVenues;
+    private int askCount;
+
+    private long[] bidPrices;
+    private long[] bidAmounts;
+    private int[] bidVenues;
+    private int bidCount;
+
+    /**
+     * Merge books, one per venue and in the same order, a null book for a venue that didn't answer.
+     */
+    public ConsolidatedBook(SymbolPair symbolPair, List<AbstractMarketApi> venues, List<OrderBook> books) {
+        this.symbolPair = symbolPair;
+        this.venues = new ArrayList<AbstractMarketApi>(venues);
+        this.available = new boolean[venues.size()];
+        this.timestamps = new long[venues.size()];
+        int asks = 0;
+        int bids = 0;
+        for (int v = 0; v < books.size(); v++) {
+            OrderBook book = books.get(v);
+            if (book != null) {
+                available[v] = true;
+                timestamps[v] = book.getTimestamp();
+                timestamp = Math.max(timestamp, book.getTimestamp());
+                asks += book.getAskCount();
+                bids += book.getBidCount();
+            }
+        }
+        askPrices = new long[asks];
+        askAmounts = new long[asks];
+        askVenues = new int[asks];
+        bidPrices = new long[bids];
+        bidAmounts = new long[bids];
+        bidVenues = new int[bids];
+        mergeAsks(books);
+        mergeBids(books);
+    }
+
+    public SymbolPair getSymbolPair() {
+        return symbolPair;
+    }
+
+    /**
+     * When the most recent of the merged books was taken.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public int getVenueCount() {
+        return venues.size();
+    }
+
+    public AbstractMarketApi getVenue(int venue) {
+        return venues.get(venue);
+    }
+
+    /**
+     * False when the venue's book is missing, it failed or missed its deadline.
+     */
+    public boolean isAvailable(int venue) {
+        return available[venue];
+    }
+
+    public long getTimestamp(int venue) {
+        return timestamps[venue];
+    }
+
+    /**
+     * The venues whose book is missing.
+     */
+    public List<AbstractMarketApi> getMissing() {
+        List<AbstractMarketApi> missing = new ArrayList<AbstractMarketApi>();
+        for (int v = 0; v < available.length; v++) {
+            if (!available[v]) {
+                missing.add(venues.get(v));
+            }
+        }
+        return missing;
+    }
+
+    public int getAskCount() {
+        return askCount;
+    }
+
+    public int getBidCount() {
+        return bidCount;
+    }
+
+    public double getAskPrice(int i) {
+        return Decimal.toDouble(askPrices[i], OrderBook.PRICE_SCALE);
+    }
+
+    public double getAskAmount(int i) {
+        return Decimal.toDouble(askAmounts[i], OrderBook.AMOUNT_SCALE);
+    }
+
+    public double getBidPrice(int i) {
+        return Decimal.toDouble(bidPrices[i], OrderBook.PRICE_SCALE);
+    }
+
+    public double getBidAmount(int i) {
+        return Decimal.toDouble(bidAmounts[i], OrderBook.AMOUNT_SCALE);
+    }
+
+    public long getAskPriceUnscaled(int i) {
+        return askPrices[i];
+    }
+
+    public long getAskAmountUnscaled(int i) {
+        return askAmounts[i];
+    }
+
+    public long getBidPriceUnscaled(int i) {
+        return bidPrices[i];
+    }
+
+    public long getBidAmountUnscaled(int i) {
+        return bidAmounts[i];
+    }
+
+    /**
+     * Index of the venue ask i rests on, see {@link #getVenue(int)}.
+     */
+    public int getAskVenue(int i) {
+        return askVenues[i];
+    }
+
+    public int getBidVenue(int i) {
+        return bidVenues[i];
+    }
+
+    /**
+     * Amount offered at or below price over all venues, unscaled.
+     */
+    public long getAskAmountUnscaled(long price) {
+        long amount = 0L;
+        for (int i = 0; i < askCount && askPrices[i] <= price; i++) {
+            amount += askAmounts[i];
+        }
+        return amount;
+    }
+
+    /**
+     * Amount bid at or above price over all venues, unscaled.
+     */
+    public long getBidAmountUnscaled(long price) {
+        long amount = 0L;
+        for (int i = 0; i < bidCount && bidPrices[i] >= price; i++) {
+            amount += bidAmounts[i];
+        }
+        return amount;
+    }
+
+    /**
+     * A k-way merge, the books are sorted already and venues are few.
+     */
+    private void mergeAsks(List<OrderBook> books) {
+        int[] heads = new int[books.size()];
+        while (true) {
+            int best = -1;
+            long bestPrice = 0L;
+            for (int v = 0; v < heads.length; v++) {
+                OrderBook book = books.get(v);
+                if (book != null && heads[v] < book.getAskCount()
+                        && (best < 0 || book.getAskPriceUnscaled(heads[v]) < bestPrice)) {
+                    best = v;
+                    bestPrice = book.getAskPriceUnscaled(heads[v]);
+                }
+            }
+            if (best < 0) {
+                return;
+            }
+            askPrices[askCount] = bestPrice;
+            askAmounts[askCount] = books.get(best).getAskAmountUnscaled(heads[best]);
+            askVenues[askCount] = best;
+            askCount++;
+            heads[best]++;
+        }
+    }
+
+    private void mergeBids(List<OrderBook> books) {
+        int[] heads = new int[books.size()];
+        while (true) {
+            int best = -1;
+            long bestPrice = 0L;
+            for (int v = 0; v < heads.length; v++) {
+                OrderBook book = books.get(v);
+                if (book != null && heads[v] < book.getBidCount()
+                        && (best < 0 || book.getBidPriceUnscaled(heads[v]) > bestPrice)) {
+                    best = v;
+                    bestPrice = book.getBidPriceUnscaled(heads[v]);
+                }
+            }
+            if (best < 0) {
+                return;
+            }
+            bidPrices[bidCount] = bestPrice;
+            bidAmounts[bidCount] = books.get(best).getBidAmountUnscaled(heads[best]);
+            bidVenues[bidCount] = best;
+            bidCount++;
+            heads[best]++;
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("ConsolidatedBook{symbolPair=").append(symbolPair)
+                .append(", timestamp=").append(timestamp).append(", missing=").append(getMissing().size())
+                .append(", asks=[");
+        for (int i = 0; i < Math.min(askCount, 5); i++) {
+            appendLevel(builder, askPrices[i], askAmounts[i], askVenues[i]);
+        }
+        builder.append("], bids=[");
+        for (int i = 0; i < Math.min(bidCount, 5); i++) {
+            appendLevel(builder, bidPrices[i], bidAmounts[i], bidVenues[i]);
+        }
+        return builder.append("]}").toString();
+    }
+
+    private void appendLevel(StringBuilder builder, long price, long amount, int venue) {
+        builder.append('(');
+        Decimal.appendTo(builder, price, OrderBook.PRICE_SCALE).append(", ");
+        Decimal.appendTo(builder, amount, OrderBook.AMOUNT_SCALE).append(" @").append(venue).append(')');
+    }
+}
@@ -0,0 +1,114 @@
+package org.bitcoin.market.depth;
+
+import org.bitcoin.market.AbstractMarketApi;
+import org.bitcoin.market.MarketApiFactory;
+import org.bitcoin.market.bean.OrderBook;
+import org.bitcoin.market.bean.SymbolPair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Fetches the book of a pair on several venues at once and merges them into a {@link ConsolidatedBook}.
+ * All fetches start together through {@link AbstractMarketApi#getOrderBookAsync}, so a refresh takes as long
+ * as the slowest venue within its deadline rather than the sum of them. A venue failing or missing its
+ * deadline is left out of the book and reported missing, it doesn't hold up the others.
+ * <p/>
+ * The fetch of a venue missing its deadline is cancelled: a PeatioCNYApi aborts the request and frees its pooled
+ * connection, a market fetching through the blocking update_order_book lets it run to the end on its async
+ * executor.
+ */
+public class DepthFanOut {
+    private static final Logger LOG = LoggerFactory.getLogger(DepthFanOut.class);
+
+    public static final long DEFAULT_TIMEOUT_MILLIS = 3000L;
+
+    private final List<AbstractMarketApi> venues;
+    private final ConcurrentMap<AbstractMarketApi, Long> timeouts = new ConcurrentHashMap<AbstractMarketApi, Long>();
+    private volatile long timeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+
+    /**
+     * Fan out to the markets registered in {@link MarketApiFactory} at the time of each refresh.
+     */
+    public DepthFanOut() {
+        this.venues = null;
+    }
+
+    public DepthFanOut(Collection<? extends AbstractMarketApi> venues) {
+        this.venues = new ArrayList<AbstractMarketApi>(venues);
+    }
+
+    /**
+     * Deadline of every fetch, counted from the start of the refresh, unless set for its venue.
+     */
+    public void setTimeoutMillis(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public void setTimeoutMillis(AbstractMarketApi venue, long timeoutMillis) {
+        timeouts.put(venue, timeoutMillis);
+    }
+
+    public List<AbstractMarketApi> getVenues() {
+        return venues == null ? MarketApiFactory.getInstance().getMarkets() : new ArrayList<AbstractMarketApi>(venues);
+    }
+
+    /**
+     * Fetch symbolPair on every venue in parallel and merge what arrived within the deadlines.
+     * A venue whose fetch fails or is cancelled elsewhere is reported missing. When the caller is interrupted,
+     * every fetch still running is cancelled before the InterruptedException is thrown.
+     */
+    public ConsolidatedBook refresh(SymbolPair symbolPair) throws InterruptedException {
+        List<AbstractMarketApi> current = getVenues();
+        long start = System.nanoTime();
+        List<CompletableFuture<OrderBook>> fetches = new ArrayList<CompletableFuture<OrderBook>>(current.size());
+        for (AbstractMarketApi venue : current) {
+            CompletableFuture<OrderBook> fetch;
+            try {
+                fetch = venue.getOrderBookAsync(symbolPair, new OrderBook(symbolPair));
+            } catch (RuntimeException e) {
+                fetch = new CompletableFuture<OrderBook>();
+                fetch.completeExceptionally(e);
+            }
+            fetches.add(fetch);
+        }
+
+        List<OrderBook> books = new ArrayList<OrderBook>(current.size());
+        try {
+            for (int v = 0; v < current.size(); v++) {
+                AbstractMarketApi venue = current.get(v);
+                CompletableFuture<OrderBook> fetch = fetches.get(v);
+                Long timeout = timeouts.get(venue);
+                long deadline = start + TimeUnit.MILLISECONDS.toNanos(timeout == null ? timeoutMillis : timeout);
+                OrderBook book = null;
+                try {
+                    book = fetch.get(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                } catch (TimeoutException e) {
+                    fetch.cancel(true);
+                    LOG.warn("Market: {} missed the deadline for the depth of {}", venue.getMarket(), symbolPair);
+                } catch (ExecutionException e) {
+                    LOG.warn("Market: {} can't get the depth of {}: {}", venue.getMarket(), symbolPair, e.getCause().toString());
+                } catch (CancellationException e) {
+                    LOG.warn("Market: {} depth of {} was cancelled", venue.getMarket(), symbolPair);
+                }
+                books.add(book);
+            }
+        } finally {
+            // interrupted: the fetches not waited for yet would keep their connections
+            for (CompletableFuture<OrderBook> fetch : fetches) {
+                fetch.cancel(true);
+            }
+        }
+        return new ConsolidatedBook(symbolPair, current, books);
+    }
+}
@@ -0,0 +1,16 @@
+package org.bitcoin.market.depth;
+
+import org.bitcoin.market.bean.OrderBook;
+import org.bitcoin.market.bean.SymbolPair;
+
+/**
+ * Receives the levels that changed between two consecutive books of a pair.
+ */
+public interface DepthListener {
+
+    /**
+     * Both update and book are reused by the next refresh of the same pair,
+     * copy what has to outlive the call.
+     */
+    void onDepthUpdate(SymbolPair symbolPair, DepthUpdate update, OrderBook book);
+}
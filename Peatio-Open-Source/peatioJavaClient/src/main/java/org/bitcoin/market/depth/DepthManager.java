@@ -0,0 +1,142 @@
+package org.bitcoin.market.depth;
+
+import org.bitcoin.market.AbstractMarketApi;
+import org.bitcoin.market.bean.OrderBook;
+import org.bitcoin.market.bean.SymbolPair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps a live order book per pair and hands subscribers only the levels that changed
+ * since the previous refresh.
+ * <p/>
+ * Each pair owns two books that are swapped on every refresh, so a steady-state refresh
+ * allocates nothing beyond what the market needs to fetch the snapshot.
+ */
+public class DepthManager {
+    private static final Logger LOG = LoggerFactory.getLogger(DepthManager.class);
+
+    private final AbstractMarketApi marketApi;
+    private final ConcurrentMap<SymbolPair, LiveBook> books = new ConcurrentHashMap<SymbolPair, LiveBook>();
+
+    public DepthManager(AbstractMarketApi marketApi) {
+        this.marketApi = marketApi;
+    }
+
+    public void subscribe(SymbolPair symbolPair, DepthListener listener) {
+        getLiveBook(symbolPair).listeners.add(listener);
+    }
+
+    public void unsubscribe(SymbolPair symbolPair, DepthListener listener) {
+        getLiveBook(symbolPair).listeners.remove(listener);
+    }
+
+    /**
+     * Fetch a new snapshot of symbolPair, diff it against the live book and notify subscribers
+     * when something changed. The first refresh of a pair reports every level as new.
+     *
+     * @return the changed levels, reused by the next refresh of the same pair
+     */
+    public DepthUpdate refresh(SymbolPair symbolPair) {
+        LiveBook liveBook = getLiveBook(symbolPair);
+        liveBook.lock.lock();
+        try {
+            OrderBook next = liveBook.spare;
+            marketApi.getOrderBook(symbolPair, next);
+            return publish(symbolPair, liveBook, next);
+        } finally {
+            liveBook.lock.unlock();
+        }
+    }
+
+    /**
+     * Like {@link #refresh} with a book that was pushed rather than fetched, book is copied.
+     */
+    public DepthUpdate apply(SymbolPair symbolPair, OrderBook book) {
+        LiveBook liveBook = getLiveBook(symbolPair);
+        liveBook.lock.lock();
+        try {
+            OrderBook next = liveBook.spare;
+            next.copyFrom(book);
+            return publish(symbolPair, liveBook, next);
+        } finally {
+            liveBook.lock.unlock();
+        }
+    }
+
+    private DepthUpdate publish(SymbolPair symbolPair, LiveBook liveBook, OrderBook next) {
+        liveBook.update.diff(liveBook.book, next);
+        liveBook.spare = liveBook.book;
+        liveBook.book = next;
+
+        if (!liveBook.update.isEmpty()) {
+            for (DepthListener listener : liveBook.listeners) {
+                try {
+                    listener.onDepthUpdate(symbolPair, liveBook.update, next);
+                } catch (Exception e) {
+                    LOG.error("Market: {} depth listener failed for {}", marketApi.getMarket(), symbolPair, e);
+                }
+            }
+        }
+        return liveBook.update;
+    }
+
+    /**
+     * The live book of symbolPair, valid until the next refresh of the pair.
+     */
+    public OrderBook getBook(SymbolPair symbolPair) {
+        return getLiveBook(symbolPair).book;
+    }
+
+    /**
+     * A private copy of the live book of symbolPair.
+     */
+    public OrderBook copyBook(SymbolPair symbolPair) {
+        LiveBook liveBook = getLiveBook(symbolPair);
+        liveBook.lock.lock();
+        try {
+            return new OrderBook(liveBook.book);
+        } finally {
+            liveBook.lock.unlock();
+        }
+    }
+
+    public AbstractMarketApi getMarketApi() {
+        return marketApi;
+    }
+
+    private LiveBook getLiveBook(SymbolPair symbolPair) {
+        LiveBook liveBook = books.get(symbolPair);
+        if (liveBook == null) {
+            liveBook = new LiveBook(symbolPair);
+            LiveBook existing = books.putIfAbsent(symbolPair, liveBook);
+            if (existing != null) {
+                liveBook = existing;
+            }
+        }
+        return liveBook;
+    }
+
+    private static class LiveBook {
+        /**
+         * Held across the fetch of a refresh, a lock rather than a monitor so a waiting virtual thread
+         * doesn't pin its carrier.
+         */
+        private final ReentrantLock lock = new ReentrantLock();
+        private volatile OrderBook book;
+        private OrderBook spare;
+        private final DepthUpdate update = new DepthUpdate();
+        private final List<DepthListener> listeners = new CopyOnWriteArrayList<DepthListener>();
+
+        private LiveBook(SymbolPair symbolPair) {
+            this.book = new OrderBook(symbolPair);
+            this.spare = new OrderBook(symbolPair);
+        }
+    }
+}
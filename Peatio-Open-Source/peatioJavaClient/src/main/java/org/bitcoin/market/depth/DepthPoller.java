@@ -0,0 +1,188 @@
+package org.bitcoin.market.depth;
+
+import org.bitcoin.market.bean.OrderBook;
+import org.bitcoin.market.bean.SymbolPair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Refreshes the books of a {@link DepthManager} in the background, each pair on its own cadence,
+ * and publishes the result as a {@link DepthSnapshot} that readers get without blocking.
+ */
+public class DepthPoller {
+    private static final Logger LOG = LoggerFactory.getLogger(DepthPoller.class);
+
+    private final DepthManager depthManager;
+    private final ScheduledExecutorService scheduler;
+    private final ConcurrentMap<SymbolPair, Poll> polls = new ConcurrentHashMap<SymbolPair, Poll>();
+
+    public DepthPoller(DepthManager depthManager) {
+        this(depthManager, 1);
+    }
+
+    public DepthPoller(DepthManager depthManager, int threads) {
+        this.depthManager = depthManager;
+        this.scheduler = Executors.newScheduledThreadPool(threads,
+                new PollerThreadFactory(depthManager.getMarketApi().getMarket().name()));
+    }
+
+    /**
+     * Start refreshing symbolPair every periodMillis, or change the cadence when already started.
+     * <p/>
+     * Starts and stops are serialized. A pair keeps the same poll across cadence changes, so that readers
+     * waiting in {@link #awaitSnapshot} are woken by whichever schedule publishes next.
+     */
+    public void start(SymbolPair symbolPair, long periodMillis) {
+        synchronized (polls) {
+            Poll poll = polls.get(symbolPair);
+            if (poll == null) {
+                poll = new Poll(symbolPair);
+            } else {
+                poll.future.cancel(false);
+            }
+            poll.future = scheduler.scheduleWithFixedDelay(poll, 0, periodMillis, TimeUnit.MILLISECONDS);
+            polls.put(symbolPair, poll);
+        }
+    }
+
+    /**
+     * Stop refreshing symbolPair, readers waiting for a snapshot of it get the latest one right away.
+     */
+    public void stop(SymbolPair symbolPair) {
+        synchronized (polls) {
+            Poll poll = polls.remove(symbolPair);
+            if (poll != null) {
+                poll.future.cancel(false);
+                poll.stop();
+            }
+        }
+    }
+
+    public boolean isPolling(SymbolPair symbolPair) {
+        return polls.containsKey(symbolPair);
+    }
+
+    public void shutdown() {
+        synchronized (polls) {
+            for (Poll poll : polls.values()) {
+                poll.stop();
+            }
+            polls.clear();
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * The latest published snapshot of symbolPair, or null when none has been published yet.
+     */
+    public DepthSnapshot getSnapshot(SymbolPair symbolPair) {
+        Poll poll = polls.get(symbolPair);
+        return poll == null ? null : poll.latest;
+    }
+
+    /**
+     * Wait until a snapshot not older than maxAgeMillis is published.
+     *
+     * @return the snapshot, or the latest one (possibly null) when timeoutMillis elapsed or the pair was
+     * stopped first
+     */
+    public DepthSnapshot awaitSnapshot(SymbolPair symbolPair, long maxAgeMillis, long timeoutMillis)
+            throws InterruptedException {
+        Poll poll = polls.get(symbolPair);
+        if (poll == null) {
+            throw new IllegalStateException("depth of " + symbolPair + " is not polled");
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        poll.lock.lock();
+        try {
+            while (true) {
+                DepthSnapshot snapshot = poll.latest;
+                if (snapshot != null && snapshot.getAgeMillis() <= maxAgeMillis) {
+                    return snapshot;
+                }
+                long remaining = deadline - System.nanoTime();
+                if (poll.stopped || remaining <= 0) {
+                    return snapshot;
+                }
+                poll.published.awaitNanos(remaining);
+            }
+        } finally {
+            poll.lock.unlock();
+        }
+    }
+
+    /**
+     * The snapshots of one pair and the readers waiting for them, kept until the pair is stopped.
+     */
+    private class Poll implements Runnable {
+        private final SymbolPair symbolPair;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition published = lock.newCondition();
+        private volatile DepthSnapshot latest;
+        private volatile ScheduledFuture<?> future;
+        private volatile boolean stopped;
+
+        private Poll(SymbolPair symbolPair) {
+            this.symbolPair = symbolPair;
+        }
+
+        @Override
+        public void run() {
+            try {
+                DepthUpdate update = depthManager.refresh(symbolPair);
+                DepthSnapshot previous = latest;
+                OrderBook book;
+                if (previous != null && update.isEmpty()) {
+                    book = previous.getBook();
+                } else {
+                    book = depthManager.copyBook(symbolPair);
+                }
+                latest = new DepthSnapshot(book, System.currentTimeMillis());
+                signalAll();
+            } catch (Exception e) {
+                LOG.error("Market: {} can't poll depth of {}", depthManager.getMarketApi().getMarket(), symbolPair, e);
+            }
+        }
+
+        private void stop() {
+            stopped = true;
+            signalAll();
+        }
+
+        private void signalAll() {
+            lock.lock();
+            try {
+                published.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private static class PollerThreadFactory implements ThreadFactory {
+        private final String name;
+        private final AtomicInteger count = new AtomicInteger();
+
+        private PollerThreadFactory(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "depth-poller-" + name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
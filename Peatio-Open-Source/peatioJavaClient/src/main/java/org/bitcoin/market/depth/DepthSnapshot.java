@@ -0,0 +1,37 @@
+package org.bitcoin.market.depth;
+
+import org.bitcoin.market.bean.OrderBook;
+
+/**
+ * A published order book together with the time it was fetched.
+ * The book is shared by every reader of the snapshot and must not be modified.
+ */
+public class DepthSnapshot {
+    private final OrderBook book;
+    private final long updated;
+
+    public DepthSnapshot(OrderBook book, long updated) {
+        this.book = book;
+        this.updated = updated;
+    }
+
+    public OrderBook getBook() {
+        return book;
+    }
+
+    public long getUpdated() {
+        return updated;
+    }
+
+    public long getAgeMillis() {
+        return System.currentTimeMillis() - updated;
+    }
+
+    @Override
+    public String toString() {
+        return "DepthSnapshot{" +
+                "book=" + book +
+                ", updated=" + updated +
+                '}';
+    }
+}
@@ -0,0 +1,156 @@
+package org.bitcoin.market.depth;
+
+import org.bitcoin.common.Decimal;
+import org.bitcoin.market.bean.OrderBook;
+
+import java.util.Arrays;
+
+/**
+ * Levels changed between two books. Every entry carries the new amount of the level,
+ * an amount of 0 means the level has been removed. Values are unscaled like in {@link OrderBook}.
+ */
+public class DepthUpdate {
+    private static final int DEFAULT_CAPACITY = 32;
+
+    private long timestamp;
+
+    private long[] askPrices = new long[DEFAULT_CAPACITY];
+    private long[] askAmounts = new long[DEFAULT_CAPACITY];
+    private int askCount;
+
+    private long[] bidPrices = new long[DEFAULT_CAPACITY];
+    private long[] bidAmounts = new long[DEFAULT_CAPACITY];
+    private int bidCount;
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    public boolean isEmpty() {
+        return askCount == 0 && bidCount == 0;
+    }
+
+    public int getAskCount() {
+        return askCount;
+    }
+
+    public int getBidCount() {
+        return bidCount;
+    }
+
+    public double getAskPrice(int i) {
+        return Decimal.toDouble(askPrices[i], OrderBook.PRICE_SCALE);
+    }
+
+    public double getAskAmount(int i) {
+        return Decimal.toDouble(askAmounts[i], OrderBook.AMOUNT_SCALE);
+    }
+
+    public double getBidPrice(int i) {
+        return Decimal.toDouble(bidPrices[i], OrderBook.PRICE_SCALE);
+    }
+
+    public double getBidAmount(int i) {
+        return Decimal.toDouble(bidAmounts[i], OrderBook.AMOUNT_SCALE);
+    }
+
+    public long getAskPriceUnscaled(int i) {
+        return askPrices[i];
+    }
+
+    public long getAskAmountUnscaled(int i) {
+        return askAmounts[i];
+    }
+
+    public long getBidPriceUnscaled(int i) {
+        return bidPrices[i];
+    }
+
+    public long getBidAmountUnscaled(int i) {
+        return bidAmounts[i];
+    }
+
+    public void clear() {
+        askCount = 0;
+        bidCount = 0;
+        timestamp = 0L;
+    }
+
+    public void addAskUnscaled(long price, long amount) {
+        if (askCount == askPrices.length) {
+            askPrices = Arrays.copyOf(askPrices, askCount * 2);
+            askAmounts = Arrays.copyOf(askAmounts, askCount * 2);
+        }
+        askPrices[askCount] = price;
+        askAmounts[askCount] = amount;
+        askCount++;
+    }
+
+    public void addBidUnscaled(long price, long amount) {
+        if (bidCount == bidPrices.length) {
+            bidPrices = Arrays.copyOf(bidPrices, bidCount * 2);
+            bidAmounts = Arrays.copyOf(bidAmounts, bidCount * 2);
+        }
+        bidPrices[bidCount] = price;
+        bidAmounts[bidCount] = amount;
+        bidCount++;
+    }
+
+    /**
+     * Replace the content with the levels that differ between previous and current.
+     * Both books must be sorted, the diff is a single merge pass over each side.
+     */
+    public void diff(OrderBook previous, OrderBook current) {
+        clear();
+        timestamp = current.getTimestamp();
+
+        int i = 0;
+        int j = 0;
+        while (i < previous.getAskCount() || j < current.getAskCount()) {
+            if (j == current.getAskCount()
+                    || (i < previous.getAskCount() && previous.getAskPriceUnscaled(i) < current.getAskPriceUnscaled(j))) {
+                addAskUnscaled(previous.getAskPriceUnscaled(i++), 0);
+            } else if (i == previous.getAskCount() || previous.getAskPriceUnscaled(i) > current.getAskPriceUnscaled(j)) {
+                addAskUnscaled(current.getAskPriceUnscaled(j), current.getAskAmountUnscaled(j));
+                j++;
+            } else {
+                if (previous.getAskAmountUnscaled(i) != current.getAskAmountUnscaled(j)) {
+                    addAskUnscaled(current.getAskPriceUnscaled(j), current.getAskAmountUnscaled(j));
+                }
+                i++;
+                j++;
+            }
+        }
+
+        i = 0;
+        j = 0;
+        while (i < previous.getBidCount() || j < current.getBidCount()) {
+            if (j == current.getBidCount()
+                    || (i < previous.getBidCount() && previous.getBidPriceUnscaled(i) > current.getBidPriceUnscaled(j))) {
+                addBidUnscaled(previous.getBidPriceUnscaled(i++), 0);
+            } else if (i == previous.getBidCount() || previous.getBidPriceUnscaled(i) < current.getBidPriceUnscaled(j)) {
+                addBidUnscaled(current.getBidPriceUnscaled(j), current.getBidAmountUnscaled(j));
+                j++;
+            } else {
+                if (previous.getBidAmountUnscaled(i) != current.getBidAmountUnscaled(j)) {
+                    addBidUnscaled(current.getBidPriceUnscaled(j), current.getBidAmountUnscaled(j));
+                }
+                i++;
+                j++;
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "DepthUpdate{" +
+                "timestamp=" + timestamp +
+                ", asks=" + askCount +
+                ", bids=" + bidCount +
+                '}';
+    }
+}
@@ -0,0 +1,95 @@
+package org.bitcoin.market.kline;
+
+import org.bitcoin.market.bean.Kline;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bars of any number of minutes built from a 1 minute series, aligned like peatio aligns its own:
+ * on multiples of the period since the epoch, weeks (10080) starting on monday.
+ * <p/>
+ * An update folds again the minutes of the latest built bar, which may have been open, and builds
+ * the ones after it, so the cost follows the new minutes and not the history. That relies on the
+ * minutes only changing from their latest bar on, as a {@link KlineStore} fills them.
+ * A bucket the minutes start in the middle of is left out rather than built short.
+ */
+public class KlineAggregator {
+    private static final long WEEK = 10080 * 60L;
+    /**
+     * 1970-01-05, the first monday.
+     */
+    private static final long MONDAY = 4 * 24 * 3600L;
+
+    private final KlineSeries minutes;
+    private final int period;
+    private final KlineSeries series;
+
+    public KlineAggregator(KlineSeries minutes, int period) {
+        if (minutes.getPeriod() != 1) {
+            throw new IllegalArgumentException("not a 1 minute series: " + minutes.getPeriod());
+        }
+        if (period < 1) {
+            throw new IllegalArgumentException("period out of range: " + period);
+        }
+        this.minutes = minutes;
+        this.period = period;
+        this.series = new KlineSeries(minutes.getMarket(), minutes.getSymbol(), period);
+    }
+
+    public int getPeriod() {
+        return period;
+    }
+
+    public KlineSeries getMinutes() {
+        return minutes;
+    }
+
+    /**
+     * The built bars, in memory only.
+     */
+    public KlineSeries getSeries() {
+        return series;
+    }
+
+    /**
+     * Start in seconds of the bar holding timestamp.
+     */
+    public long getBucketStart(long timestamp) {
+        if (period == 10080) {
+            return timestamp - Math.floorMod(timestamp - MONDAY, WEEK);
+        }
+        long length = period * 60L;
+        return timestamp - Math.floorMod(timestamp, length);
+    }
+
+    /**
+     * Build the bars for the minutes added or changed since the previous update.
+     *
+     * @return bars that were new or changed
+     */
+    public synchronized int update() throws IOException {
+        Long last = minutes.getLastTimestamp();
+        if (last == null) {
+            return 0;
+        }
+        long length = period * 60L;
+        Long start = series.getLastTimestamp();
+        if (start == null) {
+            long first = minutes.getFirstTimestamp();
+            start = getBucketStart(first);
+            if (start < first) {
+                start += length;
+            }
+        }
+        List<Kline> klines = new ArrayList<Kline>();
+        for (long from = start; from <= last; from += length) {
+            Kline kline = new Kline();
+            if (minutes.aggregate(from, from + length, kline)) {
+                klines.add(kline);
+            }
+        }
+        return series.merge(klines);
+    }
+}
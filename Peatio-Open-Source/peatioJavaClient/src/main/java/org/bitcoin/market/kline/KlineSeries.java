@@ -0,0 +1,372 @@
+package org.bitcoin.market.kline;
+
+import org.bitcoin.common.Decimal;
+import org.bitcoin.market.bean.Kline;
+import org.bitcoin.market.bean.Market;
+import org.bitcoin.market.bean.Symbol;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The bars of one symbol and period in ascending time, kept as columns of unscaled longs.
+ * <p/>
+ * Merging a bar with the timestamp of a stored one replaces it in place, that is how the still open
+ * bar gets updated. With a file the series is loaded from it and every change is written back:
+ * a 16 byte header then one fixed size record per bar, a replaced bar rewrites its own record.
+ * Thread safe.
+ */
+public class KlineSeries implements Closeable {
+    private static final int MAGIC = 0x4b4c4e31; // KLN1
+    private static final int HEADER = 16;
+    private static final int FIELDS = 7;
+    private static final int RECORD = FIELDS * 8;
+    /**
+     * Price times volume is summed at two more digits than prices, so a week of minutes fits a long.
+     */
+    private static final int NOTIONAL_SCALE = Kline.PRICE_SCALE + 2;
+
+    private final Market market;
+    private final Symbol symbol;
+    private final int period;
+    private final FileChannel channel;
+    /**
+     * Held by the store while it fetches, so readers of the series don't wait for the network. Not a monitor,
+     * a virtual thread waiting on the fetch leaves its carrier free.
+     */
+    final ReentrantLock updateLock = new ReentrantLock();
+
+    private long[] timestamps = new long[64];
+    private long[] open = new long[64];
+    private long[] high = new long[64];
+    private long[] low = new long[64];
+    private long[] close = new long[64];
+    private long[] volume = new long[64];
+    private long[] vwap = new long[64];
+    private int size;
+    private int dirtyFrom;
+    private long fetchedAt;
+    private long historyFrom = Long.MAX_VALUE;
+
+    /**
+     * In memory only.
+     */
+    public KlineSeries(Market market, Symbol symbol, int period) {
+        this.market = market;
+        this.symbol = symbol;
+        this.period = period;
+        this.channel = null;
+    }
+
+    /**
+     * Backed by file, loaded from it when it exists. A file written with other scales is started over.
+     */
+    @SuppressWarnings("resource")
+    public KlineSeries(Market market, Symbol symbol, int period, File file) throws IOException {
+        this.market = market;
+        this.symbol = symbol;
+        this.period = period;
+        this.channel = new RandomAccessFile(file, "rw").getChannel();
+        load();
+    }
+
+    public Market getMarket() {
+        return market;
+    }
+
+    public Symbol getSymbol() {
+        return symbol;
+    }
+
+    public int getPeriod() {
+        return period;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @return timestamp in seconds of the earliest bar, null when empty
+     */
+    public synchronized Long getFirstTimestamp() {
+        return size == 0 ? null : timestamps[0];
+    }
+
+    /**
+     * @return timestamp in seconds of the latest bar, null when empty
+     */
+    public synchronized Long getLastTimestamp() {
+        return size == 0 ? null : timestamps[size - 1];
+    }
+
+    /**
+     * Add bars or replace the ones with the same timestamp.
+     *
+     * @return bars that were new or changed
+     */
+    public synchronized int merge(List<Kline> klines) throws IOException {
+        int changed = 0;
+        for (Kline kline : klines) {
+            if (kline.getTimestamp() != null && merge(kline)) {
+                changed++;
+            }
+        }
+        flush();
+        return changed;
+    }
+
+    private boolean merge(Kline kline) {
+        long timestamp = kline.getTimestamp();
+        int index;
+        if (size == 0 || timestamp > timestamps[size - 1]) {
+            index = size;
+        } else {
+            index = Arrays.binarySearch(timestamps, 0, size, timestamp);
+            if (index < 0) {
+                index = -index - 1;
+            } else if (equals(index, kline)) {
+                return false;
+            } else {
+                set(index, kline);
+                return true;
+            }
+        }
+        if (size == timestamps.length) {
+            grow();
+        }
+        if (index < size) {
+            shift(index);
+        }
+        size++;
+        set(index, kline);
+        return true;
+    }
+
+    /**
+     * Bars with from &lt;= timestamp &lt;= to, in seconds.
+     */
+    public synchronized List<Kline> getKlines(long from, long to) {
+        int start = lowerBound(from);
+        int end = lowerBound(to + 1);
+        return toKlines(start, end);
+    }
+
+    /**
+     * The latest count bars.
+     */
+    public synchronized List<Kline> getLast(int count) {
+        return toKlines(Math.max(0, size - count), size);
+    }
+
+    /**
+     * Copy bar index into kline.
+     */
+    public synchronized void get(int index, Kline kline) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index:" + index + " size:" + size);
+        }
+        kline.setMarket(market);
+        kline.setSymbol(symbol);
+        kline.setTimestamp(timestamps[index]);
+        kline.setDatetime(new Date(timestamps[index] * 1000));
+        kline.setOpenUnscaled(open[index]);
+        kline.setHighUnscaled(high[index]);
+        kline.setLowUnscaled(low[index]);
+        kline.setCloseUnscaled(close[index]);
+        kline.setVolumeUnscaled(volume[index]);
+        kline.setVwapUnscaled(vwap[index]);
+    }
+
+    /**
+     * Fold the bars with from &lt;= timestamp &lt; to into kline, stamped from: open of the first, close of
+     * the last, extreme high and low, summed volume and the volume weighted average of the vwaps.
+     * Without volume the vwap is the average of open, high, low and close.
+     *
+     * @return false, leaving kline alone, when there are no such bars
+     */
+    synchronized boolean aggregate(long from, long to, Kline kline) {
+        int start = lowerBound(from);
+        int end = lowerBound(to);
+        if (start == end) {
+            return false;
+        }
+        long maxHigh = Long.MIN_VALUE;
+        long minLow = Long.MAX_VALUE;
+        long totalVolume = 0L;
+        long notional = 0L;
+        for (int i = start; i < end; i++) {
+            maxHigh = Math.max(maxHigh, high[i]);
+            minLow = Math.min(minLow, low[i]);
+            if (volume[i] > 0) {
+                long price = vwap[i] == Long.MIN_VALUE ? average(open[i], high[i], low[i], close[i]) : vwap[i];
+                totalVolume += volume[i];
+                notional += Decimal.multiply(price, Kline.PRICE_SCALE, volume[i], Kline.VOLUME_SCALE, NOTIONAL_SCALE);
+            }
+        }
+        kline.setMarket(market);
+        kline.setSymbol(symbol);
+        kline.setTimestamp(from);
+        kline.setDatetime(new Date(from * 1000));
+        kline.setOpenUnscaled(open[start]);
+        kline.setHighUnscaled(maxHigh);
+        kline.setLowUnscaled(minLow);
+        kline.setCloseUnscaled(close[end - 1]);
+        kline.setVolumeUnscaled(totalVolume);
+        kline.setVwapUnscaled(totalVolume == 0 ? average(open[start], maxHigh, minLow, close[end - 1])
+                : Decimal.divide(notional, NOTIONAL_SCALE, totalVolume, Kline.VOLUME_SCALE, Kline.PRICE_SCALE));
+        return true;
+    }
+
+    /**
+     * When the store last asked the source for bars, in milliseconds.
+     */
+    synchronized long getFetchedAt() {
+        return fetchedAt;
+    }
+
+    synchronized void setFetchedAt(long fetchedAt) {
+        this.fetchedAt = fetchedAt;
+    }
+
+    /**
+     * Earliest timestamp the store asked the source for, Long.MAX_VALUE before it asked with one.
+     */
+    synchronized long getHistoryFrom() {
+        return historyFrom;
+    }
+
+    synchronized void setHistoryFrom(long historyFrom) {
+        this.historyFrom = historyFrom;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            flush();
+            channel.close();
+        }
+    }
+
+    private List<Kline> toKlines(int start, int end) {
+        List<Kline> klines = new ArrayList<Kline>(Math.max(0, end - start));
+        for (int i = start; i < end; i++) {
+            Kline kline = new Kline();
+            get(i, kline);
+            klines.add(kline);
+        }
+        return klines;
+    }
+
+    private static long average(long open, long high, long low, long close) {
+        return Decimal.divide(open + high + low + close, Kline.PRICE_SCALE, 4, 0, Kline.PRICE_SCALE);
+    }
+
+    private int lowerBound(long timestamp) {
+        int index = Arrays.binarySearch(timestamps, 0, size, timestamp);
+        return index < 0 ? -index - 1 : index;
+    }
+
+    private boolean equals(int index, Kline kline) {
+        return open[index] == kline.getOpenUnscaled() && high[index] == kline.getHighUnscaled()
+                && low[index] == kline.getLowUnscaled() && close[index] == kline.getCloseUnscaled()
+                && volume[index] == kline.getVolumeUnscaled() && vwap[index] == kline.getVwapUnscaled();
+    }
+
+    private void set(int index, Kline kline) {
+        timestamps[index] = kline.getTimestamp();
+        open[index] = kline.getOpenUnscaled();
+        high[index] = kline.getHighUnscaled();
+        low[index] = kline.getLowUnscaled();
+        close[index] = kline.getCloseUnscaled();
+        volume[index] = kline.getVolumeUnscaled();
+        vwap[index] = kline.getVwapUnscaled();
+        dirtyFrom = Math.min(dirtyFrom, index);
+    }
+
+    private void shift(int index) {
+        for (long[] column : columns()) {
+            System.arraycopy(column, index, column, index + 1, size - index);
+        }
+    }
+
+    private void grow() {
+        int capacity = timestamps.length * 2;
+        timestamps = Arrays.copyOf(timestamps, capacity);
+        open = Arrays.copyOf(open, capacity);
+        high = Arrays.copyOf(high, capacity);
+        low = Arrays.copyOf(low, capacity);
+        close = Arrays.copyOf(close, capacity);
+        volume = Arrays.copyOf(volume, capacity);
+        vwap = Arrays.copyOf(vwap, capacity);
+    }
+
+    private long[][] columns() {
+        return new long[][]{timestamps, open, high, low, close, volume, vwap};
+    }
+
+    private void load() throws IOException {
+        long length = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(HEADER);
+        if (length >= HEADER) {
+            channel.read(header, 0);
+            header.flip();
+        }
+        if (length < HEADER || header.getInt() != MAGIC || header.getInt() != RECORD
+                || header.getInt() != Kline.PRICE_SCALE || header.getInt() != Kline.VOLUME_SCALE) {
+            channel.truncate(0);
+            header.clear();
+            header.putInt(MAGIC).putInt(RECORD).putInt(Kline.PRICE_SCALE).putInt(Kline.VOLUME_SCALE).flip();
+            channel.write(header, 0);
+            dirtyFrom = 0;
+            return;
+        }
+
+        int count = (int) ((length - HEADER) / RECORD);
+        ByteBuffer records = ByteBuffer.allocate(count * RECORD);
+        while (records.hasRemaining() && channel.read(records, HEADER + records.position()) > 0) {
+        }
+        records.flip();
+        Kline kline = new Kline();
+        for (int i = 0; i < count; i++) {
+            kline.setTimestamp(records.getLong());
+            kline.setOpenUnscaled(records.getLong());
+            kline.setHighUnscaled(records.getLong());
+            kline.setLowUnscaled(records.getLong());
+            kline.setCloseUnscaled(records.getLong());
+            kline.setVolumeUnscaled(records.getLong());
+            kline.setVwapUnscaled(records.getLong());
+            merge(kline);
+        }
+        // a torn last record is dropped and rewritten from memory
+        channel.truncate(HEADER + (long) size * RECORD);
+        dirtyFrom = size;
+    }
+
+    private void flush() throws IOException {
+        if (channel == null || dirtyFrom >= size) {
+            dirtyFrom = size;
+            return;
+        }
+        ByteBuffer records = ByteBuffer.allocate((size - dirtyFrom) * RECORD);
+        for (int i = dirtyFrom; i < size; i++) {
+            records.putLong(timestamps[i]).putLong(open[i]).putLong(high[i]).putLong(low[i])
+                    .putLong(close[i]).putLong(volume[i]).putLong(vwap[i]);
+        }
+        records.flip();
+        long position = HEADER + (long) dirtyFrom * RECORD;
+        while (records.hasRemaining()) {
+            position += channel.write(records, position);
+        }
+        dirtyFrom = size;
+    }
+}
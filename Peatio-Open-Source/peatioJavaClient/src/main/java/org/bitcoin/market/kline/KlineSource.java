@@ -0,0 +1,20 @@
+package org.bitcoin.market.kline;
+
+import org.bitcoin.market.bean.Kline;
+import org.bitcoin.market.bean.Symbol;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Where a {@link KlineStore} gets its bars from, e.g. PeatioCNYApi::getKlines.
+ */
+public interface KlineSource {
+    /**
+     * @param period minutes per bar
+     * @param since  seconds since the epoch, the bar holding it and the following ones are returned;
+     *               null for the latest limit bars
+     * @return bars in ascending time
+     */
+    List<Kline> fetch(Symbol symbol, int period, Long since, int limit) throws IOException;
+}
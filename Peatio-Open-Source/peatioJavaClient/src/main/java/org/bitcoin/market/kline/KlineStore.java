@@ -0,0 +1,206 @@
+package org.bitcoin.market.kline;
+
+import org.bitcoin.market.bean.Kline;
+import org.bitcoin.market.bean.Market;
+import org.bitcoin.market.bean.Symbol;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A {@link KlineSeries} per symbol and period, filled incrementally from a {@link KlineSource}:
+ * an update only asks for the bars from the latest stored one on, which also refreshes that
+ * still open bar. Reads never touch the network.
+ * <p/>
+ * {@link #aggregate} serves other periods from the 1 minute series through a {@link KlineAggregator},
+ * so keeping several periods current costs the requests of one.
+ */
+public class KlineStore implements Closeable {
+    private static final Logger LOG = LoggerFactory.getLogger(KlineStore.class);
+
+    public static final int DEFAULT_INITIAL_LIMIT = 100;
+    public static final int PAGE_LIMIT = 1000;
+
+    private final Market market;
+    private final File directory;
+    private final KlineSource source;
+    private final ConcurrentMap<String, KlineSeries> series = new ConcurrentHashMap<String, KlineSeries>();
+    private final ConcurrentMap<String, KlineAggregator> aggregators = new ConcurrentHashMap<String, KlineAggregator>();
+    private volatile int initialLimit = DEFAULT_INITIAL_LIMIT;
+    private volatile int pageLimit = PAGE_LIMIT;
+    private volatile long maxAgeMillis;
+
+    /**
+     * In memory only.
+     */
+    public KlineStore(Market market, KlineSource source) {
+        this(market, null, source);
+    }
+
+    /**
+     * @param directory where each series keeps its file, created when missing
+     */
+    public KlineStore(Market market, File directory, KlineSource source) {
+        this.market = market;
+        this.directory = directory;
+        this.source = source;
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            throw new IllegalArgumentException("can't create " + directory);
+        }
+    }
+
+    /**
+     * Bars fetched for a series seen for the first time, later updates only add newer ones.
+     */
+    public void setInitialLimit(int initialLimit) {
+        this.initialLimit = initialLimit;
+    }
+
+    /**
+     * Bars asked for per request when paging, PAGE_LIMIT unless set. Peatio serves up to 10000.
+     */
+    public void setPageLimit(int pageLimit) {
+        this.pageLimit = pageLimit;
+    }
+
+    /**
+     * Updates within maxAgeMillis of the previous fetch of a series are served from memory.
+     */
+    public void setMaxAgeMillis(long maxAgeMillis) {
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    /**
+     * Fetch the bars newer than the stored ones, paging when more than the page limit are missing.
+     */
+    public KlineSeries update(Symbol symbol, int period) throws IOException {
+        KlineSeries klineSeries = getSeries(symbol, period);
+        klineSeries.updateLock.lock();
+        try {
+            update(klineSeries, null);
+        } finally {
+            klineSeries.updateLock.unlock();
+        }
+        return klineSeries;
+    }
+
+    /**
+     * Update the 1 minute series and build the bars of period from it. The minutes are first filled back
+     * far enough for the latest count bars, once: a market younger than that has fewer.
+     *
+     * @return the built bars, also available from {@link #getAggregator}
+     */
+    public KlineSeries aggregate(Symbol symbol, int period, int count) throws IOException {
+        KlineSeries minutes = getSeries(symbol, 1);
+        KlineAggregator aggregator = getAggregator(symbol, period);
+        minutes.updateLock.lock();
+        try {
+            long now = System.currentTimeMillis() / 1000;
+            long from = aggregator.getBucketStart(now) - (count - 1L) * period * 60;
+            update(minutes, from);
+            aggregator.update();
+        } finally {
+            minutes.updateLock.unlock();
+        }
+        return aggregator.getSeries();
+    }
+
+    private void update(KlineSeries klineSeries, Long from) throws IOException {
+        long now = System.currentTimeMillis();
+        Long first = klineSeries.getFirstTimestamp();
+        boolean backfill = from != null && from < klineSeries.getHistoryFrom() && (first == null || from < first);
+        if (!backfill && maxAgeMillis > 0 && now - klineSeries.getFetchedAt() < maxAgeMillis) {
+            return;
+        }
+        if (backfill) {
+            klineSeries.setHistoryFrom(from);
+            fetch(klineSeries, from, first);
+        }
+        // filling an empty series back already paged up to the latest bar
+        if (!backfill || first != null) {
+            Long since = klineSeries.getLastTimestamp();
+            if (since == null) {
+                klineSeries.merge(source.fetch(klineSeries.getSymbol(), klineSeries.getPeriod(), null, initialLimit));
+            } else {
+                fetch(klineSeries, since, null);
+            }
+        }
+        klineSeries.setFetchedAt(now);
+    }
+
+    /**
+     * Page forward from since until the source runs out or, when until is set, it is reached.
+     */
+    private void fetch(KlineSeries klineSeries, long since, Long until) throws IOException {
+        int limit = pageLimit;
+        while (true) {
+            List<Kline> klines = source.fetch(klineSeries.getSymbol(), klineSeries.getPeriod(), since, limit);
+            klineSeries.merge(klines);
+            if (klines.size() < limit) {
+                break;
+            }
+            Long last = klines.get(klines.size() - 1).getTimestamp();
+            if (last == null || last <= since || until != null && last >= until) {
+                break;
+            }
+            since = last;
+        }
+    }
+
+    /**
+     * Stored bars with from &lt;= timestamp &lt;= to, in seconds.
+     */
+    public List<Kline> getKlines(Symbol symbol, int period, long from, long to) throws IOException {
+        return getSeries(symbol, period).getKlines(from, to);
+    }
+
+    public List<Kline> getLast(Symbol symbol, int period, int count) throws IOException {
+        return getSeries(symbol, period).getLast(count);
+    }
+
+    public KlineAggregator getAggregator(Symbol symbol, int period) throws IOException {
+        String key = symbol.name() + "_" + period;
+        KlineAggregator aggregator = aggregators.get(key);
+        if (aggregator == null) {
+            KlineAggregator created = new KlineAggregator(getSeries(symbol, 1), period);
+            aggregator = aggregators.putIfAbsent(key, created);
+            if (aggregator == null) {
+                aggregator = created;
+            }
+        }
+        return aggregator;
+    }
+
+    public KlineSeries getSeries(Symbol symbol, int period) throws IOException {
+        String key = symbol.name() + "_" + period;
+        KlineSeries klineSeries = series.get(key);
+        if (klineSeries == null) {
+            synchronized (series) {
+                klineSeries = series.get(key);
+                if (klineSeries == null) {
+                    klineSeries = directory == null ? new KlineSeries(market, symbol, period)
+                            : new KlineSeries(market, symbol, period, new File(directory, market + "_" + key + ".kline"));
+                    series.put(key, klineSeries);
+                }
+            }
+        }
+        return klineSeries;
+    }
+
+    @Override
+    public void close() {
+        for (KlineSeries klineSeries : series.values()) {
+            try {
+                klineSeries.close();
+            } catch (IOException e) {
+                LOG.warn("can't close kline series {} {}", klineSeries.getSymbol(), klineSeries.getPeriod(), e);
+            }
+        }
+    }
+}
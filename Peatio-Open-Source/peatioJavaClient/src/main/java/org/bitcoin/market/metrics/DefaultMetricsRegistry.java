@@ -0,0 +1,178 @@
+package org.bitcoin.market.metrics;
+
+import org.bitcoin.market.ratelimit.EndpointClass;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps everything in memory: a {@link LatencyHistogram} and counters per endpoint, errors by name,
+ * throttle wait per endpoint class and connect time per host. See {@link MetricsJmx} to publish it.
+ */
+public class DefaultMetricsRegistry implements MetricsRegistry {
+    private final ConcurrentMap<String, Endpoint> endpoints = new ConcurrentHashMap<String, Endpoint>();
+    private final ConcurrentMap<String, LatencyHistogram> connects = new ConcurrentHashMap<String, LatencyHistogram>();
+    private final ConcurrentMap<String, LongAdder> errors = new ConcurrentHashMap<String, LongAdder>();
+    private final Map<EndpointClass, LongAdder> throttleNanos = new EnumMap<EndpointClass, LongAdder>(EndpointClass.class);
+    private final Map<EndpointClass, LongAdder> throttled = new EnumMap<EndpointClass, LongAdder>(EndpointClass.class);
+
+    public DefaultMetricsRegistry() {
+        for (EndpointClass endpointClass : EndpointClass.values()) {
+            throttleNanos.put(endpointClass, new LongAdder());
+            throttled.put(endpointClass, new LongAdder());
+        }
+    }
+
+    @Override
+    public void recordRequest(String endpoint, long nanos, long bytes) {
+        Endpoint stats = getEndpoint(endpoint);
+        stats.latency.record(nanos);
+        stats.bytesReceived.add(bytes);
+    }
+
+    @Override
+    public void recordError(String endpoint, String error) {
+        getEndpoint(endpoint).errors.increment();
+        LongAdder count = errors.get(error);
+        if (count == null) {
+            LongAdder existing = errors.putIfAbsent(error, count = new LongAdder());
+            if (existing != null) {
+                count = existing;
+            }
+        }
+        count.increment();
+    }
+
+    @Override
+    public void recordRetry(String endpoint) {
+        getEndpoint(endpoint).retries.increment();
+    }
+
+    @Override
+    public void recordThrottle(EndpointClass endpointClass, long nanos) {
+        if (nanos > 0) {
+            throttleNanos.get(endpointClass).add(nanos);
+            throttled.get(endpointClass).increment();
+        }
+    }
+
+    @Override
+    public void recordConnect(String host, long nanos) {
+        LatencyHistogram latency = connects.get(host);
+        if (latency == null) {
+            LatencyHistogram existing = connects.putIfAbsent(host, latency = new LatencyHistogram());
+            if (existing != null) {
+                latency = existing;
+            }
+        }
+        latency.record(nanos);
+    }
+
+    public Set<String> getEndpoints() {
+        return Collections.unmodifiableSet(endpoints.keySet());
+    }
+
+    /**
+     * @return null when the endpoint was never called
+     */
+    public LatencyHistogram getLatency(String endpoint) {
+        Endpoint stats = endpoints.get(endpoint);
+        return stats == null ? null : stats.latency;
+    }
+
+    public long getBytesReceived() {
+        long bytes = 0L;
+        for (Endpoint stats : endpoints.values()) {
+            bytes += stats.bytesReceived.sum();
+        }
+        return bytes;
+    }
+
+    public long getRetries() {
+        long retries = 0L;
+        for (Endpoint stats : endpoints.values()) {
+            retries += stats.retries.sum();
+        }
+        return retries;
+    }
+
+    /**
+     * Error counts by name, see {@link MetricsRegistry#recordError}.
+     */
+    public Map<String, Long> getErrors() {
+        Map<String, Long> result = new TreeMap<String, Long>();
+        for (Map.Entry<String, LongAdder> entry : errors.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().sum());
+        }
+        return result;
+    }
+
+    public long getThrottleNanos(EndpointClass endpointClass) {
+        return throttleNanos.get(endpointClass).sum();
+    }
+
+    /**
+     * Requests that had to wait for their permit.
+     */
+    public long getThrottled(EndpointClass endpointClass) {
+        return throttled.get(endpointClass).sum();
+    }
+
+    public LatencyHistogram getConnectLatency(String host) {
+        return connects.get(host);
+    }
+
+    public List<EndpointStats> getEndpointStats() {
+        List<EndpointStats> result = new ArrayList<EndpointStats>();
+        for (Map.Entry<String, Endpoint> entry : new TreeMap<String, Endpoint>(endpoints).entrySet()) {
+            Endpoint stats = entry.getValue();
+            result.add(EndpointStats.of(entry.getKey(), stats.latency, stats.bytesReceived.sum(),
+                    stats.errors.sum(), stats.retries.sum()));
+        }
+        return result;
+    }
+
+    public List<EndpointStats> getConnectStats() {
+        List<EndpointStats> result = new ArrayList<EndpointStats>();
+        for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<String, LatencyHistogram>(connects).entrySet()) {
+            result.add(EndpointStats.of(entry.getKey(), entry.getValue(), 0L, 0L, 0L));
+        }
+        return result;
+    }
+
+    public void reset() {
+        endpoints.clear();
+        connects.clear();
+        errors.clear();
+        for (EndpointClass endpointClass : EndpointClass.values()) {
+            throttleNanos.get(endpointClass).reset();
+            throttled.get(endpointClass).reset();
+        }
+    }
+
+    private Endpoint getEndpoint(String endpoint) {
+        Endpoint stats = endpoints.get(endpoint);
+        if (stats == null) {
+            Endpoint existing = endpoints.putIfAbsent(endpoint, stats = new Endpoint());
+            if (existing != null) {
+                stats = existing;
+            }
+        }
+        return stats;
+    }
+
+    private static class Endpoint {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder bytesReceived = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder retries = new LongAdder();
+    }
+}
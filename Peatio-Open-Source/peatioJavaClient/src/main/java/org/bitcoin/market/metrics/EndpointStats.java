@@ -0,0 +1,87 @@
+package org.bitcoin.market.metrics;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Summary of the requests to one endpoint (or the connections to one host), times in milliseconds.
+ */
+public class EndpointStats {
+    private final String name;
+    private final long count;
+    private final double meanMillis;
+    private final double p50Millis;
+    private final double p90Millis;
+    private final double p99Millis;
+    private final double maxMillis;
+    private final long bytesReceived;
+    private final long errors;
+    private final long retries;
+
+    @ConstructorProperties({"name", "count", "meanMillis", "p50Millis", "p90Millis", "p99Millis", "maxMillis",
+            "bytesReceived", "errors", "retries"})
+    public EndpointStats(String name, long count, double meanMillis, double p50Millis, double p90Millis, double p99Millis,
+                         double maxMillis, long bytesReceived, long errors, long retries) {
+        this.name = name;
+        this.count = count;
+        this.meanMillis = meanMillis;
+        this.p50Millis = p50Millis;
+        this.p90Millis = p90Millis;
+        this.p99Millis = p99Millis;
+        this.maxMillis = maxMillis;
+        this.bytesReceived = bytesReceived;
+        this.errors = errors;
+        this.retries = retries;
+    }
+
+    public static EndpointStats of(String name, LatencyHistogram latency, long bytesReceived, long errors, long retries) {
+        return new EndpointStats(name, latency.getCount(), latency.getMeanNanos() / 1e6,
+                latency.getPercentileNanos(0.5) / 1e6, latency.getPercentileNanos(0.9) / 1e6,
+                latency.getPercentileNanos(0.99) / 1e6, latency.getMaxNanos() / 1e6, bytesReceived, errors, retries);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMeanMillis() {
+        return meanMillis;
+    }
+
+    public double getP50Millis() {
+        return p50Millis;
+    }
+
+    public double getP90Millis() {
+        return p90Millis;
+    }
+
+    public double getP99Millis() {
+        return p99Millis;
+    }
+
+    public double getMaxMillis() {
+        return maxMillis;
+    }
+
+    public long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    public long getRetries() {
+        return retries;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s count=%d mean=%.2fms p50=%.2fms p90=%.2fms p99=%.2fms max=%.2fms bytes=%d errors=%d retries=%d",
+                name, count, meanMillis, p50Millis, p90Millis, p99Millis, maxMillis, bytesReceived, errors, retries);
+    }
+}
@@ -0,0 +1,100 @@
+package org.bitcoin.market.metrics;
+
+import com.google.common.base.Throwables;
+import org.bitcoin.market.ratelimit.EndpointClass;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Publishes a {@link DefaultMetricsRegistry} on the platform MBean server as
+ * org.bitcoin.market:type=Metrics,name=&lt;name&gt;.
+ */
+public class MetricsJmx implements MetricsMXBean {
+    private final DefaultMetricsRegistry registry;
+
+    public MetricsJmx(DefaultMetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * @param name e.g. the market, PeatioCNY
+     */
+    public static ObjectName register(DefaultMetricsRegistry registry, String name) {
+        try {
+            ObjectName objectName = new ObjectName("org.bitcoin.market:type=Metrics,name=" + ObjectName.quote(name));
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+            server.registerMBean(new MetricsJmx(registry), objectName);
+            return objectName;
+        } catch (Exception e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    public static void unregister(ObjectName objectName) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+        } catch (Exception e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    @Override
+    public List<EndpointStats> getEndpoints() {
+        return registry.getEndpointStats();
+    }
+
+    @Override
+    public List<EndpointStats> getConnects() {
+        return registry.getConnectStats();
+    }
+
+    @Override
+    public Map<String, Long> getErrors() {
+        return registry.getErrors();
+    }
+
+    @Override
+    public long getRetries() {
+        return registry.getRetries();
+    }
+
+    @Override
+    public long getBytesReceived() {
+        return registry.getBytesReceived();
+    }
+
+    @Override
+    public double getPrivateThrottleMillis() {
+        return registry.getThrottleNanos(EndpointClass.PRIVATE) / 1e6;
+    }
+
+    @Override
+    public double getPublicThrottleMillis() {
+        return registry.getThrottleNanos(EndpointClass.PUBLIC) / 1e6;
+    }
+
+    @Override
+    public long getPrivateThrottled() {
+        return registry.getThrottled(EndpointClass.PRIVATE);
+    }
+
+    @Override
+    public long getPublicThrottled() {
+        return registry.getThrottled(EndpointClass.PUBLIC);
+    }
+
+    @Override
+    public void reset() {
+        registry.reset();
+    }
+}
@@ -0,0 +1,33 @@
+package org.bitcoin.market.metrics;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JMX view of a {@link DefaultMetricsRegistry}.
+ */
+public interface MetricsMXBean {
+
+    List<EndpointStats> getEndpoints();
+
+    /**
+     * Time to open a connection per host, TLS handshake included.
+     */
+    List<EndpointStats> getConnects();
+
+    Map<String, Long> getErrors();
+
+    long getRetries();
+
+    long getBytesReceived();
+
+    double getPrivateThrottleMillis();
+
+    double getPublicThrottleMillis();
+
+    long getPrivateThrottled();
+
+    long getPublicThrottled();
+
+    void reset();
+}
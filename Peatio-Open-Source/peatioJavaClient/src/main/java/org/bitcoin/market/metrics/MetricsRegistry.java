@@ -0,0 +1,61 @@
+package org.bitcoin.market.metrics;
+
+import org.bitcoin.market.ratelimit.EndpointClass;
+
+/**
+ * Receives the measurements of a market api, implement it to forward them to a metrics library.
+ * Calls come from request and I/O threads and should not block.
+ * <p/>
+ * An endpoint is the verb and path of a request, e.g. "GET /api/v2/orders".
+ */
+public interface MetricsRegistry {
+
+    MetricsRegistry NOOP = new MetricsRegistry() {
+        @Override
+        public void recordRequest(String endpoint, long nanos, long bytes) {
+        }
+
+        @Override
+        public void recordError(String endpoint, String error) {
+        }
+
+        @Override
+        public void recordRetry(String endpoint) {
+        }
+
+        @Override
+        public void recordThrottle(EndpointClass endpointClass, long nanos) {
+        }
+
+        @Override
+        public void recordConnect(String host, long nanos) {
+        }
+    };
+
+    /**
+     * A response was received.
+     *
+     * @param nanos from sending the request to the last byte of the response, rate limit wait excluded
+     * @param bytes size of the response body
+     */
+    void recordRequest(String endpoint, long nanos, long bytes);
+
+    /**
+     * @param error name of the {@link org.bitcoin.market.utils.MarketErrorCode} when the exchange's code maps
+     *              to one, "peatio_" and the code when it does not, the exception's simple class name when
+     *              no response came back
+     */
+    void recordError(String endpoint, String error);
+
+    void recordRetry(String endpoint);
+
+    /**
+     * Time a request waited for its rate limit permit, 0 when it did not.
+     */
+    void recordThrottle(EndpointClass endpointClass, long nanos);
+
+    /**
+     * A new connection was opened, TLS handshake included.
+     */
+    void recordConnect(String host, long nanos);
+}
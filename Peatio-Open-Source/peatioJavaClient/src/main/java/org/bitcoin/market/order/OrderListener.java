@@ -0,0 +1,14 @@
+package org.bitcoin.market.order;
+
+import org.bitcoin.market.bean.BitOrder;
+
+/**
+ * Receives the transitions of the orders an {@link OrderTracker} follows, on the sweeping thread.
+ */
+public interface OrderListener {
+
+    /**
+     * @param order the order as of the sweep, don't modify it
+     */
+    void onOrderTransition(OrderTransition transition, BitOrder order);
+}
@@ -0,0 +1,294 @@
+package org.bitcoin.market.order;
+
+import org.bitcoin.market.AbstractMarketApi;
+import org.bitcoin.market.bean.AppAccount;
+import org.bitcoin.market.bean.BitOrder;
+import org.bitcoin.market.bean.OrderStatus;
+import org.bitcoin.market.bean.SymbolPair;
+import org.bitcoin.market.utils.PagedIterator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps the live orders of an account locally, so that checking on them costs no request: every
+ * {@link #sweep} lists the running orders of the tracked pairs once, page by page, updates the tracked
+ * orders from it and tells the {@link OrderListener}s what changed. Only the orders that left the list
+ * are fetched one by one, to tell done from cancelled.
+ * <p/>
+ * Orders the sweep finds running are tracked too. Finished orders stay readable through
+ * {@link #getOrder} for the last MAX_FINISHED of them. Sweeps are serialized, lookups never block.
+ */
+public class OrderTracker {
+    private static final Logger LOG = LoggerFactory.getLogger(OrderTracker.class);
+
+    public static final int MAX_FINISHED = 1024;
+
+    private final AbstractMarketApi marketApi;
+    private final AppAccount appAccount;
+    private final List<SymbolPair> symbolPairs;
+    private final ConcurrentMap<Long, Tracked> live = new ConcurrentHashMap<Long, Tracked>();
+    private final Map<Long, BitOrder> finished = new LinkedHashMap<Long, BitOrder>(16, 0.75f, false) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, BitOrder> eldest) {
+            return size() > MAX_FINISHED;
+        }
+    };
+    private final List<OrderListener> listeners = new CopyOnWriteArrayList<OrderListener>();
+    private final ReentrantLock sweepLock = new ReentrantLock();
+    private ScheduledExecutorService scheduler;
+    private ScheduledFuture<?> future;
+
+    public OrderTracker(AbstractMarketApi marketApi, AppAccount appAccount, Collection<SymbolPair> symbolPairs) {
+        this.marketApi = marketApi;
+        this.appAccount = appAccount;
+        this.symbolPairs = new ArrayList<SymbolPair>(symbolPairs);
+    }
+
+    public void addListener(OrderListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(OrderListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Follow an order just placed, the next sweep reports it as waiting, or what became of it.
+     */
+    public void track(Long orderId, SymbolPair symbolPair) {
+        if (orderId == null || orderId == BitOrder.ERROR_ORDER_ID) {
+            return;
+        }
+        BitOrder order = new BitOrder();
+        order.setOrderId(orderId);
+        order.setSymbol(symbolPair.getFirst());
+        order.setAppAccountId(appAccount.getId());
+        order.setStatus(OrderStatus.created);
+        live.putIfAbsent(orderId, new Tracked(order, symbolPair));
+    }
+
+    /**
+     * Follow the orders placeOrders returned, error orders are skipped.
+     */
+    public void track(List<BitOrder> orders, SymbolPair symbolPair) {
+        for (BitOrder order : orders) {
+            track(order.getOrderId(), symbolPair);
+        }
+    }
+
+    /**
+     * Stop following orderId, without telling the listeners.
+     */
+    public void untrack(Long orderId) {
+        live.remove(orderId);
+    }
+
+    /**
+     * The order as of the last sweep, null when it is neither live nor among the recently finished.
+     * Status created means no sweep has seen it yet.
+     */
+    public BitOrder getOrder(Long orderId) {
+        Tracked tracked = live.get(orderId);
+        if (tracked != null) {
+            return tracked.order;
+        }
+        synchronized (finished) {
+            return finished.get(orderId);
+        }
+    }
+
+    /**
+     * The live orders as of the last sweep.
+     */
+    public List<BitOrder> getRunningOrders() {
+        List<BitOrder> orders = new ArrayList<BitOrder>(live.size());
+        for (Tracked tracked : live.values()) {
+            orders.add(tracked.order);
+        }
+        return orders;
+    }
+
+    public int getRunningCount() {
+        return live.size();
+    }
+
+    /**
+     * List the running orders once and bring every tracked order up to date.
+     *
+     * @return the number of transitions reported
+     */
+    public int sweep() {
+        sweepLock.lock();
+        try {
+            return doSweep();
+        } finally {
+            sweepLock.unlock();
+        }
+    }
+
+    private int doSweep() {
+        // orders tracked while listing may be missing from the list, only those known before are resolved
+        Map<Long, Tracked> before = new HashMap<Long, Tracked>(live);
+        Map<Long, BitOrder> running = new HashMap<Long, BitOrder>();
+        try (PagedIterator<BitOrder> orders = marketApi.getRunningOrders(appAccount, symbolPairs)) {
+            while (orders.hasNext()) {
+                BitOrder order = orders.next();
+                running.put(order.getOrderId(), order);
+            }
+        }
+
+        int transitions = 0;
+        for (BitOrder order : running.values()) {
+            Tracked tracked = live.get(order.getOrderId());
+            if (tracked == null) {
+                SymbolPair symbolPair = getSymbolPair(order);
+                if (symbolPair == null) {
+                    continue;
+                }
+                tracked = new Tracked(order, symbolPair);
+                Tracked existing = live.putIfAbsent(order.getOrderId(), tracked);
+                if (existing != null) {
+                    tracked = existing;
+                }
+            }
+            transitions += update(tracked, order);
+        }
+        for (Tracked tracked : before.values()) {
+            Long orderId = tracked.order.getOrderId();
+            if (!running.containsKey(orderId) && live.containsKey(orderId)) {
+                transitions += resolve(tracked);
+            }
+        }
+        return transitions;
+    }
+
+    /**
+     * Sweep every periodMillis on a daemon thread, or change the cadence when already started.
+     */
+    public synchronized void start(long periodMillis) {
+        if (scheduler == null) {
+            final String name = "order-tracker-" + marketApi.getMarket() + "-" + appAccount.getId();
+            scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, name);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        if (future != null) {
+            future.cancel(false);
+        }
+        future = scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                sweep();
+            } catch (Exception e) {
+                LOG.error("Market: {} can't sweep the orders of {}", marketApi.getMarket(), appAccount.getId(), e);
+            }
+        }, 0, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+            future = null;
+        }
+    }
+
+    /**
+     * Take the listed state of a running order.
+     */
+    private int update(Tracked tracked, BitOrder order) {
+        BitOrder previous = tracked.order;
+        order.setAppAccountId(appAccount.getId());
+        if (order.getProcessedAmountUnscaled() > 0L) {
+            order.setStatus(OrderStatus.part);
+        }
+        tracked.order = order;
+        if (previous.getStatus() == OrderStatus.created || previous == order) {
+            notify(OrderTransition.wait, order);
+            if (order.getStatus() == OrderStatus.part) {
+                notify(OrderTransition.partial, order);
+                return 2;
+            }
+            return 1;
+        }
+        if (order.getProcessedAmountUnscaled() > previous.getProcessedAmountUnscaled()) {
+            notify(OrderTransition.partial, order);
+            return 1;
+        }
+        return 0;
+    }
+
+    /**
+     * An order gone from the running list: fetch it to know how it ended. Kept for the next sweep
+     * when that fails or it turns out to be running still.
+     */
+    private int resolve(Tracked tracked) {
+        Long orderId = tracked.order.getOrderId();
+        BitOrder order;
+        try {
+            order = marketApi.getOrder(appAccount, orderId, tracked.symbolPair);
+        } catch (RuntimeException e) {
+            LOG.warn("Market: {} can't get order {}: {}", marketApi.getMarket(), orderId, e.toString());
+            return 0;
+        }
+        if (order == null || order.getOrderId() == null || order.getStatus().isRunning()) {
+            return 0;
+        }
+        order.setAppAccountId(appAccount.getId());
+        live.remove(orderId);
+        synchronized (finished) {
+            finished.put(orderId, order);
+        }
+        int transitions = 1;
+        if (tracked.order.getStatus() == OrderStatus.created) {
+            notify(OrderTransition.wait, order);
+            transitions++;
+        }
+        notify(order.getStatus().isCancelled() ? OrderTransition.cancel : OrderTransition.done, order);
+        return transitions;
+    }
+
+    /**
+     * The pair of the page the order was listed on, several pairs may share a symbol (btc/cny and btc/usd).
+     */
+    private SymbolPair getSymbolPair(BitOrder order) {
+        SymbolPair symbolPair = order.getSymbolPair();
+        return symbolPair != null && symbolPairs.contains(symbolPair) ? symbolPair : null;
+    }
+
+    private void notify(OrderTransition transition, BitOrder order) {
+        for (OrderListener listener : listeners) {
+            try {
+                listener.onOrderTransition(transition, order);
+            } catch (Exception e) {
+                LOG.error("Market: {} order listener failed for {}", marketApi.getMarket(), order.getOrderId(), e);
+            }
+        }
+    }
+
+    private static class Tracked {
+        private final SymbolPair symbolPair;
+        private volatile BitOrder order;
+
+        private Tracked(BitOrder order, SymbolPair symbolPair) {
+            this.order = order;
+            this.symbolPair = symbolPair;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package org.bitcoin.market.order;
+
+/**
+ * What happened to a tracked order between two sweeps, named after peatio's order states.
+ */
+public enum OrderTransition {
+    /**
+     * Seen waiting in the book for the first time.
+     */
+    wait,
+    /**
+     * More of it was executed, it is still waiting.
+     */
+    partial,
+    /**
+     * Fully executed.
+     */
+    done,
+    /**
+     * Cancelled, possibly after partial executions.
+     */
+    cancel
+}
@@ -0,0 +1,8 @@
+package org.bitcoin.market.ratelimit;
+
+/**
+ * Endpoints sharing a rate budget, public market data is limited separately from signed requests.
+ */
+public enum EndpointClass {
+    PUBLIC, PRIVATE
+}
@@ -0,0 +1,127 @@
+package org.bitcoin.market.ratelimit;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * One {@link TokenBucket} per key (usually an access key) and endpoint class.
+ * Buckets are independent, so requests of different accounts never wait for each other.
+ * <p/>
+ * By default private requests get 1 per second per access key and public ones (order_book, tickers, k) are not
+ * limited, as before the limiter existed.
+ */
+public class RateLimiter {
+    /**
+     * Key shared by requests that are not made on behalf of an account.
+     */
+    public static final String PUBLIC_KEY = "public";
+    /**
+     * Rate of an endpoint class whose requests never wait, e.g. setLimit(PUBLIC, 1, UNLIMITED).
+     */
+    public static final double UNLIMITED = Double.POSITIVE_INFINITY;
+
+    /**
+     * Replaced as a whole by setLimit, read without locking.
+     */
+    private volatile Map<EndpointClass, Limit> limits;
+    private final Map<EndpointClass, ConcurrentMap<String, TokenBucket>> buckets =
+            new EnumMap<EndpointClass, ConcurrentMap<String, TokenBucket>>(EndpointClass.class);
+
+    public RateLimiter() {
+        Map<EndpointClass, Limit> defaults = new EnumMap<EndpointClass, Limit>(EndpointClass.class);
+        defaults.put(EndpointClass.PRIVATE, new Limit(1, 1.0));
+        defaults.put(EndpointClass.PUBLIC, new Limit(1, UNLIMITED));
+        limits = defaults;
+        for (EndpointClass endpointClass : EndpointClass.values()) {
+            buckets.put(endpointClass, new ConcurrentHashMap<String, TokenBucket>());
+        }
+    }
+
+    /**
+     * Change the limit of an endpoint class, buckets already handed out keep their old limit
+     * until they are dropped here.
+     */
+    public synchronized void setLimit(EndpointClass endpointClass, int burst, double ratePerSecond) {
+        Map<EndpointClass, Limit> changed = new EnumMap<EndpointClass, Limit>(limits);
+        changed.put(endpointClass, new Limit(burst, ratePerSecond));
+        limits = changed;
+        buckets.get(endpointClass).clear();
+    }
+
+    public int getBurst(EndpointClass endpointClass) {
+        return limits.get(endpointClass).burst;
+    }
+
+    public double getRatePerSecond(EndpointClass endpointClass) {
+        return limits.get(endpointClass).ratePerSecond;
+    }
+
+    public boolean isUnlimited(EndpointClass endpointClass) {
+        return limits.get(endpointClass).ratePerSecond == UNLIMITED;
+    }
+
+    /**
+     * @return nanoseconds to wait before sending, see {@link TokenBucket#reserve()}
+     */
+    public long reserve(String key, EndpointClass endpointClass) {
+        if (isUnlimited(endpointClass)) {
+            return 0L;
+        }
+        return getBucket(key, endpointClass).reserve();
+    }
+
+    /**
+     * @return nanoseconds waited, see {@link TokenBucket#acquire()}
+     */
+    public long acquire(String key, EndpointClass endpointClass) {
+        if (isUnlimited(endpointClass)) {
+            return 0L;
+        }
+        return getBucket(key, endpointClass).acquire();
+    }
+
+    public TokenBucket getBucket(String key, EndpointClass endpointClass) {
+        ConcurrentMap<String, TokenBucket> classBuckets = buckets.get(endpointClass);
+        TokenBucket bucket = classBuckets.get(key);
+        if (bucket == null) {
+            Limit limit = limits.get(endpointClass);
+            bucket = new TokenBucket(limit.burst, limit.ratePerSecond);
+            TokenBucket existing = classBuckets.putIfAbsent(key, bucket);
+            if (existing != null) {
+                bucket = existing;
+            }
+        }
+        return bucket;
+    }
+
+    public Map<String, TokenBucket> getBuckets(EndpointClass endpointClass) {
+        return Collections.unmodifiableMap(buckets.get(endpointClass));
+    }
+
+    /**
+     * Total wait time handed out by the buckets of an endpoint class.
+     */
+    public long getWaitNanos(EndpointClass endpointClass) {
+        long wait = 0L;
+        for (TokenBucket bucket : buckets.get(endpointClass).values()) {
+            wait += bucket.getWaitNanos();
+        }
+        return wait;
+    }
+
+    private static class Limit {
+        private final int burst;
+        private final double ratePerSecond;
+
+        private Limit(int burst, double ratePerSecond) {
+            if (burst < 1 || ratePerSecond <= 0) {
+                throw new IllegalArgumentException("burst:" + burst + " rate:" + ratePerSecond);
+            }
+            this.burst = burst;
+            this.ratePerSecond = ratePerSecond;
+        }
+    }
+}
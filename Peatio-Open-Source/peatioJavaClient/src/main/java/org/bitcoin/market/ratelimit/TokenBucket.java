@@ -0,0 +1,123 @@
+package org.bitcoin.market.ratelimit;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Lock-free token bucket. The state is a single theoretical arrival time updated by CAS:
+ * every permit pushes it one refill interval further, and a caller waits for as long as
+ * it runs ahead of now by more than the burst.
+ */
+public class TokenBucket {
+    private final int burst;
+    private final double ratePerSecond;
+    private final long interval;
+
+    private final AtomicLong arrival = new AtomicLong(System.nanoTime());
+
+    private final AtomicLong acquired = new AtomicLong();
+    private final AtomicLong delayed = new AtomicLong();
+    private final AtomicLong waitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    /**
+     * @param burst         permits that can be taken at once after an idle period
+     * @param ratePerSecond permits refilled per second
+     */
+    public TokenBucket(int burst, double ratePerSecond) {
+        if (burst < 1 || ratePerSecond <= 0) {
+            throw new IllegalArgumentException("burst:" + burst + " rate:" + ratePerSecond);
+        }
+        this.burst = burst;
+        this.ratePerSecond = ratePerSecond;
+        this.interval = (long) (TimeUnit.SECONDS.toNanos(1) / ratePerSecond);
+    }
+
+    /**
+     * Take a permit without waiting for it.
+     *
+     * @return nanoseconds the caller has to wait before using the permit
+     */
+    public long reserve() {
+        while (true) {
+            long now = System.nanoTime();
+            long current = arrival.get();
+            long next = Math.max(current, now) + interval;
+            if (arrival.compareAndSet(current, next)) {
+                long wait = Math.max(0L, next - now - burst * interval);
+                record(wait);
+                return wait;
+            }
+        }
+    }
+
+    /**
+     * Take a permit, parking the calling thread until it is usable.
+     *
+     * @return nanoseconds waited
+     */
+    public long acquire() {
+        long wait = reserve();
+        if (wait > 0) {
+            long deadline = System.nanoTime() + wait;
+            long remaining = wait;
+            while (remaining > 0) {
+                LockSupport.parkNanos(this, remaining);
+                remaining = deadline - System.nanoTime();
+            }
+        }
+        return wait;
+    }
+
+    private void record(long wait) {
+        acquired.incrementAndGet();
+        if (wait > 0) {
+            delayed.incrementAndGet();
+            waitNanos.addAndGet(wait);
+            long max = maxWaitNanos.get();
+            while (wait > max && !maxWaitNanos.compareAndSet(max, wait)) {
+                max = maxWaitNanos.get();
+            }
+        }
+    }
+
+    public int getBurst() {
+        return burst;
+    }
+
+    public double getRatePerSecond() {
+        return ratePerSecond;
+    }
+
+    public long getAcquired() {
+        return acquired.get();
+    }
+
+    /**
+     * Permits that had to wait.
+     */
+    public long getDelayed() {
+        return delayed.get();
+    }
+
+    public long getWaitNanos() {
+        return waitNanos.get();
+    }
+
+    public long getMaxWaitNanos() {
+        return maxWaitNanos.get();
+    }
+
+    @Override
+    public String toString() {
+        return "TokenBucket{" +
+                "burst=" + burst +
+                ", ratePerSecond=" + ratePerSecond +
+                ", acquired=" + acquired +
+                ", delayed=" + delayed +
+                ", waitNanos=" + waitNanos +
+                ", maxWaitNanos=" + maxWaitNanos +
+                '}';
+    }
+}
@@ -0,0 +1,207 @@
+package org.bitcoin.market.record;
+
+import org.bitcoin.common.Decimal;
+import org.bitcoin.market.bean.OrderBook;
+import org.bitcoin.market.bean.Symbol;
+import org.bitcoin.market.bean.SymbolPair;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.bitcoin.market.record.RecordFormat.*;
+
+/**
+ * Reads back the segments a {@link MarketRecorder} wrote with a prefix, oldest first, one record at a time:
+ * {@link #next()} moves to the next record, the getters describe it. Segments are mapped read only.
+ * Not thread safe.
+ */
+public class MarketDataReader implements Closeable {
+    /**
+     * Type of a book snapshot, see {@link #getType()}.
+     */
+    public static final int BOOK = RecordFormat.BOOK;
+    public static final int TICKER = RecordFormat.TICKER;
+
+    private static final Symbol[] SYMBOLS = Symbol.values();
+
+    private final File[] files;
+    private final long[] starts;
+    private final SymbolPair[][] pairs = new SymbolPair[SYMBOLS.length][SYMBOLS.length];
+    private int fileIndex = -1;
+    private MappedByteBuffer segment;
+
+    private int recordStart;
+    private int type;
+    private SymbolPair symbolPair;
+    private long timestamp;
+
+    public MarketDataReader(File directory, String prefix) throws IOException {
+        File[] matching = directory.listFiles((dir, name) -> name.startsWith(prefix + "-") && name.endsWith(SUFFIX));
+        if (matching == null) {
+            throw new FileNotFoundException(directory.toString());
+        }
+        // the names hold the fixed width start time, so they sort by it
+        Arrays.sort(matching);
+        this.files = matching;
+        this.starts = new long[matching.length];
+        for (int i = 0; i < matching.length; i++) {
+            String name = matching[i].getName();
+            int from = prefix.length() + 1;
+            int to = name.indexOf('-', from);
+            try {
+                starts[i] = Long.parseLong(name.substring(from, to < 0 ? name.length() - SUFFIX.length() : to));
+            } catch (NumberFormatException e) {
+                throw new IOException("not a segment name: " + name);
+            }
+        }
+    }
+
+    public List<File> getFiles() {
+        return new ArrayList<File>(Arrays.asList(files));
+    }
+
+    /**
+     * Move to the next record.
+     *
+     * @return false at the end of the recording
+     */
+    public boolean next() throws IOException {
+        while (true) {
+            if (segment != null) {
+                if (recordStart >= 0) {
+                    segment.position(recordStart + segment.getInt(recordStart));
+                }
+                if (segment.remaining() >= RECORD_HEADER) {
+                    int position = segment.position();
+                    int length = segment.getInt(position);
+                    if (length >= RECORD_HEADER && length <= segment.remaining()) {
+                        recordStart = position;
+                        type = segment.get(position + 4);
+                        symbolPair = getPair(segment.get(position + 5), segment.get(position + 6));
+                        timestamp = segment.getLong(position + 8);
+                        return true;
+                    }
+                }
+            }
+            if (fileIndex + 1 >= files.length) {
+                segment = null;
+                return false;
+            }
+            open(files[++fileIndex]);
+        }
+    }
+
+    /**
+     * Go back or ahead to the start of the segment holding timestamp: the last one started at or before it,
+     * or the first one. {@link #next()} then returns records from there on, the earliest ones may be
+     * older than timestamp by up to a segment.
+     */
+    public void seekSegment(long timestamp) {
+        int index = Arrays.binarySearch(starts, timestamp);
+        if (index < 0) {
+            index = Math.max(0, -index - 2);
+        }
+        segment = null;
+        fileIndex = index - 1;
+    }
+
+    /**
+     * BOOK or TICKER.
+     */
+    public int getType() {
+        return type;
+    }
+
+    public SymbolPair getSymbolPair() {
+        return symbolPair;
+    }
+
+    /**
+     * When the record was taken, in milliseconds.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Fill book with the current BOOK record.
+     */
+    public OrderBook readBook(OrderBook book) {
+        checkType(BOOK);
+        book.clear();
+        book.setSymbolPair(symbolPair);
+        book.setTimestamp(timestamp);
+        int position = recordStart + RECORD_HEADER;
+        int asks = segment.getInt(position);
+        int bids = segment.getInt(position + 4);
+        position += 8;
+        for (int i = 0; i < asks; i++, position += LEVEL) {
+            book.addAskUnscaled(segment.getLong(position), segment.getLong(position + 8));
+        }
+        for (int i = 0; i < bids; i++, position += LEVEL) {
+            book.addBidUnscaled(segment.getLong(position), segment.getLong(position + 8));
+        }
+        return book;
+    }
+
+    /**
+     * Price of the current TICKER record, unscaled at OrderBook.PRICE_SCALE.
+     */
+    public long getPriceUnscaled() {
+        checkType(TICKER);
+        return segment.getLong(recordStart + RECORD_HEADER);
+    }
+
+    public double getPrice() {
+        return Decimal.toDouble(getPriceUnscaled(), OrderBook.PRICE_SCALE);
+    }
+
+    @Override
+    public void close() {
+        segment = null;
+        fileIndex = files.length;
+    }
+
+    private void open(File file) throws IOException {
+        segment = null;
+        recordStart = -1;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            FileChannel channel = raf.getChannel();
+            if (channel.size() < HEADER) {
+                return;
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (mapped.getInt() != MAGIC || mapped.getInt() != VERSION
+                    || mapped.getInt() != OrderBook.PRICE_SCALE || mapped.getInt() != OrderBook.AMOUNT_SCALE) {
+                throw new IOException("not a market data segment: " + file);
+            }
+            segment = mapped;
+        }
+    }
+
+    private SymbolPair getPair(byte first, byte second) throws IOException {
+        if (first < 0 || first >= SYMBOLS.length || second < 0 || second >= SYMBOLS.length) {
+            throw new IOException("unknown symbols " + first + "/" + second + " in " + files[fileIndex]);
+        }
+        SymbolPair pair = pairs[first][second];
+        if (pair == null) {
+            pair = new SymbolPair(SYMBOLS[first], SYMBOLS[second]);
+            pairs[first][second] = pair;
+        }
+        return pair;
+    }
+
+    private void checkType(int expected) {
+        if (segment == null || type != expected) {
+            throw new IllegalStateException("current record is not of type " + expected);
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package org.bitcoin.market.record;
+
+import org.bitcoin.common.Decimal;
+import org.bitcoin.market.bean.OrderBook;
+import org.bitcoin.market.bean.SymbolPair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.bitcoin.market.record.RecordFormat.*;
+
+/**
+ * Appends order book snapshots and tickers to memory mapped segment files of a directory,
+ * in the layout described by {@link RecordFormat}, read back with {@link MarketDataReader}.
+ * <p/>
+ * The calling thread only encodes the record into a pooled buffer and hands it over, a writer thread
+ * copies it into the mapped segment. When every buffer is in flight the record is dropped and counted
+ * rather than waited for, so a slow disk never holds up the thread polling the market.
+ * A segment is rolled once the next record does not fit or it is older than the segment time.
+ */
+public class MarketRecorder implements Closeable {
+    private static final Logger LOG = LoggerFactory.getLogger(MarketRecorder.class);
+
+    public static final long DEFAULT_SEGMENT_SIZE = 64L << 20;
+    public static final long DEFAULT_SEGMENT_MILLIS = TimeUnit.HOURS.toMillis(1);
+    public static final int DEFAULT_BUFFERS = 1024;
+
+    private static final int BUFFER_SIZE = 4096;
+    private static final ByteBuffer CLOSE = ByteBuffer.allocate(0);
+
+    private final File directory;
+    private final String prefix;
+    private final BlockingQueue<ByteBuffer> free;
+    private final BlockingQueue<ByteBuffer> pending;
+    private final Thread writer;
+    private final LongAdder recorded = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private volatile long segmentSize = DEFAULT_SEGMENT_SIZE;
+    private volatile long segmentMillis = DEFAULT_SEGMENT_MILLIS;
+    private volatile boolean closed;
+
+    // writer thread only
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private long segmentStart;
+    private int sequence;
+
+    public MarketRecorder(File directory, String prefix) {
+        this(directory, prefix, DEFAULT_BUFFERS);
+    }
+
+    /**
+     * @param directory where segments are written, created when missing
+     * @param prefix    of the segment names, e.g. the market
+     * @param buffers   records that can wait for the writer before new ones are dropped
+     */
+    public MarketRecorder(File directory, String prefix, int buffers) {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IllegalArgumentException("can't create " + directory);
+        }
+        this.directory = directory;
+        this.prefix = prefix;
+        this.free = new ArrayBlockingQueue<ByteBuffer>(buffers);
+        this.pending = new ArrayBlockingQueue<ByteBuffer>(buffers + 1);
+        for (int i = 0; i < buffers; i++) {
+            free.add(ByteBuffer.allocate(BUFFER_SIZE));
+        }
+        this.writer = new Thread(this::write, "market-recorder-" + prefix);
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    /**
+     * Bytes a segment is mapped with, DEFAULT_SEGMENT_SIZE unless set. A bigger record gets a segment of its own size.
+     */
+    public void setSegmentSize(long segmentSize) {
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Age after which the next record starts a new segment, DEFAULT_SEGMENT_MILLIS unless set.
+     */
+    public void setSegmentMillis(long segmentMillis) {
+        this.segmentMillis = segmentMillis;
+    }
+
+    /**
+     * Append a snapshot of book, stamped with its timestamp or now when it has none.
+     *
+     * @return false when the record was dropped
+     */
+    public boolean recordBook(OrderBook book) {
+        int asks = book.getAskCount();
+        int bids = book.getBidCount();
+        ByteBuffer buffer = acquire(RECORD_HEADER + 8 + (asks + bids) * LEVEL);
+        if (buffer == null) {
+            return false;
+        }
+        long timestamp = book.getTimestamp() == 0L ? System.currentTimeMillis() : book.getTimestamp();
+        putHeader(buffer, BOOK, book.getSymbolPair(), timestamp);
+        buffer.putInt(asks).putInt(bids);
+        for (int i = 0; i < asks; i++) {
+            buffer.putLong(book.getAskPriceUnscaled(i)).putLong(book.getAskAmountUnscaled(i));
+        }
+        for (int i = 0; i < bids; i++) {
+            buffer.putLong(book.getBidPriceUnscaled(i)).putLong(book.getBidAmountUnscaled(i));
+        }
+        return submit(buffer);
+    }
+
+    /**
+     * Append the last price of symbolPair.
+     *
+     * @return false when the record was dropped
+     */
+    public boolean recordTicker(SymbolPair symbolPair, long timestamp, double price) {
+        ByteBuffer buffer = acquire(RECORD_HEADER + 8);
+        if (buffer == null) {
+            return false;
+        }
+        putHeader(buffer, TICKER, symbolPair, timestamp);
+        buffer.putLong(Decimal.round(price, OrderBook.PRICE_SCALE));
+        return submit(buffer);
+    }
+
+    public long getRecorded() {
+        return recorded.sum();
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Write what is queued, close the segment and stop the writer. Records arriving later are dropped.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        pending.add(CLOSE);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted closing " + directory, e);
+        }
+    }
+
+    private ByteBuffer acquire(int size) {
+        ByteBuffer buffer = closed ? null : free.poll();
+        if (buffer == null) {
+            dropped.increment();
+            return null;
+        }
+        if (buffer.capacity() < size) {
+            buffer = ByteBuffer.allocate(Math.max(size, buffer.capacity() * 2));
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    private boolean submit(ByteBuffer buffer) {
+        buffer.putInt(0, buffer.position());
+        buffer.flip();
+        // never full: there are fewer buffers than room in the queue
+        pending.add(buffer);
+        return true;
+    }
+
+    private static void putHeader(ByteBuffer buffer, byte type, SymbolPair symbolPair, long timestamp) {
+        buffer.putInt(0).put(type).put((byte) symbolPair.getFirst().ordinal())
+                .put((byte) symbolPair.getSecond().ordinal()).put((byte) 0).putLong(timestamp);
+    }
+
+    private void write() {
+        try {
+            while (true) {
+                ByteBuffer buffer = pending.take();
+                if (buffer == CLOSE) {
+                    break;
+                }
+                try {
+                    append(buffer);
+                    recorded.increment();
+                } catch (IOException e) {
+                    dropped.increment();
+                    LOG.error("can't record to {}", directory, e);
+                    closeSegment();
+                }
+                free.add(buffer);
+            }
+        } catch (InterruptedException e) {
+            LOG.warn("recorder {} interrupted", prefix);
+        }
+        closeSegment();
+    }
+
+    private void append(ByteBuffer buffer) throws IOException {
+        int length = buffer.remaining();
+        long now = System.currentTimeMillis();
+        if (segment != null && (segment.remaining() < length + 4 || now - segmentStart >= segmentMillis)) {
+            closeSegment();
+        }
+        if (segment == null) {
+            openSegment(now, length);
+        }
+        int position = segment.position();
+        // the length goes in last, a reader of the live segment never sees half a record
+        segment.position(position + 4);
+        buffer.position(4);
+        segment.put(buffer);
+        segment.putInt(position, length);
+    }
+
+    private void openSegment(long now, int length) throws IOException {
+        File file = new File(directory, String.format("%s-%013d-%04d%s", prefix, now, sequence++, SUFFIX));
+        long size = Math.max(segmentSize, HEADER + length + 4L);
+        channel = new RandomAccessFile(file, "rw").getChannel();
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        segment.putInt(MAGIC).putInt(VERSION).putInt(OrderBook.PRICE_SCALE).putInt(OrderBook.AMOUNT_SCALE);
+        segmentStart = now;
+    }
+
+    private void closeSegment() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            segment.force();
+            // drop the unused end of the mapping, the end marker is the file end then
+            channel.truncate(segment.position());
+            channel.close();
+        } catch (IOException e) {
+            LOG.error("can't close segment in {}", directory, e);
+        }
+        channel = null;
+        segment = null;
+    }
+
+    @Override
+    public String toString() {
+        return "MarketRecorder{" +
+                "directory=" + directory +
+                ", prefix=" + prefix +
+                ", recorded=" + recorded +
+                ", dropped=" + dropped +
+                '}';
+    }
+}
@@ -0,0 +1,36 @@
+package org.bitcoin.market.record;
+
+import org.bitcoin.market.bean.OrderBook;
+
+/**
+ * Layout shared by {@link MarketRecorder} and {@link MarketDataReader}, big endian like ByteBuffer.
+ * <p/>
+ * A segment starts with a 16 byte header: magic, version, price scale, amount scale. Records follow,
+ * each one is
+ * <pre>
+ * int  length     whole record, this field included, 0 marks the end of the segment
+ * byte type       BOOK or TICKER
+ * byte first      Symbol ordinals of the pair
+ * byte second
+ * byte 0
+ * long timestamp  milliseconds
+ * BOOK:   int asks, int bids, then (long price, long amount) per ask and per bid
+ * TICKER: long price
+ * </pre>
+ * Prices and amounts are unscaled at the scales of {@link OrderBook}.
+ */
+final class RecordFormat {
+    static final int MAGIC = 0x4d445231; // MDR1
+    static final int VERSION = 1;
+    static final int HEADER = 16;
+    static final int RECORD_HEADER = 16;
+    static final int LEVEL = 16;
+
+    static final byte BOOK = 1;
+    static final byte TICKER = 2;
+
+    static final String SUFFIX = ".mdr";
+
+    private RecordFormat() {
+    }
+}
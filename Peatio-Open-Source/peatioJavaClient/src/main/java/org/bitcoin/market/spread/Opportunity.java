@@ -0,0 +1,123 @@
+package org.bitcoin.market.spread;
+
+import org.bitcoin.common.Decimal;
+import org.bitcoin.market.AbstractMarketApi;
+import org.bitcoin.market.bean.OrderBook;
+import org.bitcoin.market.bean.SymbolPair;
+
+/**
+ * Buying on one venue and selling on another pays after fees: the best bid of the sell venue, less its fee,
+ * is above the best ask of the buy venue plus its fee. Prices unscaled at OrderBook.PRICE_SCALE, size at
+ * OrderBook.AMOUNT_SCALE.
+ */
+public class Opportunity {
+    private final SymbolPair symbolPair;
+    private final AbstractMarketApi buyVenue;
+    private final AbstractMarketApi sellVenue;
+    private final long buyPrice;
+    private final long sellPrice;
+    private final long spread;
+    private final long size;
+    private final long profit;
+    private final long timestamp;
+
+    public Opportunity(SymbolPair symbolPair, AbstractMarketApi buyVenue, AbstractMarketApi sellVenue,
+                       long buyPrice, long sellPrice, long spread, long size, long profit, long timestamp) {
+        this.symbolPair = symbolPair;
+        this.buyVenue = buyVenue;
+        this.sellVenue = sellVenue;
+        this.buyPrice = buyPrice;
+        this.sellPrice = sellPrice;
+        this.spread = spread;
+        this.size = size;
+        this.profit = profit;
+        this.timestamp = timestamp;
+    }
+
+    public SymbolPair getSymbolPair() {
+        return symbolPair;
+    }
+
+    public AbstractMarketApi getBuyVenue() {
+        return buyVenue;
+    }
+
+    public AbstractMarketApi getSellVenue() {
+        return sellVenue;
+    }
+
+    /**
+     * Best ask of the buy venue, before fees.
+     */
+    public double getBuyPrice() {
+        return Decimal.toDouble(buyPrice, OrderBook.PRICE_SCALE);
+    }
+
+    public long getBuyPriceUnscaled() {
+        return buyPrice;
+    }
+
+    /**
+     * Best bid of the sell venue, before fees.
+     */
+    public double getSellPrice() {
+        return Decimal.toDouble(sellPrice, OrderBook.PRICE_SCALE);
+    }
+
+    public long getSellPriceUnscaled() {
+        return sellPrice;
+    }
+
+    /**
+     * Gain per unit at the best prices, after the fees of both venues.
+     */
+    public double getSpread() {
+        return Decimal.toDouble(spread, OrderBook.PRICE_SCALE);
+    }
+
+    public long getSpreadUnscaled() {
+        return spread;
+    }
+
+    /**
+     * Amount that can be bought and sold at a gain, over the levels the scanner keeps.
+     */
+    public double getSize() {
+        return Decimal.toDouble(size, OrderBook.AMOUNT_SCALE);
+    }
+
+    public long getSizeUnscaled() {
+        return size;
+    }
+
+    /**
+     * Gain over the whole size, after fees.
+     */
+    public double getProfit() {
+        return Decimal.toDouble(profit, OrderBook.PRICE_SCALE);
+    }
+
+    public long getProfitUnscaled() {
+        return profit;
+    }
+
+    /**
+     * Of the book update that revealed it, in milliseconds.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public String toString() {
+        return "Opportunity{" +
+                "symbolPair=" + symbolPair +
+                ", buy=" + buyVenue.getMarket() + "@" + Decimal.toString(buyPrice, OrderBook.PRICE_SCALE) +
+                ", sell=" + sellVenue.getMarket() + "@" + Decimal.toString(sellPrice, OrderBook.PRICE_SCALE) +
+                ", spread=" + Decimal.toString(spread, OrderBook.PRICE_SCALE) +
+                ", size=" + Decimal.toString(size, OrderBook.AMOUNT_SCALE) +
+                ", profit=" + Decimal.toString(profit, OrderBook.PRICE_SCALE) +
+                ", timestamp=" + timestamp +
+                '}';
+    }
+}
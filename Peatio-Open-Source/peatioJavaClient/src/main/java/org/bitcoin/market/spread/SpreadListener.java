@@ -0,0 +1,9 @@
+package org.bitcoin.market.spread;
+
+/**
+ * Receives the crossed spreads a {@link SpreadScanner} finds, on the thread that delivered the book update.
+ */
+public interface SpreadListener {
+
+    void onOpportunity(Opportunity opportunity);
+}
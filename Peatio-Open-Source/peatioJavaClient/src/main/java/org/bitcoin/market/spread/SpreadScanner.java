@@ -0,0 +1,262 @@
+package org.bitcoin.market.spread;
+
+import org.bitcoin.common.Decimal;
+import org.bitcoin.market.AbstractMarketApi;
+import org.bitcoin.market.bean.OrderBook;
+import org.bitcoin.market.bean.SymbolPair;
+import org.bitcoin.market.depth.DepthListener;
+import org.bitcoin.market.depth.DepthUpdate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Finds crossed spreads between venues as their books change. The scanner listens to the depth manager of
+ * every venue and keeps, per pair, the top levels of each venue with the fee already applied: asks raised by
+ * the venue's {@link AbstractMarketApi#getWholeFee() whole fee}, bids lowered by it. An update of one venue is
+ * only checked against the others, so a book update costs one pass over the venues, and opportunities go to the
+ * {@link SpreadListener}s right away, on the updating thread.
+ * <p/>
+ * The index is an array of immutable quotes per pair, replaced on update and read without locks. Quotes older
+ * than the max age are ignored, a venue that stopped updating doesn't produce opportunities.
+ */
+public class SpreadScanner {
+    private static final Logger LOG = LoggerFactory.getLogger(SpreadScanner.class);
+
+    public static final int DEFAULT_LEVELS = 10;
+    public static final long DEFAULT_MAX_AGE_MILLIS = 10000L;
+    /**
+     * Fee rates are kept unscaled at this scale.
+     */
+    private static final int FEE_SCALE = 8;
+    private static final long ONE = Decimal.rescale(1L, 0, FEE_SCALE);
+
+    private final List<AbstractMarketApi> venues;
+    private final long[] fees;
+    private final int levels;
+    private final ConcurrentMap<SymbolPair, AtomicReferenceArray<Quote>> quotes =
+            new ConcurrentHashMap<SymbolPair, AtomicReferenceArray<Quote>>();
+    private final List<SpreadListener> listeners = new CopyOnWriteArrayList<SpreadListener>();
+    private volatile long maxAgeMillis = DEFAULT_MAX_AGE_MILLIS;
+
+    public SpreadScanner(Collection<? extends AbstractMarketApi> venues) {
+        this(venues, DEFAULT_LEVELS);
+    }
+
+    /**
+     * @param levels top levels of each side kept per venue, bounds the executable size found
+     */
+    public SpreadScanner(Collection<? extends AbstractMarketApi> venues, int levels) {
+        this.venues = new ArrayList<AbstractMarketApi>(venues);
+        this.fees = new long[this.venues.size()];
+        this.levels = levels;
+        refreshFees();
+    }
+
+    /**
+     * Read the fees of the venues again, they are applied to the next updates.
+     */
+    public void refreshFees() {
+        for (int v = 0; v < venues.size(); v++) {
+            Double fee = venues.get(v).getWholeFee();
+            fees[v] = fee == null ? 0L : Decimal.round(fee, FEE_SCALE);
+        }
+    }
+
+    public void setMaxAgeMillis(long maxAgeMillis) {
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    public void addListener(SpreadListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(SpreadListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Follow the books of symbolPair on every venue, through their depth managers.
+     */
+    public void watch(SymbolPair symbolPair) {
+        getQuotes(symbolPair);
+        for (int v = 0; v < venues.size(); v++) {
+            venues.get(v).getDepthManager().subscribe(symbolPair, new VenueListener(v));
+        }
+    }
+
+    /**
+     * Take a new book of a venue, e.g. one not coming through its depth manager, and publish what it crosses.
+     *
+     * @return the opportunities found
+     */
+    public List<Opportunity> update(int venue, SymbolPair symbolPair, OrderBook book) {
+        AtomicReferenceArray<Quote> pairQuotes = getQuotes(symbolPair);
+        Quote quote = new Quote(book, fees[venue], levels);
+        pairQuotes.set(venue, quote);
+
+        List<Opportunity> found = null;
+        long oldest = quote.timestamp - maxAgeMillis;
+        for (int other = 0; other < pairQuotes.length(); other++) {
+            Quote otherQuote = other == venue ? null : pairQuotes.get(other);
+            if (otherQuote == null || otherQuote.timestamp < oldest) {
+                continue;
+            }
+            found = publish(found, cross(symbolPair, venue, quote, other, otherQuote, quote.timestamp));
+            found = publish(found, cross(symbolPair, other, otherQuote, venue, quote, quote.timestamp));
+        }
+        return found == null ? new ArrayList<Opportunity>(0) : found;
+    }
+
+    /**
+     * Every opportunity between the current quotes of symbolPair, without publishing.
+     */
+    public List<Opportunity> scan(SymbolPair symbolPair) {
+        List<Opportunity> found = new ArrayList<Opportunity>();
+        AtomicReferenceArray<Quote> pairQuotes = quotes.get(symbolPair);
+        if (pairQuotes == null) {
+            return found;
+        }
+        long oldest = System.currentTimeMillis() - maxAgeMillis;
+        for (int buy = 0; buy < pairQuotes.length(); buy++) {
+            Quote buyQuote = pairQuotes.get(buy);
+            if (buyQuote == null || buyQuote.timestamp < oldest) {
+                continue;
+            }
+            for (int sell = 0; sell < pairQuotes.length(); sell++) {
+                Quote sellQuote = pairQuotes.get(sell);
+                if (sell == buy || sellQuote == null || sellQuote.timestamp < oldest) {
+                    continue;
+                }
+                Opportunity opportunity = cross(symbolPair, buy, buyQuote, sell, sellQuote,
+                        Math.max(buyQuote.timestamp, sellQuote.timestamp));
+                if (opportunity != null) {
+                    found.add(opportunity);
+                }
+            }
+        }
+        return found;
+    }
+
+    public List<AbstractMarketApi> getVenues() {
+        return new ArrayList<AbstractMarketApi>(venues);
+    }
+
+    /**
+     * Walk the asks of the buy venue against the bids of the sell venue while the sale pays for the purchase.
+     */
+    private Opportunity cross(SymbolPair symbolPair, int buyVenue, Quote buy, int sellVenue, Quote sell, long timestamp) {
+        if (buy.askCount == 0 || sell.bidCount == 0 || sell.bidNet[0] <= buy.askNet[0]) {
+            return null;
+        }
+        long size = 0L;
+        long profit = 0L;
+        int ask = 0;
+        int bid = 0;
+        long askLeft = buy.askAmounts[0];
+        long bidLeft = sell.bidAmounts[0];
+        while (ask < buy.askCount && bid < sell.bidCount && sell.bidNet[bid] > buy.askNet[ask]) {
+            long amount = Math.min(askLeft, bidLeft);
+            size += amount;
+            profit += Decimal.multiply(amount, OrderBook.AMOUNT_SCALE, sell.bidNet[bid] - buy.askNet[ask],
+                    OrderBook.PRICE_SCALE, OrderBook.PRICE_SCALE);
+            askLeft -= amount;
+            bidLeft -= amount;
+            if (askLeft == 0 && ++ask < buy.askCount) {
+                askLeft = buy.askAmounts[ask];
+            }
+            if (bidLeft == 0 && ++bid < sell.bidCount) {
+                bidLeft = sell.bidAmounts[bid];
+            }
+        }
+        return new Opportunity(symbolPair, venues.get(buyVenue), venues.get(sellVenue), buy.askPrice, sell.bidPrice,
+                sell.bidNet[0] - buy.askNet[0], size, profit, timestamp);
+    }
+
+    private List<Opportunity> publish(List<Opportunity> found, Opportunity opportunity) {
+        if (opportunity == null) {
+            return found;
+        }
+        if (found == null) {
+            found = new ArrayList<Opportunity>(2);
+        }
+        found.add(opportunity);
+        for (SpreadListener listener : listeners) {
+            try {
+                listener.onOpportunity(opportunity);
+            } catch (Exception e) {
+                LOG.error("spread listener failed for {}", opportunity, e);
+            }
+        }
+        return found;
+    }
+
+    private AtomicReferenceArray<Quote> getQuotes(SymbolPair symbolPair) {
+        AtomicReferenceArray<Quote> pairQuotes = quotes.get(symbolPair);
+        if (pairQuotes == null) {
+            pairQuotes = new AtomicReferenceArray<Quote>(venues.size());
+            AtomicReferenceArray<Quote> existing = quotes.putIfAbsent(symbolPair, pairQuotes);
+            if (existing != null) {
+                pairQuotes = existing;
+            }
+        }
+        return pairQuotes;
+    }
+
+    /**
+     * Top of a venue's book with the fee applied, immutable once built.
+     */
+    private static class Quote {
+        private final long timestamp;
+        private final long askPrice;
+        private final long bidPrice;
+        private final long[] askNet;
+        private final long[] askAmounts;
+        private final int askCount;
+        private final long[] bidNet;
+        private final long[] bidAmounts;
+        private final int bidCount;
+
+        private Quote(OrderBook book, long fee, int levels) {
+            timestamp = book.getTimestamp() == 0L ? System.currentTimeMillis() : book.getTimestamp();
+            askCount = Math.min(levels, book.getAskCount());
+            bidCount = Math.min(levels, book.getBidCount());
+            askPrice = askCount == 0 ? 0L : book.getAskPriceUnscaled(0);
+            bidPrice = bidCount == 0 ? 0L : book.getBidPriceUnscaled(0);
+            askNet = new long[askCount];
+            askAmounts = new long[askCount];
+            for (int i = 0; i < askCount; i++) {
+                askNet[i] = Decimal.multiply(book.getAskPriceUnscaled(i), OrderBook.PRICE_SCALE, ONE + fee, FEE_SCALE,
+                        OrderBook.PRICE_SCALE);
+                askAmounts[i] = book.getAskAmountUnscaled(i);
+            }
+            bidNet = new long[bidCount];
+            bidAmounts = new long[bidCount];
+            for (int i = 0; i < bidCount; i++) {
+                bidNet[i] = Decimal.multiply(book.getBidPriceUnscaled(i), OrderBook.PRICE_SCALE, ONE - fee, FEE_SCALE,
+                        OrderBook.PRICE_SCALE);
+                bidAmounts[i] = book.getBidAmountUnscaled(i);
+            }
+        }
+    }
+
+    private class VenueListener implements DepthListener {
+        private final int venue;
+
+        private VenueListener(int venue) {
+            this.venue = venue;
+        }
+
+        @Override
+        public void onDepthUpdate(SymbolPair symbolPair, DepthUpdate update, OrderBook book) {
+            update(venue, symbolPair, book);
+        }
+    }
+}
@@ -0,0 +1,318 @@
+package org.bitcoin.market.stream;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import org.bitcoin.common.Decimal;
+import org.bitcoin.common.FiatConverter;
+import org.bitcoin.market.AbstractMarketApi;
+import org.bitcoin.market.bean.Currency;
+import org.bitcoin.market.bean.OrderBook;
+import org.bitcoin.market.bean.OrderSide;
+import org.bitcoin.market.bean.SymbolPair;
+import org.bitcoin.market.bean.Trade;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Market data pushed by peatio instead of polled: peatio publishes through a Pusher compatible websocket,
+ * channel market-&lt;pair&gt;-global, the whole book as event update and the new trades as event trades.
+ * <p/>
+ * A pushed book goes through {@link AbstractMarketApi#applyOrderBook}, so the market's depth listeners
+ * get the levels that changed, trades go to the {@link TradeListener}s. Every (re)subscription is followed
+ * by a snapshot fetched over http, nothing missed while disconnected stays missing. A dropped or silent
+ * connection is reconnected with a backoff from 1 to 30 seconds. Events are delivered on the stream thread.
+ */
+public class MarketStream implements Closeable {
+    private static final Logger LOG = LoggerFactory.getLogger(MarketStream.class);
+
+    public static final int DEFAULT_TIMEOUT_MILLIS = 150000;
+    private static final long MIN_BACKOFF_MILLIS = 1000L;
+    private static final long MAX_BACKOFF_MILLIS = 30000L;
+
+    private final AbstractMarketApi marketApi;
+    private final URI uri;
+    private final ConcurrentMap<String, SymbolPair> channels = new ConcurrentHashMap<String, SymbolPair>();
+    private final List<TradeListener> tradeListeners = new CopyOnWriteArrayList<TradeListener>();
+    private final AtomicLong connects = new AtomicLong();
+    private final OrderBook pushed = new OrderBook();
+    private volatile int timeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+    private volatile WebSocketClient client;
+    private volatile boolean connected;
+    private volatile boolean closed;
+    private Thread thread;
+    private long backoffMillis = MIN_BACKOFF_MILLIS;
+
+    /**
+     * @param uri the websocket endpoint, see {@link #pusherUri}
+     */
+    public MarketStream(AbstractMarketApi marketApi, URI uri) {
+        this.marketApi = marketApi;
+        this.uri = uri;
+    }
+
+    /**
+     * Endpoint of a Pusher app, what peatio's wsHost and pusher key are set to.
+     */
+    public static URI pusherUri(String host, String key, boolean secure) {
+        return URI.create((secure ? "wss://" : "ws://") + host + "/app/" + key + "?protocol=7&client=java&version=1.0");
+    }
+
+    /**
+     * Read timeout: a connection silent for that long is dropped and made again, DEFAULT_TIMEOUT_MILLIS unless set.
+     * Pusher servers ping every 2 minutes.
+     */
+    public void setTimeoutMillis(int timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public void subscribe(SymbolPair symbolPair) {
+        String channel = getChannel(symbolPair);
+        if (channels.put(channel, symbolPair) == null && connected) {
+            send("pusher:subscribe", channel);
+        }
+    }
+
+    public void unsubscribe(SymbolPair symbolPair) {
+        String channel = getChannel(symbolPair);
+        if (channels.remove(channel) != null && connected) {
+            send("pusher:unsubscribe", channel);
+        }
+    }
+
+    public void addTradeListener(TradeListener listener) {
+        tradeListeners.add(listener);
+    }
+
+    public void removeTradeListener(TradeListener listener) {
+        tradeListeners.remove(listener);
+    }
+
+    public synchronized MarketStream start() {
+        if (thread == null) {
+            thread = new Thread(this::run, "market-stream-" + marketApi.getMarket());
+            thread.setDaemon(true);
+            thread.start();
+        }
+        return this;
+    }
+
+    public boolean isConnected() {
+        return connected;
+    }
+
+    /**
+     * Connections established so far.
+     */
+    public long getConnects() {
+        return connects.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        Thread current;
+        synchronized (this) {
+            closed = true;
+            current = thread;
+        }
+        WebSocketClient currentClient = client;
+        if (currentClient != null) {
+            currentClient.abort();
+        }
+        if (current != null) {
+            current.interrupt();
+            try {
+                current.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void run() {
+        while (!closed) {
+            WebSocketClient webSocket = new WebSocketClient(uri);
+            try {
+                webSocket.connect(timeoutMillis);
+                client = webSocket;
+                if (closed) {
+                    break;
+                }
+                webSocket.read(this::onMessage);
+                LOG.info("Market: {} stream closed by {}", marketApi.getMarket(), uri);
+            } catch (IOException e) {
+                if (!closed) {
+                    LOG.warn("Market: {} stream from {} failed: {}", marketApi.getMarket(), uri, e.toString());
+                }
+            } finally {
+                connected = false;
+                client = null;
+                try {
+                    webSocket.abort();
+                } catch (IOException e) {
+                    // closing anyway
+                }
+            }
+            if (closed) {
+                break;
+            }
+            try {
+                Thread.sleep(backoffMillis);
+            } catch (InterruptedException e) {
+                break;
+            }
+            backoffMillis = Math.min(backoffMillis * 2, MAX_BACKOFF_MILLIS);
+        }
+    }
+
+    private void onMessage(String text) {
+        try {
+            onMessage(JSON.parseObject(text));
+        } catch (RuntimeException e) {
+            LOG.warn("Market: {} can't handle {}", marketApi.getMarket(), text, e);
+        }
+    }
+
+    private void onMessage(JSONObject message) {
+        String event = message.getString("event");
+        if (event == null) {
+            return;
+        }
+        switch (event) {
+            case "pusher:connection_established":
+                connected = true;
+                connects.incrementAndGet();
+                backoffMillis = MIN_BACKOFF_MILLIS;
+                for (String channel : channels.keySet()) {
+                    send("pusher:subscribe", channel);
+                }
+                break;
+            case "pusher_internal:subscription_succeeded":
+                resync(channels.get(message.getString("channel")));
+                break;
+            case "pusher:ping":
+                send("pusher:pong", null);
+                break;
+            case "pusher:error":
+                LOG.warn("Market: {} stream error {}", marketApi.getMarket(), message.get("data"));
+                break;
+            case "update":
+                onBook(channels.get(message.getString("channel")), getData(message));
+                break;
+            case "trades":
+                onTrades(channels.get(message.getString("channel")), getData(message));
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Fetch the book over http, what was pushed while not subscribed is lost.
+     */
+    private void resync(SymbolPair symbolPair) {
+        if (symbolPair == null) {
+            return;
+        }
+        try {
+            marketApi.getDepthManager().refresh(symbolPair);
+        } catch (Exception e) {
+            LOG.warn("Market: {} can't resync {}: {}", marketApi.getMarket(), symbolPair, e.toString());
+        }
+    }
+
+    private void onBook(SymbolPair symbolPair, JSONObject data) {
+        if (symbolPair == null || data == null) {
+            return;
+        }
+        pushed.clear();
+        pushed.setTimestamp(System.currentTimeMillis());
+        JSONArray asks = data.getJSONArray("asks");
+        for (int i = 0; asks != null && i < asks.size(); i++) {
+            JSONArray level = asks.getJSONArray(i);
+            pushed.addAskUnscaled(Decimal.parse(level.getString(0), OrderBook.PRICE_SCALE),
+                    Decimal.parse(level.getString(1), OrderBook.AMOUNT_SCALE));
+        }
+        JSONArray bids = data.getJSONArray("bids");
+        for (int i = 0; bids != null && i < bids.size(); i++) {
+            JSONArray level = bids.getJSONArray(i);
+            pushed.addBidUnscaled(Decimal.parse(level.getString(0), OrderBook.PRICE_SCALE),
+                    Decimal.parse(level.getString(1), OrderBook.AMOUNT_SCALE));
+        }
+        marketApi.applyOrderBook(symbolPair, pushed);
+    }
+
+    private void onTrades(SymbolPair symbolPair, JSONObject data) {
+        if (symbolPair == null || data == null || tradeListeners.isEmpty()) {
+            return;
+        }
+        JSONArray items = data.getJSONArray("trades");
+        List<Trade> trades = new ArrayList<Trade>(items == null ? 0 : items.size());
+        for (int i = 0; items != null && i < items.size(); i++) {
+            JSONObject item = items.getJSONObject(i);
+            Trade trade = new Trade();
+            trade.setTradeId(item.getLongValue("tid"));
+            trade.setSymbolPair(symbolPair);
+            trade.setOrderSide("sell".equals(item.getString("type")) ? OrderSide.sell : OrderSide.buy);
+            trade.setTimestamp(item.getLongValue("date"));
+            long price = Decimal.parse(item.getString("price"), Trade.PRICE_SCALE);
+            trade.setPriceUnscaled(marketApi.getCurrency() == Currency.USD ? price : FiatConverter.toUsd(price, Trade.PRICE_SCALE));
+            trade.setAmountUnscaled(Decimal.parse(item.getString("amount"), Trade.AMOUNT_SCALE));
+            trades.add(trade);
+        }
+        for (TradeListener listener : tradeListeners) {
+            try {
+                listener.onTrades(symbolPair, trades);
+            } catch (Exception e) {
+                LOG.error("Market: {} trade listener failed for {}", marketApi.getMarket(), symbolPair, e);
+            }
+        }
+    }
+
+    /**
+     * Pusher sends data as a json string, some servers as an object.
+     */
+    private static JSONObject getData(JSONObject message) {
+        Object data = message.get("data");
+        if (data instanceof String) {
+            return JSON.parseObject((String) data);
+        }
+        return data instanceof JSONObject ? (JSONObject) data : null;
+    }
+
+    private void send(String event, String channel) {
+        WebSocketClient current = client;
+        if (current == null) {
+            return;
+        }
+        JSONObject data = new JSONObject(true);
+        if (channel != null) {
+            data.put("channel", channel);
+        }
+        JSONObject message = new JSONObject(true);
+        message.put("event", event);
+        message.put("data", data);
+        try {
+            current.sendText(message.toJSONString());
+        } catch (IOException e) {
+            LOG.warn("Market: {} can't send {} to {}: {}", marketApi.getMarket(), event, uri, e.toString());
+        }
+    }
+
+    private static String getChannel(SymbolPair symbolPair) {
+        // peatio quotes in cny, usd pairs are its cny ones converted
+        String quote = symbolPair.getSecond().isUsd() ? "cny" : symbolPair.getSecond().name();
+        return "market-" + symbolPair.getFirst().name() + quote + "-global";
+    }
+}
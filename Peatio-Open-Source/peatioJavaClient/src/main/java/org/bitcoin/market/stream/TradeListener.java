@@ -0,0 +1,14 @@
+package org.bitcoin.market.stream;
+
+import org.bitcoin.market.bean.SymbolPair;
+import org.bitcoin.market.bean.Trade;
+
+import java.util.List;
+
+/**
+ * Receives the trades a {@link MarketStream} is pushed, oldest first.
+ */
+public interface TradeListener {
+
+    void onTrades(SymbolPair symbolPair, List<Trade> trades);
+}
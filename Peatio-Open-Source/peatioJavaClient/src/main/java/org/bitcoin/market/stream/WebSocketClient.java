@@ -0,0 +1,299 @@
+package org.bitcoin.market.stream;
+
+import com.google.common.base.Charsets;
+
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Random;
+
+/**
+ * Just enough of a RFC 6455 client for a text protocol: the opening handshake, masked text frames out,
+ * text frames (possibly fragmented) in, answers to pings and the closing handshake. ws and wss.
+ * <p/>
+ * {@link #connect} opens the connection, {@link #read} then blocks the calling thread delivering
+ * messages until the connection ends. Sending is thread safe.
+ * <p/>
+ * On wss the server certificate must be valid for the host of the uri, as https checks it.
+ */
+public class WebSocketClient implements Closeable {
+    private static final String GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+    private static final int OP_CONTINUATION = 0x0;
+    private static final int OP_TEXT = 0x1;
+    private static final int OP_BINARY = 0x2;
+    private static final int OP_CLOSE = 0x8;
+    private static final int OP_PING = 0x9;
+    private static final int OP_PONG = 0xA;
+    private static final int MAX_MESSAGE = 16 << 20;
+
+    /**
+     * Receives the text messages of a connection, on the thread calling {@link #read}.
+     */
+    public interface MessageHandler {
+        void onMessage(String message);
+    }
+
+    private final URI uri;
+    private final SSLSocketFactory sslSocketFactory;
+    private final Random random = new SecureRandom();
+    private Socket socket;
+    private DataInputStream in;
+    private OutputStream out;
+    private volatile boolean closeSent;
+
+    public WebSocketClient(URI uri) {
+        this(uri, (SSLSocketFactory) SSLSocketFactory.getDefault());
+    }
+
+    /**
+     * @param sslSocketFactory for wss, e.g. of an SSLContext trusting a private certificate authority
+     */
+    public WebSocketClient(URI uri, SSLSocketFactory sslSocketFactory) {
+        String scheme = uri.getScheme();
+        if (!"ws".equals(scheme) && !"wss".equals(scheme)) {
+            throw new IllegalArgumentException("not a websocket uri: " + uri);
+        }
+        this.uri = uri;
+        this.sslSocketFactory = sslSocketFactory;
+    }
+
+    public URI getUri() {
+        return uri;
+    }
+
+    /**
+     * Open the connection and do the opening handshake.
+     *
+     * @param timeoutMillis for the connect and, afterwards, for every read: a silent connection fails read
+     */
+    public void connect(int timeoutMillis) throws IOException {
+        boolean secure = "wss".equals(uri.getScheme());
+        int port = uri.getPort() > 0 ? uri.getPort() : secure ? 443 : 80;
+        Socket plain = new Socket();
+        try {
+            plain.connect(new InetSocketAddress(uri.getHost(), port), timeoutMillis);
+            plain.setTcpNoDelay(true);
+            plain.setSoTimeout(timeoutMillis);
+            socket = secure ? startTls(plain, port) : plain;
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            out = socket.getOutputStream();
+            handshake(port, secure);
+        } catch (IOException e) {
+            plain.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Wrap plain in TLS and finish the TLS handshake, checking the certificate against the host before
+     * anything is sent.
+     */
+    private Socket startTls(Socket plain, int port) throws IOException {
+        SSLSocket ssl = (SSLSocket) sslSocketFactory.createSocket(plain, uri.getHost(), port, true);
+        SSLParameters parameters = ssl.getSSLParameters();
+        parameters.setEndpointIdentificationAlgorithm("HTTPS");
+        ssl.setSSLParameters(parameters);
+        ssl.startHandshake();
+        return ssl;
+    }
+
+    /**
+     * Deliver the text messages to handler until the server closes the connection.
+     *
+     * @throws IOException when the connection breaks or times out
+     */
+    public void read(MessageHandler handler) throws IOException {
+        ByteArrayOutputStream message = new ByteArrayOutputStream();
+        while (true) {
+            int first = in.readUnsignedByte();
+            int second = in.readUnsignedByte();
+            boolean fin = (first & 0x80) != 0;
+            int opcode = first & 0x0F;
+            long length = second & 0x7F;
+            if (length == 126) {
+                length = in.readUnsignedShort();
+            } else if (length == 127) {
+                length = in.readLong();
+            }
+            if (length < 0 || length > MAX_MESSAGE || message.size() + length > MAX_MESSAGE) {
+                throw new IOException("frame too long: " + length);
+            }
+            byte[] mask = null;
+            if ((second & 0x80) != 0) {
+                mask = new byte[4];
+                in.readFully(mask);
+            }
+            byte[] payload = new byte[(int) length];
+            in.readFully(payload);
+            if (mask != null) {
+                for (int i = 0; i < payload.length; i++) {
+                    payload[i] ^= mask[i & 3];
+                }
+            }
+
+            switch (opcode) {
+                case OP_TEXT:
+                case OP_BINARY:
+                case OP_CONTINUATION:
+                    message.write(payload, 0, payload.length);
+                    if (fin) {
+                        String text = new String(message.toByteArray(), Charsets.UTF_8);
+                        message.reset();
+                        handler.onMessage(text);
+                    }
+                    break;
+                case OP_PING:
+                    send(OP_PONG, payload);
+                    break;
+                case OP_PONG:
+                    break;
+                case OP_CLOSE:
+                    if (!closeSent) {
+                        closeSent = true;
+                        send(OP_CLOSE, payload);
+                    }
+                    socket.close();
+                    return;
+                default:
+                    throw new IOException("unknown opcode " + opcode);
+            }
+        }
+    }
+
+    public void sendText(String text) throws IOException {
+        send(OP_TEXT, text.getBytes(Charsets.UTF_8));
+    }
+
+    /**
+     * Start the closing handshake, {@link #read} returns once the server answers. Closes the socket
+     * right away when the handshake can't be sent.
+     */
+    @Override
+    public void close() throws IOException {
+        if (socket == null || socket.isClosed()) {
+            return;
+        }
+        try {
+            if (!closeSent) {
+                closeSent = true;
+                // 1000 normal closure
+                send(OP_CLOSE, new byte[]{0x03, (byte) 0xE8});
+            }
+        } catch (IOException e) {
+            socket.close();
+        }
+    }
+
+    /**
+     * Close the socket without the closing handshake, {@link #read} fails.
+     */
+    public void abort() throws IOException {
+        if (socket != null) {
+            socket.close();
+        }
+    }
+
+    private synchronized void send(int opcode, byte[] payload) throws IOException {
+        int length = payload.length;
+        byte[] frame = new byte[length + 14];
+        int position = 0;
+        frame[position++] = (byte) (0x80 | opcode);
+        if (length < 126) {
+            frame[position++] = (byte) (0x80 | length);
+        } else if (length < 65536) {
+            frame[position++] = (byte) (0x80 | 126);
+            frame[position++] = (byte) (length >>> 8);
+            frame[position++] = (byte) length;
+        } else {
+            frame[position++] = (byte) (0x80 | 127);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                frame[position++] = (byte) ((long) length >>> shift);
+            }
+        }
+        byte[] mask = new byte[4];
+        random.nextBytes(mask);
+        System.arraycopy(mask, 0, frame, position, 4);
+        position += 4;
+        for (int i = 0; i < length; i++) {
+            frame[position++] = (byte) (payload[i] ^ mask[i & 3]);
+        }
+        out.write(frame, 0, position);
+        out.flush();
+    }
+
+    private void handshake(int port, boolean secure) throws IOException {
+        byte[] nonce = new byte[16];
+        random.nextBytes(nonce);
+        String key = Base64.getEncoder().encodeToString(nonce);
+        String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+        if (uri.getRawQuery() != null) {
+            path += "?" + uri.getRawQuery();
+        }
+        boolean defaultPort = port == (secure ? 443 : 80);
+        String request = "GET " + path + " HTTP/1.1\r\n"
+                + "Host: " + uri.getHost() + (defaultPort ? "" : ":" + port) + "\r\n"
+                + "Upgrade: websocket\r\n"
+                + "Connection: Upgrade\r\n"
+                + "Sec-WebSocket-Key: " + key + "\r\n"
+                + "Sec-WebSocket-Version: 13\r\n\r\n";
+        out.write(request.getBytes(Charsets.US_ASCII));
+        out.flush();
+
+        String status = readLine(in);
+        if (!status.startsWith("HTTP/1.1 101")) {
+            throw new IOException("websocket handshake refused by " + uri + ": " + status);
+        }
+        String accept = null;
+        for (String line = readLine(in); !line.isEmpty(); line = readLine(in)) {
+            int colon = line.indexOf(':');
+            if (colon > 0 && line.substring(0, colon).trim().equalsIgnoreCase("Sec-WebSocket-Accept")) {
+                accept = line.substring(colon + 1).trim();
+            }
+        }
+        if (!acceptKey(key).equals(accept)) {
+            throw new IOException("bad Sec-WebSocket-Accept from " + uri + ": " + accept);
+        }
+    }
+
+    /**
+     * Sec-WebSocket-Accept expected for key.
+     */
+    public static String acceptKey(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest((key + GUID).getBytes(Charsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        while (true) {
+            int c = in.read();
+            if (c < 0) {
+                throw new EOFException("connection closed during websocket handshake");
+            }
+            if (c == '\n') {
+                int length = line.length();
+                return length > 0 && line.charAt(length - 1) == '\r' ? line.substring(0, length - 1) : line.toString();
+            }
+            line.append((char) c);
+        }
+    }
+}
@@ -77,15 +77,26 @@ public enum MarketErrorCode {
         JSONObject error = response.getJSONObject("error");
         int code = error.getInteger("code");
         String msg = error.getString("message");
+        MarketErrorCode marketErrorCode = findForPeatioCNY(code);
+        if (marketErrorCode == null) {
+            throw new RuntimeException("code:" + code + " message:" + msg);
+        }
+        return marketErrorCode;
+
+    }
+
+    /**
+     * @return null when the peatio error code has no counterpart
+     */
+    public static MarketErrorCode findForPeatioCNY(int code) {
         switch (code) {
             case 10001:
                 return manyTimes;
             case 2002:
                 return notEnoughBtc;
             default:
-                throw new RuntimeException("code:" + code + " message:" + msg);
+                return null;
         }
-
     }
 
 
@@ -0,0 +1,231 @@
+package org.bitcoin.market.utils;
+
+import com.google.common.base.Charsets;
+import org.bitcoin.common.Decimal;
+import org.bitcoin.market.bean.OrderBook;
+
+/**
+ * Single pass decoder of the peatio /api/v2/order_book payload:
+ * {"asks": [{"price": "3000.0", "remaining_volume": "0.1", ...}, ...], "bids": [...]}.
+ * <p/>
+ * Only price and remaining_volume are read, straight from the response bytes into the unscaled
+ * values of the book, every other field is skipped without being materialized. Levels are added in payload order.
+ * Instances hold no state and can be shared.
+ */
+public class OrderBookDecoder {
+    private static final byte[] ASKS = "asks".getBytes(Charsets.US_ASCII);
+    private static final byte[] BIDS = "bids".getBytes(Charsets.US_ASCII);
+    private static final byte[] PRICE = "price".getBytes(Charsets.US_ASCII);
+    private static final byte[] REMAINING_VOLUME = "remaining_volume".getBytes(Charsets.US_ASCII);
+
+    /**
+     * Clear book and fill it from data.
+     *
+     * @return false when data has no asks array
+     * @throws IllegalArgumentException when data is not valid json
+     */
+    public boolean decode(byte[] data, OrderBook book) {
+        Cursor cursor = new Cursor(data);
+        book.clear();
+        boolean hasAsks = false;
+
+        cursor.expect('{');
+        if (cursor.peek() == '}') {
+            return false;
+        }
+        while (true) {
+            int keyStart = cursor.readKey();
+            int keyEnd = cursor.end;
+            cursor.expect(':');
+            if (matches(data, keyStart, keyEnd, ASKS) && cursor.peek() == '[') {
+                decodeLevels(cursor, book, true);
+                hasAsks = true;
+            } else if (matches(data, keyStart, keyEnd, BIDS) && cursor.peek() == '[') {
+                decodeLevels(cursor, book, false);
+            } else {
+                cursor.skipValue();
+            }
+            if (cursor.next() == '}') {
+                return hasAsks;
+            }
+        }
+    }
+
+    private void decodeLevels(Cursor cursor, OrderBook book, boolean ask) {
+        byte[] data = cursor.data;
+        cursor.expect('[');
+        if (cursor.peek() == ']') {
+            cursor.next();
+            return;
+        }
+        while (true) {
+            long price = 0L;
+            long amount = 0L;
+            cursor.expect('{');
+            if (cursor.peek() != '}') {
+                while (true) {
+                    int keyStart = cursor.readKey();
+                    int keyEnd = cursor.end;
+                    cursor.expect(':');
+                    if (matches(data, keyStart, keyEnd, PRICE)) {
+                        price = cursor.readUnscaled(OrderBook.PRICE_SCALE);
+                    } else if (matches(data, keyStart, keyEnd, REMAINING_VOLUME)) {
+                        amount = cursor.readUnscaled(OrderBook.AMOUNT_SCALE);
+                    } else {
+                        cursor.skipValue();
+                    }
+                    if (cursor.next() == '}') {
+                        break;
+                    }
+                }
+            } else {
+                cursor.next();
+            }
+            if (ask) {
+                book.addAskUnscaled(price, amount);
+            } else {
+                book.addBidUnscaled(price, amount);
+            }
+            if (cursor.next() == ']') {
+                return;
+            }
+        }
+    }
+
+    private static boolean matches(byte[] data, int start, int end, byte[] key) {
+        if (end - start != key.length) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (data[start + i] != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static class Cursor {
+        private final byte[] data;
+        private int pos;
+        private int end;
+
+        private Cursor(byte[] data) {
+            this.data = data;
+        }
+
+        private byte peek() {
+            while (pos < data.length) {
+                byte b = data[pos];
+                if (b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+                    return b;
+                }
+                pos++;
+            }
+            throw error("unexpected end");
+        }
+
+        private byte next() {
+            byte b = peek();
+            pos++;
+            return b;
+        }
+
+        private void expect(char c) {
+            if (next() != c) {
+                throw error("expected '" + c + "'");
+            }
+        }
+
+        /**
+         * Read a string key, its content is data[start, end) with escapes left in place.
+         */
+        private int readKey() {
+            expect('"');
+            int start = pos;
+            skipStringContent();
+            end = pos - 1;
+            return start;
+        }
+
+        private void skipStringContent() {
+            while (pos < data.length) {
+                byte b = data[pos++];
+                if (b == '\\') {
+                    pos++;
+                } else if (b == '"') {
+                    return;
+                }
+            }
+            throw error("unterminated string");
+        }
+
+        private void skipValue() {
+            byte b = peek();
+            if (b == '"') {
+                pos++;
+                skipStringContent();
+            } else if (b == '{' || b == '[') {
+                int depth = 0;
+                while (pos < data.length) {
+                    b = data[pos++];
+                    if (b == '"') {
+                        skipStringContent();
+                    } else if (b == '{' || b == '[') {
+                        depth++;
+                    } else if (b == '}' || b == ']') {
+                        if (--depth == 0) {
+                            return;
+                        }
+                    }
+                }
+                throw error("unterminated value");
+            } else {
+                while (pos < data.length) {
+                    b = data[pos];
+                    if (b == ',' || b == '}' || b == ']' || b == ' ' || b == '\n' || b == '\r' || b == '\t') {
+                        return;
+                    }
+                    pos++;
+                }
+            }
+        }
+
+        /**
+         * Read a number written either bare or as a string as an unscaled value, null reads as 0.
+         */
+        private long readUnscaled(int scale) {
+            boolean quoted = peek() == '"';
+            if (quoted) {
+                pos++;
+            }
+            int start = pos;
+            while (pos < data.length) {
+                byte b = data[pos];
+                if ((b >= '0' && b <= '9') || b == '.' || b == '-' || b == '+' || b == 'e' || b == 'E') {
+                    pos++;
+                } else {
+                    break;
+                }
+            }
+            int numberEnd = pos;
+            if (quoted) {
+                expect('"');
+            }
+            if (numberEnd == start) {
+                if (!quoted) {
+                    skipValue();
+                }
+                return 0L;
+            }
+            try {
+                return Decimal.parse(data, start, numberEnd - start, scale);
+            } catch (NumberFormatException e) {
+                throw error(e.getMessage());
+            }
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException("order_book decode error at " + pos + ": " + message);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package org.bitcoin.market.utils;
+
+import com.google.common.base.Throwables;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Iterates over several paged sources one after the other.
+ * <p/>
+ * The first page of every source is requested up front so that they load in parallel,
+ * after that each source keeps one page ahead of the reader: page n+1 is requested when
+ * page n starts being read. A page shorter than pageSize ends its source.
+ * Stopping early is free, {@link #close()} drops whatever is still in flight and no
+ * further page is requested. Not thread safe.
+ */
+public class PagedIterator<T> implements Iterator<T>, Closeable {
+
+    public interface PageFetcher<T> {
+        /**
+         * @param page 1 based page number
+         */
+        CompletableFuture<List<T>> fetch(int page);
+    }
+
+    private final List<Source> sources;
+    private final int pageSize;
+    private int current;
+    private boolean closed;
+
+    public PagedIterator(List<? extends PageFetcher<T>> fetchers, int pageSize) {
+        this.pageSize = pageSize;
+        this.sources = new ArrayList<Source>(fetchers.size());
+        for (PageFetcher<T> fetcher : fetchers) {
+            sources.add(new Source(fetcher));
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!closed && current < sources.size()) {
+            Source source = sources.get(current);
+            if (source.items.hasNext()) {
+                return true;
+            }
+            if (source.pending == null) {
+                current++;
+                continue;
+            }
+            List<T> page = join(source.pending);
+            source.items = page.iterator();
+            if (page.size() >= pageSize) {
+                source.pending = source.fetcher.fetch(++source.page);
+            } else {
+                source.pending = null;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return sources.get(current).items.next();
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Stream over the remaining elements, closing the stream closes this iterator.
+     */
+    public Stream<T> stream() {
+        Spliterator<T> spliterator = Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false).onClose(this::close);
+    }
+
+    /**
+     * Drain the remaining elements.
+     */
+    public List<T> toList() {
+        List<T> list = new ArrayList<T>();
+        while (hasNext()) {
+            list.add(next());
+        }
+        return list;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        for (Source source : sources) {
+            if (source.pending != null) {
+                source.pending.cancel(false);
+                source.pending = null;
+            }
+        }
+    }
+
+    private List<T> join(CompletableFuture<List<T>> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            close();
+            throw Throwables.propagate(e);
+        } catch (ExecutionException e) {
+            close();
+            throw Throwables.propagate(e.getCause());
+        }
+    }
+
+    private class Source {
+        private final PageFetcher<T> fetcher;
+        private int page = 1;
+        private CompletableFuture<List<T>> pending;
+        private Iterator<T> items = Collections.<T>emptyList().iterator();
+
+        private Source(PageFetcher<T> fetcher) {
+            this.fetcher = fetcher;
+            this.pending = fetcher.fetch(page);
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package org.bitcoin.market.utils;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Throwables;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * HMAC-SHA256 signer of the peatio canonical request string "verb|uri|k1=v1&k2=v2".
+ * <p/>
+ * Initialized Macs are shared by every thread: each secret key has a few idle ones, taken for a signature
+ * and given back after, cloned from an initialized template when all are in use. Threads that sign once,
+ * such as the virtual threads of an AccountExecutor, still find a ready Mac. At most MAX_KEYS keys are kept.
+ * The string and byte buffers are per thread. Safe for concurrent use.
+ */
+public class RequestSigner {
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    /**
+     * Secret keys with cached Macs, beyond that one is dropped for each new key.
+     */
+    public static final int MAX_KEYS = 4096;
+    /**
+     * Idle Macs kept per key, one per signature running at once is enough.
+     */
+    public static final int MAX_IDLE_PER_KEY = 8;
+
+    private final ConcurrentMap<String, MacPool> macs = new ConcurrentHashMap<String, MacPool>();
+
+    private final ThreadLocal<State> states = new ThreadLocal<State>() {
+        @Override
+        protected State initialValue() {
+            return new State();
+        }
+    };
+
+    private final AtomicLong signCount = new AtomicLong();
+    private final AtomicLong signNanos = new AtomicLong();
+
+    /**
+     * @param params sorted request parameters, canonical_verb, canonical_uri and signature are skipped
+     * @return the lower case hex signature
+     */
+    public String sign(String secretKey, String verb, String uri, SortedMap<String, String> params) {
+        return sign(secretKey, verb, uri, params.entrySet());
+    }
+
+    /**
+     * Sign parameters already in canonical order, for queries with repeated keys such as
+     * "orders[][price]" where the order of the entries matters.
+     */
+    public String sign(String secretKey, String verb, String uri, List<Map.Entry<String, String>> params) {
+        return sign(secretKey, verb, uri, (Iterable<Map.Entry<String, String>>) params);
+    }
+
+    private String sign(String secretKey, String verb, String uri, Iterable<Map.Entry<String, String>> params) {
+        long start = System.nanoTime();
+        State state = states.get();
+        StringBuilder canonical = state.canonical;
+        canonical.setLength(0);
+        canonical.append(verb).append('|').append(uri).append('|');
+        boolean first = true;
+        for (Map.Entry<String, String> entry : params) {
+            String key = entry.getKey();
+            if (key.equals("canonical_verb") || key.equals("canonical_uri") || key.equals("signature")) {
+                continue;
+            }
+            if (!first) {
+                canonical.append('&');
+            }
+            canonical.append(key).append('=').append(entry.getValue());
+            first = false;
+        }
+
+        MacPool pool = getPool(secretKey);
+        Mac mac = pool.take();
+        int length = state.encode();
+        if (length < 0) {
+            mac.update(canonical.toString().getBytes(Charsets.UTF_8));
+        } else {
+            mac.update(state.bytes, 0, length);
+        }
+        // doFinal resets the mac, ready for the next signature; a failure above drops it instead
+        byte[] digest = mac.doFinal();
+        pool.give(mac);
+
+        char[] hex = state.hex;
+        for (int i = 0; i < digest.length; i++) {
+            hex[i * 2] = HEX[(digest[i] >> 4) & 0xf];
+            hex[i * 2 + 1] = HEX[digest[i] & 0xf];
+        }
+        String signature = new String(hex, 0, digest.length * 2);
+
+        signCount.incrementAndGet();
+        signNanos.addAndGet(System.nanoTime() - start);
+        return signature;
+    }
+
+    public long getSignCount() {
+        return signCount.get();
+    }
+
+    /**
+     * Total time spent signing.
+     */
+    public long getSignNanos() {
+        return signNanos.get();
+    }
+
+    private MacPool getPool(String secretKey) {
+        MacPool pool = macs.get(secretKey);
+        if (pool == null) {
+            if (macs.size() >= MAX_KEYS) {
+                Iterator<String> keys = macs.keySet().iterator();
+                if (keys.hasNext()) {
+                    keys.next();
+                    keys.remove();
+                }
+            }
+            pool = new MacPool(secretKey);
+            MacPool existing = macs.putIfAbsent(secretKey, pool);
+            if (existing != null) {
+                pool = existing;
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * Keys with cached Macs.
+     */
+    public int getKeyCount() {
+        return macs.size();
+    }
+
+    /**
+     * Idle Macs of one secret key, the template is initialized once and only ever cloned.
+     */
+    private static class MacPool {
+        private final Mac template;
+        private final Queue<Mac> idle = new ConcurrentLinkedQueue<Mac>();
+        private final AtomicInteger idleCount = new AtomicInteger();
+
+        private MacPool(String secretKey) {
+            try {
+                template = Mac.getInstance(ALGORITHM);
+                template.init(new SecretKeySpec(secretKey.getBytes(Charsets.UTF_8), ALGORITHM));
+            } catch (Exception e) {
+                throw Throwables.propagate(e);
+            }
+        }
+
+        private Mac take() {
+            Mac mac = idle.poll();
+            if (mac != null) {
+                idleCount.decrementAndGet();
+                return mac;
+            }
+            try {
+                return (Mac) template.clone();
+            } catch (CloneNotSupportedException e) {
+                throw Throwables.propagate(e);
+            }
+        }
+
+        private void give(Mac mac) {
+            if (idleCount.incrementAndGet() <= MAX_IDLE_PER_KEY) {
+                idle.offer(mac);
+            } else {
+                idleCount.decrementAndGet();
+            }
+        }
+    }
+
+    private static class State {
+        private final StringBuilder canonical = new StringBuilder(256);
+        private byte[] bytes = new byte[256];
+        private final char[] hex = new char[64];
+
+        /**
+         * Copy the canonical string into bytes when it is plain ASCII.
+         *
+         * @return the encoded length, or -1 when the string needs a real UTF-8 encoding
+         */
+        private int encode() {
+            int length = canonical.length();
+            if (bytes.length < length) {
+                bytes = new byte[Math.max(length, bytes.length * 2)];
+            }
+            for (int i = 0; i < length; i++) {
+                char c = canonical.charAt(i);
+                if (c >= 0x80) {
+                    return -1;
+                }
+                bytes[i] = (byte) c;
+            }
+            return length;
+        }
+    }
+}
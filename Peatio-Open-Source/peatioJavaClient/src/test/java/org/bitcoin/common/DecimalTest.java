@@ -0,0 +1,85 @@
+package org.bitcoin.common;
+
+import com.google.common.base.Charsets;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class DecimalTest {
+
+    @Test
+    public void testRound() throws Exception {
+        assertEquals(10001L, Decimal.round(1.00005, 4));
+        assertEquals(-10001L, Decimal.round(-1.00005, 4));
+        assertEquals(12346L, Decimal.round(1.23456, 4));
+        assertEquals(3L, Decimal.round(0.0003, 4));
+        assertEquals(0L, Decimal.round(0.00004999, 4));
+        assertEquals(1.2346, DoubleUtils.toFourDecimal(1.23456), 0.0);
+        assertEquals(1.235, DoubleUtils.toThreeDecimal(1.23456), 0.0);
+
+        Random random = new Random(7);
+        for (int i = 0; i < 10000; i++) {
+            double value = random.nextInt(100000000) / 1e6;
+            long expected = new BigDecimal(Double.toString(value)).setScale(4, RoundingMode.HALF_UP).unscaledValue().longValue();
+            assertEquals(String.valueOf(value), expected, Decimal.round(value, 4));
+        }
+    }
+
+    @Test
+    public void testParse() throws Exception {
+        assertEquals(30125000L, parse("3012.5", 4));
+        assertEquals(-30125000L, parse("-3012.5", 4));
+        assertEquals(12345679L, parse("0.123456789", 8));
+        assertEquals(100000L, parse("1e-3", 8));
+        assertEquals(25000000L, parse("2.5E3", 4));
+        assertEquals(7L, parse("7", 0));
+        assertEquals(0L, parse("0.00000", 8));
+        assertEquals(1L, parse("0.000000005", 8));
+        assertEquals(12345678901234568L, parse("1.23456789012345678", 16));
+
+        try {
+            parse("1.2.3", 4);
+            fail();
+        } catch (NumberFormatException e) {
+            // expected
+        }
+        try {
+            parse("abc", 4);
+            fail();
+        } catch (NumberFormatException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testArithmetic() throws Exception {
+        assertEquals(4800000L, Decimal.multiply(30000000L, 4, 16000000L, 8, 4));
+        assertEquals(4838710L, FiatConverter.toUsd(30000000L, 4));
+        assertEquals(30000000L, FiatConverter.toCNY(4838710L, 4) / 10 * 10);
+        // the double and the unscaled conversions use the same rate
+        assertEquals(FiatConverter.toUsd(3000.0), Decimal.toDouble(FiatConverter.toUsd(30000000L, 4), 4), 0.0);
+        assertEquals(FiatConverter.toCNY(483.871), Decimal.toDouble(FiatConverter.toCNY(4838710L, 4), 4), 0.0);
+        assertEquals(33333L, Decimal.divide(1L, 0, 3L, 0, 5));
+        assertEquals(-66667L, Decimal.divide(-2L, 0, 3L, 0, 5));
+        assertEquals(12L, Decimal.rescale(1150L, 2, 0));
+        assertEquals(-12L, Decimal.rescale(-1150L, 2, 0));
+        assertEquals(Long.MAX_VALUE / 2, Decimal.multiply(Long.MAX_VALUE / 2, 8, 100000000L, 8, 8));
+
+        Decimal a = Decimal.valueOf("0.1", 8);
+        Decimal b = Decimal.valueOf(0.2, 4);
+        assertEquals(Decimal.valueOf("0.3", 2), a.add(b));
+        assertEquals("0.3", a.add(b).toString());
+        assertEquals("-0.0001", Decimal.of(-1L, 4).toString());
+        assertEquals("12.05", Decimal.toString(1205000L, 5));
+        assertEquals("3", Decimal.toString(300L, 2));
+    }
+
+    private static long parse(String text, int scale) {
+        byte[] data = (" " + text + " ").getBytes(Charsets.US_ASCII);
+        return Decimal.parse(data, 1, data.length - 2, scale);
+    }
+}
@@ -0,0 +1,128 @@
+package org.bitcoin.market;
+
+import org.bitcoin.market.bean.AppAccount;
+import org.bitcoin.market.bean.Asset;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class AccountExecutorTest {
+
+    @Test
+    public void testBoundPerAccount() throws Exception {
+        AccountExecutor executor = new AccountExecutor(true, 2);
+        assertEquals(AccountExecutor.isVirtualThreadsAvailable(), executor.isVirtual());
+        AppAccount first = getAppAccount(1L);
+        AppAccount second = getAppAccount(2L);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger runningFirst = new AtomicInteger();
+        AtomicInteger maxRunningFirst = new AtomicInteger();
+        AtomicInteger runningSecond = new AtomicInteger();
+        List<CompletableFuture<Integer>> futures = new ArrayList<CompletableFuture<Integer>>();
+        for (int i = 0; i < 6; i++) {
+            futures.add(executor.submit(first, () -> {
+                maxRunningFirst.accumulateAndGet(runningFirst.incrementAndGet(), Math::max);
+                release.await();
+                runningFirst.decrementAndGet();
+                return 1;
+            }));
+        }
+        awaitValue(runningFirst, 2);
+        // the other calls of first wait for room, second isn't held up by them
+        for (int i = 0; i < 2; i++) {
+            futures.add(executor.submit(second, () -> {
+                runningSecond.incrementAndGet();
+                release.await();
+                return 1;
+            }));
+        }
+        awaitValue(runningSecond, 2);
+        assertEquals(2, runningFirst.get());
+
+        release.countDown();
+        for (CompletableFuture<Integer> future : futures) {
+            assertEquals(Integer.valueOf(1), future.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(2, maxRunningFirst.get());
+        executor.close();
+    }
+
+    @Test
+    public void testBoundPlatformThreads() throws Exception {
+        AccountExecutor executor = new AccountExecutor(false, 4, 3);
+        assertFalse(executor.isVirtual());
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<CompletableFuture<Integer>> futures = new ArrayList<CompletableFuture<Integer>>();
+        for (long id = 1; id <= 10; id++) {
+            futures.add(executor.submit(getAppAccount(id), () -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                release.await();
+                running.decrementAndGet();
+                return 1;
+            }));
+        }
+        awaitValue(running, 3);
+        release.countDown();
+        for (CompletableFuture<Integer> future : futures) {
+            assertEquals(Integer.valueOf(1), future.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(3, maxRunning.get());
+        executor.close();
+
+        try {
+            executor.submit(getAppAccount(1L), () -> 1).get(5, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException expected) {
+            assertTrue(expected.getCause() instanceof RejectedExecutionException);
+        }
+    }
+
+    @Test
+    public void testGetInfoOfEveryAccount() throws Exception {
+        FakePeatioServer server = new FakePeatioServer().start();
+        PeatioCNYApi api = new PeatioCNYApi(server.getBaseUrl());
+        List<AppAccount> appAccounts = new ArrayList<AppAccount>();
+        for (long id = 1; id <= 20; id++) {
+            AppAccount appAccount = getAppAccount(id);
+            server.addMember(appAccount.getAccessKey(), appAccount.getSecretKey()).setBalance("btc", id);
+            appAccounts.add(appAccount);
+        }
+        try (AccountExecutor executor = new AccountExecutor()) {
+            Map<AppAccount, CompletableFuture<Asset>> assets = executor.submitAll(appAccounts, api::getInfo);
+            for (AppAccount appAccount : appAccounts) {
+                Asset asset = assets.get(appAccount).get(10, TimeUnit.SECONDS);
+                assertEquals(appAccount.getId().doubleValue(), asset.getAvailableBtc(), 0.0);
+            }
+        } finally {
+            server.close();
+        }
+    }
+
+    private static void awaitValue(AtomicInteger value, int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (value.get() != expected) {
+            assertTrue("still " + value.get() + " instead of " + expected, System.currentTimeMillis() < deadline);
+            Thread.sleep(1);
+        }
+    }
+
+    private static AppAccount getAppAccount(long id) {
+        AppAccount appAccount = new AppAccount();
+        appAccount.setId(id);
+        appAccount.setAccessKey("access" + id);
+        appAccount.setSecretKey("secret" + id);
+        return appAccount;
+    }
+}
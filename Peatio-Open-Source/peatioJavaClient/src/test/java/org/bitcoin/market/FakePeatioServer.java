@@ -0,0 +1,872 @@
+package org.bitcoin.market;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.bitcoin.common.Decimal;
+import org.bitcoin.market.utils.RequestSigner;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.text.SimpleDateFormat;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process stand-in for the peatio /api/v2 endpoints the client uses, so that the client can be
+ * tested and loaded without network or real keys.
+ * <p/>
+ * Signed requests are checked the way peatio does: known access key, tonce unused and within 30 seconds
+ * of the clock, signature over the rails canonical query. Orders lock funds and rest until they are
+ * cancelled or filled by {@link Member#fill}. Books are either scripted, recorded responses served in
+ * turn, or a seeded random walk regenerated on every request. Klines are random too but stable, the
+ * same bar always has the same prices.
+ */
+public class FakePeatioServer implements Closeable {
+    public static final String PREFIX = "/api/v2";
+
+    private static final int SCALE = 8;
+    private static final long TONCE_WINDOW = 30000L;
+
+    static {
+        // headers and body go out as separate writes, with Nagle on each response waits for a delayed ack
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final RequestSigner signer = new RequestSigner();
+    private final ConcurrentMap<String, Member> members = new ConcurrentHashMap<String, Member>();
+    private final ConcurrentMap<String, Book> books = new ConcurrentHashMap<String, Book>();
+    private final ConcurrentMap<String, AtomicLong> requestCounts = new ConcurrentHashMap<String, AtomicLong>();
+    private final AtomicLong orderIds = new AtomicLong(1);
+    private volatile long latency;
+
+    /**
+     * Listen on a free port of the loopback interface.
+     */
+    public FakePeatioServer() throws IOException {
+        this(0, Runtime.getRuntime().availableProcessors() * 4);
+    }
+
+    /**
+     * @param port    0 for any free port
+     * @param threads handler threads, they bound the concurrency when a latency is set
+     */
+    public FakePeatioServer(int port, int threads) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1024);
+        executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "fake-peatio-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        server.setExecutor(executor);
+        server.createContext(PREFIX + "/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                FakePeatioServer.this.handle(exchange);
+            }
+        });
+        setRandomOrderBook("btccny", 3800.0, 100, 1L);
+        setRandomOrderBook("ltccny", 30.0, 100, 2L);
+    }
+
+    public FakePeatioServer start() {
+        server.start();
+        return this;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * What to pass to PeatioCNYApi in place of https://peatio.com.
+     */
+    public String getBaseUrl() {
+        return "http://" + server.getAddress().getAddress().getHostAddress() + ":" + server.getAddress().getPort();
+    }
+
+    public Member addMember(String accessKey, String secretKey) {
+        Member member = new Member(accessKey, secretKey);
+        members.put(accessKey, member);
+        return member;
+    }
+
+    public Member getMember(String accessKey) {
+        return members.get(accessKey);
+    }
+
+    /**
+     * Serve these order_book responses in turn, e.g. recorded ones, the limits of the request are ignored.
+     */
+    public void setOrderBook(String market, byte[]... responses) {
+        Book previous = books.get(market);
+        books.put(market, new Book(market, responses, previous == null ? 0.0 : previous.getLast()));
+    }
+
+    /**
+     * Generate a new book around a random walk at every order_book request.
+     */
+    public void setRandomOrderBook(String market, double mid, int levels, long seed) {
+        books.put(market, new Book(market, mid, levels, seed));
+    }
+
+    /**
+     * Delay every response, to see the client with more requests in flight.
+     */
+    public void setLatency(long latency, TimeUnit unit) {
+        this.latency = unit.toMillis(latency);
+    }
+
+    public long getRequestCount() {
+        long count = 0L;
+        for (AtomicLong requestCount : requestCounts.values()) {
+            count += requestCount.get();
+        }
+        return count;
+    }
+
+    /**
+     * @param path path without the /api/v2 prefix, e.g. "/orders"
+     */
+    public long getRequestCount(String path) {
+        AtomicLong count = requestCounts.get(path);
+        return count == null ? 0L : count.get();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        int status = 200;
+        byte[] body;
+        try {
+            String path = exchange.getRequestURI().getPath().substring(PREFIX.length());
+            if (path.endsWith(".json")) {
+                path = path.substring(0, path.length() - ".json".length());
+            }
+            String method = exchange.getRequestMethod();
+            List<Map.Entry<String, String>> params = new ArrayList<Map.Entry<String, String>>();
+            parseQuery(exchange.getRequestURI().getRawQuery(), params);
+            if ("POST".equals(method)) {
+                parseQuery(new String(ByteStreams.toByteArray(exchange.getRequestBody()), Charsets.UTF_8), params);
+                status = 201;
+            }
+            count(path.startsWith("/tickers/") ? "/tickers" : path);
+            if (latency > 0) {
+                Thread.sleep(latency);
+            }
+            body = route(method, path, params);
+            if (body == null) {
+                status = 404;
+                body = "Not Found".getBytes(Charsets.UTF_8);
+            }
+        } catch (ApiError e) {
+            status = e.status;
+            body = e.toJSON().getBytes(Charsets.UTF_8);
+        } catch (Exception e) {
+            status = 500;
+            body = new ApiError(2000, e.toString(), 500).toJSON().getBytes(Charsets.UTF_8);
+        }
+        try {
+            exchange.getResponseHeaders().set("Content-Type", body.length > 0 && (body[0] == '{' || body[0] == '[')
+                    ? "application/json" : "text/plain");
+            exchange.sendResponseHeaders(status, body.length);
+            OutputStream out = exchange.getResponseBody();
+            out.write(body);
+            out.close();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * @return the response, null when nothing answers that path
+     */
+    private byte[] route(String method, String path, List<Map.Entry<String, String>> params) {
+        Map<String, String> values = toMap(params);
+        boolean get = "GET".equals(method);
+        boolean post = "POST".equals(method);
+        if (get && path.equals("/order_book")) {
+            return getBook(values.get("market")).next(getInt(values, "asks_limit", 20), getInt(values, "bids_limit", 20));
+        }
+        if (get && path.startsWith("/tickers/")) {
+            return getBook(path.substring("/tickers/".length())).ticker();
+        }
+        if (get && path.equals("/k")) {
+            return getBook(values.get("market")).klines(getInt(values, "period", 1), getInt(values, "limit", 30),
+                    values.containsKey("timestamp") ? getLong(values, "timestamp") : null);
+        }
+
+        String json;
+        if (get && path.equals("/members/me")) {
+            json = authenticate(method, path, params).toJSON().toJSONString();
+        } else if (get && path.equals("/orders")) {
+            Member member = authenticate(method, path, params);
+            json = member.getOrders(getBook(values.get("market")).market, value(values, "state", "wait"),
+                    getInt(values, "limit", 100), getInt(values, "page", 1),
+                    "desc".equals(values.get("order_by"))).toJSONString();
+        } else if (get && path.equals("/order")) {
+            json = authenticate(method, path, params).getOrder(getLong(values, "id")).toJSON().toJSONString();
+        } else if (post && path.equals("/orders")) {
+            Member member = authenticate(method, path, params);
+            List<Map<String, String>> orders = new ArrayList<Map<String, String>>();
+            orders.add(values);
+            json = member.createOrders(getBook(values.get("market")).market, orders).getJSONObject(0).toJSONString();
+        } else if (post && path.equals("/orders/multi")) {
+            Member member = authenticate(method, path, params);
+            List<Map<String, String>> orders = getItems(params, "orders");
+            if (orders.isEmpty()) {
+                throw new ApiError(1001, "orders is missing", 400);
+            }
+            json = member.createOrders(getBook(values.get("market")).market, orders).toJSONString();
+        } else if (post && path.equals("/order/delete")) {
+            json = authenticate(method, path, params).cancel(getLong(values, "id")).toJSON().toJSONString();
+        } else if (post && path.equals("/orders/clear")) {
+            json = authenticate(method, path, params).clear(values.get("side")).toJSONString();
+        } else {
+            return null;
+        }
+        return json.getBytes(Charsets.UTF_8);
+    }
+
+    private Member authenticate(String method, String path, List<Map.Entry<String, String>> params) {
+        Map<String, String> values = toMap(params);
+        String accessKey = values.get("access_key");
+        String tonce = values.get("tonce");
+        String signature = values.get("signature");
+        if (accessKey == null || tonce == null || signature == null) {
+            throw new ApiError(2001, "Authorization failed", 401);
+        }
+        Member member = members.get(accessKey);
+        if (member == null) {
+            throw new ApiError(2008, "The access key " + accessKey + " does not exist.", 401);
+        }
+        long now = System.currentTimeMillis();
+        long time;
+        try {
+            time = Long.parseLong(tonce);
+        } catch (NumberFormatException e) {
+            time = 0L;
+        }
+        if (!member.useTonce(time, now)) {
+            throw new ApiError(2006, "The tonce " + tonce + " has already been used by access key " + accessKey + ".", 401);
+        }
+        if (time < now - TONCE_WINDOW || time > now + TONCE_WINDOW) {
+            throw new ApiError(2007, "The tonce " + tonce + " is invalid, current timestamp is " + now + ".", 401);
+        }
+        String expected = signer.sign(member.secretKey, method, PREFIX + path, canonicalQuery(params));
+        if (!expected.equals(signature)) {
+            throw new ApiError(2005, "Signature " + signature + " is incorrect.", 401);
+        }
+        return member;
+    }
+
+    /**
+     * Parameters in the order rails' to_param puts them: top level keys sorted, an array of hashes
+     * ("orders[][price]") in its original order with the keys of each hash sorted.
+     */
+    static List<Map.Entry<String, String>> canonicalQuery(List<Map.Entry<String, String>> params) {
+        TreeMap<String, Object> top = new TreeMap<String, Object>();
+        for (Map.Entry<String, String> param : params) {
+            String key = param.getKey();
+            if (key.equals("signature") || key.equals("format")) {
+                continue;
+            }
+            int bracket = key.indexOf("[][");
+            if (bracket > 0 && key.endsWith("]")) {
+                addItemValue(top, key.substring(0, bracket), key.substring(bracket + 3, key.length() - 1), param.getValue());
+            } else {
+                top.put(key, param.getValue());
+            }
+        }
+        List<Map.Entry<String, String>> canonical = new ArrayList<Map.Entry<String, String>>(params.size());
+        for (Map.Entry<String, Object> entry : top.entrySet()) {
+            if (entry.getValue() instanceof String) {
+                canonical.add(new AbstractMap.SimpleImmutableEntry<String, String>(entry.getKey(), (String) entry.getValue()));
+                continue;
+            }
+            @SuppressWarnings("unchecked")
+            List<TreeMap<String, String>> items = (List<TreeMap<String, String>>) entry.getValue();
+            for (TreeMap<String, String> item : items) {
+                for (Map.Entry<String, String> field : item.entrySet()) {
+                    canonical.add(new AbstractMap.SimpleImmutableEntry<String, String>(
+                            entry.getKey() + "[][" + field.getKey() + "]", field.getValue()));
+                }
+            }
+        }
+        return canonical;
+    }
+
+    /**
+     * Rack starts a new hash of the array whenever a key repeats.
+     */
+    @SuppressWarnings("unchecked")
+    private static void addItemValue(TreeMap<String, Object> top, String name, String field, String value) {
+        Object current = top.get(name);
+        List<TreeMap<String, String>> items;
+        if (current instanceof List) {
+            items = (List<TreeMap<String, String>>) current;
+        } else {
+            items = new ArrayList<TreeMap<String, String>>();
+            top.put(name, items);
+        }
+        if (items.isEmpty() || items.get(items.size() - 1).containsKey(field)) {
+            items.add(new TreeMap<String, String>());
+        }
+        items.get(items.size() - 1).put(field, value);
+    }
+
+    private static List<Map<String, String>> getItems(List<Map.Entry<String, String>> params, String name) {
+        List<Map<String, String>> items = new ArrayList<Map<String, String>>();
+        for (Map.Entry<String, String> entry : canonicalQuery(params)) {
+            String key = entry.getKey();
+            if (!key.startsWith(name + "[][")) {
+                continue;
+            }
+            String field = key.substring(name.length() + 3, key.length() - 1);
+            if (items.isEmpty() || items.get(items.size() - 1).containsKey(field)) {
+                items.add(new TreeMap<String, String>());
+            }
+            items.get(items.size() - 1).put(field, entry.getValue());
+        }
+        return items;
+    }
+
+    private Book getBook(String market) {
+        Book book = market == null ? null : books.get(market);
+        if (book == null) {
+            throw new ApiError(1001, "market does not have a valid value", 400);
+        }
+        return book;
+    }
+
+    private void count(String path) {
+        AtomicLong count = requestCounts.get(path);
+        if (count == null) {
+            AtomicLong existing = requestCounts.putIfAbsent(path, count = new AtomicLong());
+            if (existing != null) {
+                count = existing;
+            }
+        }
+        count.incrementAndGet();
+    }
+
+    private static void parseQuery(String query, List<Map.Entry<String, String>> params) throws UnsupportedEncodingException {
+        if (query == null || query.isEmpty()) {
+            return;
+        }
+        for (String pair : query.split("&")) {
+            if (pair.isEmpty()) {
+                continue;
+            }
+            int equals = pair.indexOf('=');
+            String key = equals < 0 ? pair : pair.substring(0, equals);
+            String value = equals < 0 ? "" : pair.substring(equals + 1);
+            params.add(new AbstractMap.SimpleImmutableEntry<String, String>(
+                    URLDecoder.decode(key, "UTF-8"), URLDecoder.decode(value, "UTF-8")));
+        }
+    }
+
+    private static Map<String, String> toMap(List<Map.Entry<String, String>> params) {
+        Map<String, String> values = new TreeMap<String, String>();
+        for (Map.Entry<String, String> param : params) {
+            if (!values.containsKey(param.getKey())) {
+                values.put(param.getKey(), param.getValue());
+            }
+        }
+        return values;
+    }
+
+    private static String value(Map<String, String> values, String key, String defaultValue) {
+        String value = values.get(key);
+        return value == null ? defaultValue : value;
+    }
+
+    private static int getInt(Map<String, String> values, String key, int defaultValue) {
+        return values.containsKey(key) ? (int) getLong(values, key) : defaultValue;
+    }
+
+    private static long getLong(Map<String, String> values, String key) {
+        String value = values.get(key);
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new ApiError(1001, key + " is invalid", 400);
+        }
+    }
+
+    private static long getDecimal(Map<String, String> values, String key) {
+        String value = values.get(key);
+        if (value == null) {
+            throw new ApiError(1001, key + " is missing", 400);
+        }
+        try {
+            return Decimal.parse(value, SCALE);
+        } catch (RuntimeException e) {
+            throw new ApiError(1001, key + " is invalid", 400);
+        }
+    }
+
+    private static String format(long unscaled) {
+        return Decimal.toString(unscaled, SCALE);
+    }
+
+    private static String now() {
+        return new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssXXX").format(new Date());
+    }
+
+    /**
+     * An account of the fake exchange, balances are plenty unless set.
+     */
+    public class Member {
+        private final String accessKey;
+        private final String secretKey;
+        private final Map<String, long[]> accounts = new TreeMap<String, long[]>();
+        private final TreeMap<Long, Order> orders = new TreeMap<Long, Order>();
+        private final ConcurrentMap<Long, Long> tonces = new ConcurrentHashMap<Long, Long>();
+
+        private Member(String accessKey, String secretKey) {
+            this.accessKey = accessKey;
+            this.secretKey = secretKey;
+            setBalance("cny", 10000000.0);
+            setBalance("btc", 1000.0);
+            setBalance("ltc", 100000.0);
+        }
+
+        public synchronized Member setBalance(String currency, double balance) {
+            accounts.put(currency, new long[]{Decimal.round(balance, SCALE), 0L});
+            return this;
+        }
+
+        public synchronized double getBalance(String currency) {
+            return Decimal.toDouble(getAccount(currency)[0], SCALE);
+        }
+
+        public synchronized double getLocked(String currency) {
+            return Decimal.toDouble(getAccount(currency)[1], SCALE);
+        }
+
+        public synchronized int getOrderCount(String state) {
+            int count = 0;
+            for (Order order : orders.values()) {
+                if (order.state.equals(state)) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        /**
+         * Execute part of a waiting order at its price.
+         */
+        public synchronized void fill(long orderId, double volume) {
+            Order order = orders.get(orderId);
+            if (order == null || !order.state.equals("wait")) {
+                throw new IllegalStateException("order " + orderId + " is not waiting");
+            }
+            long executed = Math.min(Decimal.round(volume, SCALE), order.remaining);
+            long funds = Decimal.multiply(order.price, SCALE, executed, SCALE, SCALE);
+            if (order.isBuy()) {
+                getAccount(order.quote())[1] -= funds;
+                getAccount(order.base())[0] += executed;
+            } else {
+                getAccount(order.base())[1] -= executed;
+                getAccount(order.quote())[0] += funds;
+            }
+            order.remaining -= executed;
+            order.funds += funds;
+            order.tradesCount++;
+            if (order.remaining == 0) {
+                order.state = "done";
+            }
+        }
+
+        /**
+         * Peatio remembers used tonces for 61 seconds, older ones fail the window check anyway.
+         */
+        private boolean useTonce(long tonce, long now) {
+            if (tonces.size() > 4096) {
+                for (Iterator<Long> iterator = tonces.keySet().iterator(); iterator.hasNext(); ) {
+                    if (iterator.next() < now - 2 * TONCE_WINDOW) {
+                        iterator.remove();
+                    }
+                }
+            }
+            return tonces.putIfAbsent(tonce, tonce) == null;
+        }
+
+        private long[] getAccount(String currency) {
+            long[] account = accounts.get(currency);
+            if (account == null) {
+                account = new long[2];
+                accounts.put(currency, account);
+            }
+            return account;
+        }
+
+        /**
+         * All or nothing, like /orders/multi.
+         */
+        private synchronized JSONArray createOrders(String market, List<Map<String, String>> requests) {
+            List<Order> created = new ArrayList<Order>(requests.size());
+            for (Map<String, String> request : requests) {
+                String side = request.get("side");
+                if (!"buy".equals(side) && !"sell".equals(side)) {
+                    throw new ApiError(1001, "side does not have a valid value", 400);
+                }
+                long volume = getDecimal(request, "volume");
+                long price = getDecimal(request, "price");
+                if (volume <= 0 || price <= 0) {
+                    throw new ApiError(2002, "Failed to create order. Reason: volume and price must be positive", 400);
+                }
+                created.add(new Order(orderIds.getAndIncrement(), side, market, price, volume));
+            }
+            for (int i = 0; i < created.size(); i++) {
+                Order order = created.get(i);
+                long[] account = getAccount(order.isBuy() ? order.quote() : order.base());
+                long amount = order.isBuy() ? Decimal.multiply(order.price, SCALE, order.volume, SCALE, SCALE) : order.volume;
+                if (account[0] < amount) {
+                    for (int j = 0; j < i; j++) {
+                        unlock(created.get(j));
+                    }
+                    throw new ApiError(2002, "Failed to create order. Reason: insufficient balance", 400);
+                }
+                account[0] -= amount;
+                account[1] += amount;
+            }
+            JSONArray response = new JSONArray();
+            for (Order order : created) {
+                orders.put(order.id, order);
+                response.add(order.toJSON());
+            }
+            return response;
+        }
+
+        private synchronized Order getOrder(long id) {
+            Order order = orders.get(id);
+            if (order == null) {
+                throw new ApiError(2004, "Order#" + id + " doesn't exist.", 404);
+            }
+            return order;
+        }
+
+        private synchronized JSONArray getOrders(String market, String state, int limit, int page, boolean desc) {
+            if (limit < 1 || limit > 1000) {
+                throw new ApiError(1001, "limit does not have a valid value", 400);
+            }
+            JSONArray response = new JSONArray();
+            int skip = (Math.max(page, 1) - 1) * limit;
+            for (Order order : desc ? orders.descendingMap().values() : orders.values()) {
+                if (!order.market.equals(market) || !order.state.equals(state)) {
+                    continue;
+                }
+                if (skip > 0) {
+                    skip--;
+                    continue;
+                }
+                response.add(order.toJSON());
+                if (response.size() == limit) {
+                    break;
+                }
+            }
+            return response;
+        }
+
+        private synchronized Order cancel(long id) {
+            Order order = orders.get(id);
+            if (order == null) {
+                throw new ApiError(2003, "Failed to cancel order. Reason: Couldn't find Order with id=" + id, 400);
+            }
+            if (order.state.equals("wait")) {
+                unlock(order);
+                order.state = "cancel";
+            }
+            return order;
+        }
+
+        private synchronized JSONArray clear(String side) {
+            JSONArray response = new JSONArray();
+            for (Order order : orders.values()) {
+                if (order.state.equals("wait") && (side == null || side.equals(order.side))) {
+                    unlock(order);
+                    order.state = "cancel";
+                    response.add(order.toJSON());
+                }
+            }
+            return response;
+        }
+
+        private void unlock(Order order) {
+            long[] account = getAccount(order.isBuy() ? order.quote() : order.base());
+            long amount = order.isBuy() ? Decimal.multiply(order.price, SCALE, order.remaining, SCALE, SCALE) : order.remaining;
+            account[0] += amount;
+            account[1] -= amount;
+        }
+
+        private synchronized JSONObject toJSON() {
+            JSONObject member = new JSONObject(true);
+            member.put("sn", "PEA" + Math.abs(accessKey.hashCode()) + "TIO");
+            member.put("name", null);
+            member.put("email", accessKey + "@peatio.local");
+            member.put("activated", true);
+            JSONArray balances = new JSONArray();
+            for (Map.Entry<String, long[]> account : accounts.entrySet()) {
+                JSONObject balance = new JSONObject(true);
+                balance.put("currency", account.getKey());
+                balance.put("balance", format(account.getValue()[0]));
+                balance.put("locked", format(account.getValue()[1]));
+                balances.add(balance);
+            }
+            member.put("accounts", balances);
+            return member;
+        }
+    }
+
+    private static class Order {
+        private final long id;
+        private final String side;
+        private final String market;
+        private final long price;
+        private final long volume;
+        private final String createdAt = now();
+        private long remaining;
+        private long funds;
+        private int tradesCount;
+        private String state = "wait";
+
+        private Order(long id, String side, String market, long price, long volume) {
+            this.id = id;
+            this.side = side;
+            this.market = market;
+            this.price = price;
+            this.volume = volume;
+            this.remaining = volume;
+        }
+
+        private boolean isBuy() {
+            return side.equals("buy");
+        }
+
+        private String base() {
+            return market.substring(0, 3);
+        }
+
+        private String quote() {
+            return market.substring(3);
+        }
+
+        private JSONObject toJSON() {
+            JSONObject order = new JSONObject(true);
+            order.put("id", id);
+            order.put("side", side);
+            order.put("ord_type", "limit");
+            order.put("price", format(price));
+            long executed = volume - remaining;
+            order.put("avg_price", executed == 0 ? "0.0" : format(Decimal.divide(funds, SCALE, executed, SCALE, SCALE)));
+            order.put("state", state);
+            order.put("market", market);
+            order.put("created_at", createdAt);
+            order.put("volume", format(volume));
+            order.put("remaining_volume", format(remaining));
+            order.put("executed_volume", format(executed));
+            order.put("trades_count", tradesCount);
+            return order;
+        }
+    }
+
+    /**
+     * Order book, ticker and klines of one market.
+     */
+    private static class Book {
+        private static final int PRICE_SCALE = 2;
+        private static final int VOLUME_SCALE = 4;
+
+        private final String market;
+        private final byte[][] scripted;
+        private final AtomicInteger cursor = new AtomicInteger();
+        private final Random random;
+        private final long seed;
+        private final int levels;
+        private final double base;
+        private double mid;
+
+        private Book(String market, byte[][] scripted, double last) {
+            this.market = market;
+            this.scripted = scripted.clone();
+            this.random = null;
+            this.seed = market.hashCode();
+            this.levels = 0;
+            this.base = last;
+            this.mid = last;
+        }
+
+        private Book(String market, double mid, int levels, long seed) {
+            this.market = market;
+            this.scripted = null;
+            this.random = new Random(seed);
+            this.seed = seed;
+            this.levels = levels;
+            this.base = mid;
+            this.mid = mid;
+        }
+
+        private synchronized double getLast() {
+            return mid;
+        }
+
+        private byte[] next(int asksLimit, int bidsLimit) {
+            if (scripted != null) {
+                return scripted[(cursor.getAndIncrement() & Integer.MAX_VALUE) % scripted.length];
+            }
+            long ask;
+            long bid;
+            long[] askSteps = new long[Math.min(asksLimit, levels)];
+            long[] bidSteps = new long[Math.min(bidsLimit, levels)];
+            long[] askVolumes = new long[askSteps.length];
+            long[] bidVolumes = new long[bidSteps.length];
+            synchronized (this) {
+                mid *= 1 + random.nextGaussian() * 0.0005;
+                long tick = Math.max(1L, Decimal.round(mid * 0.0001, PRICE_SCALE));
+                long center = Decimal.round(mid, PRICE_SCALE);
+                ask = center + tick;
+                bid = center - tick;
+                for (int i = 0; i < askSteps.length; i++) {
+                    askSteps[i] = tick * (1 + random.nextInt(5));
+                    askVolumes[i] = 1 + random.nextInt(50000);
+                }
+                for (int i = 0; i < bidSteps.length; i++) {
+                    bidSteps[i] = tick * (1 + random.nextInt(5));
+                    bidVolumes[i] = 1 + random.nextInt(50000);
+                }
+            }
+            StringBuilder json = new StringBuilder(256 * (askSteps.length + bidSteps.length) + 32);
+            String createdAt = now();
+            json.append("{\"asks\":[");
+            for (int i = 0; i < askSteps.length; i++) {
+                appendOrder(json, i > 0, 1000000L + i, "sell", ask, askVolumes[i], createdAt);
+                ask += askSteps[i];
+            }
+            json.append("],\"bids\":[");
+            for (int i = 0; i < bidSteps.length && bid > 0; i++) {
+                appendOrder(json, i > 0, 2000000L + i, "buy", bid, bidVolumes[i], createdAt);
+                bid -= bidSteps[i];
+            }
+            json.append("]}");
+            return json.toString().getBytes(Charsets.UTF_8);
+        }
+
+        private void appendOrder(StringBuilder json, boolean comma, long id, String side, long price, long volume, String createdAt) {
+            if (comma) {
+                json.append(',');
+            }
+            json.append("{\"id\":").append(id)
+                    .append(",\"side\":\"").append(side)
+                    .append("\",\"ord_type\":\"limit\",\"price\":\"");
+            Decimal.appendTo(json, price, PRICE_SCALE);
+            json.append("\",\"avg_price\":\"0.0\",\"state\":\"wait\",\"market\":\"").append(market)
+                    .append("\",\"created_at\":\"").append(createdAt)
+                    .append("\",\"volume\":\"");
+            Decimal.appendTo(json, volume, VOLUME_SCALE);
+            json.append("\",\"remaining_volume\":\"");
+            Decimal.appendTo(json, volume, VOLUME_SCALE);
+            json.append("\",\"executed_volume\":\"0.0\",\"trades_count\":0}");
+        }
+
+        private byte[] ticker() {
+            double last = getLast();
+            JSONObject ticker = new JSONObject(true);
+            ticker.put("buy", Decimal.toString(Decimal.round(last * 0.9999, PRICE_SCALE), PRICE_SCALE));
+            ticker.put("sell", Decimal.toString(Decimal.round(last * 1.0001, PRICE_SCALE), PRICE_SCALE));
+            ticker.put("low", Decimal.toString(Decimal.round(last * 0.98, PRICE_SCALE), PRICE_SCALE));
+            ticker.put("high", Decimal.toString(Decimal.round(last * 1.02, PRICE_SCALE), PRICE_SCALE));
+            ticker.put("last", Decimal.toString(Decimal.round(last, PRICE_SCALE), PRICE_SCALE));
+            ticker.put("vol", "1234.5678");
+            JSONObject response = new JSONObject(true);
+            response.put("at", System.currentTimeMillis() / 1000);
+            response.put("ticker", ticker);
+            return response.toJSONString().getBytes(Charsets.UTF_8);
+        }
+
+        /**
+         * Bars up to the current one, the last limit of them or limit of them from the one holding timestamp.
+         */
+        private byte[] klines(int period, int limit, Long timestamp) {
+            if (period < 1 || limit < 1 || limit > 10000) {
+                throw new ApiError(1001, "period or limit does not have a valid value", 400);
+            }
+            long step = period * 60L;
+            long current = System.currentTimeMillis() / 1000 / step * step;
+            long start = timestamp == null ? current - (limit - 1) * step : Math.max(0L, timestamp) / step * step;
+            StringBuilder json = new StringBuilder(64 * limit + 2).append('[');
+            for (long time = start; time <= current && time < start + limit * step; time += step) {
+                Random bar = new Random(seed * 31 + period * 1000003L + time);
+                double open = base * (1 + (bar.nextDouble() - 0.5) * 0.02);
+                double close = base * (1 + (bar.nextDouble() - 0.5) * 0.02);
+                double high = Math.max(open, close) * (1 + bar.nextDouble() * 0.005);
+                double low = Math.min(open, close) * (1 - bar.nextDouble() * 0.005);
+                if (json.length() > 1) {
+                    json.append(',');
+                }
+                json.append('[').append(time).append(',');
+                Decimal.appendTo(json, Decimal.round(open, PRICE_SCALE), PRICE_SCALE).append(',');
+                Decimal.appendTo(json, Decimal.round(high, PRICE_SCALE), PRICE_SCALE).append(',');
+                Decimal.appendTo(json, Decimal.round(low, PRICE_SCALE), PRICE_SCALE).append(',');
+                Decimal.appendTo(json, Decimal.round(close, PRICE_SCALE), PRICE_SCALE).append(',');
+                Decimal.appendTo(json, Decimal.round(bar.nextDouble() * 30, VOLUME_SCALE), VOLUME_SCALE).append(']');
+            }
+            return json.append(']').toString().getBytes(Charsets.UTF_8);
+        }
+    }
+
+    private static class ApiError extends RuntimeException {
+        private final int code;
+        private final int status;
+
+        private ApiError(int code, String message, int status) {
+            super(message);
+            this.code = code;
+            this.status = status;
+        }
+
+        private String toJSON() {
+            JSONObject error = new JSONObject(true);
+            error.put("code", code);
+            error.put("message", getMessage());
+            JSONObject response = new JSONObject();
+            response.put("error", error);
+            return JSON.toJSONString(response);
+        }
+    }
+}
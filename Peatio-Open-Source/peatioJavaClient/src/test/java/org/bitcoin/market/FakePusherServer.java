@@ -0,0 +1,249 @@
+package org.bitcoin.market;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.google.common.base.Charsets;
+import org.bitcoin.market.stream.WebSocketClient;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-process stand-in for the Pusher websocket peatio publishes its market data through: the handshake,
+ * pusher:connection_established, subscriptions answered with pusher_internal:subscription_succeeded and
+ * {@link #publish} to push an event to a channel's subscribers, with the data as a json string like Pusher.
+ * {@link #disconnectAll} drops every connection to exercise reconnects.
+ */
+public class FakePusherServer implements Closeable {
+    private final ServerSocket serverSocket;
+    private final Set<Connection> connections = new CopyOnWriteArraySet<Connection>();
+    private final AtomicInteger accepted = new AtomicInteger();
+    private volatile boolean closed;
+
+    public FakePusherServer() throws IOException {
+        serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+    }
+
+    public FakePusherServer start() {
+        Thread thread = new Thread(this::accept, "fake-pusher");
+        thread.setDaemon(true);
+        thread.start();
+        return this;
+    }
+
+    /**
+     * Where to point a MarketStream.
+     */
+    public URI getUri() {
+        return URI.create("ws://" + serverSocket.getInetAddress().getHostAddress() + ":" + serverSocket.getLocalPort()
+                + "/app/test?protocol=7&client=java&version=1.0");
+    }
+
+    /**
+     * Websocket connections accepted so far.
+     */
+    public int getAccepted() {
+        return accepted.get();
+    }
+
+    /**
+     * Push event to the current subscribers of channel.
+     */
+    public void publish(String channel, String event, Object data) throws IOException {
+        for (Connection connection : connections) {
+            if (connection.channels.contains(channel)) {
+                connection.send(event, channel, JSON.toJSONString(data));
+            }
+        }
+    }
+
+    /**
+     * Wait until a connection is subscribed to channel.
+     */
+    public boolean awaitSubscribed(String channel, long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (System.nanoTime() < deadline) {
+            for (Connection connection : connections) {
+                if (connection.channels.contains(channel)) {
+                    return true;
+                }
+            }
+            Thread.sleep(5);
+        }
+        return false;
+    }
+
+    public void disconnectAll() {
+        for (Connection connection : connections) {
+            connection.close();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        serverSocket.close();
+        disconnectAll();
+    }
+
+    private void accept() {
+        while (!closed) {
+            try {
+                final Connection connection = new Connection(serverSocket.accept());
+                Thread thread = new Thread(connection::run, "fake-pusher-" + accepted.get());
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private class Connection {
+        private final Socket socket;
+        private final Set<String> channels = ConcurrentHashMap.<String>newKeySet();
+        private OutputStream out;
+
+        Connection(Socket socket) {
+            this.socket = socket;
+        }
+
+        void run() {
+            try {
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                out = socket.getOutputStream();
+                String key = null;
+                for (String line = readLine(in); !line.isEmpty(); line = readLine(in)) {
+                    int colon = line.indexOf(':');
+                    if (colon > 0 && line.substring(0, colon).trim().equalsIgnoreCase("Sec-WebSocket-Key")) {
+                        key = line.substring(colon + 1).trim();
+                    }
+                }
+                String response = "HTTP/1.1 101 Switching Protocols\r\n"
+                        + "Upgrade: websocket\r\n"
+                        + "Connection: Upgrade\r\n"
+                        + "Sec-WebSocket-Accept: " + WebSocketClient.acceptKey(key) + "\r\n\r\n";
+                synchronized (this) {
+                    out.write(response.getBytes(Charsets.US_ASCII));
+                }
+                connections.add(this);
+                accepted.incrementAndGet();
+                send("pusher:connection_established", null, "{\"socket_id\":\"1.1\",\"activity_timeout\":120}");
+                while (true) {
+                    String text = readMessage(in);
+                    if (text == null) {
+                        return;
+                    }
+                    JSONObject message = JSON.parseObject(text);
+                    String event = message.getString("event");
+                    JSONObject data = message.getJSONObject("data");
+                    if ("pusher:subscribe".equals(event)) {
+                        String channel = data.getString("channel");
+                        channels.add(channel);
+                        send("pusher_internal:subscription_succeeded", channel, "{}");
+                    } else if ("pusher:unsubscribe".equals(event)) {
+                        channels.remove(data.getString("channel"));
+                    } else if ("pusher:ping".equals(event)) {
+                        send("pusher:pong", null, "{}");
+                    }
+                }
+            } catch (IOException e) {
+                // dropped
+            } finally {
+                close();
+            }
+        }
+
+        synchronized void send(String event, String channel, String data) throws IOException {
+            JSONObject message = new JSONObject(true);
+            message.put("event", event);
+            if (channel != null) {
+                message.put("channel", channel);
+            }
+            message.put("data", data);
+            byte[] payload = message.toJSONString().getBytes(Charsets.UTF_8);
+            ByteArrayOutputStream frame = new ByteArrayOutputStream(payload.length + 10);
+            frame.write(0x81);
+            if (payload.length < 126) {
+                frame.write(payload.length);
+            } else if (payload.length < 65536) {
+                frame.write(126);
+                frame.write(payload.length >>> 8);
+                frame.write(payload.length);
+            } else {
+                frame.write(127);
+                for (int shift = 56; shift >= 0; shift -= 8) {
+                    frame.write((int) ((long) payload.length >>> shift));
+                }
+            }
+            frame.write(payload, 0, payload.length);
+            out.write(frame.toByteArray());
+            out.flush();
+        }
+
+        void close() {
+            connections.remove(this);
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // closing anyway
+            }
+        }
+
+        /**
+         * Next text message from the client, null once it closes. Client frames are masked and small.
+         */
+        private String readMessage(DataInputStream in) throws IOException {
+            while (true) {
+                int first = in.readUnsignedByte();
+                int second = in.readUnsignedByte();
+                int length = second & 0x7F;
+                if (length == 126) {
+                    length = in.readUnsignedShort();
+                } else if (length == 127) {
+                    length = (int) in.readLong();
+                }
+                byte[] mask = new byte[4];
+                in.readFully(mask);
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                for (int i = 0; i < length; i++) {
+                    payload[i] ^= mask[i & 3];
+                }
+                int opcode = first & 0x0F;
+                if (opcode == 0x8) {
+                    return null;
+                }
+                if (opcode == 0x1) {
+                    return new String(payload, Charsets.UTF_8);
+                }
+            }
+        }
+    }
+
+    private static String readLine(DataInputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        for (int c = in.read(); c != '\n'; c = in.read()) {
+            if (c < 0) {
+                throw new IOException("connection closed");
+            }
+            if (c != '\r') {
+                line.append((char) c);
+            }
+        }
+        return line.toString();
+    }
+}
@@ -3,19 +3,54 @@ package org.bitcoin.market;
 import com.alibaba.fastjson.JSONObject;
 import org.bitcoin.common.FiatConverter;
 import org.bitcoin.market.bean.*;
+import org.bitcoin.market.kline.KlineStore;
+import org.bitcoin.market.metrics.DefaultMetricsRegistry;
+import org.bitcoin.market.metrics.MetricsJmx;
+import org.bitcoin.market.ratelimit.EndpointClass;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
 import org.junit.Test;
 
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.*;
 
+/**
+ * Runs against {@link FakePeatioServer}, point a PeatioCNYApi() and real keys at peatio.com to check the real thing.
+ */
 public class PeatioCNYApiTest {
 
+    private static FakePeatioServer server;
+    private static PeatioCNYApi api;
+
+    @BeforeClass
+    public static void startServer() throws Exception {
+        server = new FakePeatioServer().start();
+        server.addMember("xxx", "yyy");
+        api = new PeatioCNYApi(server.getBaseUrl());
+        api.getRateLimiter().setLimit(EndpointClass.PRIVATE, 100, 1000.0);
+        api.getRateLimiter().setLimit(EndpointClass.PUBLIC, 100, 1000.0);
+    }
+
+    @AfterClass
+    public static void stopServer() {
+        server.close();
+    }
+
     private AppAccount getAppAccount() {
         AppAccount appAccount = new AppAccount();
         appAccount.setId(1L);
-        appAccount.setAccessKey("xxx"); // todo 替换为access_key
-        appAccount.setSecretKey("yyy"); // todo 替换为secret_key
+        appAccount.setAccessKey("xxx");
+        appAccount.setSecretKey("yyy");
         return appAccount;
     }
 
@@ -24,7 +59,7 @@ public class PeatioCNYApiTest {
 
         Double amount = 0.01;
         Double price = 10.0; // usd
-        AbstractMarketApi market = MarketApiFactory.getInstance().getMarket(Market.PeatioCNY);
+        AbstractMarketApi market = api;
         Long orderId = market.buy(getAppAccount(), amount, price, new SymbolPair(Symbol.btc, Symbol.usd));
         BitOrder order = market.getOrder(getAppAccount(), orderId, null);
         assertNotNull(order);
@@ -42,7 +77,7 @@ public class PeatioCNYApiTest {
 
         Double amount = 0.01;
         Double price = 10000.0; // usd
-        AbstractMarketApi market = MarketApiFactory.getInstance().getMarket(Market.PeatioCNY);
+        AbstractMarketApi market = api;
         Long orderId = market.sell(getAppAccount(), amount, price, new SymbolPair(Symbol.btc, Symbol.usd));
         BitOrder order = market.getOrder(getAppAccount(), orderId, null);
         assertNotNull(order);
@@ -57,16 +92,21 @@ public class PeatioCNYApiTest {
 
     @Test
     public void testGetInfo() throws Exception {
-        AbstractMarketApi market = MarketApiFactory.getInstance().getMarket(Market.PeatioCNY);
+        AbstractMarketApi market = api;
         Asset asset = market.getInfo(getAppAccount());
         assertNotNull(asset);
+        FakePeatioServer.Member member = server.getMember("xxx");
+        assertEquals(member.getBalance("btc"), asset.available(Symbol.btc), 0.0);
+        assertEquals(member.getBalance("ltc"), asset.available(Symbol.ltc), 0.0);
+        assertEquals(member.getLocked("cny"), asset.frozen(Symbol.cny), 0.0);
+        assertEquals(FiatConverter.toUsd(asset.getAvailableCny()), asset.available(Symbol.usd), 0.0001);
     }
 
     @Test
     public void testGetOrder() throws Exception {
 
-        AbstractMarketApi market = MarketApiFactory.getInstance().getMarket(Market.PeatioCNY);
-        Long orderId = 434669L;
+        AbstractMarketApi market = api;
+        Long orderId = market.buy(getAppAccount(), 0.01, 10.0, new SymbolPair(Symbol.btc, Symbol.usd));
         BitOrder order = market.getOrder(getAppAccount(), orderId, new SymbolPair(Symbol.btc, Symbol.usd));
         assertNotNull(order);
     }
@@ -74,15 +114,38 @@ public class PeatioCNYApiTest {
     @Test
     public void testGetRunningOrder() throws Exception {
 
-        AbstractMarketApi market = MarketApiFactory.getInstance().getMarket(Market.PeatioCNY);
+        AbstractMarketApi market = api;
+        market.sell(getAppAccount(), 0.01, 10000.0, new SymbolPair(Symbol.btc, Symbol.usd));
         List<BitOrder> bitOrders = market.getRunningOrders(getAppAccount());
         assertTrue(bitOrders.size() > 0);
     }
 
+    @Test
+    public void testRunningOrdersKeepTheirPair() throws Exception {
+        AppAccount appAccount = getAppAccount();
+        appAccount.setAccessKey("pairs");
+        server.addMember("pairs", "yyy");
+        SymbolPair ltcCny = new SymbolPair(Symbol.ltc, Symbol.cny);
+        SymbolPair btcUsd = new SymbolPair(Symbol.btc, Symbol.usd);
+        api.sell(appAccount, 0.01, 10000.0, ltcCny);
+        api.sell(appAccount, 0.01, 10000.0, btcUsd);
+
+        List<BitOrder> orders = api.getRunningOrders(appAccount, Arrays.asList(ltcCny, btcUsd)).toList();
+        assertEquals(2, orders.size());
+        assertEquals(ltcCny, orders.get(0).getSymbolPair());
+        assertEquals(Symbol.ltc, orders.get(0).getSymbol());
+        // listed under btccny, asked for as btc/usd
+        assertEquals(btcUsd, orders.get(1).getSymbolPair());
+        assertEquals(Symbol.btc, orders.get(1).getSymbol());
+
+        assertEquals(ltcCny, SymbolPair.find("ltccny"));
+        assertEquals(new SymbolPair(Symbol.ltc, Symbol.btc), SymbolPair.find("ltc_btc"));
+        assertNull(SymbolPair.find("dogecny"));
+    }
 
     @Test
     public void testGetKlineDate() throws Exception {
-        AbstractMarketApi market = MarketApiFactory.getInstance().getMarket(Market.PeatioCNY);
+        AbstractMarketApi market = api;
         List<Kline> klines = market.getKlineDate(Symbol.btc);
         for (Kline kline : klines) {
             convertToUsd(market, kline);
@@ -93,7 +156,7 @@ public class PeatioCNYApiTest {
 
     @Test
     public void testGetKline5Min() throws Exception {
-        AbstractMarketApi market = MarketApiFactory.getInstance().getMarket(Market.PeatioCNY);
+        AbstractMarketApi market = api;
         List<Kline> klines = market.getKline5Min(Symbol.btc);
         for (Kline kline : klines) {
             convertToUsd(market, kline);
@@ -104,7 +167,7 @@ public class PeatioCNYApiTest {
 
     @Test
     public void testGetKline1Min() throws Exception {
-        AbstractMarketApi market = MarketApiFactory.getInstance().getMarket(Market.PeatioCNY);
+        AbstractMarketApi market = api;
         List<Kline> klines = market.getKline1Min(Symbol.btc);
         for (Kline kline : klines) {
             convertToUsd(market, kline);
@@ -112,10 +175,44 @@ public class PeatioCNYApiTest {
         assertTrue(klines.size() > 0);
     }
 
+    @Test
+    public void testGetKline1MinFromStore() throws Exception {
+        PeatioCNYApi market = new PeatioCNYApi(server.getBaseUrl());
+        market.getRateLimiter().setLimit(EndpointClass.PUBLIC, 100, 1000.0);
+        market.setKlineStore(new KlineStore(market.getMarket(), market::getKlines));
+        DefaultMetricsRegistry metrics = (DefaultMetricsRegistry) market.getMetrics();
+        List<Kline> first = market.getKline1Min(Symbol.btc);
+        long firstBytes = metrics.getBytesReceived();
+        List<Kline> second = market.getKline1Min(Symbol.btc);
+        assertEquals(100, first.size());
+        assertEquals(100, second.size());
+        assertEquals(first.get(99).getTimestamp(), second.get(99).getTimestamp());
+        assertEquals(first.get(99).getClose(), second.get(99).getClose());
+        // the second call only asked for the open bar onwards
+        assertEquals(2, metrics.getLatency("GET /api/v2/k").getCount());
+        assertTrue(metrics.getBytesReceived() - firstBytes < firstBytes / 20);
+    }
+
+    @Test
+    public void testAggregateKlines() throws Exception {
+        PeatioCNYApi market = new PeatioCNYApi(server.getBaseUrl());
+        market.getRateLimiter().setLimit(EndpointClass.PUBLIC, 100, 1000.0);
+        market.setAggregateKlines(true);
+        DefaultMetricsRegistry metrics = (DefaultMetricsRegistry) market.getMetrics();
+        List<Kline> fives = market.getKline5Min(Symbol.btc);
+        List<Kline> minutes = market.getKline1Min(Symbol.btc);
+        assertEquals(100, fives.size());
+        assertEquals(100, minutes.size());
+        Kline last = fives.get(99);
+        assertEquals(0L, last.getTimestamp() % 300);
+        // both periods come from the 1 minute bars, the second call only refreshed them
+        assertEquals(2, metrics.getLatency("GET /api/v2/k").getCount());
+    }
+
     @Test
     public void testTicker() throws Exception {
 
-        AbstractMarketApi abstractMarketApi = MarketApiFactory.getInstance().getMarket(Market.PeatioCNY);
+        AbstractMarketApi abstractMarketApi = api;
         double ticker = abstractMarketApi.ticker(new SymbolPair(Symbol.btc, Symbol.cny));
         assertTrue(ticker > 0.0);
 
@@ -124,11 +221,157 @@ public class PeatioCNYApiTest {
     @Test
     public void testDepth() throws Exception {
 
-        AbstractMarketApi market = MarketApiFactory.getInstance().getMarket(Market.PeatioCNY);
+        AbstractMarketApi market = api;
         JSONObject depth = market.get_depth(new SymbolPair(Symbol.btc, Symbol.cny), true);
         assertTrue(depth.containsKey("asks"));
         assertTrue(depth.containsKey("bids"));
 
+        // every caller gets its own book
+        SymbolPair btcCny = new SymbolPair(Symbol.btc, Symbol.cny);
+        OrderBook first = market.getOrderBook(btcCny);
+        OrderBook second = market.getOrderBook(btcCny);
+        assertNotSame(first, second);
+        assertTrue(first.getAskCount() > 0 && second.getAskCount() > 0);
+    }
+
+    @Test
+    public void testPlaceOrdersAndCancelAll() throws Exception {
+        SymbolPair btcUsd = new SymbolPair(Symbol.btc, Symbol.usd);
+        List<BitOrder> orders = api.placeOrders(getAppAccount(), Arrays.asList(
+                OrderRequest.buy(0.01, 10.0, btcUsd),
+                OrderRequest.sell(0.02, 10000.0, btcUsd),
+                OrderRequest.buy(1.0, 0.5, new SymbolPair(Symbol.ltc, Symbol.usd))));
+        assertEquals(3, orders.size());
+        for (BitOrder order : orders) {
+            assertNotNull(order.getOrderId());
+            assertEquals(OrderStatus.none, order.getStatus());
+        }
+        assertEquals(OrderSide.sell, orders.get(1).getOrderSide());
+        assertEquals(0.02, orders.get(1).getOrderAmount(), 0.0);
+
+        api.cancelAll(getAppAccount(), null);
+        assertEquals(0, server.getMember("xxx").getOrderCount("wait"));
+        assertEquals(0.0, server.getMember("xxx").getLocked("cny"), 0.0);
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testWrongSecret() throws Exception {
+        AppAccount appAccount = getAppAccount();
+        appAccount.setSecretKey("zzz");
+        api.getInfo(appAccount);
+    }
+
+    @Test
+    public void testGetAssets() throws Exception {
+        PeatioCNYApi market = new PeatioCNYApi(server.getBaseUrl());
+        market.getRateLimiter().setLimit(EndpointClass.PRIVATE, 2, 1000.0);
+        List<AppAccount> appAccounts = new ArrayList<AppAccount>();
+        for (long id = 11; id <= 15; id++) {
+            AppAccount appAccount = new AppAccount();
+            appAccount.setId(id);
+            appAccount.setAccessKey("assets" + id);
+            appAccount.setSecretKey("secret" + id);
+            server.addMember(appAccount.getAccessKey(), appAccount.getSecretKey()).setBalance("btc", id);
+            appAccounts.add(appAccount);
+        }
+        appAccounts.get(2).setSecretKey("zzz");
+
+        AssetSnapshot snapshot = market.getAssets(appAccounts);
+        assertEquals(4, snapshot.size());
+        assertFalse(snapshot.isComplete());
+        assertEquals(Collections.singleton(appAccounts.get(2)), snapshot.getFailures().keySet());
+        assertEquals(-1, snapshot.getRow(appAccounts.get(2)));
+        int row = snapshot.getRow(appAccounts.get(4));
+        assertEquals(15.0, snapshot.getAvailable(row, Symbol.btc), 0.0);
+        assertEquals(11.0 + 12.0 + 14.0 + 15.0, snapshot.getTotalAvailable(Symbol.btc), 0.0);
+        assertEquals(0.0, snapshot.getTotalFrozen(Symbol.btc), 0.0);
+        // a wrong signature is an answer, it isn't asked again
+        assertEquals(0L, ((DefaultMetricsRegistry) market.getMetrics()).getRetries());
+    }
+
+    @Test
+    public void testBuyAndCancelAsync() throws Exception {
+        SymbolPair btcUsd = new SymbolPair(Symbol.btc, Symbol.usd);
+        Long orderId = api.buyAsync(getAppAccount(), 0.01, 10.0, btcUsd, OrderType.Limit).get(5, TimeUnit.SECONDS);
+        BitOrder order = api.getOrderAsync(getAppAccount(), orderId, btcUsd).get(5, TimeUnit.SECONDS);
+        assertEquals(OrderStatus.none, order.getStatus());
+        assertEquals(0.01, order.getOrderAmount(), 0.0);
+        api.cancelAsync(getAppAccount(), orderId, btcUsd).get(5, TimeUnit.SECONDS);
+        order = api.getOrderAsync(getAppAccount(), orderId, btcUsd).get(5, TimeUnit.SECONDS);
+        assertEquals(OrderStatus.cancelled, order.getStatus());
+    }
+
+    @Test
+    public void testGetInfoAsync() throws Exception {
+        Asset asset = api.getInfoAsync(getAppAccount()).get(5, TimeUnit.SECONDS);
+        assertEquals(server.getMember("xxx").getBalance("btc"), asset.available(Symbol.btc), 0.0);
+    }
+
+    @Test
+    public void testAsyncFailures() throws Exception {
+        // a pair peatio doesn't trade, an account without its enable flag, no order id: failed futures, no throw
+        assertFailed(api.buyAsync(getAppAccount(), 0.01, 10.0, new SymbolPair(Symbol.ltc, Symbol.btc), OrderType.Limit));
+        AppAccount appAccount = getAppAccount();
+        appAccount.setEnable(null);
+        assertFailed(api.sellAsync(appAccount, 0.01, 10000.0, new SymbolPair(Symbol.btc, Symbol.usd), OrderType.Limit));
+        assertFailed(api.cancelAsync(getAppAccount(), null, null));
+        assertFailed(api.tickerAsync(new SymbolPair(Symbol.ltc, Symbol.btc)));
+
+        AppAccount wrongSecret = getAppAccount();
+        wrongSecret.setSecretKey("zzz");
+        assertFailed(api.getInfoAsync(wrongSecret));
+    }
+
+    private static void assertFailed(CompletableFuture<?> future) throws Exception {
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException expected) {
+        }
+    }
+
+    @Test
+    public void testConnectMetrics() throws Exception {
+        try (FakePeatioServer other = new FakePeatioServer().start()) {
+            PeatioCNYApi market = new PeatioCNYApi(other.getBaseUrl());
+            DefaultMetricsRegistry metrics = (DefaultMetricsRegistry) market.getMetrics();
+            market.ticker(new SymbolPair(Symbol.btc, Symbol.cny));
+            assertEquals(1, metrics.getConnectStats().size());
+            assertTrue(metrics.getConnectStats().get(0).getCount() > 0);
+        }
+    }
+
+    @Test
+    public void testMetrics() throws Exception {
+        PeatioCNYApi market = new PeatioCNYApi(server.getBaseUrl());
+        market.getRateLimiter().setLimit(EndpointClass.PUBLIC, 1, 1000.0);
+        DefaultMetricsRegistry metrics = (DefaultMetricsRegistry) market.getMetrics();
+
+        market.getOrder(getAppAccount(), market.buy(getAppAccount(), 0.01, 10.0, new SymbolPair(Symbol.btc, Symbol.usd)), null);
+        market.ticker(new SymbolPair(Symbol.btc, Symbol.cny));
+        market.ticker(new SymbolPair(Symbol.btc, Symbol.cny));
+        try {
+            market.getOrder(getAppAccount(), -1L, null);
+            fail();
+        } catch (RuntimeException expected) {
+        }
+
+        assertEquals(2, metrics.getLatency("GET /api/v2/order").getCount());
+        assertEquals(1, metrics.getLatency("POST /api/v2/orders").getCount());
+        assertEquals(2, metrics.getLatency("GET /api/v2/tickers/btccny").getCount());
+        assertEquals(Long.valueOf(1), metrics.getErrors().get("peatio_2004"));
+        assertTrue(metrics.getBytesReceived() > 0);
+        assertTrue(metrics.getThrottleNanos(EndpointClass.PRIVATE) > 0);
+
+        ObjectName name = MetricsJmx.register(metrics, "PeatioCNYApiTest");
+        try {
+            CompositeData[] endpoints = (CompositeData[]) ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Endpoints");
+            assertEquals(metrics.getEndpoints().size(), endpoints.length);
+            assertEquals("GET /api/v2/order", endpoints[0].get("name"));
+            assertEquals(2L, endpoints[0].get("count"));
+        } finally {
+            MetricsJmx.unregister(name);
+        }
     }
 
 
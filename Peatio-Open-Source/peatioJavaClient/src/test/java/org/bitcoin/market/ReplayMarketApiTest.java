@@ -0,0 +1,114 @@
+package org.bitcoin.market;
+
+import org.bitcoin.market.bean.Kline;
+import org.bitcoin.market.bean.Market;
+import org.bitcoin.market.bean.OrderBook;
+import org.bitcoin.market.bean.Symbol;
+import org.bitcoin.market.bean.SymbolPair;
+import org.bitcoin.market.record.MarketRecorder;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ReplayMarketApiTest {
+
+    private static final SymbolPair BTC_CNY = new SymbolPair(Symbol.btc, Symbol.cny);
+    private static final SymbolPair LTC_CNY = new SymbolPair(Symbol.ltc, Symbol.cny);
+    // 2014-03-05 00:00 utc
+    private static final long START = 1393977600000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File directory;
+
+    /**
+     * Every 10 seconds for an hour: a btc book, a btc ticker at 100 + i and a ltc ticker.
+     */
+    @Before
+    public void record() throws Exception {
+        directory = folder.newFolder("md");
+        MarketRecorder recorder = new MarketRecorder(directory, Market.PeatioCNY.name(), 2048);
+        recorder.setSegmentSize(64 << 10);
+        for (int i = 0; i < 360; i++) {
+            long timestamp = START + i * 10000L;
+            OrderBook book = new OrderBook(BTC_CNY);
+            book.setTimestamp(timestamp);
+            book.addAsk(100.0 + i + 0.5, 1.0);
+            book.addBid(100.0 + i - 0.5, 2.0);
+            recorder.recordBook(book);
+            recorder.recordTicker(BTC_CNY, timestamp, 100.0 + i);
+            recorder.recordTicker(LTC_CNY, timestamp, 1.0);
+        }
+        recorder.close();
+        assertEquals(1080, recorder.getRecorded());
+    }
+
+    @Test
+    public void testStepThrough() throws Exception {
+        ReplayMarketApi replay = new ReplayMarketApi(Market.PeatioCNY, directory);
+        OrderBook book = new OrderBook();
+        for (int i = 0; i < 360; i++) {
+            replay.getOrderBook(BTC_CNY, book);
+            assertEquals(START + i * 10000L, book.getTimestamp());
+            assertEquals(100.0 + i - 0.5, book.getBidPrice(0), 0.0);
+            assertEquals(100.0 + i, replay.ticker(BTC_CNY), 0.0);
+        }
+        assertEquals(START + 359 * 10000L, replay.getTime());
+
+        List<Kline> minutes = replay.getKline1Min(Symbol.btc);
+        assertEquals(60, minutes.size());
+        Kline first = minutes.get(0);
+        assertEquals(Long.valueOf(START / 1000), first.getTimestamp());
+        // the recorded tickers are in usd, the bars in cny like peatio's
+        assertEquals(620.0, first.getOpen(), 1e-4);
+        assertEquals(105 * 6.2, first.getClose(), 1e-4);
+        assertEquals(0.0, first.getVolume(), 0.0);
+        List<Kline> fives = replay.getKline5Min(Symbol.btc);
+        assertEquals(12, fives.size());
+        assertEquals(129 * 6.2, fives.get(0).getHigh(), 1e-4);
+        assertEquals(1, replay.getKlineDate(Symbol.btc).size());
+
+        // the ltc tickers left are still there, then the recording ends
+        assertEquals(1.0, replay.ticker(LTC_CNY), 0.0);
+        assertFalse(replay.isFinished());
+        try {
+            replay.getOrderBook(BTC_CNY, book);
+            fail();
+        } catch (IllegalStateException e) {
+            assertTrue(replay.isFinished());
+        }
+        replay.close();
+    }
+
+    @Test
+    public void testSeekAndWallClock() throws Exception {
+        ReplayMarketApi replay = new ReplayMarketApi(Market.PeatioCNY, directory);
+        replay.seek(START + 1800 * 1000L);
+        assertEquals(START + 1800 * 1000L, replay.getOrderBook(BTC_CNY, new OrderBook()).getTimestamp());
+        assertEquals(280.0, replay.ticker(BTC_CNY), 0.0);
+
+        replay.setSpeed(1e6);
+        Thread.sleep(5);
+        // a wall clock replay jumps to the latest record at the replay time
+        assertEquals(459.0, replay.ticker(BTC_CNY), 0.0);
+        assertEquals(459.0, replay.getOrderBook(BTC_CNY).getBidPrice(0) + 0.5, 0.0);
+        assertTrue(replay.isFinished());
+
+        MarketApiFactory factory = MarketApiFactory.getInstance();
+        AbstractMarketApi peatio = factory.register(replay);
+        assertSame(replay, factory.getMarket(Market.PeatioCNY));
+        factory.register(peatio);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testNoTrading() throws Exception {
+        new ReplayMarketApi(Market.PeatioCNY, directory).buy(null, 1.0, 1.0, BTC_CNY);
+    }
+}
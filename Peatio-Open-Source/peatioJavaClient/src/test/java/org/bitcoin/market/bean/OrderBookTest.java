@@ -0,0 +1,74 @@
+package org.bitcoin.market.bean;
+
+import com.alibaba.fastjson.JSONObject;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class OrderBookTest {
+
+    @Test
+    public void testSort() throws Exception {
+        OrderBook book = new OrderBook(new SymbolPair(Symbol.btc, Symbol.cny), 4);
+        Random random = new Random(42);
+        for (int i = 0; i < 300; i++) {
+            double price = 3000 + random.nextInt(1000) / 10.0;
+            book.addAsk(price, price / 1000);
+            book.addBid(price, price / 1000);
+        }
+        book.sort();
+
+        assertEquals(300, book.getAskCount());
+        assertEquals(300, book.getBidCount());
+        for (int i = 1; i < book.getAskCount(); i++) {
+            assertTrue(book.getAskPrice(i - 1) <= book.getAskPrice(i));
+            assertEquals(book.getAskPrice(i) / 1000, book.getAskAmount(i), 1e-12);
+        }
+        for (int i = 1; i < book.getBidCount(); i++) {
+            assertTrue(book.getBidPrice(i - 1) >= book.getBidPrice(i));
+            assertEquals(book.getBidPrice(i) / 1000, book.getBidAmount(i), 1e-12);
+        }
+    }
+
+    @Test
+    public void testRemoveAndTruncate() throws Exception {
+        OrderBook book = new OrderBook();
+        for (int i = 0; i < 10; i++) {
+            book.addAsk(100 + i, 1);
+            book.addBid(99 - i, 1);
+        }
+        book.removeFirstAsks(2);
+        book.removeFirstBids(3);
+        assertEquals(102.0, book.getAskPrice(0), 0.0);
+        assertEquals(96.0, book.getBidPrice(0), 0.0);
+
+        book.truncate(5);
+        assertEquals(5, book.getAskCount());
+        assertEquals(5, book.getBidCount());
+        assertEquals(106.0, book.getAskPrice(4), 0.0);
+    }
+
+    @Test
+    public void testJSONRoundTrip() throws Exception {
+        OrderBook book = new OrderBook();
+        book.addAsk(101.5, 0.2);
+        book.addAsk(102.0, 1.0);
+        book.addBid(100.0, 0.5);
+
+        JSONObject depth = book.toJSON();
+        assertEquals(2, depth.getJSONArray("asks").size());
+        assertEquals(101.5, depth.getJSONArray("asks").getJSONObject(0).getDoubleValue("price"), 0.0);
+
+        OrderBook copy = new OrderBook();
+        copy.fill(depth);
+        assertEquals(2, copy.getAskCount());
+        assertEquals(1, copy.getBidCount());
+        assertEquals(0.5, copy.getBidAmount(0), 0.0);
+
+        OrderBook other = new OrderBook(copy);
+        copy.clear();
+        assertEquals(102.0, other.getAskPrice(1), 0.0);
+    }
+}
@@ -0,0 +1,132 @@
+package org.bitcoin.market.depth;
+
+import org.bitcoin.market.AbstractMarketApi;
+import org.bitcoin.market.FakePeatioServer;
+import org.bitcoin.market.PeatioCNYApi;
+import org.bitcoin.market.bean.OrderBook;
+import org.bitcoin.market.bean.Symbol;
+import org.bitcoin.market.bean.SymbolPair;
+import org.bitcoin.market.metrics.DefaultMetricsRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class DepthFanOutTest {
+
+    private static final SymbolPair BTC_USD = new SymbolPair(Symbol.btc, Symbol.usd);
+
+    private final List<FakePeatioServer> servers = new ArrayList<FakePeatioServer>();
+    private final List<AbstractMarketApi> venues = new ArrayList<AbstractMarketApi>();
+
+    @Before
+    public void start() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            FakePeatioServer server = new FakePeatioServer().start();
+            server.setRandomOrderBook("btccny", 3800.0 + i * 10, 20, i + 1L);
+            servers.add(server);
+            venues.add(new PeatioCNYApi(server.getBaseUrl()));
+        }
+        servers.get(2).setLatency(2, TimeUnit.SECONDS);
+    }
+
+    @After
+    public void stop() {
+        for (FakePeatioServer server : servers) {
+            server.close();
+        }
+    }
+
+    @Test
+    public void testConsolidate() throws Exception {
+        DepthFanOut fanOut = new DepthFanOut(venues);
+        fanOut.setTimeoutMillis(venues.get(2), 200L);
+        long start = System.currentTimeMillis();
+        ConsolidatedBook book = fanOut.refresh(BTC_USD);
+        assertTrue(System.currentTimeMillis() - start < 2000L);
+
+        assertEquals(Arrays.asList(venues.get(2)), book.getMissing());
+        assertFalse(book.isAvailable(2));
+        assertTrue(book.isAvailable(0) && book.isAvailable(1));
+        // the late request was aborted rather than left to finish
+        DefaultMetricsRegistry metrics = (DefaultMetricsRegistry) ((PeatioCNYApi) venues.get(2)).getMetrics();
+        assertEquals(Long.valueOf(1), metrics.getErrors().get("CancellationException"));
+
+        // one ladder: asks ascending, bids descending, every level from one of the answering venues
+        int[] asks = new int[3];
+        for (int i = 0; i < book.getAskCount(); i++) {
+            assertTrue(i == 0 || book.getAskPriceUnscaled(i - 1) <= book.getAskPriceUnscaled(i));
+            asks[book.getAskVenue(i)]++;
+        }
+        assertTrue(asks[0] > 0 && asks[1] > 0);
+        assertEquals(0, asks[2]);
+        for (int i = 1; i < book.getBidCount(); i++) {
+            assertTrue(book.getBidPriceUnscaled(i - 1) >= book.getBidPriceUnscaled(i));
+        }
+    }
+
+    @Test
+    public void testInterruptCancelsFetches() throws Exception {
+        servers.get(1).setLatency(2, TimeUnit.SECONDS);
+        DepthFanOut fanOut = new DepthFanOut(venues);
+        fanOut.setTimeoutMillis(10000L);
+        final Thread caller = Thread.currentThread();
+        Thread interrupter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(200L);
+                } catch (InterruptedException ignored) {
+                }
+                caller.interrupt();
+            }
+        });
+        interrupter.start();
+        try {
+            fanOut.refresh(BTC_USD);
+            fail();
+        } catch (InterruptedException expected) {
+        }
+        interrupter.join();
+        // venue 1 was being waited for, venue 2 not yet: both requests aborted
+        for (int v = 1; v < 3; v++) {
+            DefaultMetricsRegistry metrics = (DefaultMetricsRegistry) ((PeatioCNYApi) venues.get(v)).getMetrics();
+            assertEquals(Long.valueOf(1), metrics.getErrors().get("CancellationException"));
+        }
+    }
+
+    @Test
+    public void testMerge() {
+        OrderBook first = new OrderBook(BTC_USD);
+        first.addAsk(101.0, 1.0);
+        first.addAsk(103.0, 1.0);
+        first.addBid(99.0, 1.0);
+        first.addBid(97.0, 1.0);
+        OrderBook second = new OrderBook(BTC_USD);
+        second.addAsk(101.0, 2.0);
+        second.addAsk(102.0, 2.0);
+        second.addBid(100.0, 2.0);
+        ConsolidatedBook book = new ConsolidatedBook(BTC_USD, venues, Arrays.asList(first, second, null));
+
+        assertEquals(4, book.getAskCount());
+        double[] askPrices = {101.0, 101.0, 102.0, 103.0};
+        int[] askVenues = {0, 1, 1, 0};
+        for (int i = 0; i < 4; i++) {
+            assertEquals(askPrices[i], book.getAskPrice(i), 0.0);
+            assertEquals(askVenues[i], book.getAskVenue(i));
+        }
+        assertEquals(3, book.getBidCount());
+        assertEquals(100.0, book.getBidPrice(0), 0.0);
+        assertEquals(1, book.getBidVenue(0));
+        assertEquals(97.0, book.getBidPrice(2), 0.0);
+        assertEquals(3.0, book.getAskAmount(0) + book.getAskAmount(1), 0.0);
+        assertEquals(300000000L, book.getBidAmountUnscaled(Math.round(99.0 * 10000)));
+        assertEquals(Arrays.asList(venues.get(2)), book.getMissing());
+    }
+}
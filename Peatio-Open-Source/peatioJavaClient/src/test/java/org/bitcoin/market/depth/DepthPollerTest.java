@@ -0,0 +1,147 @@
+package org.bitcoin.market.depth;
+
+import com.google.common.io.ByteStreams;
+import org.bitcoin.market.FakePeatioServer;
+import org.bitcoin.market.PeatioCNYApi;
+import org.bitcoin.market.bean.Symbol;
+import org.bitcoin.market.bean.SymbolPair;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class DepthPollerTest {
+
+    private static final SymbolPair BTC_USD = new SymbolPair(Symbol.btc, Symbol.usd);
+
+    private FakePeatioServer server;
+    private DepthPoller poller;
+
+    @Before
+    public void start() throws Exception {
+        server = new FakePeatioServer().start();
+        // the same recorded book at every request
+        server.setOrderBook("btccny", ByteStreams.toByteArray(getClass().getResourceAsStream("/order_book.json")));
+        poller = new DepthPoller(new DepthManager(new PeatioCNYApi(server.getBaseUrl())));
+    }
+
+    @After
+    public void stop() {
+        poller.shutdown();
+        server.close();
+    }
+
+    @Test
+    public void testSnapshot() throws Exception {
+        assertNull(poller.getSnapshot(BTC_USD));
+        poller.start(BTC_USD, 20L);
+        DepthSnapshot first = poller.awaitSnapshot(BTC_USD, Long.MAX_VALUE, 5000L);
+        assertNotNull(first);
+        assertTrue(first.getBook().getAskCount() > 0);
+        assertTrue(first.getBook().getBidCount() > 0);
+
+        // unchanged book: a newer snapshot of the same book
+        DepthSnapshot later = first;
+        long deadline = System.currentTimeMillis() + 5000L;
+        while (later.getUpdated() == first.getUpdated() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10L);
+            later = poller.getSnapshot(BTC_USD);
+        }
+        assertTrue(later.getUpdated() > first.getUpdated());
+        assertSame(first.getBook(), later.getBook());
+    }
+
+    @Test
+    public void testStop() throws Exception {
+        poller.start(BTC_USD, 20L);
+        assertTrue(poller.isPolling(BTC_USD));
+        assertNotNull(poller.awaitSnapshot(BTC_USD, Long.MAX_VALUE, 5000L));
+
+        poller.stop(BTC_USD);
+        assertFalse(poller.isPolling(BTC_USD));
+        assertNull(poller.getSnapshot(BTC_USD));
+        Thread.sleep(100L);
+        long requests = server.getRequestCount("/order_book");
+        Thread.sleep(200L);
+        assertEquals(requests, server.getRequestCount("/order_book"));
+    }
+
+    @Test
+    public void testRestartWakesWaiters() throws Exception {
+        poller.start(BTC_USD, 60000L);
+        DepthSnapshot first = poller.awaitSnapshot(BTC_USD, Long.MAX_VALUE, 5000L);
+        Thread.sleep(100L);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            // the next refresh of the current cadence is a minute away
+            Future<DepthSnapshot> waiter = executor.submit(() -> poller.awaitSnapshot(BTC_USD, 50L, 10000L));
+            Thread.sleep(200L);
+            assertFalse(waiter.isDone());
+            long start = System.currentTimeMillis();
+            poller.start(BTC_USD, 20L);
+            DepthSnapshot fresh = waiter.get(10, TimeUnit.SECONDS);
+            assertTrue(System.currentTimeMillis() - start < 2000L);
+            assertTrue(fresh.getUpdated() > first.getUpdated());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testStopWakesWaiters() throws Exception {
+        poller.start(BTC_USD, 60000L);
+        DepthSnapshot first = poller.awaitSnapshot(BTC_USD, Long.MAX_VALUE, 5000L);
+        Thread.sleep(100L);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<DepthSnapshot> waiter = executor.submit(() -> poller.awaitSnapshot(BTC_USD, 50L, 10000L));
+            Thread.sleep(200L);
+            assertFalse(waiter.isDone());
+            poller.stop(BTC_USD);
+            // the stale snapshot, right away
+            assertSame(first, waiter.get(2, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testStartStopConcurrently() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Object>> futures = new ArrayList<Future<Object>>();
+            for (int i = 0; i < 4; i++) {
+                futures.add(executor.submit(new Callable<Object>() {
+                    @Override
+                    public Object call() {
+                        for (int j = 0; j < 200; j++) {
+                            poller.start(BTC_USD, 1000L);
+                            poller.stop(BTC_USD);
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Object> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        // every poll scheduled was cancelled
+        assertFalse(poller.isPolling(BTC_USD));
+        Thread.sleep(100L);
+        long requests = server.getRequestCount("/order_book");
+        Thread.sleep(1500L);
+        assertEquals(requests, server.getRequestCount("/order_book"));
+    }
+}
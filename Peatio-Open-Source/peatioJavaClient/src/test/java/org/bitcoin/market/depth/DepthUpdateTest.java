@@ -0,0 +1,91 @@
+package org.bitcoin.market.depth;
+
+import org.bitcoin.market.bean.OrderBook;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DepthUpdateTest {
+
+    @Test
+    public void testDiff() throws Exception {
+        OrderBook previous = new OrderBook();
+        previous.addAsk(101, 1);
+        previous.addAsk(102, 2);
+        previous.addAsk(103, 3);
+        previous.addBid(100, 1);
+        previous.addBid(99, 2);
+
+        OrderBook current = new OrderBook();
+        current.addAsk(101, 1);
+        current.addAsk(102, 5);
+        current.addAsk(104, 4);
+        current.addBid(100.5, 1);
+        current.addBid(100, 1);
+        current.addBid(99, 2);
+
+        DepthUpdate update = new DepthUpdate();
+        update.diff(previous, current);
+
+        assertEquals(3, update.getAskCount());
+        assertEquals(102.0, update.getAskPrice(0), 0.0);
+        assertEquals(5.0, update.getAskAmount(0), 0.0);
+        assertEquals(103.0, update.getAskPrice(1), 0.0);
+        assertEquals(0.0, update.getAskAmount(1), 0.0);
+        assertEquals(104.0, update.getAskPrice(2), 0.0);
+        assertEquals(4.0, update.getAskAmount(2), 0.0);
+
+        assertEquals(1, update.getBidCount());
+        assertEquals(100.5, update.getBidPrice(0), 0.0);
+
+        update.diff(current, current);
+        assertTrue(update.isEmpty());
+    }
+
+    @Test
+    public void testDiffRepeatedPrices() throws Exception {
+        // one entry per resting order, as peatio's order_book sends them
+        OrderBook previous = new OrderBook();
+        previous.addAsk(100, 1);
+        previous.addAsk(101, 1);
+        previous.addAsk(100, 2);
+        previous.addBid(99, 1);
+        previous.addBid(99, 1);
+        previous.sort();
+        previous.mergeLevels();
+        assertEquals(2, previous.getAskCount());
+        assertEquals(3.0, previous.getAskAmount(0), 0.0);
+        assertEquals(1, previous.getBidCount());
+        assertEquals(2.0, previous.getBidAmount(0), 0.0);
+
+        OrderBook current = new OrderBook();
+        current.addAsk(100, 2);
+        current.addAsk(101, 1);
+        current.addBid(99, 2);
+        current.mergeLevels();
+
+        DepthUpdate update = new DepthUpdate();
+        update.diff(previous, current);
+        assertEquals(1, update.getAskCount());
+        assertEquals(100.0, update.getAskPrice(0), 0.0);
+        assertEquals(2.0, update.getAskAmount(0), 0.0);
+        assertEquals(0, update.getBidCount());
+    }
+
+    @Test
+    public void testDiffFromEmpty() throws Exception {
+        OrderBook current = new OrderBook();
+        current.addAsk(101, 1);
+        current.addBid(100, 1);
+        current.addBid(99, 3);
+
+        DepthUpdate update = new DepthUpdate();
+        update.diff(new OrderBook(), current);
+        assertEquals(1, update.getAskCount());
+        assertEquals(2, update.getBidCount());
+
+        update.diff(current, new OrderBook());
+        assertEquals(0.0, update.getBidAmount(1), 0.0);
+        assertEquals(99.0, update.getBidPrice(1), 0.0);
+    }
+}
@@ -0,0 +1,86 @@
+package org.bitcoin.market.kline;
+
+import org.bitcoin.market.bean.Kline;
+import org.bitcoin.market.bean.Market;
+import org.bitcoin.market.bean.Symbol;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class KlineAggregatorTest {
+
+    private static Kline minute(long timestamp, double open, double high, double low, double close, double volume, double vwap) {
+        Kline kline = new Kline();
+        kline.setTimestamp(timestamp);
+        kline.setOpen(open);
+        kline.setHigh(high);
+        kline.setLow(low);
+        kline.setClose(close);
+        kline.setVolume(volume);
+        kline.setVwap(vwap);
+        return kline;
+    }
+
+    @Test
+    public void testAggregate() throws Exception {
+        KlineSeries minutes = new KlineSeries(Market.PeatioCNY, Symbol.btc, 1);
+        List<Kline> klines = new ArrayList<Kline>();
+        // starts in the middle of a 5 minute bar, which is left out
+        klines.add(minute(240, 1, 1, 1, 1, 9, 1));
+        klines.add(minute(300, 10, 12, 9, 11, 1, 10));
+        klines.add(minute(360, 11, 15, 11, 14, 3, 14));
+        klines.add(minute(420, 14, 14, 8, 9, 0, 11));
+        klines.add(minute(600, 9, 9, 9, 9, 0, 9));
+        minutes.merge(klines);
+
+        KlineAggregator aggregator = new KlineAggregator(minutes, 5);
+        assertEquals(2, aggregator.update());
+        List<Kline> bars = aggregator.getSeries().getLast(10);
+        assertEquals(2, bars.size());
+        Kline bar = bars.get(0);
+        assertEquals(Long.valueOf(300), bar.getTimestamp());
+        assertEquals(Symbol.btc, bar.getSymbol());
+        assertEquals(10.0, bar.getOpen(), 0.0);
+        assertEquals(15.0, bar.getHigh(), 0.0);
+        assertEquals(8.0, bar.getLow(), 0.0);
+        assertEquals(9.0, bar.getClose(), 0.0);
+        assertEquals(4.0, bar.getVolume(), 0.0);
+        assertEquals(13.0, bar.getVwap(), 0.0);
+        // no volume, the vwap falls back to the average price
+        assertEquals(Long.valueOf(600), bars.get(1).getTimestamp());
+        assertEquals(0.0, bars.get(1).getVolume(), 0.0);
+        assertEquals(9.0, bars.get(1).getVwap(), 0.0);
+
+        // the open bar is rebuilt, the closed one is not
+        klines.clear();
+        klines.add(minute(600, 9, 9, 9, 10, 2, 9.5));
+        klines.add(minute(660, 10, 20, 10, 20, 2, 15.5));
+        klines.add(minute(900, 20, 20, 20, 20, 1, 20));
+        minutes.merge(klines);
+        assertEquals(2, aggregator.update());
+        bars = aggregator.getSeries().getLast(10);
+        assertEquals(3, bars.size());
+        assertEquals(13.0, bars.get(0).getVwap(), 0.0);
+        assertEquals(4.0, bars.get(1).getVolume(), 0.0);
+        assertEquals(20.0, bars.get(1).getHigh(), 0.0);
+        assertEquals(20.0, bars.get(1).getClose(), 0.0);
+        assertEquals(12.5, bars.get(1).getVwap(), 0.0);
+        assertEquals(Long.valueOf(900), bars.get(2).getTimestamp());
+        assertEquals(0, aggregator.update());
+    }
+
+    @Test
+    public void testBucketStart() {
+        KlineSeries minutes = new KlineSeries(Market.PeatioCNY, Symbol.btc, 1);
+        long day = 86400L;
+        // 2014-03-05 12:34:56 utc, a wednesday
+        long timestamp = 1394022896L;
+        assertEquals(1393977600L, new KlineAggregator(minutes, 1440).getBucketStart(timestamp));
+        assertEquals(1393977600L - 2 * day, new KlineAggregator(minutes, 10080).getBucketStart(timestamp));
+        assertEquals(1394022600L, new KlineAggregator(minutes, 15).getBucketStart(timestamp));
+        assertEquals(1394022840L, new KlineAggregator(minutes, 1).getBucketStart(timestamp));
+    }
+}
@@ -0,0 +1,176 @@
+package org.bitcoin.market.kline;
+
+import org.bitcoin.market.bean.Kline;
+import org.bitcoin.market.bean.Market;
+import org.bitcoin.market.bean.Symbol;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class KlineStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Serves the bars of its list like peatio's /k does.
+     */
+    private static class ListSource implements KlineSource {
+        private final List<Kline> klines = new ArrayList<Kline>();
+        private final List<Long> requests = new ArrayList<Long>();
+
+        @Override
+        public List<Kline> fetch(Symbol symbol, int period, Long since, int limit) {
+            requests.add(since);
+            List<Kline> result = new ArrayList<Kline>();
+            for (Kline kline : klines) {
+                if (since == null || kline.getTimestamp() >= since) {
+                    result.add(copy(kline));
+                }
+            }
+            if (since == null) {
+                return result.subList(Math.max(0, result.size() - limit), result.size());
+            }
+            return result.subList(0, Math.min(limit, result.size()));
+        }
+
+        private void add(long timestamp, double close) {
+            Kline kline = new Kline();
+            kline.setTimestamp(timestamp);
+            kline.setOpen(100.0);
+            kline.setHigh(Math.max(100.0, close));
+            kline.setLow(Math.min(100.0, close));
+            kline.setClose(close);
+            kline.setVolume(1.5);
+            kline.setVwap((100.0 + close) / 2);
+            klines.add(kline);
+        }
+
+        private static Kline copy(Kline kline) {
+            Kline copy = new Kline();
+            copy.setTimestamp(kline.getTimestamp());
+            copy.setOpenUnscaled(kline.getOpenUnscaled());
+            copy.setHighUnscaled(kline.getHighUnscaled());
+            copy.setLowUnscaled(kline.getLowUnscaled());
+            copy.setCloseUnscaled(kline.getCloseUnscaled());
+            copy.setVolumeUnscaled(kline.getVolumeUnscaled());
+            copy.setVwapUnscaled(kline.getVwapUnscaled());
+            return copy;
+        }
+    }
+
+    @Test
+    public void testIncrementalUpdate() throws Exception {
+        ListSource source = new ListSource();
+        for (int i = 0; i < 200; i++) {
+            source.add(i * 60L, 100.0 + i);
+        }
+        KlineStore store = new KlineStore(Market.PeatioCNY, source);
+
+        KlineSeries series = store.update(Symbol.btc, 1);
+        assertEquals(KlineStore.DEFAULT_INITIAL_LIMIT, series.size());
+        assertEquals(Long.valueOf(199 * 60L), series.getLastTimestamp());
+        assertNull(source.requests.get(0));
+
+        // the open bar moves and a new one starts
+        source.klines.remove(199);
+        source.add(199 * 60L, 50.0);
+        source.add(200 * 60L, 51.0);
+        store.update(Symbol.btc, 1);
+        assertEquals(Long.valueOf(199 * 60L), source.requests.get(1));
+        assertEquals(101, series.size());
+        List<Kline> last = store.getLast(Symbol.btc, 1, 2);
+        assertEquals(50.0, last.get(0).getClose(), 0.0);
+        assertEquals(51.0, last.get(1).getClose(), 0.0);
+        assertEquals(Market.PeatioCNY, last.get(1).getMarket());
+        assertEquals(200 * 60L * 1000, last.get(1).getDatetime().getTime());
+
+        List<Kline> range = store.getKlines(Symbol.btc, 1, 150 * 60L, 159 * 60L);
+        assertEquals(10, range.size());
+        assertEquals(Long.valueOf(150 * 60L), range.get(0).getTimestamp());
+        assertEquals(250.0, range.get(0).getClose(), 0.0);
+        assertTrue(store.getKlines(Symbol.btc, 5, 0, Long.MAX_VALUE).isEmpty());
+    }
+
+    @Test
+    public void testPagesThroughGap() throws Exception {
+        ListSource source = new ListSource();
+        source.add(0L, 100.0);
+        KlineStore store = new KlineStore(Market.PeatioCNY, source);
+        store.update(Symbol.btc, 1);
+        for (int i = 1; i < 2500; i++) {
+            source.add(i * 60L, 100.0);
+        }
+        assertEquals(2500, store.update(Symbol.btc, 1).size());
+        assertEquals(4, source.requests.size());
+    }
+
+    @Test
+    public void testReloadFromDisk() throws Exception {
+        File directory = folder.newFolder("klines");
+        ListSource source = new ListSource();
+        for (int i = 0; i < 10; i++) {
+            source.add(i * 300L, 100.0 + i);
+        }
+        KlineStore store = new KlineStore(Market.PeatioCNY, directory, source);
+        store.update(Symbol.ltc, 5);
+        source.klines.remove(9);
+        source.add(9 * 300L, 42.0);
+        store.update(Symbol.ltc, 5);
+        store.close();
+
+        File file = directory.listFiles()[0];
+        // a torn write at the end is dropped
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.setLength(raf.length() + 13);
+        raf.close();
+
+        ListSource empty = new ListSource();
+        KlineStore reloaded = new KlineStore(Market.PeatioCNY, directory, empty);
+        KlineSeries series = reloaded.getSeries(Symbol.ltc, 5);
+        assertEquals(10, series.size());
+        List<Kline> klines = series.getLast(10);
+        assertEquals(100.0, klines.get(0).getClose(), 0.0);
+        assertEquals(42.0, klines.get(9).getClose(), 0.0);
+        assertEquals(1.5, klines.get(9).getVolume(), 0.0);
+        assertEquals(71.0, klines.get(9).getVwap(), 0.0);
+
+        reloaded.update(Symbol.ltc, 5);
+        assertEquals(Long.valueOf(9 * 300L), empty.requests.get(0));
+        reloaded.close();
+    }
+
+    @Test
+    public void testAggregateFromMinutes() throws Exception {
+        ListSource source = new ListSource();
+        long now = System.currentTimeMillis() / 1000;
+        long start = now - now % 3600 - 3 * 3600;
+        for (long timestamp = start; timestamp <= now; timestamp += 60) {
+            source.add(timestamp, 100.0);
+        }
+        KlineStore store = new KlineStore(Market.PeatioCNY, source);
+
+        // the minutes are filled back to the first of the 2 hours asked for
+        KlineSeries hours = store.aggregate(Symbol.btc, 60, 2);
+        assertEquals(1, source.requests.size());
+        assertEquals(Long.valueOf(start + 2 * 3600), source.requests.get(0));
+        assertEquals(2, hours.size());
+        Kline hour = hours.getLast(2).get(0);
+        assertEquals(Long.valueOf(start + 2 * 3600), hour.getTimestamp());
+        assertEquals(60 * 1.5, hour.getVolume(), 1e-8);
+
+        // the 5 minute bars need no history the minutes don't have, one request refreshes both
+        KlineSeries fives = store.aggregate(Symbol.btc, 5, 3);
+        assertEquals(2, source.requests.size());
+        assertTrue(fives.size() > 12);
+        assertEquals(Long.valueOf(start + 2 * 3600), fives.getFirstTimestamp());
+        assertSame(hours, store.getAggregator(Symbol.btc, 60).getSeries());
+    }
+}
@@ -0,0 +1,42 @@
+package org.bitcoin.market.metrics;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBuckets() throws Exception {
+        long previous = -1;
+        for (long micros = 0; micros < 1000000; micros++) {
+            int index = LatencyHistogram.index(micros);
+            assertTrue(micros <= LatencyHistogram.upperBound(index));
+            assertTrue(index == 0 || micros > LatencyHistogram.upperBound(index - 1));
+            assertTrue(index >= previous);
+            previous = index;
+        }
+        assertTrue(LatencyHistogram.index(Long.MAX_VALUE) >= 0);
+    }
+
+    @Test
+    public void testPercentiles() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(i));
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(500.5e6, histogram.getMeanNanos(), 1.0);
+        assertEquals(1000e6, histogram.getMaxNanos(), 0.0);
+        // buckets are at most 12.5% wide
+        assertEquals(500e6, histogram.getPercentileNanos(0.5), 500e6 * 0.125);
+        assertEquals(990e6, histogram.getPercentileNanos(0.99), 990e6 * 0.125);
+        assertEquals(1000e6, histogram.getPercentileNanos(1.0), 0.0);
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentileNanos(0.99));
+    }
+}
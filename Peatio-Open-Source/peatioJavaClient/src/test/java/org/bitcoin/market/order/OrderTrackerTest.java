@@ -0,0 +1,120 @@
+package org.bitcoin.market.order;
+
+import org.bitcoin.market.FakePeatioServer;
+import org.bitcoin.market.PeatioCNYApi;
+import org.bitcoin.market.bean.AppAccount;
+import org.bitcoin.market.bean.BitOrder;
+import org.bitcoin.market.bean.OrderStatus;
+import org.bitcoin.market.bean.Symbol;
+import org.bitcoin.market.bean.SymbolPair;
+import org.bitcoin.market.ratelimit.EndpointClass;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class OrderTrackerTest {
+
+    private static final SymbolPair BTC_CNY = new SymbolPair(Symbol.btc, Symbol.cny);
+
+    private FakePeatioServer server;
+    private FakePeatioServer.Member member;
+    private PeatioCNYApi api;
+    private AppAccount appAccount;
+    private final List<String> transitions = new ArrayList<String>();
+
+    @Before
+    public void start() throws Exception {
+        server = new FakePeatioServer().start();
+        member = server.addMember("xxx", "yyy");
+        api = new PeatioCNYApi(server.getBaseUrl());
+        api.getRateLimiter().setLimit(EndpointClass.PRIVATE, 100, 1000.0);
+        appAccount = new AppAccount();
+        appAccount.setId(1L);
+        appAccount.setAccessKey("xxx");
+        appAccount.setSecretKey("yyy");
+    }
+
+    @After
+    public void stop() {
+        server.close();
+    }
+
+    @Test
+    public void testTransitions() throws Exception {
+        OrderTracker tracker = new OrderTracker(api, appAccount, Collections.singletonList(BTC_CNY));
+        tracker.addListener(new OrderListener() {
+            @Override
+            public void onOrderTransition(OrderTransition transition, BitOrder order) {
+                transitions.add(order.getOrderId() + ":" + transition);
+            }
+        });
+        Long filled = api.buy(appAccount, 1.0, 100.0, BTC_CNY);
+        Long partial = api.buy(appAccount, 2.0, 100.0, BTC_CNY);
+        Long cancelled = api.sell(appAccount, 1.0, 5000.0, BTC_CNY);
+        tracker.track(filled, BTC_CNY);
+        tracker.track(partial, BTC_CNY);
+        tracker.track(cancelled, BTC_CNY);
+        assertEquals(OrderStatus.created, tracker.getOrder(filled).getStatus());
+
+        long orders = server.getRequestCount("/orders");
+        assertEquals(3, tracker.sweep());
+        assertEquals(3, tracker.getRunningCount());
+        assertEquals(OrderStatus.none, tracker.getOrder(partial).getStatus());
+
+        member.fill(filled, 1.0);
+        member.fill(partial, 0.5);
+        api.cancel(appAccount, cancelled, BTC_CNY);
+        long order = server.getRequestCount("/order");
+        assertEquals(3, tracker.sweep());
+        // one listing per sweep, the finished orders fetched once each
+        assertEquals(orders + 2, server.getRequestCount("/orders"));
+        assertEquals(order + 2, server.getRequestCount("/order"));
+
+        assertEquals(OrderStatus.complete, tracker.getOrder(filled).getStatus());
+        assertEquals(OrderStatus.cancelled, tracker.getOrder(cancelled).getStatus());
+        BitOrder running = tracker.getOrder(partial);
+        assertEquals(OrderStatus.part, running.getStatus());
+        assertEquals(0.5, running.getProcessedAmount(), 0.0);
+        assertEquals(1, tracker.getRunningCount());
+        assertEquals(0, tracker.sweep());
+
+        List<String> expected = new ArrayList<String>();
+        expected.add(filled + ":wait");
+        expected.add(partial + ":wait");
+        expected.add(cancelled + ":wait");
+        expected.add(partial + ":partial");
+        expected.add(filled + ":done");
+        expected.add(cancelled + ":cancel");
+        Collections.sort(expected);
+        Collections.sort(transitions);
+        assertEquals(expected, transitions);
+    }
+
+    @Test
+    public void testSweptOrdersKeepTheirPair() throws Exception {
+        SymbolPair btcUsd = new SymbolPair(Symbol.btc, Symbol.usd);
+        SymbolPair ltcCny = new SymbolPair(Symbol.ltc, Symbol.cny);
+        OrderTracker tracker = new OrderTracker(api, appAccount, Arrays.asList(ltcCny, btcUsd));
+        Long ltc = api.sell(appAccount, 1.0, 5000.0, ltcCny);
+        Long btc = api.sell(appAccount, 1.0, 5000.0, btcUsd);
+
+        // found by the sweep, not tracked before
+        tracker.sweep();
+        assertEquals(2, tracker.getRunningCount());
+        assertEquals(ltcCny, tracker.getOrder(ltc).getSymbolPair());
+        assertEquals(btcUsd, tracker.getOrder(btc).getSymbolPair());
+
+        api.cancel(appAccount, ltc, ltcCny);
+        api.cancel(appAccount, btc, btcUsd);
+        assertEquals(2, tracker.sweep());
+        assertEquals(OrderStatus.cancelled, tracker.getOrder(ltc).getStatus());
+        assertEquals(OrderStatus.cancelled, tracker.getOrder(btc).getStatus());
+    }
+}
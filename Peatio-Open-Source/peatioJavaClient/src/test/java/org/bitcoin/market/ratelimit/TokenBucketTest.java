@@ -0,0 +1,77 @@
+package org.bitcoin.market.ratelimit;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class TokenBucketTest {
+
+    private static final long MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void testBurst() {
+        TokenBucket bucket = new TokenBucket(5, 1.0);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0L, bucket.reserve());
+        }
+        long wait = bucket.reserve();
+        assertTrue(wait > 900 * MILLI && wait <= 1000 * MILLI);
+        assertEquals(6L, bucket.getAcquired());
+        assertEquals(1L, bucket.getDelayed());
+    }
+
+    @Test
+    public void testRefill() throws Exception {
+        TokenBucket bucket = new TokenBucket(1, 20.0);
+        assertEquals(0L, bucket.reserve());
+        assertTrue(bucket.reserve() > 0L);
+        // the reserved permit is usable after 50ms, the next one 50ms later
+        Thread.sleep(150L);
+        assertEquals(0L, bucket.reserve());
+    }
+
+    @Test
+    public void testReserveOrder() {
+        TokenBucket bucket = new TokenBucket(1, 10.0);
+        long previous = bucket.reserve();
+        assertEquals(0L, previous);
+        for (int i = 0; i < 10; i++) {
+            // each permit one interval after the previous one, less the time between the calls
+            long wait = bucket.reserve();
+            assertTrue(wait - previous > 50 * MILLI && wait - previous <= 100 * MILLI);
+            previous = wait;
+        }
+        assertEquals(previous, bucket.getMaxWaitNanos());
+    }
+
+    @Test
+    public void testAcquireParks() {
+        TokenBucket bucket = new TokenBucket(1, 10.0);
+        assertEquals(0L, bucket.acquire());
+        long start = System.nanoTime();
+        long wait = bucket.acquire();
+        assertTrue(wait > 0L);
+        assertTrue(System.nanoTime() - start >= wait);
+        assertEquals(wait, bucket.getWaitNanos());
+    }
+
+    @Test
+    public void testRateLimiterDefaults() {
+        RateLimiter rateLimiter = new RateLimiter();
+        assertTrue(rateLimiter.isUnlimited(EndpointClass.PUBLIC));
+        for (int i = 0; i < 100; i++) {
+            assertEquals(0L, rateLimiter.acquire(RateLimiter.PUBLIC_KEY, EndpointClass.PUBLIC));
+        }
+        assertEquals(0L, rateLimiter.reserve("key", EndpointClass.PRIVATE));
+        assertTrue(rateLimiter.reserve("key", EndpointClass.PRIVATE) > 0L);
+        // other keys have their own bucket
+        assertEquals(0L, rateLimiter.reserve("other", EndpointClass.PRIVATE));
+
+        rateLimiter.setLimit(EndpointClass.PUBLIC, 1, 1.0);
+        assertFalse(rateLimiter.isUnlimited(EndpointClass.PUBLIC));
+        assertEquals(0L, rateLimiter.reserve(RateLimiter.PUBLIC_KEY, EndpointClass.PUBLIC));
+        assertTrue(rateLimiter.reserve(RateLimiter.PUBLIC_KEY, EndpointClass.PUBLIC) > 0L);
+    }
+}
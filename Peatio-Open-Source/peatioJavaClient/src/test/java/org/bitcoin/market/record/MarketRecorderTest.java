@@ -0,0 +1,101 @@
+package org.bitcoin.market.record;
+
+import org.bitcoin.market.FakePeatioServer;
+import org.bitcoin.market.PeatioCNYApi;
+import org.bitcoin.market.bean.OrderBook;
+import org.bitcoin.market.bean.Symbol;
+import org.bitcoin.market.bean.SymbolPair;
+import org.bitcoin.market.ratelimit.EndpointClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+public class MarketRecorderTest {
+
+    private static final SymbolPair BTC_CNY = new SymbolPair(Symbol.btc, Symbol.cny);
+    private static final SymbolPair LTC_CNY = new SymbolPair(Symbol.ltc, Symbol.cny);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static OrderBook book(SymbolPair symbolPair, long timestamp, int levels) {
+        OrderBook book = new OrderBook(symbolPair);
+        book.setTimestamp(timestamp);
+        for (int i = 0; i < levels; i++) {
+            book.addAsk(100.0 + i, 0.5 + i);
+            book.addBid(99.0 - i, 1.5 + i);
+        }
+        return book;
+    }
+
+    @Test
+    public void testRoundTripAcrossSegments() throws Exception {
+        File directory = folder.newFolder("md");
+        MarketRecorder recorder = new MarketRecorder(directory, "PeatioCNY");
+        // about ten books per segment
+        recorder.setSegmentSize(2048);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(recorder.recordBook(book(i % 2 == 0 ? BTC_CNY : LTC_CNY, 1000L + i, 1 + i % 5)));
+            assertTrue(recorder.recordTicker(BTC_CNY, 1000L + i, 600.0 + i * 0.0001));
+        }
+        recorder.close();
+        assertEquals(200, recorder.getRecorded());
+        assertEquals(0, recorder.getDropped());
+        assertFalse(recorder.recordTicker(BTC_CNY, 0L, 1.0));
+
+        MarketDataReader reader = new MarketDataReader(directory, "PeatioCNY");
+        assertTrue(reader.getFiles().size() > 5);
+        OrderBook book = new OrderBook();
+        for (int i = 0; i < 100; i++) {
+            assertTrue(reader.next());
+            assertEquals(MarketDataReader.BOOK, reader.getType());
+            assertEquals(1000L + i, reader.getTimestamp());
+            reader.readBook(book);
+            OrderBook expected = book(i % 2 == 0 ? BTC_CNY : LTC_CNY, 1000L + i, 1 + i % 5);
+            assertEquals(expected.getSymbolPair(), book.getSymbolPair());
+            assertEquals(expected.getAskCount(), book.getAskCount());
+            assertEquals(expected.getBidCount(), book.getBidCount());
+            int last = expected.getBidCount() - 1;
+            assertEquals(expected.getAskAmountUnscaled(last), book.getAskAmountUnscaled(last));
+            assertEquals(expected.getBidPriceUnscaled(last), book.getBidPriceUnscaled(last));
+
+            assertTrue(reader.next());
+            assertEquals(MarketDataReader.TICKER, reader.getType());
+            assertEquals(BTC_CNY, reader.getSymbolPair());
+            assertEquals(6000000L + i, reader.getPriceUnscaled());
+        }
+        assertFalse(reader.next());
+        reader.close();
+    }
+
+    @Test
+    public void testRecordsMarketApi() throws Exception {
+        File directory = folder.newFolder("api");
+        try (FakePeatioServer server = new FakePeatioServer().start()) {
+            PeatioCNYApi api = new PeatioCNYApi(server.getBaseUrl());
+            api.getRateLimiter().setLimit(EndpointClass.PUBLIC, 100, 1000.0);
+            MarketRecorder recorder = new MarketRecorder(directory, api.getMarket().name());
+            api.setRecorder(recorder);
+            OrderBook live = api.getOrderBook(BTC_CNY);
+            double ticker = api.ticker(LTC_CNY);
+            api.setRecorder(null);
+            api.ticker(LTC_CNY);
+            recorder.close();
+
+            MarketDataReader reader = new MarketDataReader(directory, api.getMarket().name());
+            assertTrue(reader.next());
+            OrderBook book = reader.readBook(new OrderBook());
+            assertEquals(live.getTimestamp(), book.getTimestamp());
+            assertEquals(live.getAskCount(), book.getAskCount());
+            assertEquals(live.getBidPriceUnscaled(0), book.getBidPriceUnscaled(0));
+            assertTrue(reader.next());
+            assertEquals(LTC_CNY, reader.getSymbolPair());
+            assertEquals(ticker, reader.getPrice(), 1e-4);
+            assertFalse(reader.next());
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package org.bitcoin.market.spread;
+
+import org.bitcoin.market.AbstractMarketApi;
+import org.bitcoin.market.PeatioCNYApi;
+import org.bitcoin.market.bean.OrderBook;
+import org.bitcoin.market.bean.Symbol;
+import org.bitcoin.market.bean.SymbolPair;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SpreadScannerTest {
+
+    private static final SymbolPair BTC_USD = new SymbolPair(Symbol.btc, Symbol.usd);
+
+    private final List<AbstractMarketApi> venues = new ArrayList<AbstractMarketApi>();
+    private final List<Opportunity> published = new ArrayList<Opportunity>();
+    private SpreadScanner scanner;
+
+    @Before
+    public void setUp() {
+        for (int i = 0; i < 3; i++) {
+            // never asked for anything over http
+            venues.add(new PeatioCNYApi("http://127.0.0.1:1") {
+                @Override
+                public Double getTransactionFee() {
+                    return 0.001;
+                }
+            });
+        }
+        scanner = new SpreadScanner(venues);
+        scanner.addListener(new SpreadListener() {
+            @Override
+            public void onOpportunity(Opportunity opportunity) {
+                published.add(opportunity);
+            }
+        });
+    }
+
+    @Test
+    public void testFeeAdjustedCross() {
+        OrderBook cheap = book(new double[][]{{100.0, 1.0}, {100.5, 2.0}}, new double[][]{{99.0, 1.0}});
+        assertTrue(scanner.update(0, BTC_USD, cheap).isEmpty());
+        // crosses venue 0 by less than the fees
+        OrderBook close = book(new double[][]{{102.0, 1.0}}, new double[][]{{100.1, 1.0}});
+        assertTrue(scanner.update(2, BTC_USD, close).isEmpty());
+
+        OrderBook rich = book(new double[][]{{102.0, 1.0}}, new double[][]{{101.0, 1.5}, {100.6, 5.0}});
+        List<Opportunity> found = scanner.update(1, BTC_USD, rich);
+        assertEquals(1, found.size());
+        assertEquals(found, published);
+        Opportunity opportunity = found.get(0);
+        assertSame(venues.get(0), opportunity.getBuyVenue());
+        assertSame(venues.get(1), opportunity.getSellVenue());
+        assertEquals(100.0, opportunity.getBuyPrice(), 0.0);
+        assertEquals(101.0, opportunity.getSellPrice(), 0.0);
+        // 101 * 0.999 - 100 * 1.001
+        assertEquals(0.799, opportunity.getSpread(), 1e-9);
+        // 1 at 100.1 against 100.899, then 0.5 at 100.6005 against it, 100.4994 doesn't pay
+        assertEquals(1.5, opportunity.getSize(), 0.0);
+        assertEquals(0.799 + 0.1493, opportunity.getProfit(), 1e-9);
+
+        assertEquals(found.size(), scanner.scan(BTC_USD).size());
+        scanner.setMaxAgeMillis(-1L);
+        assertTrue(scanner.scan(BTC_USD).isEmpty());
+    }
+
+    @Test
+    public void testWatchDepth() {
+        scanner.watch(BTC_USD);
+        venues.get(0).getDepthManager().apply(BTC_USD, book(new double[][]{{100.0, 1.0}}, new double[][]{{99.0, 1.0}}));
+        assertTrue(published.isEmpty());
+        venues.get(2).getDepthManager().apply(BTC_USD, book(new double[][]{{103.0, 1.0}}, new double[][]{{102.0, 0.25}}));
+        assertEquals(1, published.size());
+        assertSame(venues.get(2), published.get(0).getSellVenue());
+        assertEquals(0.25, published.get(0).getSize(), 0.0);
+        assertSame(venues.get(0), published.get(0).getBuyVenue());
+    }
+
+    private static OrderBook book(double[][] asks, double[][] bids) {
+        OrderBook book = new OrderBook(BTC_USD);
+        book.setTimestamp(System.currentTimeMillis());
+        for (double[] ask : asks) {
+            book.addAsk(ask[0], ask[1]);
+        }
+        for (double[] bid : bids) {
+            book.addBid(bid[0], bid[1]);
+        }
+        return book;
+    }
+}
@@ -0,0 +1,124 @@
+package org.bitcoin.market.stream;
+
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import org.bitcoin.common.FiatConverter;
+import org.bitcoin.market.FakePeatioServer;
+import org.bitcoin.market.FakePusherServer;
+import org.bitcoin.market.PeatioCNYApi;
+import org.bitcoin.market.bean.OrderBook;
+import org.bitcoin.market.bean.OrderSide;
+import org.bitcoin.market.bean.Symbol;
+import org.bitcoin.market.bean.SymbolPair;
+import org.bitcoin.market.bean.Trade;
+import org.bitcoin.market.depth.DepthListener;
+import org.bitcoin.market.depth.DepthUpdate;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class MarketStreamTest {
+
+    private static final SymbolPair BTC_USD = new SymbolPair(Symbol.btc, Symbol.usd);
+    private static final String CHANNEL = "market-btccny-global";
+
+    private FakePeatioServer server;
+    private FakePusherServer pusher;
+    private PeatioCNYApi api;
+    private MarketStream stream;
+    private final BlockingQueue<OrderBook> books = new LinkedBlockingQueue<OrderBook>();
+    private final BlockingQueue<Trade> trades = new LinkedBlockingQueue<Trade>();
+
+    @Before
+    public void start() throws Exception {
+        server = new FakePeatioServer().start();
+        pusher = new FakePusherServer().start();
+        api = new PeatioCNYApi(server.getBaseUrl());
+        api.getDepthManager().subscribe(BTC_USD, new DepthListener() {
+            @Override
+            public void onDepthUpdate(SymbolPair symbolPair, DepthUpdate update, OrderBook book) {
+                books.add(new OrderBook(book));
+            }
+        });
+        stream = new MarketStream(api, pusher.getUri());
+        stream.subscribe(BTC_USD);
+        stream.addTradeListener(new TradeListener() {
+            @Override
+            public void onTrades(SymbolPair symbolPair, List<Trade> pushed) {
+                trades.addAll(pushed);
+            }
+        });
+        stream.start();
+    }
+
+    @After
+    public void stop() throws Exception {
+        stream.close();
+        pusher.close();
+        server.close();
+    }
+
+    @Test
+    public void testPushedBookAndTrades() throws Exception {
+        assertTrue(pusher.awaitSubscribed(CHANNEL, 5, TimeUnit.SECONDS));
+        // the subscription is followed by a snapshot over http
+        OrderBook snapshot = books.poll(5, TimeUnit.SECONDS);
+        assertNotNull(snapshot);
+        assertEquals(1L, server.getRequestCount("/order_book"));
+        assertTrue(snapshot.getAskCount() > 1);
+
+        JSONObject update = new JSONObject();
+        update.put("asks", Arrays.asList(Arrays.asList("3801.0", "1.5"), Arrays.asList("3802.0", "2.0")));
+        update.put("bids", Arrays.asList(Arrays.asList("3799.0", "0.5")));
+        pusher.publish(CHANNEL, "update", update);
+        OrderBook pushed = books.poll(5, TimeUnit.SECONDS);
+        assertNotNull(pushed);
+        assertEquals(2, pushed.getAskCount());
+        assertEquals(1, pushed.getBidCount());
+        assertEquals(FiatConverter.toUsd(3801.0), pushed.getAskPrice(0), 1e-4);
+        assertEquals(1.5, pushed.getAskAmount(0), 0.0);
+        assertEquals(0.5, pushed.getBidAmount(0), 0.0);
+        assertEquals(2, api.getDepthManager().getBook(BTC_USD).getAskCount());
+
+        JSONObject trade = new JSONObject();
+        trade.put("tid", 42);
+        trade.put("type", "sell");
+        trade.put("date", 1393977600L);
+        trade.put("price", "3800.0");
+        trade.put("amount", "0.25");
+        JSONObject data = new JSONObject();
+        data.put("trades", new JSONArray(Arrays.<Object>asList(trade)));
+        pusher.publish(CHANNEL, "trades", data);
+        Trade received = trades.poll(5, TimeUnit.SECONDS);
+        assertNotNull(received);
+        assertEquals(42L, received.getTradeId());
+        assertEquals(OrderSide.sell, received.getOrderSide());
+        assertEquals(BTC_USD, received.getSymbolPair());
+        assertEquals(1393977600L, received.getTimestamp());
+        assertEquals(FiatConverter.toUsd(3800.0), received.getPrice(), 1e-4);
+        assertEquals(0.25, received.getAmount(), 0.0);
+    }
+
+    @Test
+    public void testReconnectResyncs() throws Exception {
+        assertTrue(pusher.awaitSubscribed(CHANNEL, 5, TimeUnit.SECONDS));
+        assertNotNull(books.poll(5, TimeUnit.SECONDS));
+        assertEquals(1L, stream.getConnects());
+
+        pusher.disconnectAll();
+        // reconnected after the first backoff, subscribed again and resynced from a fresh snapshot
+        assertNotNull(books.poll(10, TimeUnit.SECONDS));
+        assertEquals(2L, stream.getConnects());
+        assertEquals(2, pusher.getAccepted());
+        assertEquals(2L, server.getRequestCount("/order_book"));
+        assertTrue(stream.isConnected());
+    }
+}
@@ -0,0 +1,114 @@
+package org.bitcoin.market.stream;
+
+import com.google.common.base.Charsets;
+import org.junit.Test;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLHandshakeException;
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManagerFactory;
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.URI;
+import java.security.KeyStore;
+import java.security.MessageDigest;
+import java.util.Base64;
+
+import static org.junit.Assert.*;
+
+/**
+ * wss against a local TLS server, both certificates are trusted: only the host they are for differs.
+ */
+public class WebSocketClientTest {
+    private static final char[] PASSWORD = "changeit".toCharArray();
+
+    @Test
+    public void testCertificateOfHost() throws Exception {
+        try (SSLServerSocket server = listen("localhost.p12")) {
+            Thread thread = accept(server);
+            WebSocketClient client = new WebSocketClient(URI.create("wss://localhost:" + server.getLocalPort() + "/app/key"),
+                    trustBoth().getSocketFactory());
+            client.connect(5000);
+            client.close();
+            thread.join(5000);
+        }
+    }
+
+    @Test
+    public void testCertificateOfWrongHostRejected() throws Exception {
+        try (SSLServerSocket server = listen("wrong-host.p12")) {
+            accept(server);
+            WebSocketClient client = new WebSocketClient(URI.create("wss://localhost:" + server.getLocalPort() + "/app/key"),
+                    trustBoth().getSocketFactory());
+            try {
+                client.connect(5000);
+                fail("a certificate for wrong.example was accepted for localhost");
+            } catch (SSLHandshakeException expected) {
+            }
+        }
+    }
+
+    private static SSLServerSocket listen(String keyStore) throws Exception {
+        KeyManagerFactory keyManagers = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagers.init(load(keyStore), PASSWORD);
+        SSLContext context = SSLContext.getInstance("TLS");
+        context.init(keyManagers.getKeyManagers(), null, null);
+        return (SSLServerSocket) context.getServerSocketFactory().createServerSocket(0, 1, InetAddress.getByName("127.0.0.1"));
+    }
+
+    /**
+     * Answer the opening handshake of one client.
+     */
+    private static Thread accept(SSLServerSocket server) {
+        Thread thread = new Thread(() -> {
+            try (SSLSocket socket = (SSLSocket) server.accept()) {
+                InputStream in = socket.getInputStream();
+                BufferedReader reader = new BufferedReader(new InputStreamReader(in, Charsets.US_ASCII));
+                String key = null;
+                for (String line = reader.readLine(); line != null && !line.isEmpty(); line = reader.readLine()) {
+                    if (line.toLowerCase().startsWith("sec-websocket-key:")) {
+                        key = line.substring(line.indexOf(':') + 1).trim();
+                    }
+                }
+                byte[] sha1 = MessageDigest.getInstance("SHA-1")
+                        .digest((key + "258EAFA5-E914-47DA-95CA-C5AB0DC85B11").getBytes(Charsets.US_ASCII));
+                OutputStream out = socket.getOutputStream();
+                out.write(("HTTP/1.1 101 Switching Protocols\r\nUpgrade: websocket\r\nConnection: Upgrade\r\n" +
+                        "Sec-WebSocket-Accept: " + Base64.getEncoder().encodeToString(sha1) + "\r\n\r\n")
+                        .getBytes(Charsets.US_ASCII));
+                out.flush();
+                in.read();
+            } catch (Exception e) {
+                // the rejected client closes during the tls handshake
+            }
+        }, "wss-test-server");
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    private static SSLContext trustBoth() throws Exception {
+        KeyStore trusted = KeyStore.getInstance(KeyStore.getDefaultType());
+        trusted.load(null, null);
+        trusted.setCertificateEntry("localhost", load("localhost.p12").getCertificate("localhost"));
+        trusted.setCertificateEntry("wrong", load("wrong-host.p12").getCertificate("wrong"));
+        TrustManagerFactory trustManagers = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trustManagers.init(trusted);
+        SSLContext context = SSLContext.getInstance("TLS");
+        context.init(null, trustManagers.getTrustManagers(), null);
+        return context;
+    }
+
+    private static KeyStore load(String name) throws Exception {
+        KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        try (InputStream in = WebSocketClientTest.class.getResourceAsStream("/tls/" + name)) {
+            keyStore.load(in, PASSWORD);
+        }
+        return keyStore;
+    }
+}
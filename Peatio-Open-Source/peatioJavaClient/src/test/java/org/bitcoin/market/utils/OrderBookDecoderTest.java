@@ -0,0 +1,52 @@
+package org.bitcoin.market.utils;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+import org.bitcoin.market.bean.OrderBook;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class OrderBookDecoderTest {
+
+    @Test
+    public void testDecodeRecordedPayload() throws Exception {
+        byte[] data = ByteStreams.toByteArray(getClass().getResourceAsStream("/order_book.json"));
+        OrderBook book = new OrderBook();
+        assertTrue(new OrderBookDecoder().decode(data, book));
+
+        JSONObject json = JSON.parseObject(new String(data, Charsets.UTF_8));
+        JSONArray asks = json.getJSONArray("asks");
+        JSONArray bids = json.getJSONArray("bids");
+        assertEquals(asks.size(), book.getAskCount());
+        assertEquals(bids.size(), book.getBidCount());
+        for (int i = 0; i < asks.size(); i++) {
+            assertEquals(asks.getJSONObject(i).getDoubleValue("price"), book.getAskPrice(i), 0.0);
+            assertEquals(asks.getJSONObject(i).getDoubleValue("remaining_volume"), book.getAskAmount(i), 0.0);
+        }
+        for (int i = 0; i < bids.size(); i++) {
+            assertEquals(bids.getJSONObject(i).getDoubleValue("price"), book.getBidPrice(i), 0.0);
+            assertEquals(bids.getJSONObject(i).getDoubleValue("remaining_volume"), book.getBidAmount(i), 0.0);
+        }
+    }
+
+    @Test
+    public void testDecodeEdgeCases() throws Exception {
+        String payload = "{ \"timestamp\": 1404887812, \"extra\": {\"a\": [1, \"]}\"]},\n" +
+                "  \"bids\": [ {\"price\": 2999.5, \"note\": \"say \\\"hi\\\"\", \"remaining_volume\": \"1e-2\"} ],\n" +
+                "  \"asks\": [{\"remaining_volume\": \"0.12345678901234567\", \"price\": \"-0\"}, {}] }";
+        OrderBook book = new OrderBook();
+        assertTrue(new OrderBookDecoder().decode(payload.getBytes(Charsets.UTF_8), book));
+        assertEquals(2, book.getAskCount());
+        assertEquals(12345679L, book.getAskAmountUnscaled(0));
+        assertEquals(0.0, book.getAskPrice(1), 0.0);
+        assertEquals(1, book.getBidCount());
+        assertEquals(2999.5, book.getBidPrice(0), 0.0);
+        assertEquals(0.01, book.getBidAmount(0), 0.0);
+
+        assertFalse(new OrderBookDecoder().decode("{\"error\": {\"code\": 2002}}".getBytes(Charsets.UTF_8), book));
+    }
+}
@@ -0,0 +1,124 @@
+package org.bitcoin.market.utils;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class PagedIteratorTest {
+
+    @Test
+    public void testPagesOfEverySourceInOrder() {
+        Pages a = new Pages("a", 7, 3);
+        Pages b = new Pages("b", 3, 3);
+        PagedIterator<String> iterator = new PagedIterator<String>(Arrays.asList(a, b), 3);
+        // the first page of every source up front
+        assertEquals(Arrays.asList(1), a.requested);
+        assertEquals(Arrays.asList(1), b.requested);
+
+        assertEquals("a0", iterator.next());
+        // one page ahead of the reader
+        assertEquals(Arrays.asList(1, 2), a.requested);
+
+        List<String> rest = iterator.toList();
+        assertEquals(Arrays.asList("a1", "a2", "a3", "a4", "a5", "a6", "b0", "b1", "b2"), rest);
+        assertEquals(Arrays.asList(1, 2, 3), a.requested);
+        // a full last page costs one more, empty, request
+        assertEquals(Arrays.asList(1, 2), b.requested);
+        assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void testCloseCancelsPagesInFlight() {
+        Pages a = new Pages("a", 10, 3);
+        Pages b = new Pages("b", 10, 3);
+        a.hold = true;
+        b.hold = true;
+        PagedIterator<String> iterator = new PagedIterator<String>(Arrays.asList(a, b), 3);
+        a.futures.get(0).complete(Arrays.asList("a0", "a1", "a2"));
+        assertEquals("a0", iterator.next());
+        CompletableFuture<List<String>> second = a.futures.get(1);
+
+        iterator.close();
+        assertTrue(second.isCancelled());
+        assertTrue(b.futures.get(0).isCancelled());
+        assertFalse(iterator.hasNext());
+        assertEquals(2, a.requested.size());
+        assertEquals(1, b.requested.size());
+    }
+
+    @Test
+    public void testErrorMidStream() {
+        Pages a = new Pages("a", 10, 3);
+        Pages b = new Pages("b", 10, 3);
+        a.failPage = 2;
+        b.hold = true;
+        PagedIterator<String> iterator = new PagedIterator<String>(Arrays.asList(a, b), 3);
+        assertEquals(Arrays.asList("a0", "a1", "a2"), Arrays.asList(iterator.next(), iterator.next(), iterator.next()));
+        try {
+            iterator.hasNext();
+            fail();
+        } catch (RuntimeException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+        // the error closes the iterator
+        assertTrue(b.futures.get(0).isCancelled());
+        assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void testStreamStopsEarly() {
+        Pages a = new Pages("a", 10, 3);
+        PagedIterator<String> iterator = new PagedIterator<String>(Arrays.asList(a), 3);
+        List<String> first;
+        try (Stream<String> stream = iterator.stream()) {
+            first = stream.limit(4).collect(Collectors.toList());
+        }
+        assertEquals(Arrays.asList("a0", "a1", "a2", "a3"), first);
+        assertEquals(Arrays.asList(1, 2, 3), a.requested);
+        assertFalse(iterator.hasNext());
+    }
+
+    /**
+     * Count items named prefix + index, served pageSize at a time.
+     */
+    private static class Pages implements PagedIterator.PageFetcher<String> {
+        private final String prefix;
+        private final int count;
+        private final int pageSize;
+        private final List<Integer> requested = new ArrayList<Integer>();
+        private final List<CompletableFuture<List<String>>> futures = new ArrayList<CompletableFuture<List<String>>>();
+        private boolean hold;
+        private int failPage;
+
+        private Pages(String prefix, int count, int pageSize) {
+            this.prefix = prefix;
+            this.count = count;
+            this.pageSize = pageSize;
+        }
+
+        @Override
+        public CompletableFuture<List<String>> fetch(int page) {
+            requested.add(page);
+            CompletableFuture<List<String>> future = new CompletableFuture<List<String>>();
+            futures.add(future);
+            if (page == failPage) {
+                future.completeExceptionally(new IOException("page " + page));
+            } else if (!hold) {
+                List<String> items = new ArrayList<String>();
+                for (int i = (page - 1) * pageSize; i < Math.min(count, page * pageSize); i++) {
+                    items.add(prefix + i);
+                }
+                future.complete(items);
+            }
+            return future;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package org.bitcoin.market.utils;
+
+import org.junit.Test;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class RequestSignerTest {
+
+    @Test
+    public void testSign() throws Exception {
+        TreeMap<String, String> params = new TreeMap<String, String>();
+        params.put("canonical_verb", "POST");
+        params.put("canonical_uri", "/api/v2/orders");
+        params.put("access_key", "xxx");
+        params.put("market", "btccny");
+        params.put("price", "3000.0");
+        params.put("side", "buy");
+        params.put("tonce", "1404887812000");
+        params.put("volume", "0.01");
+
+        RequestSigner signer = new RequestSigner();
+        String expected = reference("yyy",
+                "POST|/api/v2/orders|access_key=xxx&market=btccny&price=3000.0&side=buy&tonce=1404887812000&volume=0.01");
+        assertEquals(expected, signer.sign("yyy", "POST", "/api/v2/orders", params));
+        assertEquals(expected, signer.sign("yyy", "POST", "/api/v2/orders", params));
+
+        params.put("signature", expected);
+        assertEquals(expected, signer.sign("yyy", "POST", "/api/v2/orders", params));
+        assertFalse(expected.equals(signer.sign("zzz", "POST", "/api/v2/orders", params)));
+        assertEquals(4, signer.getSignCount());
+    }
+
+    @Test
+    public void testSignLeadingZeroAndUtf8() throws Exception {
+        RequestSigner signer = new RequestSigner();
+        TreeMap<String, String> params = new TreeMap<String, String>();
+        for (int i = 0; i < 50; i++) {
+            params.put("id", String.valueOf(i));
+            params.put("note", "订单" + i);
+            String signature = signer.sign("secret", "GET", "/api/v2/order", params);
+            assertEquals(64, signature.length());
+            assertEquals(reference("secret", "GET|/api/v2/order|id=" + i + "&note=订单" + i), signature);
+        }
+    }
+
+    @Test
+    public void testSignFromManyThreads() throws Exception {
+        RequestSigner signer = new RequestSigner();
+        String[] secrets = {"a", "b", "c"};
+        String[] expected = new String[100];
+        for (int i = 0; i < expected.length; i++) {
+            expected[i] = reference(secrets[i % 3], "GET|/api/v2/order|id=" + i);
+        }
+        List<Thread> threads = new ArrayList<Thread>();
+        AtomicInteger wrong = new AtomicInteger();
+        for (int t = 0; t < 8; t++) {
+            // a thread per call, none of them keeps anything between signatures
+            threads.add(new Thread(() -> {
+                TreeMap<String, String> params = new TreeMap<String, String>();
+                for (int i = 0; i < expected.length; i++) {
+                    params.put("id", String.valueOf(i));
+                    if (!expected[i].equals(signer.sign(secrets[i % 3], "GET", "/api/v2/order", params))) {
+                        wrong.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(0, wrong.get());
+        assertEquals(3, signer.getKeyCount());
+    }
+
+    @Test
+    public void testKeysBounded() throws Exception {
+        RequestSigner signer = new RequestSigner();
+        TreeMap<String, String> params = new TreeMap<String, String>();
+        params.put("tonce", "1");
+        for (int i = 0; i < RequestSigner.MAX_KEYS + 10; i++) {
+            signer.sign("secret" + i, "GET", "/api/v2/members/me", params);
+        }
+        assertTrue(signer.getKeyCount() <= RequestSigner.MAX_KEYS);
+        assertEquals(reference("secret0", "GET|/api/v2/members/me|tonce=1"),
+                signer.sign("secret0", "GET", "/api/v2/members/me", params));
+    }
+
+    private String reference(String secret, String payload) throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(secret.getBytes("UTF-8"), "HmacSHA256"));
+        mac.update(payload.getBytes("UTF-8"));
+        return String.format("%064x", new BigInteger(1, mac.doFinal()));
+    }
+}